@@ -2,6 +2,15 @@
 -- This schema supports dynamic data management instead of hardcoded values
 
 -- Drop existing tables if they exist (for clean setup)
+-- Later schema changes live in migrations/ and are applied when the server starts.
+DROP TABLE IF EXISTS schema_migrations;
+DROP TABLE IF EXISTS report_daily_rollups;
+DROP TABLE IF EXISTS report_rollup_days;
+DROP TABLE IF EXISTS job_notes;
+DROP TABLE IF EXISTS performance_metrics;
+DROP TABLE IF EXISTS system_settings;
+DROP TABLE IF EXISTS contact_info;
+DROP TABLE IF EXISTS business_hours;
 DROP TABLE IF EXISTS job_inventory;
 DROP TABLE IF EXISTS payments;
 DROP TABLE IF EXISTS invoices;
@@ -9,8 +18,9 @@ DROP TABLE IF EXISTS jobs;
 DROP TABLE IF EXISTS vehicles;
 DROP TABLE IF EXISTS inventory;
 DROP TABLE IF EXISTS services;
-DROP TABLE IF EXISTS branches;
+-- users before branches: V005 gives users a foreign key to branches.
 DROP TABLE IF EXISTS users;
+DROP TABLE IF EXISTS branches;
 
 -- Create Users table
 CREATE TABLE users (
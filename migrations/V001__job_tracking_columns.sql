@@ -0,0 +1,7 @@
+-- Columns the employee job views read and write that the original schema never declared.
+ALTER TABLE jobs
+    ADD COLUMN estimated_completion_date TIMESTAMP NULL AFTER booking_date,
+    ADD COLUMN actual_completion_date TIMESTAMP NULL AFTER estimated_completion_date,
+    ADD COLUMN labor_cost DECIMAL(10, 2) DEFAULT 0.00 AFTER total_cost,
+    ADD COLUMN parts_cost DECIMAL(10, 2) DEFAULT 0.00 AFTER labor_cost,
+    ADD COLUMN customer_notes TEXT AFTER notes;
@@ -0,0 +1,17 @@
+-- Indexes for the hot handler queries. Each one lets its query read a single index range in
+-- the order the query returns rows, instead of scanning and sorting the whole table.
+
+-- Employee job listing (keyset on booking_date, id), employee stats and the upcoming schedule
+-- (assigned_employee_id = ? AND booking_date >= CURDATE() ORDER BY booking_date).
+CREATE INDEX idx_jobs_employee_booking ON jobs (assigned_employee_id, booking_date, id);
+
+-- Customer job listing (keyset on booking_date, id).
+CREATE INDEX idx_jobs_customer_booking ON jobs (customer_id, booking_date, id);
+
+-- Parts picker: is_active = TRUE AND quantity > 0 ORDER BY category, part_name. Carries every
+-- selected column so the listing never touches the table rows.
+CREATE INDEX idx_inventory_active_listing
+    ON inventory (is_active, category, part_name, quantity, price_per_unit, part_number, supplier);
+
+-- Customer vehicle list, newest first.
+CREATE INDEX idx_vehicles_customer_created ON vehicles (customer_id, created_at);
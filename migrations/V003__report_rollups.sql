@@ -0,0 +1,34 @@
+-- Daily pre-aggregates behind /api/admin/reports, maintained by ReportRollups. One row per day
+-- and dimension value ('all' has the single id 0), so a report over any period reads at most a
+-- few hundred rows per dimension value no matter how many jobs, payments or parts it covers.
+CREATE TABLE report_daily_rollups (
+    dimension ENUM('all', 'branch', 'service', 'employee', 'part') NOT NULL,
+    day DATE NOT NULL,
+    dimension_id INT NOT NULL,
+    jobs_booked INT NOT NULL DEFAULT 0,
+    new_customers INT NOT NULL DEFAULT 0,
+    returning_customers INT NOT NULL DEFAULT 0,
+    jobs_completed INT NOT NULL DEFAULT 0,
+    completion_minutes BIGINT NOT NULL DEFAULT 0,
+    estimated_minutes BIGINT NOT NULL DEFAULT 0,
+    revenue DECIMAL(14, 2) NOT NULL DEFAULT 0.00,
+    parts_used INT NOT NULL DEFAULT 0,
+    parts_cost DECIMAL(14, 2) NOT NULL DEFAULT 0.00,
+    PRIMARY KEY (dimension, day, dimension_id)
+);
+
+-- Days whose rollups have been computed, so quiet days are not recomputed on every backfill.
+CREATE TABLE report_rollup_days (
+    day DATE PRIMARY KEY,
+    computed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+);
+
+-- Recomputing a day reads only that day's rows from each source table.
+CREATE INDEX idx_jobs_created ON jobs (created_at);
+CREATE INDEX idx_jobs_completed ON jobs (actual_completion_date);
+CREATE INDEX idx_payments_date ON payments (payment_date);
+CREATE INDEX idx_job_inventory_used ON job_inventory (used_at);
+
+-- Monthly metrics derived from the rollups are upserted per employee, type and period.
+ALTER TABLE performance_metrics
+    ADD UNIQUE KEY uq_performance_period (employee_id, metric_type, period_start, period_end);
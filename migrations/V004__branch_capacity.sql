@@ -0,0 +1,6 @@
+-- How many jobs a branch can work on at once; the booking calendar admits a booking only while
+-- fewer than this many booked jobs overlap every 15-minute slot it needs.
+ALTER TABLE branches ADD COLUMN service_bays INT NOT NULL DEFAULT 3 AFTER rating;
+
+-- The booking calendar loads every upcoming booking at startup by booking date.
+CREATE INDEX idx_jobs_booking_date ON jobs (booking_date);
@@ -0,0 +1,8 @@
+-- The branch a technician works at; the dispatcher assigns them only that branch's jobs. NULL
+-- means they can be sent to any branch.
+ALTER TABLE users
+    ADD COLUMN branch_id INT NULL AFTER role,
+    ADD CONSTRAINT fk_users_branch FOREIGN KEY (branch_id) REFERENCES branches(id) ON DELETE SET NULL;
+
+-- The dispatcher loads open jobs at startup and looks for unassigned bookings on every pass.
+CREATE INDEX idx_jobs_status_employee ON jobs (status, assigned_employee_id);
@@ -0,0 +1,4 @@
+-- The search index re-reads rows changed since its last pass by updated_at.
+CREATE INDEX idx_users_updated_at ON users (updated_at);
+CREATE INDEX idx_vehicles_updated_at ON vehicles (updated_at);
+CREATE INDEX idx_jobs_updated_at ON jobs (updated_at);
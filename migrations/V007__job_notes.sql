@@ -0,0 +1,22 @@
+-- Job notes as append-only rows instead of CONCAT appends to jobs.notes, so adding a note no longer
+-- rewrites the job row and job listings stop carrying every note ever written.
+CREATE TABLE job_notes (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    job_id INT NOT NULL,
+    author_id INT NULL,
+    body TEXT NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    -- Notes are read newest first, a page at a time, by (job_id, id).
+    INDEX idx_job_notes_job (job_id, id),
+    FOREIGN KEY (job_id) REFERENCES jobs(id) ON DELETE CASCADE,
+    FOREIGN KEY (author_id) REFERENCES users(id) ON DELETE SET NULL
+);
+
+-- Existing notes become one row per job; the appends before this had no author or time of their own.
+INSERT INTO job_notes (job_id, body, created_at)
+SELECT id, TRIM(LEADING ' | ' FROM notes), updated_at
+FROM jobs
+WHERE notes IS NOT NULL AND TRIM(LEADING ' | ' FROM notes) <> ''
+ORDER BY id;
+
+ALTER TABLE jobs DROP COLUMN notes;
@@ -44,6 +44,7 @@ function initializeDashboard(userName, userId) {
     initializePaymentModule();
     initializeMapIntegration();
     initializeServiceHistoryModule();
+    initializeLiveUpdates();
     
     // Load initial data
     loadCustomerData();
@@ -52,6 +53,16 @@ function initializeDashboard(userName, userId) {
     loadDashboardOverview();
 }
 
+// Reload the visible tab when the server pushes a change (see NotificationManager.connectLiveUpdates).
+function initializeLiveUpdates() {
+    document.addEventListener('live-update', () => {
+        const activeTab = document.querySelector('.tab-content.active');
+        if (activeTab) {
+            loadTabData(activeTab.id.replace(/-tab$/, ''));
+        }
+    });
+}
+
 // Navigation System
 function initializeNavigation() {
     console.log('[DEBUG] Initializing navigation');
@@ -104,8 +115,9 @@ function loadTabData(tab) {
 function initializeLogout() {
     const logoutButton = document.getElementById('logout-button');
     if (logoutButton) {
-        logoutButton.addEventListener('click', () => {
+        logoutButton.addEventListener('click', async () => {
             sessionStorage.clear();
+            await fetch('/api/auth/logout', { method: 'POST' }).catch(() => {});
             window.location.href = '/index.html';
         });
     }
@@ -447,14 +459,20 @@ function setupBookingForm(branches, vehicles, services) {
             const res = await fetch('/api/customer/bookings', {
                 method: 'POST',
                 headers: { 'Content-Type': 'application/json' },
-                body: JSON.stringify({ branchId, vehicleId, serviceId, date })
+                body: JSON.stringify({
+                    customerId: sessionStorage.getItem('userId'),
+                    branchId, vehicleId, serviceId, bookingDate: date
+                })
             });
-            if (!res.ok) throw new Error('Booking failed');
+            if (!res.ok) {
+                const body = await res.json().catch(() => ({}));
+                throw new Error(body.message || 'Booking failed');
+            }
             ModalManager.show(`<div class='modal-content'><button class='modal-close'>&times;</button><div class='modal-body'><h3>Booking Confirmed!</h3><p>Your appointment has been booked successfully.</p></div></div>`);
             showNotification('Appointment booked successfully', 'success');
             loadDashboardOverview(); // Refresh dashboard
         } catch (err) {
-            showNotification('Booking failed', 'error');
+            showNotification(err.message || 'Booking failed', 'error');
         }
     };
     // Live summary update
@@ -740,15 +758,28 @@ function initializePaymentModule() {
     }
 }
 
+// The jobs listing is paged; follows X-Next-Cursor until stop(page) returns true or the pages run out.
+async function walkCustomerJobs(userId, query, stop) {
+    let cursor = '';
+    do {
+        const response = await fetch(`http://localhost:8080/api/customer/jobs/${userId}?limit=200${query}${cursor ? '&cursor=' + encodeURIComponent(cursor) : ''}`);
+        if (!response.ok) throw new Error('Failed to fetch jobs');
+        if (stop(await response.json())) return;
+        cursor = response.headers.get('X-Next-Cursor');
+    } while (cursor);
+}
+
+async function findCustomerJob(userId, jobId) {
+    let job = null;
+    await walkCustomerJobs(userId, '', page => (job = page.find(j => j.jobId === jobId)) !== undefined);
+    return job;
+}
+
 async function showJobDetails(jobId) {
     const userId = sessionStorage.getItem('userId');
     
     try {
-        const response = await fetch(`http://localhost:8080/api/customer/jobs/${userId}`);
-        if (!response.ok) throw new Error('Failed to fetch job details');
-        
-        const jobs = await response.json();
-        const job = jobs.find(j => j.jobId === jobId);
+        const job = await findCustomerJob(userId, jobId);
         
         if (job) {
             populateJobDetailsModal(job);
@@ -811,11 +842,7 @@ async function showPaymentModal(jobId) {
     const userId = sessionStorage.getItem('userId');
     
     try {
-        const response = await fetch(`http://localhost:8080/api/customer/jobs/${userId}`);
-        if (!response.ok) throw new Error('Failed to fetch job details');
-        
-        const jobs = await response.json();
-        const job = jobs.find(j => j.jobId === jobId);
+        const job = await findCustomerJob(userId, jobId);
         
         if (job && job.status === 'Invoiced') {
             document.getElementById('payment-job-id').textContent = job.jobId;
@@ -955,10 +982,9 @@ async function loadCustomerData() {
     const userId = sessionStorage.getItem('userId');
     
     try {
-        const response = await fetch(`http://localhost:8080/api/customer/jobs/${userId}`);
-        if (!response.ok) throw new Error('Failed to fetch customer data');
-        
-        const jobs = await response.json();
+        // Only the status is needed to count every job, not just the first page.
+        const jobs = [];
+        await walkCustomerJobs(userId, '&fields=status', page => { jobs.push(...page); return false; });
         updateCustomerStats(jobs);
     } catch (error) {
         console.error('Error loading customer data:', error);
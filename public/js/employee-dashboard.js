@@ -29,6 +29,7 @@ function initializeDashboard(userName, userId) {
     initializeJobManagement();
     initializeInventoryModule();
     initializeTimeTracking();
+    initializeLiveUpdates();
     
     // Load initial data
     loadEmployeeData();
@@ -37,6 +38,16 @@ function initializeDashboard(userName, userId) {
     switchToTab('assigned-jobs');
 }
 
+// Reload the visible tab when the server pushes a change (see NotificationManager.connectLiveUpdates).
+function initializeLiveUpdates() {
+    document.addEventListener('live-update', () => {
+        const activeTab = document.querySelector('.tab-content.active');
+        if (activeTab) {
+            loadTabData(activeTab.id.replace(/-tab$/, ''));
+        }
+    });
+}
+
 // Navigation System
 function initializeNavigation() {
     const navLinks = document.querySelectorAll('.nav-link');
@@ -109,7 +120,8 @@ function loadTabData(tab) {
 function initializeLogout() {
     const logoutButton = document.getElementById('logout-button');
     if (logoutButton) {
-        logoutButton.addEventListener('click', () => {
+        logoutButton.addEventListener('click', async () => {
+            await fetch('/api/auth/logout', { method: 'POST' }).catch(() => {});
             window.location.href = '/index.html';
         });
     }
@@ -136,8 +148,8 @@ async function loadOverviewData() {
         updateInventoryAlerts(lowStockItems);
         
         // Load performance data
-        // const performanceResponse = await fetch(`http://localhost:8080/api/admin/performance`);
-        const performanceData = [];
+        const performanceResponse = await fetch('/api/admin/performance');
+        const performanceData = performanceResponse.ok ? await performanceResponse.json() : [];
         updatePerformanceMetrics(performanceData, userId);
     } catch (error) {
         console.error('Error loading overview data:', error);
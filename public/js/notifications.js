@@ -349,6 +349,32 @@ class NotificationManager {
         });
     }
 
+    // Server-pushed job and stock changes from /api/events. Each one is re-dispatched as a
+    // 'live-update' DOM event so dashboards can refresh instead of polling; 'resync' means
+    // some events were dropped and the page should reload what it shows.
+    connectLiveUpdates() {
+        if (!window.EventSource || this.eventSource) return;
+        this.eventSource = new EventSource('/api/events');
+
+        const dispatch = (type, data) => {
+            document.dispatchEvent(new CustomEvent('live-update', { detail: { type, data } }));
+        };
+        this.eventSource.addEventListener('job_status', (e) => {
+            const data = JSON.parse(e.data);
+            this.notifyJobUpdate(data.jobId, data.status);
+            dispatch('job_status', data);
+        });
+        this.eventSource.addEventListener('job_note', (e) => dispatch('job_note', JSON.parse(e.data)));
+        this.eventSource.addEventListener('inventory', (e) => {
+            const data = JSON.parse(e.data);
+            if (data.lowStock) {
+                this.notifyInventoryLow(data.partName);
+            }
+            dispatch('inventory', data);
+        });
+        this.eventSource.addEventListener('resync', () => dispatch('resync', {}));
+    }
+
     notifyInventoryLow(item) {
         this.addNotification({
             type: 'inventory',
@@ -377,4 +403,5 @@ document.head.appendChild(style);
 // Initialize notification manager
 document.addEventListener('DOMContentLoaded', () => {
     window.notificationManager = new NotificationManager();
+    window.notificationManager.connectLiveUpdates();
 });
\ No newline at end of file
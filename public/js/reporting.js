@@ -51,26 +51,26 @@ class AdvancedReporting {
         }
     }
 
+    async fetchReport(name) {
+        const response = await fetch(`/api/admin/reports/${name}?period=${encodeURIComponent(this.currentPeriod)}`);
+        if (!response.ok) {
+            throw new Error(`Failed to load ${name} report (${response.status})`);
+        }
+        return response.json();
+    }
+
     async fetchRevenueData() {
-        // const response = await fetch(`http://localhost:8080/api/admin/reports/revenue?period=${this.currentPeriod}`);
-        const data = {
-            labels: ['January', 'February', 'March', 'April', 'May', 'June'],
-            values: [12000, 15000, 18000, 20000, 22000, 25000]
-        };
+        const data = await this.fetchReport('revenue');
         
         // Transform data for chart
         return {
             labels: data.labels,
-            values: data.values
+            values: data.values.map(Number)
         };
     }
 
     async fetchServiceDistributionData() {
-        // const response = await fetch(`http://localhost:8080/api/admin/reports/part-usage?period=${this.currentPeriod}`);
-        const data = {
-            labels: ['Part A', 'Part B', 'Part C', 'Part D', 'Part E', 'Part F'],
-            values: [20, 15, 10, 12, 18, 25]
-        };
+        const data = await this.fetchReport('part-usage');
         
         // Transform data for chart
         return {
@@ -80,18 +80,13 @@ class AdvancedReporting {
     }
 
     async fetchEmployeePerformanceData() {
-        // const response = await fetch(`http://localhost:8080/api/admin/reports/employee-performance?period=${this.currentPeriod}`);
-        const data = {
-            labels: ['John Doe', 'Jane Smith', 'Bob Johnson'],
-            jobsCompleted: [10, 8, 12],
-            ratings: [4.5, 4.2, 4.8]
-        };
+        const data = await this.fetchReport('employee-performance');
         
         // Transform data for chart
         return {
             labels: data.labels,
             jobsCompleted: data.jobsCompleted,
-            ratings: data.ratings
+            ratings: data.ratings.map(Number)
         };
     }
 
@@ -107,12 +102,7 @@ class AdvancedReporting {
     }
 
     async fetchCustomerActivityData() {
-        // const response = await fetch(`http://localhost:8080/api/admin/reports/customer-activity?period=${this.currentPeriod}`);
-        const data = {
-            labels: ['January', 'February', 'March', 'April', 'May', 'June'],
-            newCustomers: [100, 120, 150, 180, 200, 220],
-            returningCustomers: [50, 60, 70, 80, 90, 100]
-        };
+        const data = await this.fetchReport('customer-activity');
         
         // Transform data for chart
         return {
@@ -1,5 +1,16 @@
 package com.autorepairpro;
 
+import com.autorepairpro.auth.PasswordHasher;
+import com.autorepairpro.auth.SessionStore;
+import com.autorepairpro.cache.ReferenceDataCache;
+import com.autorepairpro.db.MigrationRunner;
+import com.autorepairpro.log.Log;
+import com.autorepairpro.notes.JobNotes;
+import com.autorepairpro.reports.EmployeeStats;
+import com.autorepairpro.reports.ReportRollups;
+import com.autorepairpro.scheduling.BookingCalendar;
+import com.autorepairpro.scheduling.Dispatcher;
+import com.autorepairpro.search.SearchIndex;
 import com.autorepairpro.server.SimpleHttpServer;
 
 public class Main {
@@ -7,12 +18,41 @@ public class Main {
         // Define the port to run the server on.
         int port = 8080;
         try {
+            // Apply pending schema migrations before anything queries the database.
+            MigrationRunner.migrateOnStartup();
+
+            // Time PBKDF2 on this host to pick the password hashing cost.
+            PasswordHasher.start();
+
+            // Start the writer that commits job notes in batches.
+            JobNotes.start();
+
+            // Restore sessions from the last snapshot so a restart does not log everyone out.
+            SessionStore.start();
+
+            // Load services, branches, hours and contacts before the first request needs them.
+            ReferenceDataCache.warmUp();
+
+            // Load upcoming bookings into the calendar that admits new ones.
+            BookingCalendar.warmUp();
+
+            // Keep the report rollups current; the first pass backfills days never computed.
+            ReportRollups.start();
+
+            // Load the per-employee job counters behind the dashboard stats.
+            EmployeeStats.start();
+
+            // Assign new bookings to technicians and even out their workloads in the background.
+            Dispatcher.start();
+
+            // Build the front-desk search index in the background and keep it current.
+            SearchIndex.start();
+
             // Create and start the server.
             SimpleHttpServer server = new SimpleHttpServer(port);
             server.start();
         } catch (Exception e) {
-            System.err.println("Failed to start server: " + e.getMessage());
-            e.printStackTrace();
+            Log.error("Failed to start server: " + e.getMessage(), e);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,47 @@
+package com.autorepairpro.auth;
+
+import com.autorepairpro.json.JsonWriter;
+import com.autorepairpro.server.HttpResponse;
+import com.autorepairpro.server.Router;
+
+/**
+ * Route guards. They only look at the session the server resolved for the request, so
+ * authorization costs no database lookup. Admins pass every guard.
+ */
+public class Access {
+    private Access() {}
+
+    /** Requires a session with the given role. */
+    public static Router.Route role(String role, Router.Route route) {
+        return (request, params) -> {
+            Session session = request.getSession();
+            if (session == null) {
+                return deny(401, "Authentication required");
+            }
+            if (!session.hasRole(role) && !session.isAdmin()) {
+                return deny(403, "Forbidden");
+            }
+            return route.handle(request, params);
+        };
+    }
+
+    /** Requires a session with the given role whose user id equals the {@code idParam} path parameter. */
+    public static Router.Route self(String role, String idParam, Router.Route route) {
+        return (request, params) -> {
+            Session session = request.getSession();
+            if (session == null) {
+                return deny(401, "Authentication required");
+            }
+            if (!session.isAdmin() && (!session.hasRole(role) || session.getUserId() != params.getInt(idParam))) {
+                return deny(403, "Forbidden");
+            }
+            return route.handle(request, params);
+        };
+    }
+
+    private static HttpResponse deny(int status, String message) {
+        JsonWriter json = JsonWriter.obtain();
+        json.beginObject().field("error", message).endObject();
+        return HttpResponse.json(status, json);
+    }
+}
@@ -0,0 +1,205 @@
+package com.autorepairpro.auth;
+
+import com.autorepairpro.log.Log;
+import com.autorepairpro.metrics.Metrics;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.security.spec.KeySpec;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * PBKDF2-HMAC-SHA256 password hashing on its own small CPU pool. Request threads hand the work
+ * over and wait, so at most {@code PASSWORD_HASH_THREADS} hashes run at once no matter how many
+ * logins arrive; when the queue in front of the pool is full, callers get {@link BusyException}
+ * straight away instead of piling up.
+ *
+ * Stored hashes look like {@code pbkdf2-sha256$<iterations>$<salt>$<hash>}. The iteration count
+ * is picked at startup by timing PBKDF2 on this host against a latency target; a hash with a
+ * different count (or a legacy plaintext password) still verifies and is reported as needing a
+ * rehash, so credentials move to the current cost as users log in.
+ */
+public class PasswordHasher {
+    // Hashing configuration with fallback to environment variables
+    private static final int THREADS = System.getenv("PASSWORD_HASH_THREADS") != null ?
+        Integer.parseInt(System.getenv("PASSWORD_HASH_THREADS")) : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private static final int QUEUE_SIZE = System.getenv("PASSWORD_HASH_QUEUE_SIZE") != null ?
+        Integer.parseInt(System.getenv("PASSWORD_HASH_QUEUE_SIZE")) : 32;
+    private static final long TARGET_MILLIS = System.getenv("PASSWORD_HASH_TARGET_MS") != null ?
+        Long.parseLong(System.getenv("PASSWORD_HASH_TARGET_MS")) : 100;
+    // A fixed count skips calibration, e.g. to keep every node of a cluster on the same cost.
+    private static final int FIXED_ITERATIONS = System.getenv("PASSWORD_HASH_ITERATIONS") != null ?
+        Integer.parseInt(System.getenv("PASSWORD_HASH_ITERATIONS")) : 0;
+
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final String PREFIX = "pbkdf2-sha256$";
+    private static final int MIN_ITERATIONS = 100_000;
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    private static final long WAIT_TIMEOUT_SECONDS = 10;
+
+    public enum Result { INVALID, VALID, VALID_NEEDS_REHASH }
+
+    /** The hashing pool is saturated; the caller should answer 503. */
+    public static class BusyException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        BusyException(String message) {
+            super(message);
+        }
+    }
+
+    private static final SecureRandom random = new SecureRandom();
+    private static final ThreadPoolExecutor pool;
+    private static volatile int iterations;
+    // Verified against when the user does not exist, so unknown usernames take as long as wrong passwords.
+    private static volatile String dummyHash;
+
+    static {
+        AtomicInteger threadCount = new AtomicInteger();
+        pool = new ThreadPoolExecutor(THREADS, THREADS, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(QUEUE_SIZE), r -> {
+                Thread t = new Thread(r, "password-hash-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        Metrics.gauge("password_hash_queue_depth", "Password hashes waiting for the hashing pool",
+            () -> pool.getQueue().size());
+    }
+
+    private PasswordHasher() {}
+
+    /** Picks the iteration count for this host; called once at startup. */
+    public static synchronized void start() {
+        if (iterations != 0) {
+            return;
+        }
+        iterations = FIXED_ITERATIONS > 0 ? FIXED_ITERATIONS : calibrate();
+        dummyHash = hashNow("not-a-real-password".toCharArray());
+        Log.info("Password hashing: PBKDF2-SHA256 with " + iterations + " iterations on " + THREADS + " threads");
+    }
+
+    /** Hashes a new password on the hashing pool. */
+    public static String hash(String password) throws BusyException {
+        if (iterations == 0) {
+            start();
+        }
+        char[] chars = password.toCharArray();
+        return submit(() -> hashNow(chars));
+    }
+
+    /**
+     * Checks a password against a stored value on the hashing pool. Pass null as {@code stored}
+     * for an unknown user; that still costs one hash and returns INVALID.
+     */
+    public static Result verify(String password, String stored) throws BusyException {
+        if (iterations == 0) {
+            start();
+        }
+        char[] chars = password.toCharArray();
+        return submit(() -> verifyNow(chars, stored));
+    }
+
+    private static <T> T submit(Callable<T> task) throws BusyException {
+        Future<T> future;
+        try {
+            future = pool.submit(task);
+        } catch (RejectedExecutionException e) {
+            throw new BusyException("Password hashing queue is full");
+        }
+        try {
+            return future.get(WAIT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(false);
+            throw new BusyException("Timed out waiting for password hashing");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusyException("Interrupted while waiting for password hashing");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+
+    private static String hashNow(char[] password) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        int cost = iterations;
+        byte[] hash = pbkdf2(password, salt, cost);
+        Base64.Encoder b64 = Base64.getEncoder().withoutPadding();
+        return PREFIX + cost + "$" + b64.encodeToString(salt) + "$" + b64.encodeToString(hash);
+    }
+
+    private static Result verifyNow(char[] password, String stored) {
+        if (stored == null) {
+            verifyNow(password, dummyHash);
+            return Result.INVALID;
+        }
+        if (!stored.startsWith(PREFIX)) {
+            // Legacy plaintext row: accept it once and let the caller replace it with a hash.
+            boolean matches = MessageDigest.isEqual(new String(password).getBytes(StandardCharsets.UTF_8),
+                stored.getBytes(StandardCharsets.UTF_8));
+            return matches ? Result.VALID_NEEDS_REHASH : Result.INVALID;
+        }
+
+        String[] parts = stored.substring(PREFIX.length()).split("\\$");
+        if (parts.length != 3) {
+            return Result.INVALID;
+        }
+        int cost;
+        byte[] salt;
+        byte[] expected;
+        try {
+            cost = Integer.parseInt(parts[0]);
+            salt = Base64.getDecoder().decode(parts[1]);
+            expected = Base64.getDecoder().decode(parts[2]);
+        } catch (IllegalArgumentException e) {
+            return Result.INVALID;
+        }
+        if (!MessageDigest.isEqual(pbkdf2(password, salt, cost), expected)) {
+            return Result.INVALID;
+        }
+        return cost == iterations ? Result.VALID : Result.VALID_NEEDS_REHASH;
+    }
+
+    private static byte[] pbkdf2(char[] password, byte[] salt, int cost) {
+        try {
+            KeySpec spec = new PBEKeySpec(password, salt, cost, HASH_BITS);
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        }
+    }
+
+    // Times a fixed number of rounds (after a warm-up so the JIT has compiled HMAC) and scales
+    // to the target latency, never going below the floor.
+    private static int calibrate() {
+        char[] password = "calibration".toCharArray();
+        byte[] salt = new byte[SALT_BYTES];
+        int sample = 20_000;
+        pbkdf2(password, salt, sample);
+
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            pbkdf2(password, salt, sample);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        double nanosPerIteration = (double) best / sample;
+        long target = (long) (TimeUnit.MILLISECONDS.toNanos(TARGET_MILLIS) / nanosPerIteration);
+        // Rounded so that small timing noise between restarts does not trigger rehashing everyone.
+        long rounded = Math.round(target / 50_000.0) * 50_000;
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(MIN_ITERATIONS, rounded));
+    }
+}
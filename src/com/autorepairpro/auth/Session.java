@@ -0,0 +1,48 @@
+package com.autorepairpro.auth;
+
+/**
+ * A logged-in user. Identity and role are fixed at login; only the last-access time changes, and
+ * that is what the sliding expiry is measured from.
+ */
+public class Session {
+    // SHA-256 of the token; the token itself is only ever held by the client.
+    final String tokenHash;
+    private final int userId;
+    private final String role;
+    private final String fullName;
+    private final long createdAt;
+    volatile long lastAccessedAt;
+
+    Session(String tokenHash, int userId, String role, String fullName, long createdAt, long lastAccessedAt) {
+        this.tokenHash = tokenHash;
+        this.userId = userId;
+        this.role = role;
+        this.fullName = fullName;
+        this.createdAt = createdAt;
+        this.lastAccessedAt = lastAccessedAt;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public String getFullName() {
+        return fullName;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public boolean hasRole(String role) {
+        return this.role.equals(role);
+    }
+
+    public boolean isAdmin() {
+        return hasRole("admin");
+    }
+}
@@ -0,0 +1,282 @@
+package com.autorepairpro.auth;
+
+import com.autorepairpro.log.Log;
+import com.autorepairpro.server.HttpRequest;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * In-memory session store. Login issues a random opaque token; the store keeps only its SHA-256,
+ * so checking a request is one hash and one map lookup with no database round trip, and neither
+ * memory dumps nor the snapshot file contain usable tokens.
+ *
+ * Sessions expire after a period without use (sliding TTL). The store is bounded: when it is full,
+ * expired sessions are swept and, failing that, the least recently used one is dropped. A
+ * background thread evicts expired sessions and writes a snapshot to disk whenever something has
+ * changed, and again at shutdown, so a restart does not log everyone out.
+ */
+public class SessionStore {
+    // Session configuration with fallback to environment variables
+    private static final long TTL_MILLIS = TimeUnit.MINUTES.toMillis(System.getenv("SESSION_TTL_MINUTES") != null ?
+        Long.parseLong(System.getenv("SESSION_TTL_MINUTES")) : 30);
+    private static final int MAX_SESSIONS = System.getenv("SESSION_MAX_COUNT") != null ?
+        Integer.parseInt(System.getenv("SESSION_MAX_COUNT")) : 50000;
+    private static final String SNAPSHOT_FILE = System.getenv("SESSION_SNAPSHOT_FILE") != null ?
+        System.getenv("SESSION_SNAPSHOT_FILE") : "data/sessions.snapshot";
+
+    public static final String COOKIE_NAME = "sid";
+    private static final int TOKEN_BYTES = 32;
+    private static final long HOUSEKEEPING_INTERVAL_SECONDS = 60;
+    // Sliding expiry does not need millisecond accuracy; skipping most writes keeps hot sessions off one cache line.
+    private static final long TOUCH_GRANULARITY_MILLIS = 1000;
+    private static final int SNAPSHOT_MAGIC = 0x53455353; // "SESS"
+    private static final int SNAPSHOT_VERSION = 1;
+
+    private static final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+    private static final SecureRandom random = new SecureRandom();
+    private static final AtomicBoolean dirty = new AtomicBoolean();
+    private static final ThreadLocal<MessageDigest> sha256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private static volatile boolean started;
+
+    private SessionStore() {}
+
+    /** Restores the last snapshot and starts expiry and snapshotting; called once at startup. */
+    public static synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        load();
+
+        ScheduledExecutorService housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "session-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        housekeeper.scheduleWithFixedDelay(SessionStore::housekeep,
+            HOUSEKEEPING_INTERVAL_SECONDS, HOUSEKEEPING_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(SessionStore::save, "session-snapshot"));
+    }
+
+    /** Creates a session and returns its token, which is handed to the client exactly once. */
+    public static String create(int userId, String role, String fullName) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        if (sessions.size() >= MAX_SESSIONS) {
+            makeRoom();
+        }
+        long now = System.currentTimeMillis();
+        Session session = new Session(hash(token), userId, role, fullName, now, now);
+        sessions.put(session.tokenHash, session);
+        dirty.set(true);
+        return token;
+    }
+
+    /**
+     * Resolves the session for a request from an {@code Authorization: Bearer} header or the
+     * session cookie, extending its expiry. Returns null when there is none or it has expired.
+     */
+    public static Session authenticate(HttpRequest request) {
+        String token = token(request);
+        if (token == null) {
+            return null;
+        }
+        String key = hash(token);
+        Session session = sessions.get(key);
+        if (session == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (isExpired(session, now)) {
+            sessions.remove(key, session);
+            dirty.set(true);
+            return null;
+        }
+        if (now - session.lastAccessedAt > TOUCH_GRANULARITY_MILLIS) {
+            session.lastAccessedAt = now;
+            dirty.lazySet(true);
+        }
+        return session;
+    }
+
+    /** Ends the session the request was made with, if any. */
+    public static void invalidate(HttpRequest request) {
+        String token = token(request);
+        if (token != null && sessions.remove(hash(token)) != null) {
+            dirty.set(true);
+        }
+    }
+
+    /** Whether the session is still logged in, for connections that outlive the request that opened them. */
+    public static boolean isValid(Session session) {
+        return sessions.get(session.tokenHash) == session && !isExpired(session, System.currentTimeMillis());
+    }
+
+    public static int size() {
+        return sessions.size();
+    }
+
+    /** Cookie that carries the token for browser clients; not readable from scripts. */
+    public static String cookie(String token) {
+        return COOKIE_NAME + "=" + token + "; Path=/; HttpOnly; SameSite=Lax";
+    }
+
+    public static String expiredCookie() {
+        return COOKIE_NAME + "=; Path=/; HttpOnly; SameSite=Lax; Max-Age=0";
+    }
+
+    private static String token(HttpRequest request) {
+        String authorization = request.getHeader("authorization");
+        if (authorization != null && authorization.regionMatches(true, 0, "Bearer ", 0, 7)) {
+            return authorization.substring(7).trim();
+        }
+        String cookies = request.getHeader("cookie");
+        if (cookies == null) {
+            return null;
+        }
+        for (String cookie : cookies.split(";")) {
+            cookie = cookie.trim();
+            if (cookie.startsWith(COOKIE_NAME + "=")) {
+                return cookie.substring(COOKIE_NAME.length() + 1);
+            }
+        }
+        return null;
+    }
+
+    private static boolean isExpired(Session session, long now) {
+        return now - session.lastAccessedAt > TTL_MILLIS;
+    }
+
+    // Only runs when the store is full, so the linear scans are off the normal path.
+    private static synchronized void makeRoom() {
+        if (sessions.size() < MAX_SESSIONS) {
+            return;
+        }
+        evictExpired(System.currentTimeMillis());
+        while (sessions.size() >= MAX_SESSIONS) {
+            Session oldest = null;
+            for (Session session : sessions.values()) {
+                if (oldest == null || session.lastAccessedAt < oldest.lastAccessedAt) {
+                    oldest = session;
+                }
+            }
+            if (oldest == null) {
+                break;
+            }
+            sessions.remove(oldest.tokenHash, oldest);
+        }
+        Log.warn("Session store full (" + MAX_SESSIONS + "); evicted least recently used sessions");
+    }
+
+    private static void evictExpired(long now) {
+        if (sessions.values().removeIf(session -> isExpired(session, now))) {
+            dirty.set(true);
+        }
+    }
+
+    private static void housekeep() {
+        try {
+            evictExpired(System.currentTimeMillis());
+            save();
+        } catch (RuntimeException e) {
+            Log.error("Session housekeeping failed", e);
+        }
+    }
+
+    // Writes to a temporary file and renames it, so a crash mid-write never leaves a torn snapshot.
+    private static synchronized void save() {
+        if (!dirty.getAndSet(false)) {
+            return;
+        }
+        Path file = Paths.get(SNAPSHOT_FILE);
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        List<Session> snapshot = new ArrayList<>(sessions.values());
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeInt(snapshot.size());
+                for (Session session : snapshot) {
+                    out.writeUTF(session.tokenHash);
+                    out.writeInt(session.getUserId());
+                    out.writeUTF(session.getRole());
+                    out.writeUTF(session.getFullName() != null ? session.getFullName() : "");
+                    out.writeLong(session.getCreatedAt());
+                    out.writeLong(session.lastAccessedAt);
+                }
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            dirty.set(true);
+            Log.warn("Could not write session snapshot " + file + ": " + e.getMessage());
+        }
+    }
+
+    private static void load() {
+        Path file = Paths.get(SNAPSHOT_FILE);
+        if (!Files.isRegularFile(file)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        int restored = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                Log.warn("Ignoring session snapshot with an unknown format: " + file);
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                Session session = new Session(in.readUTF(), in.readInt(), in.readUTF(), in.readUTF(),
+                    in.readLong(), in.readLong());
+                if (!isExpired(session, now) && sessions.size() < MAX_SESSIONS) {
+                    sessions.put(session.tokenHash, session);
+                    restored++;
+                }
+            }
+        } catch (IOException e) {
+            Log.warn("Could not read session snapshot " + file + ": " + e.getMessage());
+        }
+        Log.info("Restored " + restored + " sessions from " + file);
+    }
+
+    private static String hash(String token) {
+        byte[] digest = sha256.get().digest(token.getBytes(StandardCharsets.US_ASCII));
+        return Base64.getEncoder().withoutPadding().encodeToString(digest);
+    }
+}
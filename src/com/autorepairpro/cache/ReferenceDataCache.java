@@ -0,0 +1,406 @@
+package com.autorepairpro.cache;
+
+import com.autorepairpro.db.DatabaseConnector;
+import com.autorepairpro.json.JsonWriter;
+import com.autorepairpro.log.Log;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-through cache for reference data that changes rarely: services, branches, business hours
+ * and contact info. The four tables are loaded together into an immutable snapshot, and the
+ * public endpoints are pre-rendered to JSON bytes so they can be served without touching MySQL.
+ *
+ * Snapshots expire after a TTL and are reloaded by a single background refresh while readers keep
+ * getting the previous snapshot, so a burst of requests never turns into a burst of reloads.
+ */
+public class ReferenceDataCache {
+    private static final long TTL_MILLIS = (System.getenv("REFERENCE_CACHE_TTL_SECONDS") != null ?
+        Long.parseLong(System.getenv("REFERENCE_CACHE_TTL_SECONDS")) : 300) * 1000;
+
+    private static final String SERVICES_SQL =
+        "SELECT id, service_name, price, description, estimated_duration, category " +
+        "FROM services WHERE is_active = true ORDER BY service_name";
+    private static final String BRANCHES_SQL =
+        "SELECT id, name, address, latitude, longitude, rating, service_bays FROM branches WHERE is_active = true ORDER BY name";
+    private static final String HOURS_SQL =
+        "SELECT branch_id, day_of_week, open_time, close_time, is_closed FROM business_hours";
+    private static final String CONTACTS_SQL =
+        "SELECT branch_id, contact_type, contact_value FROM contact_info WHERE is_active = true AND is_primary = true";
+
+    private static final String[] DAYS = {
+        "Monday", "Tuesday", "Wednesday", "Thursday", "Friday", "Saturday", "Sunday"
+    };
+
+    private static final Object loadLock = new Object();
+    private static final AtomicBoolean refreshing = new AtomicBoolean();
+    private static final AtomicBoolean scheduled = new AtomicBoolean();
+    private static final AtomicLong generation = new AtomicLong();
+    private static volatile Snapshot snapshot;
+
+    private static final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "reference-data-refresh");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Private constructor to prevent instantiation
+    private ReferenceDataCache() {}
+
+    public static class Service {
+        public final int id;
+        public final String name;
+        public final BigDecimal price;
+        public final String description;
+        public final int estimatedDuration; // minutes, 0 when unknown
+        public final String category;
+
+        Service(int id, String name, BigDecimal price, String description, int estimatedDuration, String category) {
+            this.id = id;
+            this.name = name;
+            this.price = price;
+            this.description = description;
+            this.estimatedDuration = estimatedDuration;
+            this.category = category;
+        }
+    }
+
+    public static class BusinessHours {
+        public final String dayOfWeek;
+        public final Time openTime;
+        public final Time closeTime;
+        public final boolean closed;
+
+        BusinessHours(String dayOfWeek, Time openTime, Time closeTime, boolean closed) {
+            this.dayOfWeek = dayOfWeek;
+            this.openTime = openTime;
+            this.closeTime = closeTime;
+            this.closed = closed || openTime == null || closeTime == null;
+        }
+    }
+
+    public static class Branch {
+        public final int id;
+        public final String name;
+        public final String address;
+        public final BigDecimal latitude;
+        public final BigDecimal longitude;
+        public final BigDecimal rating;
+        public final int serviceBays;                  // jobs the branch can work on at once
+        public final Map<String, BusinessHours> hours; // keyed by day of week
+        public final Map<String, String> contact;      // primary contact per type
+
+        Branch(int id, String name, String address, BigDecimal latitude, BigDecimal longitude, BigDecimal rating,
+               int serviceBays, Map<String, BusinessHours> hours, Map<String, String> contact) {
+            this.id = id;
+            this.name = name;
+            this.address = address;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.rating = rating;
+            this.serviceBays = serviceBays;
+            this.hours = hours;
+            this.contact = contact;
+        }
+    }
+
+    private static class Snapshot {
+        final List<Service> services;
+        final Map<Integer, Service> servicesById;
+        final List<Branch> branches;
+        final Map<Integer, Branch> branchesById;
+        final byte[] servicesJson;
+        final byte[] branchesJson;
+        final long loadedAt = System.currentTimeMillis();
+        volatile boolean invalidated;
+
+        Snapshot(List<Service> services, List<Branch> branches) {
+            this.services = Collections.unmodifiableList(services);
+            this.branches = Collections.unmodifiableList(branches);
+            Map<Integer, Service> serviceIndex = new HashMap<>();
+            for (Service service : services) {
+                serviceIndex.put(service.id, service);
+            }
+            Map<Integer, Branch> branchIndex = new HashMap<>();
+            for (Branch branch : branches) {
+                branchIndex.put(branch.id, branch);
+            }
+            this.servicesById = serviceIndex;
+            this.branchesById = branchIndex;
+            this.servicesJson = renderServices(services);
+            this.branchesJson = renderBranches(branches, services);
+        }
+
+        boolean isStale() {
+            return invalidated || System.currentTimeMillis() - loadedAt > TTL_MILLIS;
+        }
+    }
+
+    // Loads the first snapshot and schedules the periodic refresh. Safe to call more than once.
+    public static void warmUp() {
+        try {
+            current();
+        } catch (SQLException e) {
+            Log.warn("Reference data cache could not be loaded at startup: " + e.getMessage());
+        }
+        if (scheduled.compareAndSet(false, true)) {
+            refresher.scheduleWithFixedDelay(ReferenceDataCache::refreshIfStale, TTL_MILLIS, TTL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Marks the cached data as out of date after a write to one of the cached tables.
+    public static void invalidate() {
+        Snapshot current = snapshot;
+        if (current != null) {
+            current.invalidated = true;
+        }
+        generation.incrementAndGet();
+        refreshAsync();
+    }
+
+    /** Pre-rendered body of GET /api/services, or null if the data could not be loaded. */
+    public static byte[] getServicesJson() {
+        try {
+            return current().servicesJson;
+        } catch (SQLException e) {
+            Log.error("Reference data unavailable for services", e);
+            return null;
+        }
+    }
+
+    /** Pre-rendered body of GET /api/customer/branches, or null if the data could not be loaded. */
+    public static byte[] getBranchesJson() {
+        try {
+            return current().branchesJson;
+        } catch (SQLException e) {
+            Log.error("Reference data unavailable for branches", e);
+            return null;
+        }
+    }
+
+    public static List<Service> getServices() throws SQLException {
+        return current().services;
+    }
+
+    public static Service getService(int serviceId) throws SQLException {
+        return current().servicesById.get(serviceId);
+    }
+
+    public static List<Branch> getBranches() throws SQLException {
+        return current().branches;
+    }
+
+    public static Branch getBranch(int branchId) throws SQLException {
+        return current().branchesById.get(branchId);
+    }
+
+    private static Snapshot current() throws SQLException {
+        Snapshot current = snapshot;
+        if (current == null) {
+            // Only the first caller loads; everyone else waits for that load instead of starting their own.
+            synchronized (loadLock) {
+                current = snapshot;
+                if (current == null) {
+                    current = load();
+                    snapshot = current;
+                }
+            }
+        } else if (current.isStale()) {
+            refreshAsync();
+        }
+        return current;
+    }
+
+    private static void refreshIfStale() {
+        Snapshot current = snapshot;
+        if (current == null || current.isStale()) {
+            refreshAsync();
+        }
+    }
+
+    private static void refreshAsync() {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        refresher.execute(() -> {
+            try {
+                // Reload again if an invalidation arrived while we were reading the tables.
+                long loadedGeneration;
+                do {
+                    loadedGeneration = generation.get();
+                    Snapshot fresh = load();
+                    synchronized (loadLock) {
+                        snapshot = fresh;
+                    }
+                } while (loadedGeneration != generation.get());
+            } catch (SQLException e) {
+                Log.warn("Reference data refresh failed, keeping previous data: " + e.getMessage());
+            } finally {
+                refreshing.set(false);
+            }
+        });
+    }
+
+    private static Snapshot load() throws SQLException {
+        List<Service> services = new ArrayList<>();
+        List<Branch> branches = new ArrayList<>();
+
+        try (Connection conn = DatabaseConnector.getConnection()) {
+            try (PreparedStatement pstmt = conn.prepareStatement(SERVICES_SQL);
+                 ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    services.add(new Service(
+                        rs.getInt("id"),
+                        rs.getString("service_name"),
+                        rs.getBigDecimal("price"),
+                        rs.getString("description"),
+                        rs.getInt("estimated_duration"),
+                        rs.getString("category")));
+                }
+            }
+
+            Map<Integer, Map<String, BusinessHours>> hoursByBranch = new HashMap<>();
+            try (PreparedStatement pstmt = conn.prepareStatement(HOURS_SQL);
+                 ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    BusinessHours hours = new BusinessHours(
+                        rs.getString("day_of_week"),
+                        rs.getTime("open_time"),
+                        rs.getTime("close_time"),
+                        rs.getBoolean("is_closed"));
+                    hoursByBranch.computeIfAbsent(rs.getInt("branch_id"), k -> new HashMap<>())
+                        .put(hours.dayOfWeek, hours);
+                }
+            }
+
+            Map<Integer, Map<String, String>> contactsByBranch = new HashMap<>();
+            try (PreparedStatement pstmt = conn.prepareStatement(CONTACTS_SQL);
+                 ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    contactsByBranch.computeIfAbsent(rs.getInt("branch_id"), k -> new LinkedHashMap<>())
+                        .put(rs.getString("contact_type"), rs.getString("contact_value"));
+                }
+            }
+
+            try (PreparedStatement pstmt = conn.prepareStatement(BRANCHES_SQL);
+                 ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    int id = rs.getInt("id");
+                    Map<String, BusinessHours> hours = hoursByBranch.get(id);
+                    Map<String, String> contact = contactsByBranch.get(id);
+                    branches.add(new Branch(
+                        id,
+                        rs.getString("name"),
+                        rs.getString("address"),
+                        rs.getBigDecimal("latitude"),
+                        rs.getBigDecimal("longitude"),
+                        rs.getBigDecimal("rating"),
+                        rs.getInt("service_bays"),
+                        hours != null ? Collections.unmodifiableMap(hours) : Collections.<String, BusinessHours>emptyMap(),
+                        contact != null ? Collections.unmodifiableMap(contact) : Collections.<String, String>emptyMap()));
+                }
+            }
+        }
+
+        return new Snapshot(services, branches);
+    }
+
+    private static byte[] renderServices(List<Service> services) {
+        JsonWriter json = JsonWriter.obtain();
+        try {
+            json.beginArray();
+            for (Service service : services) {
+                json.beginObject()
+                    .field("id", service.id)
+                    .field("serviceName", service.name)
+                    .field("price", service.price)
+                    .field("description", service.description != null ? service.description : "")
+                    .endObject();
+            }
+            json.endArray();
+            return Arrays.copyOf(json.buffer(), json.size());
+        } finally {
+            json.release();
+        }
+    }
+
+    // Same shape the branches query used to produce: hours as one "Day: HH:mm-HH:mm" string,
+    // every active service name, and the primary contact per type.
+    private static byte[] renderBranches(List<Branch> branches, List<Service> services) {
+        List<String> serviceNames = new ArrayList<>();
+        for (Service service : services) {
+            serviceNames.add(service.name);
+        }
+        Collections.sort(serviceNames);
+
+        JsonWriter json = JsonWriter.obtain();
+        try {
+            json.beginArray();
+            for (Branch branch : branches) {
+                json.beginObject()
+                    .field("id", branch.id)
+                    .field("name", branch.name)
+                    .field("address", branch.address)
+                    .field("latitude", branch.latitude)
+                    .field("longitude", branch.longitude)
+                    .field("rating", branch.rating)
+                    .field("hours", formatHours(branch.hours));
+
+                json.name("services").beginArray();
+                for (String serviceName : serviceNames) {
+                    json.value(serviceName);
+                }
+                json.endArray();
+
+                json.name("contact").beginObject();
+                for (Map.Entry<String, String> entry : branch.contact.entrySet()) {
+                    json.field(entry.getKey(), entry.getValue());
+                }
+                json.endObject();
+                json.endObject();
+            }
+            json.endArray();
+            return Arrays.copyOf(json.buffer(), json.size());
+        } finally {
+            json.release();
+        }
+    }
+
+    private static String formatHours(Map<String, BusinessHours> hours) {
+        if (hours.isEmpty()) {
+            return null;
+        }
+        StringBuilder text = new StringBuilder();
+        for (String day : DAYS) {
+            BusinessHours dayHours = hours.get(day);
+            if (dayHours == null) {
+                continue;
+            }
+            if (text.length() > 0) text.append(",");
+            text.append(day).append(": ");
+            if (dayHours.closed) {
+                text.append("Closed");
+            } else {
+                text.append(dayHours.openTime.toString(), 0, 5).append("-").append(dayHours.closeTime.toString(), 0, 5);
+            }
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,347 @@
+package com.autorepairpro.db;
+
+import com.autorepairpro.log.Log;
+import com.autorepairpro.metrics.Metrics;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded JDBC connection pool. Idle connections are kept LIFO so the warmest one is reused first,
+ * validated on borrow when they have sat idle for a while, and evicted by a background housekeeper
+ * once they exceed the idle timeout. Borrowers block for at most the acquire timeout.
+ */
+public class ConnectionPool {
+    private static final long VALIDATION_IDLE_THRESHOLD_MILLIS = 1000;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+    private static final long MAX_LIFETIME_MILLIS = 30 * 60 * 1000;
+    private static final long HOUSEKEEPING_INTERVAL_MILLIS = 30 * 1000;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int maxSize;
+    private final int minIdle;
+    private final long acquireTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final long leakThresholdMillis;
+    private final boolean leakStackTraces;
+    private final int statementCacheSize;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final ArrayDeque<PooledConnection> idle = new ArrayDeque<>();
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+    private int total; // includes connections that are still being opened
+    private int waiters;
+
+    private final AtomicLong acquireCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong leakCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong statementCacheHits = new AtomicLong();
+    private final AtomicLong statementCacheMisses = new AtomicLong();
+
+    private final ScheduledExecutorService housekeeper;
+
+    public ConnectionPool(String url, String user, String password, int maxSize, int minIdle,
+                          long acquireTimeoutMillis, long idleTimeoutMillis, long leakThresholdMillis,
+                          boolean leakStackTraces, int statementCacheSize) {
+        this.url = withServerPreparedStatements(url);
+        this.user = user;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.minIdle = Math.min(minIdle, maxSize);
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.leakThresholdMillis = leakThresholdMillis;
+        this.leakStackTraces = leakStackTraces;
+        this.statementCacheSize = statementCacheSize;
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        housekeeper.scheduleWithFixedDelay(this::housekeep,
+            HOUSEKEEPING_INTERVAL_MILLIS, HOUSEKEEPING_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(acquireTimeoutMillis);
+
+        while (true) {
+            PooledConnection candidate = null;
+            boolean create = false;
+
+            lock.lock();
+            try {
+                while (candidate == null && !create) {
+                    candidate = idle.pollFirst();
+                    if (candidate != null) {
+                        break;
+                    }
+                    if (total < maxSize) {
+                        total++;
+                        create = true;
+                        break;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        timeoutCount.incrementAndGet();
+                        throw new SQLTransientConnectionException("Timed out after " + acquireTimeoutMillis +
+                            "ms waiting for a database connection (active=" + borrowed.size() + ", max=" + maxSize + ")");
+                    }
+                    waiters++;
+                    try {
+                        available.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrupted while waiting for a database connection", e);
+                    } finally {
+                        waiters--;
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            // Network work (connect, validate) happens outside the lock.
+            if (create) {
+                try {
+                    candidate = openConnection();
+                } catch (SQLException | RuntimeException e) {
+                    lock.lock();
+                    try {
+                        total--;
+                        available.signal();
+                    } finally {
+                        lock.unlock();
+                    }
+                    throw e;
+                }
+            } else if (!isUsable(candidate)) {
+                destroy(candidate);
+                continue;
+            }
+
+            long waited = System.nanoTime() - start;
+            recordWait(waited);
+            Metrics.recordJdbcAcquire(waited);
+            candidate.borrowedAt = System.currentTimeMillis();
+            candidate.borrowThread = Thread.currentThread().getName();
+            candidate.borrowSite = leakThresholdMillis > 0 && leakStackTraces ? new Throwable("Connection borrowed here") : null;
+            candidate.leakReported = false;
+            borrowed.add(candidate);
+            return candidate.newHandle(this);
+        }
+    }
+
+    // Called by the connection handle when the borrower closes it.
+    void release(PooledConnection pc) {
+        borrowed.remove(pc);
+        pc.borrowedAt = 0;
+        pc.borrowSite = null;
+
+        if (pc.broken || !resetState(pc)) {
+            destroy(pc);
+            return;
+        }
+
+        pc.lastReturnedAt = System.currentTimeMillis();
+        lock.lock();
+        try {
+            idle.addFirst(pc);
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public PoolStats getStats() {
+        lock.lock();
+        try {
+            long acquires = acquireCount.get();
+            return new PoolStats(borrowed.size(), idle.size(), waiters, maxSize, acquires,
+                timeoutCount.get(), leakCount.get(),
+                TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get()),
+                TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()),
+                statementCacheHits.get(), statementCacheMisses.get());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private PooledConnection openConnection() throws SQLException {
+        Connection connection = DriverManager.getConnection(url, user, password);
+        // Session defaults are applied once per physical connection rather than once per request.
+        connection.setAutoCommit(true);
+        connection.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        return new PooledConnection(connection, statementCacheSize, statementCacheHits, statementCacheMisses);
+    }
+
+    // Our statement cache only pays off if MySQL keeps the parsed statement on the server side.
+    private static String withServerPreparedStatements(String url) {
+        if (url.contains("useServerPrepStmts")) {
+            return url;
+        }
+        return url + (url.indexOf('?') >= 0 ? "&" : "?") + "useServerPrepStmts=true";
+    }
+
+    private boolean isUsable(PooledConnection pc) {
+        long now = System.currentTimeMillis();
+        if (now - pc.createdAt > MAX_LIFETIME_MILLIS) {
+            return false;
+        }
+        if (now - pc.lastReturnedAt < VALIDATION_IDLE_THRESHOLD_MILLIS) {
+            return true;
+        }
+        try {
+            return pc.physical.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    // Undo whatever the borrower changed so the next borrower sees the pool defaults.
+    private boolean resetState(PooledConnection pc) {
+        try {
+            if (pc.physical.isClosed()) {
+                return false;
+            }
+            if (pc.autoCommitChanged) {
+                if (!pc.physical.getAutoCommit()) {
+                    pc.physical.rollback();
+                    pc.physical.setAutoCommit(true);
+                }
+                pc.autoCommitChanged = false;
+            }
+            if (pc.isolationChanged) {
+                pc.physical.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+                pc.isolationChanged = false;
+            }
+            pc.physical.clearWarnings();
+            return true;
+        } catch (SQLException e) {
+            Log.warn("Discarding pooled connection that could not be reset: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void destroy(PooledConnection pc) {
+        lock.lock();
+        try {
+            total--;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            pc.physical.close();
+        } catch (SQLException e) {
+            // Ignore
+        }
+    }
+
+    private void recordWait(long waitNanos) {
+        acquireCount.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+        long max;
+        while (waitNanos > (max = maxWaitNanos.get())) {
+            if (maxWaitNanos.compareAndSet(max, waitNanos)) {
+                break;
+            }
+        }
+    }
+
+    // A scheduled task that throws is never run again, so nothing may escape.
+    private void housekeep() {
+        try {
+            evictAndTopUp();
+        } catch (RuntimeException e) {
+            Log.error("Connection pool housekeeping failed; will retry in " + HOUSEKEEPING_INTERVAL_MILLIS + "ms", e);
+        }
+    }
+
+    private void evictAndTopUp() {
+        long now = System.currentTimeMillis();
+
+        // Evict connections that have been idle too long, keeping at least minIdle around.
+        List<PooledConnection> evicted = new ArrayList<>();
+        lock.lock();
+        try {
+            Iterator<PooledConnection> it = idle.descendingIterator();
+            while (it.hasNext() && idle.size() - evicted.size() > minIdle) {
+                PooledConnection pc = it.next();
+                if (now - pc.lastReturnedAt > idleTimeoutMillis || now - pc.createdAt > MAX_LIFETIME_MILLIS) {
+                    it.remove();
+                    evicted.add(pc);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (PooledConnection pc : evicted) {
+            destroy(pc);
+        }
+
+        // Report connections that were borrowed and never returned.
+        if (leakThresholdMillis > 0) {
+            for (PooledConnection pc : borrowed) {
+                long borrowedAt = pc.borrowedAt;
+                if (!pc.leakReported && borrowedAt > 0 && now - borrowedAt > leakThresholdMillis) {
+                    pc.leakReported = true;
+                    leakCount.incrementAndGet();
+                    String message = "Possible connection leak: connection held for " + (now - borrowedAt)
+                        + "ms by thread " + pc.borrowThread;
+                    Throwable site = pc.borrowSite;
+                    if (site != null) {
+                        Log.warn(message, site);
+                    } else {
+                        Log.warn(message + " (set DB_LEAK_STACK_TRACES=true to log where it was borrowed)");
+                    }
+                }
+            }
+        }
+
+        // Top the pool back up to minIdle so a burst after a quiet period does not pay for handshakes.
+        while (true) {
+            lock.lock();
+            try {
+                if (idle.size() >= minIdle || total >= maxSize) {
+                    break;
+                }
+                total++;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                release(openConnection());
+            } catch (SQLException e) {
+                lock.lock();
+                try {
+                    total--;
+                } finally {
+                    lock.unlock();
+                }
+                Log.warn("Could not pre-open database connection: " + e.getMessage());
+                break;
+            }
+        }
+    }
+}
@@ -1,39 +1,72 @@
 package com.autorepairpro.db;
 
+import com.autorepairpro.log.Log;
+import com.autorepairpro.metrics.Metrics;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
 public class DatabaseConnector {
     // Database configuration with fallback to environment variables
-    private static final String DB_URL = System.getenv("DB_URL") != null ? 
-        System.getenv("DB_URL") : "jdbc:mysql://localhost:3306/autorepairpro_db";
-    private static final String DB_USER = System.getenv("DB_USER") != null ? 
+    // rewriteBatchedStatements lets the driver send a JDBC batch in one round trip instead of one per row.
+    private static final String DB_URL = System.getenv("DB_URL") != null ?
+        System.getenv("DB_URL") : "jdbc:mysql://localhost:3306/autorepairpro_db?rewriteBatchedStatements=true";
+    private static final String DB_USER = System.getenv("DB_USER") != null ?
         System.getenv("DB_USER") : "root";
-    private static final String DB_PASSWORD = System.getenv("DB_PASSWORD") != null ? 
+    private static final String DB_PASSWORD = System.getenv("DB_PASSWORD") != null ?
         System.getenv("DB_PASSWORD") : "";
+    // Pool sizing; the maximum is also the cap on concurrent database work
+    private static final int DB_MAX_CONCURRENCY = System.getenv("DB_MAX_CONCURRENCY") != null ?
+        Integer.parseInt(System.getenv("DB_MAX_CONCURRENCY")) : 10;
+    private static final int DB_POOL_MIN_IDLE = System.getenv("DB_POOL_MIN_IDLE") != null ?
+        Integer.parseInt(System.getenv("DB_POOL_MIN_IDLE")) : 2;
+    private static final long DB_ACQUIRE_TIMEOUT_MS = System.getenv("DB_ACQUIRE_TIMEOUT_MS") != null ?
+        Long.parseLong(System.getenv("DB_ACQUIRE_TIMEOUT_MS")) : 10000;
+    private static final long DB_IDLE_TIMEOUT_MS = System.getenv("DB_IDLE_TIMEOUT_MS") != null ?
+        Long.parseLong(System.getenv("DB_IDLE_TIMEOUT_MS")) : 10 * 60 * 1000;
+    private static final long DB_LEAK_DETECTION_MS = System.getenv("DB_LEAK_DETECTION_MS") != null ?
+        Long.parseLong(System.getenv("DB_LEAK_DETECTION_MS")) : 60 * 1000;
+    // Capturing the borrower's stack costs a Throwable per borrow, so it is for debugging only.
+    private static final boolean DB_LEAK_STACK_TRACES = Boolean.parseBoolean(System.getenv("DB_LEAK_STACK_TRACES"));
+    // Prepared statements kept open per pooled connection
+    private static final int DB_STATEMENT_CACHE_SIZE = System.getenv("DB_STATEMENT_CACHE_SIZE") != null ?
+        Integer.parseInt(System.getenv("DB_STATEMENT_CACHE_SIZE")) : 64;
+
+    private static final ConnectionPool pool = createPool();
 
     // Private constructor to prevent instantiation
     private DatabaseConnector() {}
 
-    public static Connection getConnection() throws SQLException {
+    private static ConnectionPool createPool() {
         try {
-            // Load the MySQL JDBC driver
+            // Load the MySQL JDBC driver once for the lifetime of the pool
             Class.forName("com.mysql.cj.jdbc.Driver");
-            
-            // Create a new connection for each request (thread-safe)
-            Connection connection = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-            
-            // Set connection properties for better performance and security
-            connection.setAutoCommit(true);
-            connection.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
-            
-            return connection;
         } catch (ClassNotFoundException e) {
-            System.err.println("MySQL JDBC Driver not found!");
-            e.printStackTrace();
-            throw new SQLException("Database driver not available", e);
+            Log.error("MySQL JDBC Driver not found!", e);
         }
+        ConnectionPool pool = new ConnectionPool(DB_URL, DB_USER, DB_PASSWORD, DB_MAX_CONCURRENCY, DB_POOL_MIN_IDLE,
+            DB_ACQUIRE_TIMEOUT_MS, DB_IDLE_TIMEOUT_MS, DB_LEAK_DETECTION_MS, DB_LEAK_STACK_TRACES, DB_STATEMENT_CACHE_SIZE);
+
+        // Read when /metrics is scraped.
+        Metrics.gauge("db_pool_active_connections", "Connections currently borrowed", () -> pool.getStats().getActive());
+        Metrics.gauge("db_pool_idle_connections", "Connections idle in the pool", () -> pool.getStats().getIdle());
+        Metrics.gauge("db_pool_waiters", "Threads waiting for a connection", () -> pool.getStats().getWaiters());
+        Metrics.gauge("db_pool_max_connections", "Pool size limit", () -> pool.getStats().getMaxSize());
+        Metrics.counter("db_pool_acquire_timeouts_total", "Borrows that timed out", () -> pool.getStats().getTimeoutCount());
+        Metrics.counter("db_pool_leaks_total", "Connections reported as leaked", () -> pool.getStats().getLeakCount());
+        Metrics.counter("db_statement_cache_hits_total", "Prepared statements reused from the cache",
+            () -> pool.getStats().getStatementCacheHits());
+        Metrics.counter("db_statement_cache_misses_total", "Prepared statements that had to be prepared",
+            () -> pool.getStats().getStatementCacheMisses());
+        return pool;
+    }
+
+    // Borrows a connection from the pool; closing it returns the connection to the pool.
+    public static Connection getConnection() throws SQLException {
+        return pool.getConnection();
+    }
+
+    public static PoolStats getPoolStats() {
+        return pool.getStats();
     }
 
     // Method to safely close a connection
@@ -42,8 +75,8 @@ public class DatabaseConnector {
             try {
                 connection.close();
             } catch (SQLException e) {
-                System.err.println("Error closing database connection: " + e.getMessage());
+                Log.error("Error closing database connection: " + e.getMessage());
             }
         }
     }
-}
\ No newline at end of file
+}
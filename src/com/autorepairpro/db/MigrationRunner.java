@@ -0,0 +1,263 @@
+package com.autorepairpro.db;
+
+import com.autorepairpro.log.Log;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Applies the versioned SQL scripts in the migrations directory ({@code V<version>__<description>.sql})
+ * in version order and records each one in {@code schema_migrations} with a SHA-256 checksum.
+ * Startup fails if an applied script has since been edited or a new script is numbered below one
+ * that is already applied, so every database ends up with the same schema history.
+ *
+ * MySQL commits DDL implicitly, so a script that fails halfway is not rolled back; it is simply not
+ * recorded and will be retried on the next start once fixed.
+ */
+public class MigrationRunner {
+    // Migration configuration with fallback to environment variables
+    private static final String MIGRATIONS_DIR = System.getenv("DB_MIGRATIONS_DIR") != null ?
+        System.getenv("DB_MIGRATIONS_DIR") : "migrations";
+    private static final boolean MIGRATE_ON_START = System.getenv("DB_MIGRATE") == null ||
+        Boolean.parseBoolean(System.getenv("DB_MIGRATE"));
+
+    private static final Pattern FILE_NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+    // Serializes migrations when several server instances start against the same database.
+    private static final String LOCK_NAME = "autorepairpro_schema_migrations";
+    private static final int LOCK_TIMEOUT_SECONDS = 60;
+
+    private static final String CREATE_HISTORY_SQL =
+        "CREATE TABLE IF NOT EXISTS schema_migrations (" +
+        "version INT PRIMARY KEY, " +
+        "description VARCHAR(200) NOT NULL, " +
+        "checksum CHAR(64) NOT NULL, " +
+        "execution_ms INT NOT NULL, " +
+        "applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)";
+
+    private static class Migration {
+        final int version;
+        final String description;
+        final String script;
+        final String checksum;
+
+        Migration(int version, String description, String script, String checksum) {
+            this.version = version;
+            this.description = description;
+            this.script = script;
+            this.checksum = checksum;
+        }
+    }
+
+    private MigrationRunner() {}
+
+    /** Brings the schema up to date; called once from Main before the server accepts requests. */
+    public static void migrateOnStartup() throws SQLException, IOException {
+        if (!MIGRATE_ON_START) {
+            Log.info("Schema migrations skipped (DB_MIGRATE=false)");
+            return;
+        }
+        migrate(Paths.get(MIGRATIONS_DIR));
+    }
+
+    public static void migrate(Path directory) throws SQLException, IOException {
+        Map<Integer, Migration> migrations = load(directory);
+
+        try (Connection conn = DatabaseConnector.getConnection()) {
+            lock(conn);
+            try {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute(CREATE_HISTORY_SQL);
+                }
+                Map<Integer, String> applied = appliedChecksums(conn);
+                verify(migrations, applied);
+
+                int count = 0;
+                for (Migration migration : migrations.values()) {
+                    if (!applied.containsKey(migration.version)) {
+                        apply(conn, migration);
+                        count++;
+                    }
+                }
+                if (count == 0) {
+                    Log.info("Schema is up to date (" + applied.size() + " migrations applied)");
+                }
+            } finally {
+                unlock(conn);
+            }
+        }
+    }
+
+    private static Map<Integer, Migration> load(Path directory) throws IOException {
+        Map<Integer, Migration> migrations = new TreeMap<>();
+        if (!Files.isDirectory(directory)) {
+            Log.warn("Migrations directory not found: " + directory.toAbsolutePath());
+            return migrations;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.sql")) {
+            for (Path file : files) {
+                Matcher m = FILE_NAME.matcher(file.getFileName().toString());
+                if (!m.matches()) {
+                    throw new IllegalStateException("Migration file name must look like V001__description.sql: " + file);
+                }
+                int version = Integer.parseInt(m.group(1));
+                // Line endings are normalized so a checkout with CRLF does not look like an edited script.
+                String script = new String(Files.readAllBytes(file), StandardCharsets.UTF_8).replace("\r\n", "\n");
+                Migration previous = migrations.put(version,
+                    new Migration(version, m.group(2).replace('_', ' '), script, sha256(script)));
+                if (previous != null) {
+                    throw new IllegalStateException("Duplicate migration version " + version + " in " + directory);
+                }
+            }
+        }
+        return migrations;
+    }
+
+    private static Map<Integer, String> appliedChecksums(Connection conn) throws SQLException {
+        Map<Integer, String> applied = new TreeMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT version, checksum FROM schema_migrations")) {
+            while (rs.next()) {
+                applied.put(rs.getInt("version"), rs.getString("checksum"));
+            }
+        }
+        return applied;
+    }
+
+    private static void verify(Map<Integer, Migration> migrations, Map<Integer, String> applied) {
+        int latestApplied = 0;
+        for (Map.Entry<Integer, String> entry : applied.entrySet()) {
+            latestApplied = Math.max(latestApplied, entry.getKey());
+            Migration migration = migrations.get(entry.getKey());
+            if (migration == null) {
+                Log.warn("Applied migration V" + entry.getKey() + " has no script in " + MIGRATIONS_DIR);
+            } else if (!migration.checksum.equals(entry.getValue())) {
+                throw new IllegalStateException("Migration V" + entry.getKey() + " (" + migration.description +
+                    ") was changed after it was applied; add a new migration instead of editing it");
+            }
+        }
+        for (Migration migration : migrations.values()) {
+            if (!applied.containsKey(migration.version) && migration.version < latestApplied) {
+                throw new IllegalStateException("Migration V" + migration.version + " (" + migration.description +
+                    ") is older than the latest applied migration V" + latestApplied);
+            }
+        }
+    }
+
+    private static void apply(Connection conn, Migration migration) throws SQLException {
+        Log.info("Applying migration V" + migration.version + ": " + migration.description);
+        long start = System.currentTimeMillis();
+        try (Statement stmt = conn.createStatement()) {
+            for (String sql : splitStatements(migration.script)) {
+                try {
+                    stmt.execute(sql);
+                } catch (SQLException e) {
+                    throw new SQLException("Migration V" + migration.version + " failed at: " + sql, e);
+                }
+            }
+        }
+        long elapsed = System.currentTimeMillis() - start;
+
+        String sql = "INSERT INTO schema_migrations (version, description, checksum, execution_ms) VALUES (?, ?, ?, ?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, migration.version);
+            pstmt.setString(2, migration.description);
+            pstmt.setString(3, migration.checksum);
+            pstmt.setInt(4, (int) elapsed);
+            pstmt.executeUpdate();
+        }
+        Log.info("Applied migration V" + migration.version + " in " + elapsed + "ms");
+    }
+
+    // Splits a script on semicolons that are outside quotes and comments.
+    static List<String> splitStatements(String script) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        int i = 0;
+        while (i < script.length()) {
+            char c = script.charAt(i);
+            if (c == '-' && script.startsWith("--", i) || c == '#') {
+                int end = script.indexOf('\n', i);
+                i = end < 0 ? script.length() : end + 1;
+                current.append('\n');
+            } else if (c == '/' && script.startsWith("/*", i)) {
+                int end = script.indexOf("*/", i + 2);
+                i = end < 0 ? script.length() : end + 2;
+                current.append(' ');
+            } else if (c == '\'' || c == '"' || c == '`') {
+                int end = i + 1;
+                while (end < script.length() && script.charAt(end) != c) {
+                    end += script.charAt(end) == '\\' ? 2 : 1;
+                }
+                end = Math.min(end + 1, script.length());
+                current.append(script, i, end);
+                i = end;
+            } else if (c == ';') {
+                addStatement(statements, current);
+                i++;
+            } else {
+                current.append(c);
+                i++;
+            }
+        }
+        addStatement(statements, current);
+        return statements;
+    }
+
+    private static void addStatement(List<String> statements, StringBuilder current) {
+        String sql = current.toString().trim();
+        if (!sql.isEmpty()) {
+            statements.add(sql);
+        }
+        current.setLength(0);
+    }
+
+    private static void lock(Connection conn) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            pstmt.setString(1, LOCK_NAME);
+            pstmt.setInt(2, LOCK_TIMEOUT_SECONDS);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next() || rs.getInt(1) != 1) {
+                    throw new SQLException("Timed out waiting for the schema migration lock");
+                }
+            }
+        }
+    }
+
+    private static void unlock(Connection conn) {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            pstmt.setString(1, LOCK_NAME);
+            pstmt.executeQuery().close();
+        } catch (SQLException e) {
+            Log.warn("Could not release the schema migration lock: " + e.getMessage());
+        }
+    }
+
+    private static String sha256(String script) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(script.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(64);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.autorepairpro.db;
+
+import com.autorepairpro.json.JsonWriter;
+
+/**
+ * Point-in-time snapshot of {@link ConnectionPool} counters.
+ */
+public class PoolStats {
+    private final int active;
+    private final int idle;
+    private final int waiters;
+    private final int maxSize;
+    private final long acquireCount;
+    private final long timeoutCount;
+    private final long leakCount;
+    private final long totalWaitMillis;
+    private final long maxWaitMillis;
+    private final long statementCacheHits;
+    private final long statementCacheMisses;
+
+    PoolStats(int active, int idle, int waiters, int maxSize, long acquireCount, long timeoutCount,
+              long leakCount, long totalWaitMillis, long maxWaitMillis,
+              long statementCacheHits, long statementCacheMisses) {
+        this.active = active;
+        this.idle = idle;
+        this.waiters = waiters;
+        this.maxSize = maxSize;
+        this.acquireCount = acquireCount;
+        this.timeoutCount = timeoutCount;
+        this.leakCount = leakCount;
+        this.totalWaitMillis = totalWaitMillis;
+        this.maxWaitMillis = maxWaitMillis;
+        this.statementCacheHits = statementCacheHits;
+        this.statementCacheMisses = statementCacheMisses;
+    }
+
+    public int getActive() {
+        return active;
+    }
+
+    public int getIdle() {
+        return idle;
+    }
+
+    public int getWaiters() {
+        return waiters;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getAcquireCount() {
+        return acquireCount;
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount;
+    }
+
+    public long getLeakCount() {
+        return leakCount;
+    }
+
+    public long getTotalWaitMillis() {
+        return totalWaitMillis;
+    }
+
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    public long getStatementCacheHits() {
+        return statementCacheHits;
+    }
+
+    public long getStatementCacheMisses() {
+        return statementCacheMisses;
+    }
+
+    public void writeTo(JsonWriter json) {
+        json.beginObject()
+            .field("active", active)
+            .field("idle", idle)
+            .field("waiters", waiters)
+            .field("maxSize", maxSize)
+            .field("acquireCount", acquireCount)
+            .field("timeoutCount", timeoutCount)
+            .field("leakCount", leakCount)
+            .field("totalWaitMillis", totalWaitMillis)
+            .field("maxWaitMillis", maxWaitMillis)
+            .field("statementCacheHits", statementCacheHits)
+            .field("statementCacheMisses", statementCacheMisses)
+            .endObject();
+    }
+}
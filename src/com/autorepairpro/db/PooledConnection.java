@@ -0,0 +1,107 @@
+package com.autorepairpro.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A physical connection owned by {@link ConnectionPool}. Callers never see it directly: every borrow
+ * gets a fresh proxy whose close() returns the connection to the pool, so a handle that was already
+ * closed cannot be used to touch a connection another request has since borrowed.
+ */
+class PooledConnection {
+    final Connection physical;
+    final StatementCache statements;
+    final long createdAt;
+    long lastReturnedAt;
+    long borrowedAt;
+    String borrowThread;
+    Throwable borrowSite; // only when leak stack traces are enabled
+    boolean leakReported;
+
+    // Set when a borrower changed session state that must be reset before the next borrow.
+    boolean autoCommitChanged;
+    boolean isolationChanged;
+    boolean broken;
+
+    PooledConnection(Connection physical, int statementCacheSize, AtomicLong cacheHits, AtomicLong cacheMisses) {
+        this.physical = physical;
+        this.statements = new StatementCache(this, statementCacheSize, cacheHits, cacheMisses);
+        this.createdAt = System.currentTimeMillis();
+        this.lastReturnedAt = createdAt;
+    }
+
+    Connection newHandle(ConnectionPool pool) {
+        InvocationHandler handler = new Handle(pool);
+        return (Connection) Proxy.newProxyInstance(
+            PooledConnection.class.getClassLoader(), new Class<?>[] { Connection.class }, handler);
+    }
+
+    private class Handle implements InvocationHandler {
+        private final ConnectionPool pool;
+        private boolean closed;
+
+        Handle(ConnectionPool pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        pool.release(PooledConnection.this);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + physical + "]";
+                default:
+                    break;
+            }
+
+            if (closed) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            if (name.equals("prepareStatement") && args.length == 1) {
+                return statements.prepare((Connection) proxy, (String) args[0], Statement.NO_GENERATED_KEYS);
+            }
+            if (name.equals("prepareStatement") && args.length == 2 && args[1] instanceof Integer) {
+                return statements.prepare((Connection) proxy, (String) args[0], (Integer) args[1]);
+            }
+            if (name.equals("setAutoCommit")) {
+                autoCommitChanged = true;
+            } else if (name.equals("setTransactionIsolation")) {
+                isolationChanged = true;
+            }
+
+            try {
+                return method.invoke(physical, args);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SQLException && isFatal((SQLException) cause)) {
+                    broken = true;
+                }
+                throw cause;
+            }
+        }
+    }
+
+    // SQLState class 08 is a connection exception; the physical connection should not be reused.
+    static boolean isFatal(SQLException e) {
+        String state = e.getSQLState();
+        return state != null && state.startsWith("08");
+    }
+}
@@ -0,0 +1,312 @@
+package com.autorepairpro.db;
+
+import com.autorepairpro.handler.AuthHandler;
+import com.autorepairpro.handler.CustomerHandler;
+import com.autorepairpro.handler.EmployeeHandler;
+import com.autorepairpro.handler.JobListQuery;
+import com.autorepairpro.inventory.InventoryEngine;
+import com.autorepairpro.log.Log;
+import com.autorepairpro.notes.JobNotes;
+import com.autorepairpro.reports.ReportRollups;
+import com.autorepairpro.scheduling.BookingCalendar;
+import com.autorepairpro.scheduling.Dispatcher;
+import com.autorepairpro.scheduling.EmployeeSchedules;
+import com.autorepairpro.search.SearchIndex;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs EXPLAIN on the hot handler queries, the scheduling loads and the report rollups, taking
+ * each statement from the class that runs it, and fails when any of them scans a whole table.
+ * Plans depend on table sizes, so run it against a database with realistic volumes; with
+ * {@code --seed <jobs>} it first fills the current database with synthetic customers, employees,
+ * vehicles, jobs and parts (only ever do that on a scratch database).
+ *
+ * <pre>java -cp build:lib/mysql-connector-j-8.0.33.jar com.autorepairpro.db.QueryPlanCheck [--seed 100000]</pre>
+ *
+ * Exits with status 1 if any query plan contains a full table scan.
+ */
+public class QueryPlanCheck {
+    private static final int SEED_EMPLOYEES = 50;
+    private static final int SEED_CUSTOMERS = 5000;
+    private static final int SEED_PARTS = 5000;
+    private static final int BATCH_SIZE = 1000;
+    private static final String[] PAST_STATUSES = { "Completed", "Invoiced", "Paid", "Paid", "Paid", "Cancelled" };
+
+    // Binds a query's parameters after the EXPLAIN prefix, exactly as the code that runs it does.
+    private interface Binder {
+        void bind(PreparedStatement pstmt) throws SQLException;
+    }
+
+    private static class PlannedQuery {
+        final String name;
+        final String sql;
+        final Binder binder;
+        String scannedTable; // a table the query reads in full by design, or null
+
+        PlannedQuery(String name, String sql, Binder binder) {
+            this.name = name;
+            this.sql = sql;
+            this.binder = binder;
+        }
+
+        PlannedQuery(String name, String sql, Object... params) {
+            this(name, sql, pstmt -> {
+                for (int i = 0; i < params.length; i++) {
+                    pstmt.setObject(i + 1, params[i]);
+                }
+            });
+        }
+
+        PlannedQuery scans(String table) {
+            this.scannedTable = table;
+            return this;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int seedJobs = 0;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--seed")) {
+                seedJobs = i + 1 < args.length ? Integer.parseInt(args[++i]) : 100000;
+            }
+        }
+
+        MigrationRunner.migrateOnStartup();
+        int failures;
+        try (Connection conn = DatabaseConnector.getConnection()) {
+            if (seedJobs > 0) {
+                seed(conn, seedJobs);
+            }
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("ANALYZE TABLE jobs, job_notes, users, vehicles, services, branches, inventory, job_inventory, " +
+                    "payments, invoices, report_daily_rollups, performance_metrics");
+            }
+            failures = check(conn, queries(conn));
+        }
+        Log.info(failures == 0 ? "Query plan check passed" : "Query plan check failed: " + failures + " full table scans");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    // The statements themselves come from the classes that run them, so the plans checked are the plans served.
+    private static List<PlannedQuery> queries(Connection conn) throws SQLException {
+        int employeeId = busiest(conn, "assigned_employee_id");
+        int customerId = busiest(conn, "customer_id");
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        Date monthStart = Date.valueOf(yesterday.withDayOfMonth(1));
+        Date monthEnd = Date.valueOf(yesterday.withDayOfMonth(yesterday.lengthOfMonth()));
+        JobListQuery firstPage = JobListQuery.page(null, 0);
+        JobListQuery laterPage = JobListQuery.page(now, Integer.MAX_VALUE);
+
+        List<PlannedQuery> queries = new ArrayList<>();
+        queries.add(new PlannedQuery("employee job listing", EmployeeHandler.assignedJobsSql(firstPage), pstmt -> {
+            pstmt.setInt(1, employeeId);
+            firstPage.bind(pstmt, 2);
+        }));
+        queries.add(new PlannedQuery("employee job listing, later page", EmployeeHandler.assignedJobsSql(laterPage), pstmt -> {
+            pstmt.setInt(1, employeeId);
+            laterPage.bind(pstmt, 2);
+        }));
+        queries.add(new PlannedQuery("customer job listing", CustomerHandler.customerJobsSql(firstPage), pstmt -> {
+            pstmt.setInt(1, customerId);
+            firstPage.bind(pstmt, 2);
+        }));
+        queries.add(new PlannedQuery("customer job listing, later page", CustomerHandler.customerJobsSql(laterPage), pstmt -> {
+            pstmt.setInt(1, customerId);
+            laterPage.bind(pstmt, 2);
+        }));
+        queries.add(new PlannedQuery("employee schedule", EmployeeSchedules.EMPLOYEE_SQL, employeeId));
+        queries.add(new PlannedQuery("schedule entry", EmployeeSchedules.JOB_SQL, 1));
+        queries.add(new PlannedQuery("employee stats", EmployeeHandler.STATS_SQL, employeeId));
+        queries.add(new PlannedQuery("job details", EmployeeHandler.JOB_DETAILS_SQL, 1));
+        queries.add(new PlannedQuery("job notes page", JobNotes.PAGE_SQL, 1, Long.MAX_VALUE, 21));
+        queries.add(new PlannedQuery("available inventory", EmployeeHandler.AVAILABLE_INVENTORY_SQL));
+        queries.add(new PlannedQuery("reserve part", InventoryEngine.DECREMENT_SQL, 1, 1, 1));
+        queries.add(new PlannedQuery("customer vehicles", CustomerHandler.VEHICLES_SQL, customerId));
+        queries.add(new PlannedQuery("login", AuthHandler.LOGIN_SQL, "admin"));
+        queries.add(new PlannedQuery("search refresh, customers", SearchIndex.CHANGED_CUSTOMERS_SQL, now));
+        queries.add(new PlannedQuery("search refresh, vehicles", SearchIndex.CHANGED_VEHICLES_SQL, now));
+        queries.add(new PlannedQuery("search refresh, jobs", SearchIndex.CHANGED_JOBS_SQL, now));
+        queries.add(new PlannedQuery("booking calendar load", BookingCalendar.UPCOMING_SQL,
+            Timestamp.valueOf(LocalDate.now().atStartOfDay()),
+            Timestamp.valueOf(LocalDate.now().plusDays(BookingCalendar.getHorizonDays() + 1).atStartOfDay())));
+        // The roster is every active technician, a few dozen rows; reading users in full is expected.
+        queries.add(new PlannedQuery("technician roster", Dispatcher.ROSTER_SQL).scans("users"));
+        queries.add(new PlannedQuery("technician loads", Dispatcher.OPEN_JOBS_SQL));
+        queries.add(new PlannedQuery("unassigned jobs", Dispatcher.UNASSIGNED_JOBS_SQL));
+        queries.add(new PlannedQuery("move job", Dispatcher.MOVE_SQL, employeeId, 1, employeeId));
+        List<String> rollups = ReportRollups.rollupStatements();
+        for (int i = 0; i < rollups.size(); i++) {
+            queries.add(new PlannedQuery("report rollup " + (i + 1), rollups.get(i), Date.valueOf(yesterday),
+                Timestamp.valueOf(yesterday.atStartOfDay()), Timestamp.valueOf(yesterday.plusDays(1).atStartOfDay())));
+        }
+        queries.add(new PlannedQuery("performance jobs completed", ReportRollups.PERFORMANCE_JOBS_SQL,
+            monthStart, monthEnd, monthStart, monthEnd));
+        queries.add(new PlannedQuery("performance efficiency", ReportRollups.PERFORMANCE_EFFICIENCY_SQL,
+            monthStart, monthEnd, monthStart, monthEnd));
+        return queries;
+    }
+
+    private static int check(Connection conn, List<PlannedQuery> queries) throws SQLException {
+        int failures = 0;
+        for (PlannedQuery query : queries) {
+            try (PreparedStatement pstmt = conn.prepareStatement("EXPLAIN " + query.sql)) {
+                query.binder.bind(pstmt);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        String table = rs.getString("table");
+                        String type = rs.getString("type");
+                        String line = query.name + ": table=" + table + " type=" + type +
+                            " key=" + rs.getString("key") + " rows=" + rs.getLong("rows") +
+                            " extra=" + rs.getString("Extra");
+                        // The target of an INSERT ... SELECT and derived tables are listed as ALL but read no base table.
+                        boolean baseTable = table != null && !table.startsWith("<")
+                            && !"INSERT".equals(rs.getString("select_type"));
+                        if ("ALL".equals(type) && baseTable && !table.equals(query.scannedTable)) {
+                            failures++;
+                            Log.error("FULL SCAN " + line);
+                        } else {
+                            Log.info("ok " + line);
+                        }
+                    }
+                }
+            }
+        }
+        return failures;
+    }
+
+    // The id with the most jobs, so the plan reflects the worst case.
+    private static int busiest(Connection conn, String column) throws SQLException {
+        String sql = "SELECT " + column + " FROM jobs WHERE " + column + " IS NOT NULL " +
+                     "GROUP BY " + column + " ORDER BY COUNT(*) DESC LIMIT 1";
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() ? rs.getInt(1) : 1;
+        }
+    }
+
+    private static void seed(Connection conn, int jobs) throws SQLException {
+        Log.info("Seeding " + jobs + " jobs of synthetic data");
+        String run = Long.toString(System.currentTimeMillis(), 36);
+        int[] services = ids(conn, "SELECT id FROM services");
+        int[] branches = ids(conn, "SELECT id FROM branches");
+        if (services.length == 0 || branches.length == 0) {
+            throw new SQLException("Seeding needs at least one service and one branch; run database_setup.sql first");
+        }
+
+        conn.setAutoCommit(false);
+        try {
+            String userSql = "INSERT INTO users (username, password, full_name, email, role) VALUES (?, 'seed', ?, ?, ?)";
+            try (PreparedStatement pstmt = conn.prepareStatement(userSql)) {
+                for (int i = 0; i < SEED_EMPLOYEES + SEED_CUSTOMERS; i++) {
+                    String username = "seed_" + run + "_" + i;
+                    pstmt.setString(1, username);
+                    pstmt.setString(2, "Seed User " + i);
+                    pstmt.setString(3, username + "@example.invalid");
+                    pstmt.setString(4, i < SEED_EMPLOYEES ? "employee" : "customer");
+                    addBatch(conn, pstmt, i);
+                }
+                pstmt.executeBatch();
+            }
+            conn.commit();
+            int[] employees = ids(conn, "SELECT id FROM users WHERE username LIKE 'seed\\_" + run + "\\_%' AND role = 'employee'");
+            int[] customers = ids(conn, "SELECT id FROM users WHERE username LIKE 'seed\\_" + run + "\\_%' AND role = 'customer'");
+
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "INSERT INTO vehicles (customer_id, make, model, year) VALUES (?, 'Seed', 'Model', 2020)")) {
+                for (int i = 0; i < customers.length; i++) {
+                    pstmt.setInt(1, customers[i]);
+                    addBatch(conn, pstmt, i);
+                }
+                pstmt.executeBatch();
+            }
+            conn.commit();
+            int[] vehicles = ids(conn, "SELECT v.id FROM vehicles v JOIN users u ON v.customer_id = u.id " +
+                "WHERE u.username LIKE 'seed\\_" + run + "\\_%' ORDER BY u.id");
+
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long now = System.currentTimeMillis();
+            long span = TimeUnit.DAYS.toMillis(3 * 365);
+            String jobSql = "INSERT INTO jobs (customer_id, vehicle_id, service_id, branch_id, assigned_employee_id, " +
+                            "status, booking_date, total_cost) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+            try (PreparedStatement pstmt = conn.prepareStatement(jobSql)) {
+                for (int i = 0; i < jobs; i++) {
+                    int customer = random.nextInt(customers.length);
+                    pstmt.setInt(1, customers[customer]);
+                    pstmt.setInt(2, vehicles[customer]);
+                    pstmt.setInt(3, services[random.nextInt(services.length)]);
+                    pstmt.setInt(4, branches[random.nextInt(branches.length)]);
+                    pstmt.setInt(5, employees[random.nextInt(employees.length)]);
+                    // Mostly past bookings with a few weeks of upcoming ones, like a real shop; only
+                    // upcoming and very recent jobs are still open.
+                    long booking = now - span + (long) (random.nextDouble() * (span + TimeUnit.DAYS.toMillis(30)));
+                    pstmt.setString(6, booking > now ? "Booked" : booking > now - TimeUnit.DAYS.toMillis(2) ? "In Progress"
+                        : PAST_STATUSES[random.nextInt(PAST_STATUSES.length)]);
+                    pstmt.setTimestamp(7, new Timestamp(booking));
+                    pstmt.setBigDecimal(8, BigDecimal.valueOf(random.nextInt(5000, 200000), 2));
+                    addBatch(conn, pstmt, i);
+                }
+                pstmt.executeBatch();
+            }
+            conn.commit();
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("INSERT INTO job_notes (job_id, body) SELECT j.id, CONCAT('Seeded job ', j.id) " +
+                    "FROM jobs j JOIN users u ON j.customer_id = u.id WHERE u.username LIKE 'seed\\_" + run + "\\_%'");
+            }
+            conn.commit();
+
+            String partSql = "INSERT INTO inventory (part_name, quantity, price_per_unit, category, supplier, is_active) " +
+                             "VALUES (?, ?, ?, ?, 'Seed Supply', ?)";
+            try (PreparedStatement pstmt = conn.prepareStatement(partSql)) {
+                for (int i = 0; i < SEED_PARTS; i++) {
+                    pstmt.setString(1, "Seed part " + run + " " + i);
+                    pstmt.setInt(2, random.nextInt(10) == 0 ? 0 : random.nextInt(1, 200));
+                    pstmt.setBigDecimal(3, BigDecimal.valueOf(random.nextInt(100, 50000), 2));
+                    pstmt.setString(4, "Category " + random.nextInt(40));
+                    pstmt.setBoolean(5, random.nextInt(20) != 0);
+                    addBatch(conn, pstmt, i);
+                }
+                pstmt.executeBatch();
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+        Log.info("Seeding finished");
+    }
+
+    private static void addBatch(Connection conn, PreparedStatement pstmt, int index) throws SQLException {
+        pstmt.addBatch();
+        if ((index + 1) % BATCH_SIZE == 0) {
+            pstmt.executeBatch();
+            conn.commit();
+        }
+    }
+
+    private static int[] ids(Connection conn, String sql) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                ids.add(rs.getInt(1));
+            }
+        }
+        int[] result = new int[ids.size()];
+        Arrays.setAll(result, ids::get);
+        return result;
+    }
+}
@@ -0,0 +1,206 @@
+package com.autorepairpro.db;
+
+import com.autorepairpro.metrics.Metrics;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LRU cache of prepared statements for one pooled connection, keyed by SQL text. The handlers
+ * prepare the same fixed SQL on every request; with server-side prepared statements enabled this
+ * means MySQL parses and plans each statement once per connection instead of once per request.
+ *
+ * Callers get a handle whose close() clears parameters and hands the statement back to the cache
+ * instead of closing it. A connection is only used by one thread at a time, so the cache is not
+ * shared between threads.
+ */
+class StatementCache {
+    private final PooledConnection owner;
+    private final int capacity;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final LinkedHashMap<String, CachedStatement> statements;
+
+    StatementCache(PooledConnection owner, int capacity, AtomicLong hits, AtomicLong misses) {
+        this.owner = owner;
+        this.capacity = capacity;
+        this.hits = hits;
+        this.misses = misses;
+        this.statements = new LinkedHashMap<String, CachedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                if (size() <= StatementCache.this.capacity) {
+                    return false;
+                }
+                eldest.getValue().evict();
+                return true;
+            }
+        };
+    }
+
+    PreparedStatement prepare(Connection handle, String sql, int autoGeneratedKeys) throws SQLException {
+        if (capacity <= 0) {
+            return prepareUncached(sql, autoGeneratedKeys);
+        }
+
+        String key = autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS ? "K:" + sql : sql;
+        CachedStatement cached = statements.get(key);
+        if (cached != null && !cached.inUse) {
+            hits.incrementAndGet();
+        } else if (cached != null) {
+            // The same SQL is already open on this connection (e.g. nested loops); use a one-off statement.
+            misses.incrementAndGet();
+            return prepareUncached(sql, autoGeneratedKeys);
+        } else {
+            misses.incrementAndGet();
+            cached = new CachedStatement(prepareUncached(sql, autoGeneratedKeys));
+            statements.put(key, cached);
+        }
+
+        cached.inUse = true;
+        return cached.newHandle(handle);
+    }
+
+    private PreparedStatement prepareUncached(String sql, int autoGeneratedKeys) throws SQLException {
+        if (autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS) {
+            return owner.physical.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+        }
+        return owner.physical.prepareStatement(sql);
+    }
+
+    private class CachedStatement {
+        final PreparedStatement physical;
+        boolean inUse;
+        boolean evicted;
+
+        CachedStatement(PreparedStatement physical) {
+            this.physical = physical;
+        }
+
+        // Evicted while checked out: close once the borrower is done with it.
+        void evict() {
+            evicted = true;
+            if (!inUse) {
+                closePhysical();
+            }
+        }
+
+        void closePhysical() {
+            try {
+                physical.close();
+            } catch (SQLException e) {
+                // Ignore
+            }
+        }
+
+        PreparedStatement newHandle(Connection connectionHandle) {
+            InvocationHandler handler = new Handle(connectionHandle);
+            return (PreparedStatement) Proxy.newProxyInstance(
+                StatementCache.class.getClassLoader(), new Class<?>[] { PreparedStatement.class }, handler);
+        }
+
+        private class Handle implements InvocationHandler {
+            private final Connection connectionHandle;
+            private final List<ResultSet> openResults = new ArrayList<>(2);
+            private boolean closed;
+            private boolean batched;
+            // When the first open result set was returned; reading it is timed until check-in.
+            private long resultsOpenedAt;
+
+            Handle(Connection connectionHandle) {
+                this.connectionHandle = connectionHandle;
+            }
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                String name = method.getName();
+                switch (name) {
+                    case "close":
+                        if (!closed) {
+                            closed = true;
+                            checkIn();
+                        }
+                        return null;
+                    case "isClosed":
+                        return closed;
+                    case "getConnection":
+                        return connectionHandle;
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "toString":
+                        return "CachedStatement[" + physical + "]";
+                    default:
+                        break;
+                }
+
+                if (closed) {
+                    throw new SQLException("Statement is closed");
+                }
+                if (name.equals("addBatch")) {
+                    batched = true;
+                }
+
+                boolean execute = name.startsWith("execute");
+                long start = execute ? System.nanoTime() : 0;
+                Object result;
+                try {
+                    result = method.invoke(physical, args);
+                } catch (InvocationTargetException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof SQLException && PooledConnection.isFatal((SQLException) cause)) {
+                        owner.broken = true;
+                    }
+                    throw cause;
+                } finally {
+                    if (execute) {
+                        Metrics.recordJdbcExecute(System.nanoTime() - start);
+                    }
+                }
+                if (result instanceof ResultSet) {
+                    if (openResults.isEmpty()) {
+                        resultsOpenedAt = System.nanoTime();
+                    }
+                    openResults.add((ResultSet) result);
+                }
+                return result;
+            }
+
+            // Reset the statement to a clean state for the next borrower.
+            private void checkIn() {
+                if (!openResults.isEmpty()) {
+                    Metrics.recordJdbcResultSet(System.nanoTime() - resultsOpenedAt);
+                }
+                try {
+                    for (ResultSet rs : openResults) {
+                        rs.close();
+                    }
+                    physical.clearParameters();
+                    if (batched) {
+                        physical.clearBatch();
+                    }
+                } catch (SQLException e) {
+                    evicted = true;
+                    statements.values().remove(CachedStatement.this);
+                }
+                openResults.clear();
+                inUse = false;
+                if (evicted) {
+                    closePhysical();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.autorepairpro.events;
+
+import com.autorepairpro.auth.Session;
+import com.autorepairpro.json.JsonWriter;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Something that changed in the shop, published after the write has committed. The payload is
+ * encoded to JSON once, when the event is created, and shared by every subscriber it goes to.
+ *
+ * Events with the same {@link #getKey() key} describe the same thing (one job's status, one
+ * part's stock level), so a subscriber that falls behind only needs the newest of them.
+ */
+public class ChangeEvent {
+    public enum Type {
+        JOB_STATUS("job_status"),
+        JOB_NOTE("job_note"),
+        INVENTORY("inventory");
+
+        private final String wireName;
+
+        Type(String wireName) {
+            this.wireName = wireName;
+        }
+
+        /** Name used as the SSE {@code event:} field. */
+        public String getWireName() {
+            return wireName;
+        }
+    }
+
+    private static final AtomicLong sequence = new AtomicLong();
+
+    private final long id;
+    private final Type type;
+    private final String key;
+    // Audience; 0 when the event is not about a particular customer or employee.
+    private final int customerId;
+    private final int employeeId;
+    private final byte[] data;
+
+    private ChangeEvent(Type type, String key, int customerId, int employeeId, JsonWriter json) {
+        this.id = sequence.incrementAndGet();
+        this.type = type;
+        this.key = key;
+        this.customerId = customerId;
+        this.employeeId = employeeId;
+        this.data = Arrays.copyOf(json.buffer(), json.size());
+        json.release();
+    }
+
+    public static ChangeEvent jobStatus(int jobId, int customerId, int employeeId, String status) {
+        JsonWriter json = JsonWriter.obtain();
+        json.beginObject()
+            .field("jobId", jobId)
+            .field("status", status)
+            .field("at", System.currentTimeMillis())
+            .endObject();
+        return new ChangeEvent(Type.JOB_STATUS, "job:" + jobId, customerId, employeeId, json);
+    }
+
+    public static ChangeEvent jobNote(int jobId, int customerId, int employeeId, String note) {
+        JsonWriter json = JsonWriter.obtain();
+        json.beginObject()
+            .field("jobId", jobId)
+            .field("note", note)
+            .field("at", System.currentTimeMillis())
+            .endObject();
+        return new ChangeEvent(Type.JOB_NOTE, "note:" + jobId, customerId, employeeId, json);
+    }
+
+    public static ChangeEvent inventory(int inventoryId, String partName, int quantity, int minQuantity) {
+        JsonWriter json = JsonWriter.obtain();
+        json.beginObject()
+            .field("inventoryId", inventoryId)
+            .field("partName", partName)
+            .field("quantity", quantity)
+            .field("minQuantity", minQuantity)
+            .field("lowStock", quantity <= minQuantity)
+            .endObject();
+        return new ChangeEvent(Type.INVENTORY, "inventory:" + inventoryId, 0, 0, json);
+    }
+
+    /**
+     * Customers see events about their own jobs, employees see their assigned jobs and stock
+     * levels, and admins see everything.
+     */
+    public boolean isVisibleTo(Session session) {
+        if (session.isAdmin()) {
+            return true;
+        }
+        if (session.hasRole("customer")) {
+            return customerId != 0 && customerId == session.getUserId();
+        }
+        if (session.hasRole("employee")) {
+            return type == Type.INVENTORY || (employeeId != 0 && employeeId == session.getUserId());
+        }
+        return false;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public int getCustomerId() {
+        return customerId;
+    }
+
+    public int getEmployeeId() {
+        return employeeId;
+    }
+
+    /** UTF-8 JSON payload; shared, so callers must not modify it. */
+    public byte[] getData() {
+        return data;
+    }
+}
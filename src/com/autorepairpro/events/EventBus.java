@@ -0,0 +1,44 @@
+package com.autorepairpro.events;
+
+import com.autorepairpro.log.Log;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In-process publish/subscribe for {@link ChangeEvent}s. Handlers publish after their transaction
+ * commits; listeners are called synchronously on the publishing thread, so they must only hand the
+ * event off (buffer it, bump a counter) and never block.
+ */
+public class EventBus {
+    /** Receives every published event; filtering is up to the listener. */
+    public interface Listener {
+        void onEvent(ChangeEvent event);
+    }
+
+    // Subscribing is rare next to publishing, so iteration should not take a lock.
+    private static final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private EventBus() {}
+
+    public static void subscribe(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public static void unsubscribe(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /** Lets publishers skip the lookups that only serve to address an event nobody would receive. */
+    public static boolean hasListeners() {
+        return !listeners.isEmpty();
+    }
+
+    public static void publish(ChangeEvent event) {
+        for (Listener listener : listeners) {
+            try {
+                listener.onEvent(event);
+            } catch (RuntimeException e) {
+                Log.error("Event listener failed on " + event.getType().getWireName() + " event", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.autorepairpro.handler;
+
+import com.autorepairpro.auth.Access;
+import com.autorepairpro.auth.Session;
+import com.autorepairpro.json.JsonWriter;
+import com.autorepairpro.log.Log;
+import com.autorepairpro.reports.ReportPeriod;
+import com.autorepairpro.reports.Reports;
+import com.autorepairpro.server.HttpRequest;
+import com.autorepairpro.server.HttpResponse;
+import com.autorepairpro.server.Router;
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+public class AdminHandler {
+    // Every report reads the daily rollups and writes one JSON object.
+    private interface Report {
+        void write(ReportPeriod period, JsonWriter json) throws SQLException;
+    }
+
+    public void registerRoutes(Router router) {
+        router.add("GET", "/api/admin/reports/revenue", admin((req, p) -> report(req, Reports::revenue, "revenue")))
+              .add("GET", "/api/admin/reports/part-usage", admin((req, p) -> report(req, Reports::partUsage, "part usage")))
+              .add("GET", "/api/admin/reports/employee-performance", admin((req, p) -> report(req, Reports::employeePerformance, "employee performance")))
+              .add("GET", "/api/admin/reports/customer-activity", admin((req, p) -> report(req, Reports::customerActivity, "customer activity")))
+              // Employees see only their own row; admins see everyone.
+              .add("GET", "/api/admin/performance", Access.role("employee", (req, p) -> getPerformance(req.getSession())));
+    }
+
+    private static Router.Route admin(Router.Route route) {
+        return Access.role("admin", route);
+    }
+
+    private HttpResponse report(HttpRequest request, Report report, String name) {
+        ReportPeriod period;
+        try {
+            period = ReportPeriod.parse(request.getQueryParameter("period"), LocalDate.now());
+        } catch (IllegalArgumentException e) {
+            return badRequest(e.getMessage());
+        }
+
+        JsonWriter json = JsonWriter.obtain();
+        try {
+            report.write(period, json);
+        } catch (SQLException e) {
+            Log.error("Database error building " + name + " report", e);
+            json.release();
+            return error("Database error building " + name + " report");
+        }
+        return HttpResponse.json(200, json);
+    }
+
+    // Month to date, the same period the monthly performance_metrics rows cover.
+    private HttpResponse getPerformance(Session session) {
+        JsonWriter json = JsonWriter.obtain();
+        json.beginArray();
+        try {
+            for (Reports.EmployeeTotals employee : Reports.employees(ReportPeriod.monthToDate(LocalDate.now()))) {
+                if (!session.isAdmin() && employee.getEmployeeId() != session.getUserId()) {
+                    continue;
+                }
+                json.beginObject()
+                    .field("employeeId", employee.getEmployeeId())
+                    .field("employeeName", employee.getName())
+                    .field("jobsCompleted", employee.getJobsCompleted())
+                    .field("avgRating", employee.getRating())
+                    .field("efficiencyScore", employee.getEfficiencyScore())
+                    .endObject();
+            }
+        } catch (SQLException e) {
+            Log.error("Database error fetching performance", e);
+            json.release();
+            return error("Database error fetching performance");
+        }
+        json.endArray();
+        return HttpResponse.json(200, json);
+    }
+
+    private HttpResponse badRequest(String message) {
+        JsonWriter json = JsonWriter.obtain();
+        json.beginObject().field("error", message).endObject();
+        return HttpResponse.json(400, json);
+    }
+
+    private HttpResponse error(String message) {
+        JsonWriter json = JsonWriter.obtain();
+        json.beginObject().field("error", message).endObject();
+        return HttpResponse.json(500, json);
+    }
+}
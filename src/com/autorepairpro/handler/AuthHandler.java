@@ -1,82 +1,139 @@
 package com.autorepairpro.handler;
 
+import com.autorepairpro.auth.PasswordHasher;
+import com.autorepairpro.auth.SessionStore;
+import com.autorepairpro.cache.ReferenceDataCache;
 import com.autorepairpro.db.DatabaseConnector;
+import com.autorepairpro.json.JsonObject;
+import com.autorepairpro.json.JsonReader;
+import com.autorepairpro.json.JsonWriter;
+import com.autorepairpro.log.Log;
+import com.autorepairpro.search.SearchIndex;
+import com.autorepairpro.server.HttpRequest;
+import com.autorepairpro.server.HttpResponse;
+import com.autorepairpro.server.Router;
 import java.sql.*;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class AuthHandler {
-    public String handle(String method, String path, String body) {
-        if (path.equals("/api/auth/login") && method.equals("POST")) {
-            return login(body);
-        }
-        
-        // New registration endpoint
-        if (path.equals("/api/auth/register") && method.equals("POST")) {
-            return register(body);
-        }
-        
-        // Public endpoint to get all services (for booking)
-        if (path.equals("/api/services") && method.equals("GET")) {
-            return getAllServices();
-        }
-        
-        // Test endpoint to check database connection
-        if (path.equals("/api/test") && method.equals("GET")) {
-            return testDatabaseConnection();
-        }
-        
-        return "{\"error\":\"Auth route not found\"}";
+    private static final int MAX_FIELD_LENGTH = 1000;
+    /** The login lookup; the password hash is verified after the connection is returned. */
+    public static final String LOGIN_SQL =
+        "SELECT role, full_name, id, password FROM users WHERE username = ?";
+
+    public void registerRoutes(Router router) {
+        router.add("POST", "/api/auth/login", (req, p) -> login(req.getBody()))
+              .add("POST", "/api/auth/logout", (req, p) -> logout(req))
+              // New registration endpoint
+              .add("POST", "/api/auth/register", (req, p) -> register(req.getBody()))
+              // Public endpoint to get all services (for booking)
+              .add("GET", "/api/services", (req, p) -> getAllServices())
+              // Test endpoint to check database connection
+              .add("GET", "/api/test", (req, p) -> testDatabaseConnection());
     }
 
     // Existing login method
-    private String login(String body) {
-        Map<String, String> params = parseBody(body);
-        String username = params.get("username");
-        String password = params.get("password");
+    private HttpResponse login(byte[] body) {
+        JsonObject params = parseBody(body);
+        if (params == null) {
+            return error("Invalid JSON body");
+        }
+        String username = field(params, "username");
+        String password = field(params, "password");
 
         if (username == null || password == null) {
-            return "{\"error\":\"Username and password are required\"}";
+            return error("Username and password are required");
         }
 
-        String sql = "SELECT role, full_name, id FROM users WHERE username = ? AND password = ?";
+        // The connection is returned before hashing so a slow hash never holds a pooled connection.
+        int userId = 0;
+        String role = null;
+        String fullName = null;
+        String stored = null;
         try (Connection conn = DatabaseConnector.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+             PreparedStatement pstmt = conn.prepareStatement(LOGIN_SQL)) {
 
             pstmt.setString(1, username);
-            pstmt.setString(2, password); // In a real app, hash the password first!
-
             ResultSet rs = pstmt.executeQuery();
-
             if (rs.next()) {
-                String role = rs.getString("role");
-                String fullName = rs.getString("full_name");
-                int userId = rs.getInt("id");
-                // Successful login
-                return String.format(
-                    "{\"message\":\"Login successful\", \"role\":\"%s\", \"fullName\":\"%s\", \"userId\":%d}",
-                    role, fullName, userId);
-            } else {
-                // Failed login
-                return "{\"error\":\"Invalid credentials\"}";
+                userId = rs.getInt("id");
+                role = rs.getString("role");
+                fullName = rs.getString("full_name");
+                stored = rs.getString("password");
             }
         } catch (SQLException e) {
-            e.printStackTrace();
-            return "{\"error\":\"Database error during login\"}";
+            Log.error("Database error during login", e);
+            return error("Database error during login");
+        }
+
+        PasswordHasher.Result result;
+        try {
+            result = PasswordHasher.verify(password, stored);
+        } catch (PasswordHasher.BusyException e) {
+            Log.warn("Login rejected: " + e.getMessage());
+            return busy();
+        }
+        if (result == PasswordHasher.Result.INVALID) {
+            // Failed login
+            return error("Invalid credentials");
+        }
+        if (result == PasswordHasher.Result.VALID_NEEDS_REHASH) {
+            rehash(userId, password, stored);
+        }
+
+        // Successful login; the token goes back as a cookie for the dashboards and in the body for API clients.
+        String token = SessionStore.create(userId, role, fullName);
+        JsonWriter json = JsonWriter.obtain();
+        json.beginObject()
+            .field("message", "Login successful")
+            .field("role", role)
+            .field("fullName", fullName)
+            .field("userId", userId)
+            .field("token", token)
+            .endObject();
+        return HttpResponse.json(200, json).header("Set-Cookie", SessionStore.cookie(token));
+    }
+
+    // Upgrades a plaintext or outdated hash after a successful login. Only replaces the value that
+    // was verified, so a concurrent password change is never overwritten. Failure is not fatal.
+    private void rehash(int userId, String password, String previous) {
+        try {
+            String hash = PasswordHasher.hash(password);
+            String sql = "UPDATE users SET password = ? WHERE id = ? AND password = ?";
+            try (Connection conn = DatabaseConnector.getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, hash);
+                pstmt.setInt(2, userId);
+                pstmt.setString(3, previous);
+                pstmt.executeUpdate();
+            }
+        } catch (PasswordHasher.BusyException e) {
+            Log.debug("Skipped password rehash for user " + userId + ": " + e.getMessage());
+        } catch (SQLException e) {
+            Log.warn("Could not store rehashed password for user " + userId + ": " + e.getMessage());
         }
     }
     
+    private HttpResponse logout(HttpRequest request) {
+        SessionStore.invalidate(request);
+        JsonWriter json = JsonWriter.obtain();
+        json.beginObject().field("message", "Logged out").endObject();
+        return HttpResponse.json(200, json).header("Set-Cookie", SessionStore.expiredCookie());
+    }
+
     // New registration method
-    private String register(String body) {
-        Map<String, String> params = parseBody(body);
-        String username = params.get("username");
-        String password = params.get("password");
-        String fullName = params.get("fullName");
+    private HttpResponse register(byte[] body) {
+        JsonObject params = parseBody(body);
+        if (params == null) {
+            return error("Invalid JSON body");
+        }
+        String username = field(params, "username");
+        String password = field(params, "password");
+        String fullName = field(params, "fullName");
         
         if (username == null || password == null || fullName == null) {
-            return "{\"error\":\"Username, password, and full name are required\"}";
+            return error("Username, password, and full name are required");
         }
         
         // Check if username already exists
@@ -88,135 +145,126 @@ public class AuthHandler {
             ResultSet rs = checkStmt.executeQuery();
             
             if (rs.next()) {
-                return "{\"error\":\"Username already exists\"}";
+                return error("Username already exists");
             }
         } catch (SQLException e) {
-            e.printStackTrace();
-            return "{\"error\":\"Database error checking username\"}";
+            Log.error("Database error checking username", e);
+            return error("Database error checking username");
         }
         
+        String hash;
+        try {
+            hash = PasswordHasher.hash(password);
+        } catch (PasswordHasher.BusyException e) {
+            Log.warn("Registration rejected: " + e.getMessage());
+            return busy();
+        }
+
         // Insert new customer
         String sql = "INSERT INTO users (username, password, full_name, role) VALUES (?, ?, ?, 'customer')";
         try (Connection conn = DatabaseConnector.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             
             pstmt.setString(1, username);
-            pstmt.setString(2, password); // In production, hash this password
+            pstmt.setString(2, hash);
             pstmt.setString(3, fullName);
             
             int affectedRows = pstmt.executeUpdate();
             if (affectedRows > 0) {
                 ResultSet generatedKeys = pstmt.getGeneratedKeys();
                 if (generatedKeys.next()) {
-                    int userId = generatedKeys.getInt(1);
-                    return String.format(
-                        "{\"message\":\"Registration successful\", \"userId\":%d, \"role\":\"customer\", \"fullName\":\"%s\"}",
-                        userId, fullName);
+                    SearchIndex.customerChanged(generatedKeys.getInt(1));
+                    JsonWriter json = JsonWriter.obtain();
+                    json.beginObject()
+                        .field("message", "Registration successful")
+                        .field("userId", generatedKeys.getInt(1))
+                        .field("role", "customer")
+                        .field("fullName", fullName)
+                        .endObject();
+                    return HttpResponse.json(200, json);
                 }
             }
-            return "{\"error\":\"Failed to register user\"}";
+            return error("Failed to register user");
         } catch (SQLException e) {
-            e.printStackTrace();
-            return "{\"error\":\"Database error during registration\"}";
+            Log.error("Database error during registration", e);
+            return error("Database error during registration");
         }
     }
     
-    // Public services endpoint
-    private String getAllServices() {
-        String sql = "SELECT id, service_name, price, description FROM services WHERE is_active = true ORDER BY service_name";
-        StringBuilder jsonBuilder = new StringBuilder();
-        jsonBuilder.append("[");
-
-        try (Connection conn = DatabaseConnector.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql);
-             ResultSet rs = pstmt.executeQuery()) {
-            
-            boolean first = true;
-            while (rs.next()) {
-                if (!first) {
-                    jsonBuilder.append(",");
-                }
-                jsonBuilder.append("{");
-                jsonBuilder.append("\"id\":").append(rs.getInt("id")).append(",");
-                jsonBuilder.append("\"serviceName\":\"").append(escapeJson(rs.getString("service_name"))).append("\",");
-                jsonBuilder.append("\"price\":").append(rs.getBigDecimal("price")).append(",");
-                jsonBuilder.append("\"description\":\"").append(escapeJson(rs.getString("description") != null ? rs.getString("description") : "")).append("\"");
-                jsonBuilder.append("}");
-                first = false;
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return "{\"error\":\"Database error fetching services\"}";
+    // Public services endpoint, served from the reference data cache
+    private HttpResponse getAllServices() {
+        byte[] json = ReferenceDataCache.getServicesJson();
+        if (json == null) {
+            return error("Database error fetching services");
         }
-
-        jsonBuilder.append("]");
-        return jsonBuilder.toString();
+        return new HttpResponse(200, "OK", "application/json", json);
     }
 
     // Test database connection
-    private String testDatabaseConnection() {
+    private HttpResponse testDatabaseConnection() {
         try (Connection conn = DatabaseConnector.getConnection()) {
             if (conn != null && !conn.isClosed()) {
                 // Test a simple query
                 String sql = "SELECT COUNT(*) as user_count FROM users WHERE is_active = true";
+                JsonWriter json = JsonWriter.obtain();
+                json.beginObject()
+                    .field("status", "success")
+                    .field("message", "Database connection working");
                 try (PreparedStatement pstmt = conn.prepareStatement(sql);
                      ResultSet rs = pstmt.executeQuery()) {
                     if (rs.next()) {
-                        int userCount = rs.getInt("user_count");
-                        return "{\"status\":\"success\", \"message\":\"Database connection working\", \"userCount\":" + userCount + "}";
+                        json.field("userCount", rs.getInt("user_count"));
+                        json.name("pool");
+                        DatabaseConnector.getPoolStats().writeTo(json);
                     }
+                } catch (SQLException e) {
+                    json.release();
+                    throw e;
                 }
-                return "{\"status\":\"success\", \"message\":\"Database connection working\"}";
+                json.endObject();
+                return HttpResponse.json(200, json);
             } else {
-                return "{\"status\":\"error\", \"message\":\"Database connection failed\"}";
+                return status("error", "Database connection failed");
             }
         } catch (SQLException e) {
-            e.printStackTrace();
-            return "{\"status\":\"error\", \"message\":\"Database error: " + escapeJson(e.getMessage()) + "\"}";
+            Log.error("Database connection test failed", e);
+            return status("error", "Database error: " + e.getMessage());
         }
     }
 
-    // Utility method for parsing JSON-like body with improved validation
-    private Map<String, String> parseBody(String body) {
-        if (body == null || body.trim().isEmpty()) {
-            return new HashMap<>();
-        }
-        
-        // Simple JSON parsing for basic key-value pairs
-        Map<String, String> result = new HashMap<>();
-        body = body.trim();
-        
-        // Remove outer braces
-        if (body.startsWith("{") && body.endsWith("}")) {
-            body = body.substring(1, body.length() - 1);
-        }
-        
-        // Split by comma, but be careful about commas in values
-        String[] pairs = body.split(",(?=(?:[^\"]*\"[^\"]*\")*[^\"]*$)");
-        
-        for (String pair : pairs) {
-            String[] keyValue = pair.split(":", 2);
-            if (keyValue.length == 2) {
-                String key = keyValue[0].trim().replace("\"", "");
-                String value = keyValue[1].trim().replace("\"", "");
-                
-                // Basic input validation
-                if (key.length() > 0 && key.length() <= 100 && value.length() <= 1000) {
-                    result.put(key, value);
-                }
-            }
+    // Error responses from this handler have always been reported as 401.
+    private HttpResponse error(String message) {
+        JsonWriter json = JsonWriter.obtain();
+        json.beginObject().field("error", message).endObject();
+        return HttpResponse.json(401, json);
+    }
+
+    // The hashing pool is saturated; clients should retry shortly.
+    private HttpResponse busy() {
+        JsonWriter json = JsonWriter.obtain();
+        json.beginObject().field("error", "Server busy, please try again").endObject();
+        return HttpResponse.json(503, json).header("Retry-After", "1");
+    }
+
+        private HttpResponse status(String status, String message) {
+        JsonWriter json = JsonWriter.obtain();
+        json.beginObject().field("status", status).field("message", message).endObject();
+        return HttpResponse.json(401, json);
+    }
+
+    // Returns null if the body is not a valid JSON object.
+    private JsonObject parseBody(byte[] body) {
+        try {
+            return JsonReader.parseObject(body);
+        } catch (JsonReader.ParseException e) {
+            Log.warn("Invalid auth request body: " + e.getMessage());
+            return null;
         }
-        
-        return result;
     }
-    
-    // Utility method to escape JSON strings
-    private String escapeJson(String input) {
-        if (input == null) return "";
-        return input.replace("\\", "\\\\")
-                   .replace("\"", "\\\"")
-                   .replace("\n", "\\n")
-                   .replace("\r", "\\r")
-                   .replace("\t", "\\t");
+
+    // Basic input validation: over-long values are treated as missing.
+    private static String field(JsonObject params, String name) {
+        String value = params.getString(name);
+        return value != null && value.length() <= MAX_FIELD_LENGTH ? value : null;
     }
-}
\ No newline at end of file
+}
@@ -1,263 +1,219 @@
 package com.autorepairpro.handler;
 
+import com.autorepairpro.auth.Access;
+import com.autorepairpro.auth.Session;
+import com.autorepairpro.cache.ReferenceDataCache;
 import com.autorepairpro.db.DatabaseConnector;
+import com.autorepairpro.json.JsonObject;
+import com.autorepairpro.json.JsonReader;
+import com.autorepairpro.json.JsonWriter;
+import com.autorepairpro.log.Log;
+import com.autorepairpro.notes.JobNotes;
+import com.autorepairpro.reports.EmployeeStats;
+import com.autorepairpro.reports.ReportRollups;
+import com.autorepairpro.scheduling.BookingCalendar;
+import com.autorepairpro.scheduling.Dispatcher;
+import com.autorepairpro.scheduling.EmployeeSchedules;
+import com.autorepairpro.search.SearchIndex;
+import com.autorepairpro.server.HttpRequest;
+import com.autorepairpro.server.HttpResponse;
+import com.autorepairpro.server.Router;
 import java.sql.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 import java.io.*;
 
 public class CustomerHandler {
+    // Hot-path SQL lives in constants so each pooled connection prepares it once and reuses it.
+    // The listing SQL is assembled from these parts by projection and filters; see JobListQuery.
+    private static final String CUSTOMER_JOBS_SELECT =
+        "SELECT j.id as jobId, j.status, j.booking_date, j.total_cost, " +
+        "v.make, v.model, v.year, v.color, " +
+        "s.service_name, s.price, " +
+        "b.name as branchName, b.address as branchAddress, " +
+        "e.full_name as employeeName";
+    private static final String CUSTOMER_JOBS_FROM =
+        " FROM jobs j " +
+        "JOIN vehicles v ON j.vehicle_id = v.id " +
+        "JOIN services s ON j.service_id = s.id " +
+        "LEFT JOIN branches b ON j.branch_id = b.id " +
+        "LEFT JOIN users e ON j.assigned_employee_id = e.id " +
+        "WHERE j.customer_id = ?";
+    /** The customer's vehicles, newest first. */
+    public static final String VEHICLES_SQL =
+        "SELECT id, make, model, year, vin, license_plate, color, mileage, created_at " +
+        "FROM vehicles WHERE customer_id = ? ORDER BY created_at DESC";
+    // The booking screen shows at most two weeks at a time.
+    private static final int MAX_AVAILABILITY_DAYS = 14;
     
-    public String handleRequest(String path, String method, String requestBody) {
-        try {
-            String[] pathParts = path.split("/");
-            
-            if (pathParts.length < 4) {
-                return createErrorResponse("Invalid customer route", 400);
-            }
-            
-            String action = pathParts[3];
-            
-            switch (action) {
-                case "jobs":
-                    return handleJobs(pathParts, method, requestBody);
-                case "vehicles":
-                    return handleVehicles(pathParts, method, requestBody);
-                case "book":
-                    return handleBooking(method, requestBody);
-                case "bookings":
-                    return handleBookings(method, requestBody);
-                case "pay":
-                    return handlePayment(method, requestBody);
-                case "branches":
-                    return getBranches();
-                case "profile":
-                    return handleProfile(pathParts, method, requestBody);
-                default:
-                    return createErrorResponse("Customer route not found", 404);
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-            return createErrorResponse("Internal server error: " + e.getMessage(), 500);
-            }
-        }
+    public void registerRoutes(Router router) {
+        // Routes keyed by customer id are limited to that customer; branches are public reference data.
+        router.add("GET", "/api/customer/jobs/{customerId:int}", self((req, p) -> getJobs(p.getInt("customerId"), req)))
+              .add("GET", "/api/customer/vehicles/{customerId:int}", self((req, p) -> handleVehicles(p.getInt("customerId"), req.getMethod(), req.getBody())))
+              .add("POST", "/api/customer/vehicles/{customerId:int}", self((req, p) -> handleVehicles(p.getInt("customerId"), req.getMethod(), req.getBody())))
+              .add("POST", "/api/customer/book", customer((req, p) -> handleBooking(req.getBody())))
+              .add("POST", "/api/customer/bookings", customer((req, p) -> handleBookings(req.getBody(), req.getSession())))
+              .add("POST", "/api/customer/bookings/{jobId:int}/cancel", customer((req, p) -> cancelBooking(p.getInt("jobId"), req.getSession())))
+              .add("GET", "/api/customer/availability", customer((req, p) -> getAvailability(req)))
+              .add("POST", "/api/customer/pay", customer((req, p) -> handlePayment(req.getBody())))
+              .add("GET", "/api/customer/branches", (req, p) -> getBranches())
+              .add("GET", "/api/customer/profile/{customerId:int}", self((req, p) -> handleProfile(p.getInt("customerId"), req.getMethod(), req.getBody())))
+              .add("PUT", "/api/customer/profile/{customerId:int}", self((req, p) -> handleProfile(p.getInt("customerId"), req.getMethod(), req.getBody())));
+    }
+
+    private static Router.Route customer(Router.Route route) {
+        return Access.role("customer", route);
+    }
+
+    private static Router.Route self(Router.Route route) {
+        return Access.self("customer", "customerId", route);
+    }
         
-    private String handleJobs(String[] pathParts, String method, String requestBody) {
-        if (pathParts.length < 5) {
-            return createErrorResponse("Customer ID not provided", 400);
+    /**
+     * The customer's job listing for a query: the customer id binds first, then
+     * {@link JobListQuery#bind} from index 2.
+     */
+    public static String customerJobsSql(JobListQuery query) {
+        StringBuilder sql = new StringBuilder(CUSTOMER_JOBS_SELECT);
+        if (query.includes("notes")) {
+            sql.append(", ").append(JobNotes.LATEST_NOTE_SQL).append(" AS notes");
+        }
+        sql.append(CUSTOMER_JOBS_FROM);
+        query.appendTo(sql);
+        return sql.toString();
     }
-    
+
+    // One page of the customer's jobs, newest booking first; rows go straight from the result set into the writer.
+    private HttpResponse getJobs(int customerId, HttpRequest request) {
+        JobListQuery query;
         try {
-            int customerId = Integer.parseInt(pathParts[4]);
-            
-            try (Connection conn = DatabaseConnector.getConnection()) {
-                String sql = "SELECT j.id as jobId, j.status, j.booking_date, j.total_cost, j.notes, " +
-                           "v.make, v.model, v.year, v.color, " +
-                           "s.service_name, s.price, " +
-                           "b.name as branchName, b.address as branchAddress, " +
-                           "e.full_name as employeeName " +
-                     "FROM jobs j " +
-                     "JOIN vehicles v ON j.vehicle_id = v.id " +
-                     "JOIN services s ON j.service_id = s.id " +
-                           "JOIN branches b ON j.branch_id = b.id " +
-                           "LEFT JOIN users e ON j.assigned_employee_id = e.id " +
-                     "WHERE j.customer_id = ? " +
-                     "ORDER BY j.booking_date DESC";
+            query = JobListQuery.parse(request);
+        } catch (IllegalArgumentException e) {
+            return createErrorResponse(e.getMessage(), 400);
+        }
+
+        JsonWriter json = JsonWriter.obtain();
+        json.beginArray();
+        String nextCursor = null;
+
+        try (Connection conn = DatabaseConnector.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(customerJobsSql(query))) {
 
-                List<Map<String, Object>> jobs = new ArrayList<>();
-                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setInt(1, customerId);
+            query.bind(pstmt, 2);
             ResultSet rs = pstmt.executeQuery();
-            
+
+            int rows = 0;
+            int lastId = 0;
+            Timestamp lastBookingDate = null;
             while (rs.next()) {
-                        Map<String, Object> job = new HashMap<>();
-                        job.put("jobId", rs.getInt("jobId"));
-                        job.put("status", rs.getString("status"));
-                        job.put("bookingDate", rs.getTimestamp("booking_date").toString());
-                        job.put("totalCost", rs.getBigDecimal("total_cost"));
-                        job.put("notes", rs.getString("notes"));
-                        job.put("vehicle", rs.getString("make") + " " + rs.getString("model") + " (" + rs.getInt("year") + ")");
-                        job.put("vehicleColor", rs.getString("color"));
-                        job.put("service", rs.getString("service_name"));
-                        job.put("servicePrice", rs.getBigDecimal("price"));
-                        job.put("branchName", rs.getString("branchName"));
-                        job.put("branchAddress", rs.getString("branchAddress"));
-                        job.put("employeeName", rs.getString("employeeName"));
-                        jobs.add(job);
-                    }
+                if (rows == query.getLimit()) {
+                    nextCursor = JobListQuery.cursorAfter(lastBookingDate, lastId);
+                    break;
+                }
+                rows++;
+                lastId = rs.getInt("jobId");
+                lastBookingDate = rs.getTimestamp("booking_date");
+
+                json.beginObject();
+                if (query.includes("jobId")) json.field("jobId", lastId);
+                if (query.includes("status")) json.field("status", rs.getString("status"));
+                if (query.includes("bookingDate")) json.field("bookingDate", lastBookingDate);
+                if (query.includes("totalCost")) json.field("totalCost", rs.getBigDecimal("total_cost"));
+                if (query.includes("notes")) json.field("notes", rs.getString("notes"));
+                if (query.includes("vehicle")) {
+                    json.field("vehicle", rs.getString("make") + " " + rs.getString("model") + " (" + rs.getInt("year") + ")");
                 }
-                
-                return convertToJson(jobs);
+                if (query.includes("vehicleColor")) json.field("vehicleColor", rs.getString("color"));
+                if (query.includes("service")) json.field("service", rs.getString("service_name"));
+                if (query.includes("servicePrice")) json.field("servicePrice", rs.getBigDecimal("price"));
+                if (query.includes("branchName")) json.field("branchName", rs.getString("branchName"));
+                if (query.includes("branchAddress")) json.field("branchAddress", rs.getString("branchAddress"));
+                if (query.includes("employeeName")) json.field("employeeName", rs.getString("employeeName"));
+                json.endObject();
             }
-        } catch (NumberFormatException e) {
-            return createErrorResponse("Invalid customer ID format", 400);
         } catch (SQLException e) {
-            e.printStackTrace();
+            Log.error("Database error fetching customer jobs", e);
+            json.release();
             return createErrorResponse("Database error fetching customer jobs", 500);
         }
+
+        json.endArray();
+        HttpResponse response = HttpResponse.json(200, json);
+        if (nextCursor != null) {
+            response.header(JobListQuery.NEXT_CURSOR_HEADER, nextCursor)
+                    .header("Access-Control-Expose-Headers", JobListQuery.NEXT_CURSOR_HEADER);
+        }
+        return response;
     }
     
-    private String handleVehicles(String[] pathParts, String method, String requestBody) {
-        if (pathParts.length < 5) {
-            return createErrorResponse("Customer ID not provided", 400);
+    private HttpResponse handleVehicles(int customerId, String method, byte[] requestBody) {
+        if ("POST".equals(method)) {
+            return notImplemented("Adding vehicles");
         }
-        
         try {
-            int customerId = Integer.parseInt(pathParts[4]);
-            
             try (Connection conn = DatabaseConnector.getConnection()) {
                 if ("GET".equals(method)) {
-                    String sql = "SELECT id, make, model, year, vin, license_plate, color, mileage, created_at " +
-                               "FROM vehicles WHERE customer_id = ? ORDER BY created_at DESC";
-                    
-                    List<Map<String, Object>> vehicles = new ArrayList<>();
-                    try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    JsonWriter json = JsonWriter.obtain();
+                    json.beginArray();
+                    try (PreparedStatement pstmt = conn.prepareStatement(VEHICLES_SQL)) {
                         pstmt.setInt(1, customerId);
                         ResultSet rs = pstmt.executeQuery();
                         
                         while (rs.next()) {
-                            Map<String, Object> vehicle = new HashMap<>();
-                            vehicle.put("id", rs.getInt("id"));
-                            vehicle.put("make", rs.getString("make"));
-                            vehicle.put("model", rs.getString("model"));
-                            vehicle.put("year", rs.getInt("year"));
-                            vehicle.put("vin", rs.getString("vin"));
-                            vehicle.put("licensePlate", rs.getString("license_plate"));
-                            vehicle.put("color", rs.getString("color"));
-                            vehicle.put("mileage", rs.getInt("mileage"));
-                            vehicle.put("createdAt", rs.getTimestamp("created_at").toString());
-                            vehicles.add(vehicle);
+                            json.beginObject();
+                            json.field("id", rs.getInt("id"));
+                            json.field("make", rs.getString("make"));
+                            json.field("model", rs.getString("model"));
+                            json.field("year", rs.getInt("year"));
+                            json.field("vin", rs.getString("vin"));
+                            json.field("licensePlate", rs.getString("license_plate"));
+                            json.field("color", rs.getString("color"));
+                            json.field("mileage", rs.getInt("mileage"));
+                            json.field("createdAt", rs.getTimestamp("created_at"));
+                            json.endObject();
                         }
+                    } catch (SQLException e) {
+                        json.release();
+                        throw e;
                     }
                     
-                    return convertToJson(vehicles);
-                } else if ("POST".equals(method)) {
-                    return addVehicle(conn, customerId, requestBody);
+                    json.endArray();
+                    return HttpResponse.json(200, json);
                 }
                 return createErrorResponse("Method not allowed", 405);
             }
-        } catch (NumberFormatException e) {
-            return createErrorResponse("Invalid customer ID format", 400);
         } catch (SQLException e) {
-            e.printStackTrace();
+            Log.error("Database error handling vehicles", e);
             return createErrorResponse("Database error handling vehicles", 500);
         }
     }
     
-    private String addVehicle(Connection conn, int customerId, String requestBody) throws SQLException {
-        // Parse request body and add vehicle
-        // Implementation would parse JSON and insert into database
-        return createSuccessResponse("Vehicle added successfully");
-    }
-    
-    private String handleBooking(String method, String requestBody) {
-        if (!"POST".equals(method)) {
-            return createErrorResponse("Method not allowed", 405);
-        }
-        
-        try (Connection conn = DatabaseConnector.getConnection()) {
-            // Parse request body and create booking
-            // Implementation would parse JSON and insert into database
-            return createSuccessResponse("Appointment booked successfully");
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return createErrorResponse("Database error booking appointment", 500);
-        }
+    private HttpResponse handleBooking(byte[] requestBody) {
+        return notImplemented("Booking through /api/customer/book");
     }
     
-    private String handlePayment(String method, String requestBody) {
-        if (!"POST".equals(method)) {
-            return createErrorResponse("Method not allowed", 405);
-        }
-        
-        try (Connection conn = DatabaseConnector.getConnection()) {
-            // Parse request body and process payment
-            // Implementation would parse JSON and insert into database
-            return createSuccessResponse("Payment processed successfully");
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return createErrorResponse("Database error processing payment", 500);
-        }
+    private HttpResponse handlePayment(byte[] requestBody) {
+        return notImplemented("Payments");
     }
     
-    private String getBranches() {
-        try (Connection conn = DatabaseConnector.getConnection()) {
-            String sql = "SELECT b.id, b.name, b.address, b.latitude, b.longitude, b.rating, " +
-                        "GROUP_CONCAT(DISTINCT bh.day_of_week, ': ', " +
-                        "CASE WHEN bh.is_closed THEN 'Closed' " +
-                        "ELSE CONCAT(TIME_FORMAT(bh.open_time, '%H:%i'), '-', TIME_FORMAT(bh.close_time, '%H:%i')) " +
-                        "END ORDER BY FIELD(bh.day_of_week, 'Monday', 'Tuesday', 'Wednesday', 'Thursday', 'Friday', 'Saturday', 'Sunday')) as hours, " +
-                        "GROUP_CONCAT(DISTINCT s.service_name ORDER BY s.service_name) as services " +
-                        "FROM branches b " +
-                        "LEFT JOIN business_hours bh ON b.id = bh.branch_id " +
-                        "LEFT JOIN services s ON s.is_active = true " +
-                        "WHERE b.is_active = true " +
-                        "GROUP BY b.id " +
-                        "ORDER BY b.name";
-            
-            List<Map<String, Object>> branches = new ArrayList<>();
-            try (PreparedStatement pstmt = conn.prepareStatement(sql);
-                 ResultSet rs = pstmt.executeQuery()) {
-                
-                while (rs.next()) {
-                    Map<String, Object> branch = new HashMap<>();
-                    branch.put("id", rs.getInt("id"));
-                    branch.put("name", rs.getString("name"));
-                    branch.put("address", rs.getString("address"));
-                    branch.put("latitude", rs.getBigDecimal("latitude"));
-                    branch.put("longitude", rs.getBigDecimal("longitude"));
-                    branch.put("rating", rs.getBigDecimal("rating"));
-                    branch.put("hours", rs.getString("hours"));
-                    
-                    // Parse services string into array
-                    String servicesStr = rs.getString("services");
-                    if (servicesStr != null) {
-                        String[] services = servicesStr.split(",");
-                        branch.put("services", Arrays.asList(services));
-            } else {
-                        branch.put("services", new ArrayList<>());
-                    }
-                    
-                    // Get contact information
-                    branch.put("contact", getBranchContact(conn, rs.getInt("id")));
-                    
-                    branches.add(branch);
-            }
-            }
-            
-            return convertToJson(branches);
-        } catch (SQLException e) {
-            e.printStackTrace();
+    // Branches, hours, services and contacts come from the reference data cache, not per-request joins.
+    private HttpResponse getBranches() {
+        byte[] json = ReferenceDataCache.getBranchesJson();
+        if (json == null) {
             return createErrorResponse("Database error fetching branches", 500);
         }
+        return new HttpResponse(200, "OK", "application/json", json);
     }
     
-    private Map<String, String> getBranchContact(Connection conn, int branchId) throws SQLException {
-        String sql = "SELECT contact_type, contact_value FROM contact_info " +
-                    "WHERE branch_id = ? AND is_active = true AND is_primary = true";
-
-        Map<String, String> contact = new HashMap<>();
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setInt(1, branchId);
-            ResultSet rs = pstmt.executeQuery();
-            
-            while (rs.next()) {
-                String type = rs.getString("contact_type");
-                String value = rs.getString("contact_value");
-                contact.put(type, value);
-        }
-        }
-        
-        return contact;
-    }
-    
-    private String handleProfile(String[] pathParts, String method, String requestBody) {
-        if (pathParts.length < 5) {
-            return createErrorResponse("Customer ID not provided", 400);
+    private HttpResponse handleProfile(int customerId, String method, byte[] requestBody) {
+        if ("PUT".equals(method)) {
+            return notImplemented("Updating the profile");
         }
-        
         try {
-            int customerId = Integer.parseInt(pathParts[4]);
-            
             try (Connection conn = DatabaseConnector.getConnection()) {
                 if ("GET".equals(method)) {
                     String sql = "SELECT id, username, full_name, email, phone, created_at " +
@@ -268,186 +224,265 @@ public class CustomerHandler {
                         ResultSet rs = pstmt.executeQuery();
                         
                         if (rs.next()) {
-                            Map<String, Object> profile = new HashMap<>();
-                            profile.put("id", rs.getInt("id"));
-                            profile.put("username", rs.getString("username"));
-                            profile.put("fullName", rs.getString("full_name"));
-                            profile.put("email", rs.getString("email"));
-                            profile.put("phone", rs.getString("phone"));
-                            profile.put("createdAt", rs.getTimestamp("created_at").toString());
-                            
-                            return convertToJson(Collections.singletonList(profile));
+                            // Kept as a one-element array; the dashboard reads profile[0].
+                            JsonWriter json = JsonWriter.obtain();
+                            json.beginArray().beginObject()
+                                .field("id", rs.getInt("id"))
+                                .field("username", rs.getString("username"))
+                                .field("fullName", rs.getString("full_name"))
+                                .field("email", rs.getString("email"))
+                                .field("phone", rs.getString("phone"))
+                                .field("createdAt", rs.getTimestamp("created_at"))
+                                .endObject().endArray();
+                            return HttpResponse.json(200, json);
                         } else {
                             return createErrorResponse("Customer not found", 404);
                         }
                     }
-                } else if ("PUT".equals(method)) {
-                    return updateProfile(conn, customerId, requestBody);
                 }
                 return createErrorResponse("Method not allowed", 405);
             }
-        } catch (NumberFormatException e) {
-            return createErrorResponse("Invalid customer ID format", 400);
         } catch (SQLException e) {
-            e.printStackTrace();
+            Log.error("Database error handling profile", e);
             return createErrorResponse("Database error handling profile", 500);
         }
     }
     
-    private String updateProfile(Connection conn, int customerId, String requestBody) throws SQLException {
-        // Parse request body and update profile
-        // Implementation would parse JSON and update database
-        return createSuccessResponse("Profile updated successfully");
-    }
-    
     // Utility methods
-    private String convertToJson(List<Map<String, Object>> data) {
-        StringBuilder json = new StringBuilder("[");
-        for (int i = 0; i < data.size(); i++) {
-            if (i > 0) json.append(",");
-            json.append("{");
-            Map<String, Object> item = data.get(i);
-            int j = 0;
-            for (Map.Entry<String, Object> entry : item.entrySet()) {
-                if (j > 0) json.append(",");
-                json.append("\"").append(entry.getKey()).append("\":");
-                if (entry.getValue() instanceof String) {
-                    json.append("\"").append(entry.getValue()).append("\"");
-                } else if (entry.getValue() instanceof List) {
-                    @SuppressWarnings("unchecked")
-                    List<?> list = (List<?>) entry.getValue();
-                    json.append(convertListToJson(list));
-                } else if (entry.getValue() instanceof Map) {
-                    @SuppressWarnings("unchecked")
-                    Map<String, Object> map = (Map<String, Object>) entry.getValue();
-                    json.append(convertMapToJson(map));
-                } else {
-                    json.append(entry.getValue());
-                }
-                j++;
-            }
-            json.append("}");
-        }
-        json.append("]");
-        return json.toString();
-    }
-    
-    private String convertListToJson(List<?> list) {
-        StringBuilder json = new StringBuilder("[");
-        for (int i = 0; i < list.size(); i++) {
-            if (i > 0) json.append(",");
-            json.append("\"").append(list.get(i)).append("\"");
-        }
-        json.append("]");
-        return json.toString();
-    }
-    
-    private String convertMapToJson(Map<String, Object> map) {
-        StringBuilder json = new StringBuilder("{");
-        int i = 0;
-        for (Map.Entry<String, Object> entry : map.entrySet()) {
-            if (i > 0) json.append(",");
-            json.append("\"").append(entry.getKey()).append("\":\"");
-            json.append(entry.getValue()).append("\"");
-            i++;
-        }
-        json.append("}");
-        return json.toString();
+    private HttpResponse createSuccessResponse(String message) {
+        JsonWriter json = JsonWriter.obtain();
+        json.beginObject()
+            .field("status", "success")
+            .field("message", message)
+            .endObject();
+        return HttpResponse.json(200, json);
     }
-    
-    private String createSuccessResponse(String message) {
-        return "{\"status\":\"success\",\"message\":\"" + message + "\"}";
+
+    // Endpoints the dashboard calls that have no server side yet; better an honest 501 than a fake success.
+    private HttpResponse notImplemented(String what) {
+        return createErrorResponse(what + " is not implemented yet", 501);
     }
     
-         private String createErrorResponse(String message, int statusCode) {
-         return "{\"status\":\"error\",\"message\":\"" + message + "\",\"code\":" + statusCode + "}";
+    private HttpResponse createErrorResponse(String message, int statusCode) {
+        JsonWriter json = JsonWriter.obtain();
+        json.beginObject()
+            .field("status", "error")
+            .field("message", message)
+            .field("code", statusCode)
+            .endObject();
+        return HttpResponse.json(statusCode, json);
     }
 
     // --- NEW: Handle /api/customer/bookings ---
-    private String handleBookings(String method, String requestBody) {
-        if (!"POST".equals(method)) {
-            return createErrorResponse("Method not allowed", 405);
+    private HttpResponse handleBookings(byte[] requestBody, Session session) {
+        // Parse JSON body before taking a pooled connection
+        JsonObject data;
+        try {
+            data = JsonReader.parseObject(requestBody);
+        } catch (JsonReader.ParseException e) {
+            return createErrorResponse("Invalid JSON body", 400);
+        }
+        // Validate required fields
+        Integer customerId = data.getInteger("customerId");
+        Integer vehicleId = data.getInteger("vehicleId");
+        Integer serviceId = data.getInteger("serviceId");
+        Integer branchId = data.getInteger("branchId");
+        String bookingDate = data.getString("bookingDate");
+        String notes = data.has("notes") ? data.getString("notes") : "";
+        if (customerId == null || vehicleId == null || serviceId == null || branchId == null || bookingDate == null || bookingDate.isEmpty()) {
+            return createErrorResponse("Missing required booking fields", 400);
+        }
+        if (notes != null && notes.length() > JobNotes.MAX_LENGTH) {
+            return createErrorResponse("Notes must be at most " + JobNotes.MAX_LENGTH + " characters", 400);
+        }
+        // Customers can only book for themselves.
+        if (!session.isAdmin() && session.getUserId() != customerId) {
+            return createErrorResponse("Forbidden", 403);
+        }
+        LocalDateTime start;
+        try {
+            // Accept 'YYYY-MM-DD HH:MM', 'YYYY-MM-DDTHH:MM' and either with seconds
+            start = LocalDateTime.parse(bookingDate.trim().replace(' ', 'T'));
+        } catch (DateTimeParseException e) {
+            return createErrorResponse("bookingDate must look like 2024-05-01T09:30", 400);
+        }
+
+        // The calendar holds the slots first, so concurrent bookings cannot both take the last bay.
+        BookingCalendar.Reservation reservation;
+        try {
+            reservation = BookingCalendar.reserve(branchId, serviceId, start);
+        } catch (SQLException e) {
+            Log.error("Database error loading booking calendar", e);
+            return createErrorResponse("Database error booking appointment", 500);
         }
+        if (reservation == null) {
+            return createErrorResponse("Unknown branch or service", 400);
+        }
+        switch (reservation.getStatus()) {
+            case PAST:
+                return createErrorResponse("Booking time is in the past", 400);
+            case TOO_FAR:
+                return createErrorResponse("Bookings can be made at most " + BookingCalendar.getHorizonDays() + " days ahead", 400);
+            case CLOSED:
+                return createErrorResponse("The branch is not open for the whole service at that time", 409);
+            case FULL:
+                return createErrorResponse("That time is no longer available", 409);
+            default:
+                break;
+        }
+
+        // Assigned up front to the least loaded technician who can work at the branch, if any. The
+        // duration comes with the reservation, so a cache reload meanwhile cannot lose the service.
+        Dispatcher.Pick pick = Dispatcher.pick(branchId, reservation.getEstimatedMinutes(), start);
+
+        int jobId;
         try (Connection conn = DatabaseConnector.getConnection()) {
-            // Parse JSON body
-            Map<String, Object> data = parseJson(requestBody);
-            if (data == null) {
-                return createErrorResponse("Invalid JSON body", 400);
-            }
-            // Validate required fields
-            Integer customerId = parseIntSafe(data.get("customerId"));
-            Integer vehicleId = parseIntSafe(data.get("vehicleId"));
-            Integer serviceId = parseIntSafe(data.get("serviceId"));
-            Integer branchId = parseIntSafe(data.get("branchId"));
-            String bookingDate = (String) data.get("bookingDate");
-            String notes = (String) data.getOrDefault("notes", "");
-            if (customerId == null || vehicleId == null || serviceId == null || branchId == null || bookingDate == null || bookingDate.isEmpty()) {
-                return createErrorResponse("Missing required booking fields", 400);
-            }
-            // Insert new job (appointment)
-            String sql = "INSERT INTO jobs (customer_id, vehicle_id, service_id, branch_id, status, booking_date, notes) VALUES (?, ?, ?, ?, 'Booked', ?, ?)";
-            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            // Insert new job (appointment) and the customer's note, if any, in one transaction
+            String sql = "INSERT INTO jobs (customer_id, vehicle_id, service_id, branch_id, assigned_employee_id, status, booking_date) VALUES (?, ?, ?, ?, ?, 'Booked', ?)";
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
                 pstmt.setInt(1, customerId);
                 pstmt.setInt(2, vehicleId);
                 pstmt.setInt(3, serviceId);
                 pstmt.setInt(4, branchId);
-                pstmt.setString(5, bookingDate.replace('T', ' ')); // Accept both 'YYYY-MM-DD HH:MM' and 'YYYY-MM-DDTHH:MM'
-                pstmt.setString(6, notes);
-                int rows = pstmt.executeUpdate();
-                if (rows > 0) {
-                    return createSuccessResponse("Appointment booked successfully");
+                if (pick.getEmployeeId() != 0) {
+                    pstmt.setInt(5, pick.getEmployeeId());
                 } else {
-                    return createErrorResponse("Failed to book appointment", 500);
+                    pstmt.setNull(5, Types.INTEGER);
+                }
+                pstmt.setTimestamp(6, Timestamp.valueOf(start));
+                pstmt.executeUpdate();
+                try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                    keys.next();
+                    jobId = keys.getInt(1);
                 }
+                if (notes != null && !notes.trim().isEmpty()) {
+                    JobNotes.append(conn, jobId, session.getUserId(), notes);
+                }
+                conn.commit();
+                reservation.confirm(jobId);
+                pick.confirm(jobId);
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
             }
         } catch (SQLException e) {
-            e.printStackTrace();
+            Log.error("Database error booking appointment", e);
             return createErrorResponse("Database error booking appointment", 500);
+        } finally {
+            // No-ops once confirmed; otherwise give the slots and the technician's time back.
+            reservation.release();
+            pick.release();
         }
+
+        EmployeeStats.changed(EmployeeStats.JobState.of(customerId, 0, "Booked"),
+            EmployeeStats.JobState.of(customerId, pick.getEmployeeId(), "Booked"));
+        EmployeeSchedules.jobChanged(jobId, pick.getEmployeeId());
+        SearchIndex.jobChanged(jobId);
+        // Bookings are counted on the day they are made, not the day booked for.
+        ReportRollups.markDirty(LocalDate.now());
+        return createSuccessResponse("Appointment booked successfully");
     }
 
-    // --- Helper: Parse JSON string to Map ---
-    private Map<String, Object> parseJson(String json) {
+    // Start times the service can be booked at a branch, for up to two weeks of days.
+    private HttpResponse getAvailability(HttpRequest request) {
+        int branchId;
+        int serviceId;
+        LocalDate from;
+        int days;
         try {
-            // Use basic parsing (no external libraries)
-            // Only works for flat JSON objects with string/number values
-            Map<String, Object> map = new HashMap<>();
-            json = json.trim();
-            if (json.startsWith("{") && json.endsWith("}")) {
-                json = json.substring(1, json.length() - 1);
-                String[] pairs = json.split(",");
-                for (String pair : pairs) {
-                    String[] kv = pair.split(":", 2);
-                    if (kv.length == 2) {
-                        String key = kv[0].trim().replaceAll("^\"|\"$", "");
-                        String value = kv[1].trim();
-                        if (value.startsWith("\"") && value.endsWith("\"")) {
-                            value = value.substring(1, value.length() - 1);
-                            map.put(key, value);
-                        } else if (value.matches("-?\\d+")) {
-                            map.put(key, Integer.parseInt(value));
-                        } else {
-                            map.put(key, value);
-                        }
+            branchId = Integer.parseInt(required(request, "branchId"));
+            serviceId = Integer.parseInt(required(request, "serviceId"));
+            String date = request.getQueryParameter("date");
+            from = date != null ? LocalDate.parse(date) : LocalDate.now();
+            String daysParam = request.getQueryParameter("days");
+            days = daysParam != null ? Integer.parseInt(daysParam) : 1;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return createErrorResponse("branchId and serviceId are required; date is YYYY-MM-DD and days a number", 400);
+        }
+        if (days < 1 || days > MAX_AVAILABILITY_DAYS) {
+            return createErrorResponse("days must be between 1 and " + MAX_AVAILABILITY_DAYS, 400);
+        }
+
+        List<BookingCalendar.DayAvailability> availability;
+        try {
+            availability = BookingCalendar.availability(branchId, serviceId, from, days);
+        } catch (SQLException e) {
+            Log.error("Database error loading booking calendar", e);
+            return createErrorResponse("Database error fetching availability", 500);
+        }
+        if (availability == null) {
+            return createErrorResponse("Unknown branch or service", 404);
+        }
+
+        JsonWriter json = JsonWriter.obtain();
+        json.beginObject()
+            .field("branchId", branchId)
+            .field("serviceId", serviceId)
+            .field("slotMinutes", BookingCalendar.SLOT_MINUTES);
+        json.name("days").beginArray();
+        for (BookingCalendar.DayAvailability day : availability) {
+            json.beginObject()
+                .field("date", day.getDay().toString())
+                .field("open", day.isOpen());
+            json.name("slots").beginArray();
+            for (LocalTime time : day.getStarts()) {
+                json.value(time.toString());
+            }
+            json.endArray().endObject();
+        }
+        json.endArray().endObject();
+        return HttpResponse.json(200, json);
+    }
+
+    // Only bookings that have not been started can be cancelled, and only by their customer.
+    private HttpResponse cancelBooking(int jobId, Session session) {
+        EmployeeStats.JobState before;
+        EmployeeStats.JobState after;
+        try (Connection conn = DatabaseConnector.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                before = EmployeeStats.lockJob(conn, jobId);
+                if (before == null || (!session.isAdmin() && before.getCustomerId() != session.getUserId())) {
+                    conn.rollback();
+                    return createErrorResponse("No booking that can be cancelled", 404);
+                }
+                try (PreparedStatement pstmt = conn.prepareStatement(
+                        "UPDATE jobs SET status = 'Cancelled' WHERE id = ? AND status = 'Booked'")) {
+                    pstmt.setInt(1, jobId);
+                    if (pstmt.executeUpdate() == 0) {
+                        conn.rollback();
+                        return createErrorResponse("Only bookings that have not started can be cancelled", 409);
                     }
                 }
-                return map;
+                after = EmployeeStats.readJob(conn, jobId);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
             }
-        } catch (Exception e) {
-            // Ignore parse errors
+        } catch (SQLException e) {
+            Log.error("Database error cancelling booking", e);
+            return createErrorResponse("Database error cancelling booking", 500);
         }
-        return null;
+        BookingCalendar.cancel(jobId);
+        Dispatcher.statusChanged(jobId, "Cancelled");
+        EmployeeStats.changed(before, after);
+        EmployeeSchedules.jobChanged(jobId, before.getEmployeeId());
+        SearchIndex.jobChanged(jobId);
+        ReportRollups.markDirty(LocalDate.now());
+        return createSuccessResponse("Booking cancelled");
     }
 
-    // --- Helper: Parse Integer safely ---
-    private Integer parseIntSafe(Object obj) {
-        if (obj == null) return null;
-        try {
-            if (obj instanceof Integer) return (Integer) obj;
-            if (obj instanceof String) return Integer.parseInt((String) obj);
-        } catch (Exception e) {
-            // Ignore
+    private static String required(HttpRequest request, String name) {
+        String value = request.getQueryParameter(name);
+        if (value == null) {
+            throw new IllegalArgumentException(name + " is required");
         }
-        return null;
+        return value;
     }
-}
\ No newline at end of file
+}
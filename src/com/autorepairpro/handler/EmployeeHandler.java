@@ -1,237 +1,309 @@
 package com.autorepairpro.handler;
 
+import com.autorepairpro.auth.Access;
 import com.autorepairpro.db.DatabaseConnector;
+import com.autorepairpro.events.ChangeEvent;
+import com.autorepairpro.events.EventBus;
+import com.autorepairpro.inventory.InventoryEngine;
+import com.autorepairpro.json.JsonObject;
+import com.autorepairpro.json.JsonReader;
+import com.autorepairpro.json.JsonWriter;
+import com.autorepairpro.log.Log;
+import com.autorepairpro.notes.JobNotes;
+import com.autorepairpro.reports.EmployeeStats;
+import com.autorepairpro.reports.ReportRollups;
+import com.autorepairpro.scheduling.Dispatcher;
+import com.autorepairpro.scheduling.EmployeeSchedules;
+import com.autorepairpro.search.SearchIndex;
+import com.autorepairpro.server.HttpRequest;
+import com.autorepairpro.server.HttpResponse;
+import com.autorepairpro.server.Router;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.sql.*;
-import java.util.HashMap;
-import java.util.Map;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class EmployeeHandler {
-    public String handle(String method, String path, String body) {
-        // Get assigned jobs
-        if (path.matches("/api/employee/jobs/\\d+") && method.equals("GET")) {
-            try {
-                int employeeId = Integer.parseInt(path.substring(path.lastIndexOf('/') + 1));
-                return getAssignedJobs(employeeId);
-            } catch (NumberFormatException e) {
-                return "{\"error\":\"Invalid employee ID format\"}";
-            }
-        }
-        
-        // Update job status
-        if (path.matches("/api/employee/jobs/\\d+/status") && method.equals("PUT")) {
-            try {
-                String[] pathParts = path.split("/");
-                int jobId = Integer.parseInt(pathParts[4]);
-                return updateJobStatus(jobId, body);
-            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
-                return "{\"error\":\"Invalid job ID format\"}";
-            }
-        }
-        
-        // Use inventory for a job
-        if (path.matches("/api/employee/jobs/\\d+/inventory") && method.equals("POST")) {
-            try {
-                String[] pathParts = path.split("/");
-                int jobId = Integer.parseInt(pathParts[4]);
-                return useInventoryForJob(jobId, body);
-            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
-                return "{\"error\":\"Invalid job ID format\"}";
-            }
-        }
-        
-        // Get job details including used parts
-        if (path.matches("/api/employee/jobs/\\d+/details") && method.equals("GET")) {
-            try {
-                String[] pathParts = path.split("/");
-                int jobId = Integer.parseInt(pathParts[4]);
-                return getJobDetails(jobId);
-            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
-                return "{\"error\":\"Invalid job ID format\"}";
-            }
-        }
-        
-        // Get employee profile
-        if (path.matches("/api/employee/profile/\\d+") && method.equals("GET")) {
-            try {
-                int employeeId = Integer.parseInt(path.substring(path.lastIndexOf('/') + 1));
-                return getEmployeeProfile(employeeId);
-            } catch (NumberFormatException e) {
-                return "{\"error\":\"Invalid employee ID format\"}";
-            }
-        }
-        
-        // Update employee profile
-        if (path.matches("/api/employee/profile/\\d+") && method.equals("PUT")) {
-            try {
-                int employeeId = Integer.parseInt(path.substring(path.lastIndexOf('/') + 1));
-                return updateEmployeeProfile(employeeId, body);
-            } catch (NumberFormatException e) {
-                return "{\"error\":\"Invalid employee ID format\"}";
-            }
-        }
-        
-        // Get employee statistics
-        if (path.matches("/api/employee/stats/\\d+") && method.equals("GET")) {
-            try {
-                int employeeId = Integer.parseInt(path.substring(path.lastIndexOf('/') + 1));
-                return getEmployeeStats(employeeId);
-            } catch (NumberFormatException e) {
-                return "{\"error\":\"Invalid employee ID format\"}";
-            }
+    // Hot-path SQL lives in constants so each pooled connection prepares it once and reuses it.
+    // The listing SQL is assembled from these parts by projection and filters; see JobListQuery.
+    private static final String ASSIGNED_JOBS_SELECT =
+        "SELECT j.id, u.full_name as customer_name, u.phone as customer_phone, " +
+        "v.make, v.model, v.year, v.vin, v.color, v.license_plate, " +
+        "s.service_name, s.estimated_duration, " +
+        "j.status, j.booking_date, j.estimated_completion_date, j.actual_completion_date, " +
+        "j.total_cost, j.labor_cost, j.parts_cost, " +
+        "b.name as branch_name, b.address as branch_address";
+    private static final String ASSIGNED_JOBS_FROM =
+        " FROM jobs j " +
+        "JOIN users u ON j.customer_id = u.id " +
+        "JOIN vehicles v ON j.vehicle_id = v.id " +
+        "JOIN services s ON j.service_id = s.id " +
+        "LEFT JOIN branches b ON j.branch_id = b.id " +
+        "WHERE j.assigned_employee_id = ?";
+    /** One job with its customer, vehicle, service and branch. */
+    public static final String JOB_DETAILS_SQL =
+        "SELECT j.*, u.full_name as customer_name, u.phone as customer_phone, " +
+        "v.make, v.model, v.year, v.vin, v.color, v.license_plate, " +
+        "s.service_name, s.description as service_description, " +
+        "b.name as branch_name, b.address as branch_address " +
+        "FROM jobs j " +
+        "JOIN users u ON j.customer_id = u.id " +
+        "JOIN vehicles v ON j.vehicle_id = v.id " +
+        "JOIN services s ON j.service_id = s.id " +
+        "LEFT JOIN branches b ON j.branch_id = b.id " +
+        "WHERE j.id = ?";
+    /** An employee's job counts, read directly until the in-memory counters have loaded. */
+    public static final String STATS_SQL =
+        "SELECT " +
+        "COUNT(*) as totalJobs, " +
+        "SUM(CASE WHEN status = 'Completed' THEN 1 ELSE 0 END) as completedJobs, " +
+        "SUM(CASE WHEN status = 'In Progress' THEN 1 ELSE 0 END) as activeJobs, " +
+        "SUM(CASE WHEN status = 'Booked' THEN 1 ELSE 0 END) as bookedJobs, " +
+        "AVG(CASE WHEN actual_completion_date IS NOT NULL THEN TIMESTAMPDIFF(MINUTE, booking_date, actual_completion_date) END) as avgCompletionTime " +
+        "FROM jobs WHERE assigned_employee_id = ?";
+    /** Parts in stock for the job screen. */
+    public static final String AVAILABLE_INVENTORY_SQL =
+        "SELECT id, part_name, part_number, quantity, price_per_unit, category, supplier FROM inventory " +
+        "WHERE quantity > 0 AND is_active = TRUE ORDER BY category, part_name";
+
+    // One fixed statement per status instead of building the SQL per request.
+    private static final String UPDATE_STATUS_SQL =
+        "UPDATE jobs SET status = ? WHERE id = ?";
+    private static final String COMPLETE_JOB_SQL =
+        "UPDATE jobs SET status = ?, actual_completion_date = NOW() WHERE id = ?";
+    // Who a job's change events go to; only looked up while someone is listening.
+    private static final String JOB_AUDIENCE_SQL =
+        "SELECT customer_id, assigned_employee_id FROM jobs WHERE id = ?";
+    private static final String JOB_EXISTS_SQL =
+        "SELECT 1 FROM jobs WHERE id = ?";
+    // A collision repair uses up to a few dozen parts; this leaves room without allowing unbounded transactions.
+    private static final int MAX_BATCH_ITEMS = 100;
+    private static final int MAX_SEARCH_LENGTH = 100;
+    private static final int DEFAULT_SEARCH_LIMIT = 20;
+    private static final int MAX_SEARCH_LIMIT = 100;
+    private static final int DEFAULT_NOTES_LIMIT = 20;
+    private static final int MAX_NOTES_LIMIT = 100;
+
+    public void registerRoutes(Router router) {
+        // Routes keyed by employee id are limited to that employee; job routes to any employee.
+        router.add("GET", "/api/employee/jobs/{employeeId:int}", self((req, p) -> getAssignedJobs(p.getInt("employeeId"), req)))
+              .add("PUT", "/api/employee/jobs/{jobId:int}/status", employee((req, p) -> updateJobStatus(p.getInt("jobId"), req.getSession().getUserId(), req.getBody())))
+              .add("POST", "/api/employee/jobs/{jobId:int}/inventory", employee((req, p) -> useInventoryForJob(p.getInt("jobId"), req.getBody())))
+              .add("POST", "/api/employee/jobs/{jobId:int}/inventory/batch", employee((req, p) -> useInventoryBatch(p.getInt("jobId"), req.getBody())))
+              .add("GET", "/api/employee/jobs/{jobId:int}/details", employee((req, p) -> getJobDetails(p.getInt("jobId"))))
+              .add("GET", "/api/employee/jobs/{jobId:int}/notes", employee((req, p) -> getJobNotes(p.getInt("jobId"), req)))
+              .add("POST", "/api/employee/jobs/{jobId:int}/notes", employee((req, p) -> addJobNotes(p.getInt("jobId"), req.getSession().getUserId(), req.getBody())))
+              .add("GET", "/api/employee/profile/{employeeId:int}", self((req, p) -> getEmployeeProfile(p.getInt("employeeId"))))
+              .add("PUT", "/api/employee/profile/{employeeId:int}", self((req, p) -> updateEmployeeProfile(p.getInt("employeeId"), req.getBody())))
+              .add("GET", "/api/employee/stats/{employeeId:int}", self((req, p) -> getEmployeeStats(p.getInt("employeeId"))))
+              .add("GET", "/api/employee/inventory", employee((req, p) -> getAvailableInventory()))
+              .add("GET", "/api/employee/search", employee((req, p) -> search(req)))
+              .add("GET", "/api/employee/schedule/{employeeId:int}", self((req, p) -> getEmployeeSchedule(p.getInt("employeeId"), req)));
+    }
+
+    private static Router.Route employee(Router.Route route) {
+        return Access.role("employee", route);
+    }
+
+    private static Router.Route self(Router.Route route) {
+        return Access.self("employee", "employeeId", route);
+    }
+
+    /**
+     * The assigned-jobs listing for a query: the employee id binds first, then {@link JobListQuery#bind}
+     * from index 2. Large text columns are only read when the client asked for them.
+     */
+    public static String assignedJobsSql(JobListQuery query) {
+        StringBuilder sql = new StringBuilder(ASSIGNED_JOBS_SELECT);
+        if (query.includes("serviceDescription")) {
+            sql.append(", s.description as service_description");
         }
-        
-        // Get available inventory
-        if (path.equals("/api/employee/inventory") && method.equals("GET")) {
-            return getAvailableInventory();
+        if (query.includes("notes")) {
+            sql.append(", ").append(JobNotes.LATEST_NOTE_SQL).append(" AS notes");
         }
-        
-        // Get employee schedule
-        if (path.matches("/api/employee/schedule/\\d+") && method.equals("GET")) {
-            try {
-                int employeeId = Integer.parseInt(path.substring(path.lastIndexOf('/') + 1));
-                return getEmployeeSchedule(employeeId);
-            } catch (NumberFormatException e) {
-                return "{\"error\":\"Invalid employee ID format\"}";
-            }
+        if (query.includes("customerNotes")) {
+            sql.append(", j.customer_notes");
         }
-        
-        // Add job notes
-        if (path.matches("/api/employee/jobs/\\d+/notes") && method.equals("POST")) {
-            try {
-                String[] pathParts = path.split("/");
-                int jobId = Integer.parseInt(pathParts[4]);
-                return addJobNotes(jobId, body);
-            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
-                return "{\"error\":\"Invalid job ID format\"}";
-            }
-        }
-        
-        return "{\"error\":\"Employee route not found\"}";
+        sql.append(ASSIGNED_JOBS_FROM);
+        query.appendTo(sql);
+        return sql.toString();
     }
 
-    private String getAssignedJobs(int employeeId) {
-        String sql = "SELECT j.id, u.full_name as customer_name, u.phone as customer_phone, " +
-                     "v.make, v.model, v.year, v.vin, v.color, v.license_plate, " +
-                     "s.service_name, s.description as service_description, s.estimated_duration, " +
-                     "j.status, j.booking_date, j.estimated_completion_date, j.actual_completion_date, " +
-                     "j.total_cost, j.labor_cost, j.parts_cost, j.notes, j.customer_notes, " +
-                     "b.name as branch_name, b.address as branch_address " +
-                     "FROM jobs j " +
-                     "JOIN users u ON j.customer_id = u.id " +
-                     "JOIN vehicles v ON j.vehicle_id = v.id " +
-                     "JOIN services s ON j.service_id = s.id " +
-                     "LEFT JOIN branches b ON j.branch_id = b.id " +
-                     "WHERE j.assigned_employee_id = ? " +
-                     "ORDER BY j.booking_date DESC";
-
-        StringBuilder jsonBuilder = new StringBuilder();
-        jsonBuilder.append("[");
+    // One page of the employee's jobs, newest booking first; rows go straight from the result set into the writer.
+    private HttpResponse getAssignedJobs(int employeeId, HttpRequest request) {
+        JobListQuery query;
+        try {
+            query = JobListQuery.parse(request);
+        } catch (IllegalArgumentException e) {
+            return badRequest(e.getMessage());
+        }
+
+        JsonWriter json = JsonWriter.obtain();
+        json.beginArray();
+        String nextCursor = null;
 
         try (Connection conn = DatabaseConnector.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+             PreparedStatement pstmt = conn.prepareStatement(assignedJobsSql(query))) {
 
             pstmt.setInt(1, employeeId);
+            query.bind(pstmt, 2);
             ResultSet rs = pstmt.executeQuery();
-            
-            boolean first = true;
+
+            int rows = 0;
+            int lastId = 0;
+            Timestamp lastBookingDate = null;
             while (rs.next()) {
-                if (!first) {
-                    jsonBuilder.append(",");
+                if (rows == query.getLimit()) {
+                    nextCursor = JobListQuery.cursorAfter(lastBookingDate, lastId);
+                    break;
+                }
+                rows++;
+                lastId = rs.getInt("id");
+                lastBookingDate = rs.getTimestamp("booking_date");
+
+                json.beginObject();
+                if (query.includes("jobId")) json.field("jobId", lastId);
+                if (query.includes("customerName")) json.field("customerName", rs.getString("customer_name"));
+                if (query.includes("customerPhone")) json.field("customerPhone", orEmpty(rs.getString("customer_phone")));
+                if (query.includes("vehicle")) json.field("vehicle", vehicleLabel(rs));
+                if (query.includes("vehicleColor")) json.field("vehicleColor", orEmpty(rs.getString("color")));
+                if (query.includes("licensePlate")) json.field("licensePlate", orEmpty(rs.getString("license_plate")));
+                if (query.includes("vin")) json.field("vin", orEmpty(rs.getString("vin")));
+                if (query.includes("service")) json.field("service", rs.getString("service_name"));
+                if (query.includes("serviceDescription")) {
+                    json.field("serviceDescription", orEmpty(rs.getString("service_description")));
+                }
+                if (query.includes("estimatedDuration")) {
+                    int estimatedDuration = rs.getInt("estimated_duration");
+                    if (estimatedDuration != 0) {
+                        json.field("estimatedDuration", estimatedDuration);
+                    } else {
+                        json.nullField("estimatedDuration");
+                    }
                 }
-                jsonBuilder.append("{");
-                jsonBuilder.append("\"jobId\":").append(rs.getInt("id")).append(",");
-                jsonBuilder.append("\"customerName\":\"").append(rs.getString("customer_name")).append("\",");
-                jsonBuilder.append("\"customerPhone\":\"").append(rs.getString("customer_phone") != null ? rs.getString("customer_phone") : "").append("\",");
-                jsonBuilder.append("\"vehicle\":\"").append(rs.getString("make")).append(" ").append(rs.getString("model")).append(" (").append(rs.getInt("year")).append(")\",");
-                jsonBuilder.append("\"vehicleColor\":\"").append(rs.getString("color") != null ? rs.getString("color") : "").append("\",");
-                jsonBuilder.append("\"licensePlate\":\"").append(rs.getString("license_plate") != null ? rs.getString("license_plate") : "").append("\",");
-                jsonBuilder.append("\"vin\":\"").append(rs.getString("vin") != null ? rs.getString("vin") : "").append("\",");
-                jsonBuilder.append("\"service\":\"").append(rs.getString("service_name")).append("\",");
-                jsonBuilder.append("\"serviceDescription\":\"").append(rs.getString("service_description") != null ? rs.getString("service_description") : "").append("\",");
-                jsonBuilder.append("\"estimatedDuration\":").append(rs.getInt("estimated_duration") != 0 ? rs.getInt("estimated_duration") : "null").append(",");
-                jsonBuilder.append("\"status\":\"").append(rs.getString("status")).append("\",");
-                jsonBuilder.append("\"bookingDate\":\"").append(rs.getTimestamp("booking_date")).append("\",");
-                jsonBuilder.append("\"estimatedCompletionDate\":").append(rs.getTimestamp("estimated_completion_date") != null ? "\"" + rs.getTimestamp("estimated_completion_date") + "\"" : "null").append(",");
-                jsonBuilder.append("\"actualCompletionDate\":").append(rs.getTimestamp("actual_completion_date") != null ? "\"" + rs.getTimestamp("actual_completion_date") + "\"" : "null").append(",");
-                jsonBuilder.append("\"totalCost\":").append(rs.getBigDecimal("total_cost") != null ? rs.getBigDecimal("total_cost") : "null").append(",");
-                jsonBuilder.append("\"laborCost\":").append(rs.getBigDecimal("labor_cost") != null ? rs.getBigDecimal("labor_cost") : "null").append(",");
-                jsonBuilder.append("\"partsCost\":").append(rs.getBigDecimal("parts_cost") != null ? rs.getBigDecimal("parts_cost") : "null").append(",");
-                jsonBuilder.append("\"notes\":\"").append(rs.getString("notes") != null ? rs.getString("notes") : "").append("\",");
-                jsonBuilder.append("\"customerNotes\":\"").append(rs.getString("customer_notes") != null ? rs.getString("customer_notes") : "").append("\",");
-                jsonBuilder.append("\"branchName\":\"").append(rs.getString("branch_name") != null ? rs.getString("branch_name") : "").append("\",");
-                jsonBuilder.append("\"branchAddress\":\"").append(rs.getString("branch_address") != null ? rs.getString("branch_address") : "").append("\"");
-                jsonBuilder.append("}");
-                first = false;
+                if (query.includes("status")) json.field("status", rs.getString("status"));
+                if (query.includes("bookingDate")) json.field("bookingDate", lastBookingDate);
+                if (query.includes("estimatedCompletionDate")) {
+                    json.field("estimatedCompletionDate", rs.getTimestamp("estimated_completion_date"));
+                }
+                if (query.includes("actualCompletionDate")) {
+                    json.field("actualCompletionDate", rs.getTimestamp("actual_completion_date"));
+                }
+                if (query.includes("totalCost")) json.field("totalCost", rs.getBigDecimal("total_cost"));
+                if (query.includes("laborCost")) json.field("laborCost", rs.getBigDecimal("labor_cost"));
+                if (query.includes("partsCost")) json.field("partsCost", rs.getBigDecimal("parts_cost"));
+                if (query.includes("notes")) json.field("notes", orEmpty(rs.getString("notes")));
+                if (query.includes("customerNotes")) json.field("customerNotes", orEmpty(rs.getString("customer_notes")));
+                if (query.includes("branchName")) json.field("branchName", orEmpty(rs.getString("branch_name")));
+                if (query.includes("branchAddress")) json.field("branchAddress", orEmpty(rs.getString("branch_address")));
+                json.endObject();
             }
         } catch (SQLException e) {
-            e.printStackTrace();
-            return "{\"error\":\"Database error fetching assigned jobs\"}";
+            Log.error("Database error fetching assigned jobs", e);
+            json.release();
+            return error("Database error fetching assigned jobs");
         }
 
-        jsonBuilder.append("]");
-        return jsonBuilder.toString();
+        json.endArray();
+        HttpResponse response = HttpResponse.json(200, json);
+        if (nextCursor != null) {
+            response.header(JobListQuery.NEXT_CURSOR_HEADER, nextCursor)
+                    .header("Access-Control-Expose-Headers", JobListQuery.NEXT_CURSOR_HEADER);
+        }
+        return response;
     }
     
-    private String updateJobStatus(int jobId, String body) {
-        Map<String, String> params = parseBody(body);
-        String status = params.get("status");
-        String notes = params.get("notes");
+    private HttpResponse updateJobStatus(int jobId, int authorId, byte[] body) {
+        JsonObject params = parseBody(body);
+        if (params == null) {
+            return error("Invalid JSON body");
+        }
+        String status = params.getString("status");
+        String notes = params.getString("notes");
         
         if (status == null) {
-            return "{\"error\":\"Status is required\"}";
+            return error("Status is required");
         }
         
         // Validate status values
         if (!status.equals("In Progress") && !status.equals("Completed")) {
-            return "{\"error\":\"Invalid status. Must be 'In Progress' or 'Completed'\"}";
+            return error("Invalid status. Must be 'In Progress' or 'Completed'");
         }
         
-        String sql;
-        if (status.equals("Completed")) {
-            sql = "UPDATE jobs SET status = ?, actual_completion_date = NOW()";
-            if (notes != null && !notes.trim().isEmpty()) {
-                sql += ", notes = CONCAT(COALESCE(notes, ''), ' | ', ?)";
-            }
-            sql += " WHERE id = ?";
-        } else {
-            sql = "UPDATE jobs SET status = ?";
-            if (notes != null && !notes.trim().isEmpty()) {
-                sql += ", notes = CONCAT(COALESCE(notes, ''), ' | ', ?)";
-            }
-            sql += " WHERE id = ?";
+        boolean hasNotes = notes != null && !notes.trim().isEmpty();
+        if (hasNotes && notes.length() > JobNotes.MAX_LENGTH) {
+            return badRequest("Notes must be at most " + JobNotes.MAX_LENGTH + " characters");
         }
+        String sql = status.equals("Completed") ? COMPLETE_JOB_SQL : UPDATE_STATUS_SQL;
         
-        try (Connection conn = DatabaseConnector.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            int paramIndex = 1;
-            pstmt.setString(paramIndex++, status);
-            if (notes != null && !notes.trim().isEmpty()) {
-                pstmt.setString(paramIndex++, notes);
-            }
-            pstmt.setInt(paramIndex, jobId);
-            
-            int affectedRows = pstmt.executeUpdate();
-            if (affectedRows > 0) {
-                return "{\"message\":\"Job status updated successfully\", \"status\":\"" + status + "\"}";
-            } else {
-                return "{\"error\":\"Job not found\"}";
+        // The row is read before and after the update in one transaction, so the stats counters get the exact difference.
+        EmployeeStats.JobState before;
+        EmployeeStats.JobState after;
+        try (Connection conn = DatabaseConnector.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                before = EmployeeStats.lockJob(conn, jobId);
+                if (before == null) {
+                    conn.rollback();
+                    return error("Job not found");
+                }
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setString(1, status);
+                    pstmt.setInt(2, jobId);
+                    pstmt.executeUpdate();
+                }
+                // The note goes in with the status change it explains, not through the note queue.
+                if (hasNotes) {
+                    JobNotes.append(conn, jobId, authorId, notes);
+                }
+                after = EmployeeStats.readJob(conn, jobId);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
             }
         } catch (SQLException e) {
-            e.printStackTrace();
-            return "{\"error\":\"Database error updating job status\"}";
+            Log.error("Database error updating job status", e);
+            return error("Database error updating job status");
         }
+
+        EmployeeStats.changed(before, after);
+        // Status changes are counted on the day they happen.
+        ReportRollups.markDirty(LocalDate.now());
+        Dispatcher.statusChanged(jobId, status);
+        EmployeeSchedules.jobChanged(jobId, before.getEmployeeId(), after.getEmployeeId());
+        SearchIndex.jobChanged(jobId);
+        if (EventBus.hasListeners()) {
+            EventBus.publish(ChangeEvent.jobStatus(jobId, after.getCustomerId(), after.getEmployeeId(), status));
+            if (hasNotes) {
+                EventBus.publish(ChangeEvent.jobNote(jobId, after.getCustomerId(), after.getEmployeeId(), notes));
+            }
+        }
+        JsonWriter json = JsonWriter.obtain();
+        json.beginObject()
+            .field("message", "Job status updated successfully")
+            .field("status", status)
+            .endObject();
+        return HttpResponse.json(200, json);
     }
     
-    private String useInventoryForJob(int jobId, String body) {
-        Map<String, String> params = parseBody(body);
-        String inventoryIdStr = params.get("inventoryId");
-        String quantityUsedStr = params.get("quantityUsed");
+    private HttpResponse useInventoryForJob(int jobId, byte[] body) {
+        JsonObject params = parseBody(body);
+        if (params == null) {
+            return error("Invalid JSON body");
+        }
+        String inventoryIdStr = params.getString("inventoryId");
+        String quantityUsedStr = params.getString("quantityUsed");
         
         if (inventoryIdStr == null || quantityUsedStr == null) {
-            return "{\"error\":\"Inventory ID and quantity used are required\"}";
+            return error("Inventory ID and quantity used are required");
         }
         
         try {
@@ -239,135 +311,198 @@ public class EmployeeHandler {
             int quantityUsed = Integer.parseInt(quantityUsedStr);
             
             if (quantityUsed <= 0) {
-                return "{\"error\":\"Quantity used must be greater than 0\"}";
+                return error("Quantity used must be greater than 0");
             }
             
-            Connection conn = DatabaseConnector.getConnection();
-            try {
-                // Start transaction
-                conn.setAutoCommit(false);
-                
-                // Check if enough inventory is available
-                String checkSql = "SELECT quantity, price_per_unit FROM inventory WHERE id = ?";
-                double unitPrice = 0;
-                try (PreparedStatement checkStmt = conn.prepareStatement(checkSql)) {
-                    checkStmt.setInt(1, inventoryId);
-                    ResultSet rs = checkStmt.executeQuery();
-                    
-                    if (!rs.next()) {
-                        conn.rollback();
-                        return "{\"error\":\"Inventory item not found\"}";
-                    }
-                    
-                    int availableQuantity = rs.getInt("quantity");
-                    unitPrice = rs.getDouble("price_per_unit");
-                    
-                    if (availableQuantity < quantityUsed) {
-                        conn.rollback();
-                        return "{\"error\":\"Insufficient inventory. Available: " + availableQuantity + ", Requested: " + quantityUsed + "\"}";
-                    }
-                }
-                
-                // Insert into job_inventory (or update if already exists)
-                String insertSql = "INSERT INTO job_inventory (job_id, inventory_id, quantity_used, unit_price, total_price) VALUES (?, ?, ?, ?, ?) " +
-                                  "ON DUPLICATE KEY UPDATE quantity_used = quantity_used + VALUES(quantity_used), total_price = (quantity_used + VALUES(quantity_used)) * unit_price";
-                try (PreparedStatement insertStmt = conn.prepareStatement(insertSql)) {
-                    insertStmt.setInt(1, jobId);
-                    insertStmt.setInt(2, inventoryId);
-                    insertStmt.setInt(3, quantityUsed);
-                    insertStmt.setDouble(4, unitPrice);
-                    insertStmt.setDouble(5, quantityUsed * unitPrice);
-                    insertStmt.executeUpdate();
-                }
-                
-                // Update inventory quantity
-                String updateSql = "UPDATE inventory SET quantity = quantity - ? WHERE id = ?";
-                try (PreparedStatement updateStmt = conn.prepareStatement(updateSql)) {
-                    updateStmt.setInt(1, quantityUsed);
-                    updateStmt.setInt(2, inventoryId);
-                    updateStmt.executeUpdate();
-                }
-                
-                // Update job parts cost
-                String updateJobSql = "UPDATE jobs SET parts_cost = (SELECT SUM(total_price) FROM job_inventory WHERE job_id = ?) WHERE id = ?";
-                try (PreparedStatement updateJobStmt = conn.prepareStatement(updateJobSql)) {
-                    updateJobStmt.setInt(1, jobId);
-                    updateJobStmt.setInt(2, jobId);
-                    updateJobStmt.executeUpdate();
-                }
-                
-                conn.commit();
-                return "{\"message\":\"Inventory used successfully\", \"quantityUsed\":" + quantityUsed + "}";
-                
-            } catch (SQLException e) {
-                conn.rollback();
-                throw e;
-            } finally {
-                conn.setAutoCommit(true);
-                conn.close();
+            InventoryEngine.Result result = InventoryEngine.use(jobId,
+                Collections.singletonList(new InventoryEngine.Usage(inventoryId, quantityUsed)));
+            if (!result.isJobFound()) {
+                return error("Job not found");
+            }
+            InventoryEngine.Line line = result.getLines().get(0);
+            if (line.getStatus() == InventoryEngine.Status.NOT_FOUND) {
+                return error("Inventory item not found");
+            }
+            if (line.getStatus() == InventoryEngine.Status.INSUFFICIENT) {
+                return error("Insufficient inventory. Available: " + line.getQuantity() + ", Requested: " + quantityUsed);
             }
+
+            JsonWriter json = JsonWriter.obtain();
+            json.beginObject()
+                .field("message", "Inventory used successfully")
+                .field("quantityUsed", quantityUsed)
+                .endObject();
+            return HttpResponse.json(200, json);
         } catch (SQLException e) {
-            e.printStackTrace();
-            return "{\"error\":\"Database error using inventory\"}";
+            Log.error("Database error using inventory", e);
+            return error("Database error using inventory");
         } catch (NumberFormatException e) {
-            return "{\"error\":\"Invalid number format\"}";
+            return error("Invalid number format");
         }
     }
     
-    private String getJobDetails(int jobId) {
-        String sql = "SELECT j.*, u.full_name as customer_name, u.phone as customer_phone, " +
-                     "v.make, v.model, v.year, v.vin, v.color, v.license_plate, " +
-                     "s.service_name, s.description as service_description, " +
-                     "b.name as branch_name, b.address as branch_address " +
-                       "FROM jobs j " +
-                       "JOIN users u ON j.customer_id = u.id " +
-                       "JOIN vehicles v ON j.vehicle_id = v.id " +
-                       "JOIN services s ON j.service_id = s.id " +
-                     "LEFT JOIN branches b ON j.branch_id = b.id " +
-                       "WHERE j.id = ?";
-        
+    // Records many parts in one request and one transaction; nothing is applied unless every part
+    // is in stock. Takes [{inventoryId, quantityUsed}, ...] or {"items": [...]}; results are per
+    // distinct part, with repeated parts merged.
+    private HttpResponse useInventoryBatch(int jobId, byte[] body) {
+        Object parsed;
+        try {
+            parsed = JsonReader.parse(body);
+        } catch (JsonReader.ParseException e) {
+            return badRequest("Invalid JSON body");
+        }
+        List<Object> items = parsed instanceof JsonObject ? ((JsonObject) parsed).getArray("items") : asList(parsed);
+        if (items == null || items.isEmpty()) {
+            return badRequest("A non-empty array of items is required");
+        }
+        if (items.size() > MAX_BATCH_ITEMS) {
+            return badRequest("At most " + MAX_BATCH_ITEMS + " items per request");
+        }
+
+        // Validate everything before touching the database, and report every bad item at once.
+        List<InventoryEngine.Usage> usages = new ArrayList<>(items.size());
+        JsonWriter invalid = null;
+        for (int i = 0; i < items.size(); i++) {
+            JsonObject item = items.get(i) instanceof JsonObject ? (JsonObject) items.get(i) : null;
+            Integer inventoryId = item != null ? item.getInteger("inventoryId") : null;
+            Integer quantityUsed = item != null ? item.getInteger("quantityUsed") : null;
+            String problem = null;
+            if (inventoryId == null || inventoryId <= 0) {
+                problem = "inventoryId must be a positive integer";
+            } else if (quantityUsed == null || quantityUsed <= 0) {
+                problem = "quantityUsed must be a positive integer";
+            }
+            if (problem == null) {
+                usages.add(new InventoryEngine.Usage(inventoryId, quantityUsed));
+                continue;
+            }
+            if (invalid == null) {
+                invalid = JsonWriter.obtain();
+                invalid.beginObject().field("error", "Invalid items").name("items").beginArray();
+            }
+            invalid.beginObject().field("index", i).field("error", problem).endObject();
+        }
+        if (invalid != null) {
+            invalid.endArray().endObject();
+            return HttpResponse.json(400, invalid);
+        }
+
+        InventoryEngine.Result result;
+        try {
+            result = InventoryEngine.use(jobId, usages);
+        } catch (SQLException e) {
+            Log.error("Database error using inventory batch", e);
+            return error("Database error using inventory");
+        }
+        if (!result.isJobFound()) {
+            JsonWriter json = JsonWriter.obtain();
+            json.beginObject().field("error", "Job not found").endObject();
+            return HttpResponse.json(404, json);
+        }
+
+        JsonWriter json = JsonWriter.obtain();
+        json.beginObject();
+        if (result.isApplied()) {
+            json.field("message", "Inventory used successfully").field("partsCost", result.getPartsCost());
+        } else {
+            json.field("error", "Insufficient inventory; nothing was applied");
+        }
+        json.name("items").beginArray();
+        for (InventoryEngine.Line line : result.getLines()) {
+            json.beginObject()
+                .field("inventoryId", line.getInventoryId())
+                .field("quantityUsed", line.getRequested())
+                .field("status", line.getStatus().name().toLowerCase());
+            if (line.getStatus() != InventoryEngine.Status.NOT_FOUND) {
+                json.field("partName", line.getPartName())
+                    .field(result.isApplied() ? "remaining" : "available", line.getQuantity());
+            }
+            if (result.isApplied()) {
+                json.field("unitPrice", line.getUnitPrice()).field("totalPrice", line.getTotalPrice());
+            }
+            json.endObject();
+        }
+        json.endArray().endObject();
+        return HttpResponse.json(result.isApplied() ? 200 : 409, json);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Object> asList(Object value) {
+        return value instanceof List ? (List<Object>) value : null;
+    }
+
+    // {customerId, employeeId} of a job, 0 where unset.
+    private static int[] jobAudience(Connection conn, int jobId) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(JOB_AUDIENCE_SQL)) {
+            pstmt.setInt(1, jobId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    return new int[2];
+                }
+                return new int[] { rs.getInt("customer_id"), rs.getInt("assigned_employee_id") };
+            }
+        }
+    }
+
+    private static boolean jobExists(Connection conn, int jobId) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(JOB_EXISTS_SQL)) {
+            pstmt.setInt(1, jobId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private HttpResponse getJobDetails(int jobId) {
         try (Connection conn = DatabaseConnector.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+             PreparedStatement pstmt = conn.prepareStatement(JOB_DETAILS_SQL)) {
 
             pstmt.setInt(1, jobId);
             ResultSet rs = pstmt.executeQuery();
             
             if (rs.next()) {
-                StringBuilder jsonBuilder = new StringBuilder();
-                jsonBuilder.append("{");
-                jsonBuilder.append("\"jobId\":").append(rs.getInt("id")).append(",");
-                jsonBuilder.append("\"customerName\":\"").append(rs.getString("customer_name")).append("\",");
-                jsonBuilder.append("\"customerPhone\":\"").append(rs.getString("customer_phone") != null ? rs.getString("customer_phone") : "").append("\",");
-                jsonBuilder.append("\"vehicle\":\"").append(rs.getString("make")).append(" ").append(rs.getString("model")).append(" (").append(rs.getInt("year")).append(")\",");
-                jsonBuilder.append("\"vehicleColor\":\"").append(rs.getString("color") != null ? rs.getString("color") : "").append("\",");
-                jsonBuilder.append("\"licensePlate\":\"").append(rs.getString("license_plate") != null ? rs.getString("license_plate") : "").append("\",");
-                jsonBuilder.append("\"vin\":\"").append(rs.getString("vin") != null ? rs.getString("vin") : "").append("\",");
-                jsonBuilder.append("\"service\":\"").append(rs.getString("service_name")).append("\",");
-                jsonBuilder.append("\"serviceDescription\":\"").append(rs.getString("service_description") != null ? rs.getString("service_description") : "").append("\",");
-                jsonBuilder.append("\"status\":\"").append(rs.getString("status")).append("\",");
-                jsonBuilder.append("\"bookingDate\":\"").append(rs.getTimestamp("booking_date")).append("\",");
-                jsonBuilder.append("\"estimatedCompletionDate\":").append(rs.getTimestamp("estimated_completion_date") != null ? "\"" + rs.getTimestamp("estimated_completion_date") + "\"" : "null").append(",");
-                jsonBuilder.append("\"actualCompletionDate\":").append(rs.getTimestamp("actual_completion_date") != null ? "\"" + rs.getTimestamp("actual_completion_date") + "\"" : "null").append(",");
-                jsonBuilder.append("\"totalCost\":").append(rs.getBigDecimal("total_cost") != null ? rs.getBigDecimal("total_cost") : "null").append(",");
-                jsonBuilder.append("\"laborCost\":").append(rs.getBigDecimal("labor_cost") != null ? rs.getBigDecimal("labor_cost") : "null").append(",");
-                jsonBuilder.append("\"partsCost\":").append(rs.getBigDecimal("parts_cost") != null ? rs.getBigDecimal("parts_cost") : "null").append(",");
-                jsonBuilder.append("\"notes\":\"").append(rs.getString("notes") != null ? rs.getString("notes") : "").append("\",");
-                jsonBuilder.append("\"customerNotes\":\"").append(rs.getString("customer_notes") != null ? rs.getString("customer_notes") : "").append("\",");
-                jsonBuilder.append("\"branchName\":\"").append(rs.getString("branch_name") != null ? rs.getString("branch_name") : "").append("\",");
-                jsonBuilder.append("\"branchAddress\":\"").append(rs.getString("branch_address") != null ? rs.getString("branch_address") : "").append("\"");
-                jsonBuilder.append("}");
+                JsonWriter json = JsonWriter.obtain();
+                json.beginObject();
+                json.field("jobId", rs.getInt("id"));
+                json.field("customerName", rs.getString("customer_name"));
+                json.field("customerPhone", orEmpty(rs.getString("customer_phone")));
+                json.field("vehicle", vehicleLabel(rs));
+                json.field("vehicleColor", orEmpty(rs.getString("color")));
+                json.field("licensePlate", orEmpty(rs.getString("license_plate")));
+                json.field("vin", orEmpty(rs.getString("vin")));
+                json.field("service", rs.getString("service_name"));
+                json.field("serviceDescription", orEmpty(rs.getString("service_description")));
+                json.field("status", rs.getString("status"));
+                json.field("bookingDate", rs.getTimestamp("booking_date"));
+                json.field("estimatedCompletionDate", rs.getTimestamp("estimated_completion_date"));
+                json.field("actualCompletionDate", rs.getTimestamp("actual_completion_date"));
+                json.field("totalCost", rs.getBigDecimal("total_cost"));
+                json.field("laborCost", rs.getBigDecimal("labor_cost"));
+                json.field("partsCost", rs.getBigDecimal("parts_cost"));
+                json.field("customerNotes", orEmpty(rs.getString("customer_notes")));
+                json.field("branchName", orEmpty(rs.getString("branch_name")));
+                json.field("branchAddress", orEmpty(rs.getString("branch_address")));
+                // The newest page of notes; older ones are fetched from /notes?before=<notesCursor>.
+                json.name("notes");
+                long cursor = JobNotes.writePage(conn, jobId, 0, DEFAULT_NOTES_LIMIT, json);
+                if (cursor > 0) {
+                    json.field("notesCursor", cursor);
+                } else {
+                    json.nullField("notesCursor");
+                }
+                json.endObject();
                 
-                return jsonBuilder.toString();
+                return HttpResponse.json(200, json);
             } else {
-                    return "{\"error\":\"Job not found\"}";
+                    return error("Job not found");
                 }
         } catch (SQLException e) {
-            e.printStackTrace();
-            return "{\"error\":\"Database error fetching job details\"}";
+            Log.error("Database error fetching job details", e);
+            return error("Database error fetching job details");
         }
     }
     
-    private String getEmployeeProfile(int employeeId) {
+    private HttpResponse getEmployeeProfile(int employeeId) {
         String sql = "SELECT id, username, full_name, email, phone, created_at FROM users WHERE id = ? AND role = 'employee'";
         
         try (Connection conn = DatabaseConnector.getConnection();
@@ -377,28 +512,32 @@ public class EmployeeHandler {
             ResultSet rs = pstmt.executeQuery();
             
             if (rs.next()) {
-                return String.format(
-                    "{\"id\":%d,\"username\":\"%s\",\"fullName\":\"%s\",\"email\":\"%s\",\"phone\":\"%s\",\"createdAt\":\"%s\"}",
-                    rs.getInt("id"),
-                    rs.getString("username"),
-                    rs.getString("full_name"),
-                    rs.getString("email") != null ? rs.getString("email") : "",
-                    rs.getString("phone") != null ? rs.getString("phone") : "",
-                    rs.getTimestamp("created_at")
-                );
+                JsonWriter json = JsonWriter.obtain();
+                json.beginObject()
+                    .field("id", rs.getInt("id"))
+                    .field("username", rs.getString("username"))
+                    .field("fullName", rs.getString("full_name"))
+                    .field("email", orEmpty(rs.getString("email")))
+                    .field("phone", orEmpty(rs.getString("phone")))
+                    .field("createdAt", rs.getTimestamp("created_at"))
+                    .endObject();
+                return HttpResponse.json(200, json);
             } else {
-                return "{\"error\":\"Employee not found\"}";
+                return error("Employee not found");
             }
         } catch (SQLException e) {
-            e.printStackTrace();
-            return "{\"error\":\"Database error fetching employee profile\"}";
+            Log.error("Database error fetching employee profile", e);
+            return error("Database error fetching employee profile");
         }
     }
     
-    private String updateEmployeeProfile(int employeeId, String body) {
-        Map<String, String> params = parseBody(body);
-        String email = params.get("email");
-        String phone = params.get("phone");
+    private HttpResponse updateEmployeeProfile(int employeeId, byte[] body) {
+        JsonObject params = parseBody(body);
+        if (params == null) {
+            return error("Invalid JSON body");
+        }
+        String email = params.getString("email");
+        String phone = params.getString("phone");
         
         String sql = "UPDATE users SET email = ?, phone = ? WHERE id = ? AND role = 'employee'";
         
@@ -411,183 +550,286 @@ public class EmployeeHandler {
             
             int affectedRows = pstmt.executeUpdate();
             if (affectedRows > 0) {
-                return "{\"message\":\"Profile updated successfully\"}";
+                return message("Profile updated successfully");
             } else {
-                return "{\"error\":\"Employee not found or no changes made\"}";
+                return error("Employee not found or no changes made");
             }
         } catch (SQLException e) {
-            e.printStackTrace();
-            return "{\"error\":\"Database error updating employee profile\"}";
+            Log.error("Database error updating employee profile", e);
+            return error("Database error updating employee profile");
         }
     }
     
-    private String getEmployeeStats(int employeeId) {
-        String sql = "SELECT " +
-                     "COUNT(*) as totalJobs, " +
-                     "SUM(CASE WHEN status = 'Completed' THEN 1 ELSE 0 END) as completedJobs, " +
-                     "SUM(CASE WHEN status = 'In Progress' THEN 1 ELSE 0 END) as activeJobs, " +
-                     "SUM(CASE WHEN status = 'Booked' THEN 1 ELSE 0 END) as bookedJobs, " +
-                     "AVG(CASE WHEN actual_completion_date IS NOT NULL THEN TIMESTAMPDIFF(MINUTE, booking_date, actual_completion_date) END) as avgCompletionTime " +
-                     "FROM jobs WHERE assigned_employee_id = ?";
-        
+    private HttpResponse getEmployeeStats(int employeeId) {
+        EmployeeStats.Snapshot stats = EmployeeStats.get(employeeId);
+        if (stats != null) {
+            JsonWriter json = JsonWriter.obtain();
+            json.beginObject()
+                .field("totalJobs", stats.total)
+                .field("completedJobs", stats.completed)
+                .field("activeJobs", stats.active)
+                .field("bookedJobs", stats.booked)
+                .field("avgCompletionTime", BigDecimal.valueOf(stats.getAverageCompletionMinutes()).setScale(1, RoundingMode.HALF_UP))
+                .endObject();
+            return HttpResponse.json(200, json);
+        }
+
+        // Only until the counters have been loaded at startup.
         try (Connection conn = DatabaseConnector.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+             PreparedStatement pstmt = conn.prepareStatement(STATS_SQL)) {
             
             pstmt.setInt(1, employeeId);
             ResultSet rs = pstmt.executeQuery();
             
+            JsonWriter json = JsonWriter.obtain();
+            json.beginObject();
             if (rs.next()) {
-                return String.format(
-                    "{\"totalJobs\":%d,\"completedJobs\":%d,\"activeJobs\":%d,\"bookedJobs\":%d,\"avgCompletionTime\":%.1f}",
-                    rs.getInt("totalJobs"),
-                    rs.getInt("completedJobs"),
-                    rs.getInt("activeJobs"),
-                    rs.getInt("bookedJobs"),
-                    rs.getDouble("avgCompletionTime")
-                );
+                json.field("totalJobs", rs.getInt("totalJobs"))
+                    .field("completedJobs", rs.getInt("completedJobs"))
+                    .field("activeJobs", rs.getInt("activeJobs"))
+                    .field("bookedJobs", rs.getInt("bookedJobs"))
+                    .field("avgCompletionTime", BigDecimal.valueOf(rs.getDouble("avgCompletionTime")).setScale(1, RoundingMode.HALF_UP));
             } else {
-                return "{\"totalJobs\":0,\"completedJobs\":0,\"activeJobs\":0,\"bookedJobs\":0,\"avgCompletionTime\":0}";
+                json.field("totalJobs", 0)
+                    .field("completedJobs", 0)
+                    .field("activeJobs", 0)
+                    .field("bookedJobs", 0)
+                    .field("avgCompletionTime", 0);
             }
+            json.endObject();
+            return HttpResponse.json(200, json);
         } catch (SQLException e) {
-            e.printStackTrace();
-            return "{\"error\":\"Database error fetching employee stats\"}";
+            Log.error("Database error fetching employee stats", e);
+            return error("Database error fetching employee stats");
         }
     }
     
-    private String getAvailableInventory() {
-        String sql = "SELECT id, part_name, part_number, quantity, price_per_unit, category, supplier FROM inventory WHERE quantity > 0 AND is_active = TRUE ORDER BY category, part_name";
-        
-        StringBuilder jsonBuilder = new StringBuilder();
-        jsonBuilder.append("[");
+    private HttpResponse getAvailableInventory() {
+        JsonWriter json = JsonWriter.obtain();
+        json.beginArray();
 
         try (Connection conn = DatabaseConnector.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql);
+             PreparedStatement pstmt = conn.prepareStatement(AVAILABLE_INVENTORY_SQL);
              ResultSet rs = pstmt.executeQuery()) {
             
-            boolean first = true;
             while (rs.next()) {
-                if (!first) {
-                    jsonBuilder.append(",");
-                }
-                jsonBuilder.append("{");
-                jsonBuilder.append("\"id\":").append(rs.getInt("id")).append(",");
-                jsonBuilder.append("\"partName\":\"").append(rs.getString("part_name")).append("\",");
-                jsonBuilder.append("\"partNumber\":\"").append(rs.getString("part_number") != null ? rs.getString("part_number") : "").append("\",");
-                jsonBuilder.append("\"quantity\":").append(rs.getInt("quantity")).append(",");
-                jsonBuilder.append("\"pricePerUnit\":").append(rs.getBigDecimal("price_per_unit")).append(",");
-                jsonBuilder.append("\"category\":\"").append(rs.getString("category") != null ? rs.getString("category") : "").append("\",");
-                jsonBuilder.append("\"supplier\":\"").append(rs.getString("supplier") != null ? rs.getString("supplier") : "").append("\"");
-                jsonBuilder.append("}");
-                first = false;
+                json.beginObject();
+                json.field("id", rs.getInt("id"));
+                json.field("partName", rs.getString("part_name"));
+                json.field("partNumber", orEmpty(rs.getString("part_number")));
+                json.field("quantity", rs.getInt("quantity"));
+                json.field("pricePerUnit", rs.getBigDecimal("price_per_unit"));
+                json.field("category", orEmpty(rs.getString("category")));
+                json.field("supplier", orEmpty(rs.getString("supplier")));
+                json.endObject();
             }
         } catch (SQLException e) {
-            e.printStackTrace();
-            return "{\"error\":\"Database error fetching inventory\"}";
+            Log.error("Database error fetching inventory", e);
+            json.release();
+            return error("Database error fetching inventory");
         }
 
-        jsonBuilder.append("]");
-        return jsonBuilder.toString();
+        json.endArray();
+        return HttpResponse.json(200, json);
     }
     
-    private String getEmployeeSchedule(int employeeId) {
-        String sql = "SELECT j.id, j.booking_date, j.estimated_completion_date, j.status, " +
-                     "u.full_name as customer_name, v.make, v.model, v.year, s.service_name " +
-                     "FROM jobs j " +
-                     "JOIN users u ON j.customer_id = u.id " +
-                     "JOIN vehicles v ON j.vehicle_id = v.id " +
-                     "JOIN services s ON j.service_id = s.id " +
-                     "WHERE j.assigned_employee_id = ? AND j.booking_date >= CURDATE() " +
-                     "ORDER BY j.booking_date ASC";
-        
-        StringBuilder jsonBuilder = new StringBuilder();
-        jsonBuilder.append("[");
+    // Customers, vehicles and jobs matching every word of q (plates and VINs by any fragment), best first.
+    private HttpResponse search(HttpRequest request) {
+        String query = request.getQueryParameter("q");
+        if (query == null || query.trim().isEmpty()) {
+            return badRequest("q is required");
+        }
+        if (query.length() > MAX_SEARCH_LENGTH) {
+            return badRequest("q must be at most " + MAX_SEARCH_LENGTH + " characters");
+        }
+        int limit = DEFAULT_SEARCH_LIMIT;
+        String limitParam = request.getQueryParameter("limit");
+        if (limitParam != null) {
+            try {
+                limit = Integer.parseInt(limitParam);
+            } catch (NumberFormatException e) {
+                limit = 0;
+            }
+            if (limit < 1 || limit > MAX_SEARCH_LIMIT) {
+                return badRequest("limit must be between 1 and " + MAX_SEARCH_LIMIT);
+            }
+        }
+        if (!SearchIndex.isLoaded()) {
+            JsonWriter json = JsonWriter.obtain();
+            json.beginObject().field("error", "Search is starting up, please try again").endObject();
+            return HttpResponse.json(503, json).header("Retry-After", "5");
+        }
 
-        try (Connection conn = DatabaseConnector.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        JsonWriter json = JsonWriter.obtain();
+        SearchIndex.search(query.trim(), limit, json);
+        return HttpResponse.json(200, json);
+    }
+    
+    // Served from the employee's in-memory timeline. A client that sends back the ETag in If-None-Match gets
+    // 304 if nothing changed; one that passes ?since=<version> gets only the jobs changed since that version,
+    // an empty list when it is already current (304 is only for conditional requests).
+    private HttpResponse getEmployeeSchedule(int employeeId, HttpRequest request) {
+        long since = -1;
+        String sinceParam = request.getQueryParameter("since");
+        if (sinceParam != null) {
+            try {
+                since = Long.parseLong(sinceParam);
+            } catch (NumberFormatException e) {
+                return badRequest("since must be a schedule version");
+            }
+        }
 
-            pstmt.setInt(1, employeeId);
-            ResultSet rs = pstmt.executeQuery();
-                
-                boolean first = true;
-            while (rs.next()) {
-                    if (!first) {
-                        jsonBuilder.append(",");
-                    }
-                    jsonBuilder.append("{");
-                jsonBuilder.append("\"jobId\":").append(rs.getInt("id")).append(",");
-                jsonBuilder.append("\"bookingDate\":\"").append(rs.getTimestamp("booking_date")).append("\",");
-                jsonBuilder.append("\"estimatedCompletionDate\":").append(rs.getTimestamp("estimated_completion_date") != null ? "\"" + rs.getTimestamp("estimated_completion_date") + "\"" : "null").append(",");
-                jsonBuilder.append("\"status\":\"").append(rs.getString("status")).append("\",");
-                jsonBuilder.append("\"customerName\":\"").append(rs.getString("customer_name")).append("\",");
-                jsonBuilder.append("\"vehicle\":\"").append(rs.getString("make")).append(" ").append(rs.getString("model")).append(" (").append(rs.getInt("year")).append(")\",");
-                jsonBuilder.append("\"service\":\"").append(rs.getString("service_name")).append("\"");
-                    jsonBuilder.append("}");
-                    first = false;
-                }
+        EmployeeSchedules.Timeline timeline;
+        try {
+            timeline = EmployeeSchedules.get(employeeId);
         } catch (SQLException e) {
-            e.printStackTrace();
-            return "{\"error\":\"Database error fetching employee schedule\"}";
-            }
+            Log.error("Database error fetching employee schedule", e);
+            return error("Database error fetching employee schedule");
+        }
 
-            jsonBuilder.append("]");
-        return jsonBuilder.toString();
+        HttpResponse response;
+        if (timeline.getEtag().equals(request.getHeader("if-none-match"))) {
+            response = new HttpResponse(304, "Not Modified", "application/json", new byte[0]);
+        } else if (since >= 0) {
+            JsonWriter json = JsonWriter.obtain();
+            timeline.writeSince(since, json);
+            response = HttpResponse.json(200, json);
+        } else {
+            response = new HttpResponse(200, "OK", "application/json", timeline.getBody());
+        }
+        return response.header("ETag", timeline.getEtag())
+                       .header("Cache-Control", "private, no-cache");
     }
     
-    private String addJobNotes(int jobId, String body) {
-        Map<String, String> params = parseBody(body);
-        String notes = params.get("notes");
-        
-        if (notes == null || notes.trim().isEmpty()) {
-            return "{\"error\":\"Notes are required\"}";
+    // Notes newest first, a page at a time; ?before=<cursor> continues from the previous page.
+    private HttpResponse getJobNotes(int jobId, HttpRequest request) {
+        long before = 0;
+        String beforeParam = request.getQueryParameter("before");
+        if (beforeParam != null) {
+            try {
+                before = Long.parseLong(beforeParam);
+            } catch (NumberFormatException e) {
+                before = -1;
+            }
+            if (before < 1) {
+                return badRequest("before must be a positive note id");
+            }
         }
-        
-        String sql = "UPDATE jobs SET notes = CONCAT(COALESCE(notes, ''), ' | ', ?) WHERE id = ?";
-        
-        try (Connection conn = DatabaseConnector.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setString(1, notes);
-            pstmt.setInt(2, jobId);
-            
-            int affectedRows = pstmt.executeUpdate();
-            if (affectedRows > 0) {
-                return "{\"message\":\"Notes added successfully\"}";
+        int limit = DEFAULT_NOTES_LIMIT;
+        String limitParam = request.getQueryParameter("limit");
+        if (limitParam != null) {
+            try {
+                limit = Integer.parseInt(limitParam);
+            } catch (NumberFormatException e) {
+                limit = 0;
+            }
+            if (limit < 1 || limit > MAX_NOTES_LIMIT) {
+                return badRequest("limit must be between 1 and " + MAX_NOTES_LIMIT);
+            }
+        }
+
+        try (Connection conn = DatabaseConnector.getConnection()) {
+            if (!jobExists(conn, jobId)) {
+                return error("Job not found");
+            }
+            JsonWriter json = JsonWriter.obtain();
+            json.beginObject().field("jobId", jobId).name("notes");
+            long cursor = JobNotes.writePage(conn, jobId, before, limit, json);
+            if (cursor > 0) {
+                json.field("cursor", cursor);
             } else {
-                return "{\"error\":\"Job not found\"}";
+                json.nullField("cursor");
             }
+            json.endObject();
+            return HttpResponse.json(200, json);
         } catch (SQLException e) {
-            e.printStackTrace();
-            return "{\"error\":\"Database error adding notes\"}";
+            Log.error("Database error fetching job notes", e);
+            return error("Database error fetching job notes");
         }
     }
     
-    // Utility method for parsing JSON-like body
-    private Map<String, String> parseBody(String body) {
-        if (body == null || body.trim().isEmpty()) {
-            return new HashMap<>();
+    private HttpResponse addJobNotes(int jobId, int authorId, byte[] body) {
+        JsonObject params = parseBody(body);
+        if (params == null) {
+            return error("Invalid JSON body");
         }
+        String notes = params.getString("notes");
         
-        // Simple JSON parsing for basic key-value pairs
-        Map<String, String> result = new HashMap<>();
-        body = body.trim();
-        
-        // Remove outer braces
-        if (body.startsWith("{") && body.endsWith("}")) {
-            body = body.substring(1, body.length() - 1);
+        if (notes == null || notes.trim().isEmpty()) {
+            return error("Notes are required");
+        }
+        if (notes.length() > JobNotes.MAX_LENGTH) {
+            return badRequest("Notes must be at most " + JobNotes.MAX_LENGTH + " characters");
         }
         
-        // Split by comma, but be careful about commas in values
-        String[] pairs = body.split(",(?=(?:[^\"]*\"[^\"]*\")*[^\"]*$)");
-        
-        for (String pair : pairs) {
-            String[] keyValue = pair.split(":", 2);
-            if (keyValue.length == 2) {
-                String key = keyValue[0].trim().replace("\"", "");
-                String value = keyValue[1].trim().replace("\"", "");
-                result.put(key, value);
+        // Queued and written with whatever other notes arrive meanwhile, in one batched insert.
+        try {
+            if (!JobNotes.add(jobId, authorId, notes)) {
+                return error("Job not found");
             }
+        } catch (JobNotes.BusyException e) {
+            Log.warn("Rejecting job note: " + e.getMessage());
+            JsonWriter json = JsonWriter.obtain();
+            json.beginObject().field("error", "Server busy, please try again").endObject();
+            return HttpResponse.json(503, json).header("Retry-After", "1");
+        } catch (JobNotes.StillQueuedException e) {
+            // Accepted and still going to be written; a retry would add the note twice.
+            Log.warn("Job note on job " + jobId + " not written yet: " + e.getMessage());
+            JsonWriter json = JsonWriter.obtain();
+            json.beginObject().field("message", "Notes accepted and will appear shortly; do not send them again").endObject();
+            return HttpResponse.json(202, json);
+        } catch (SQLException e) {
+            Log.error("Database error adding notes", e);
+            return error("Database error adding notes");
+        }
+
+        SearchIndex.jobChanged(jobId);
+        if (EventBus.hasListeners()) {
+            try (Connection conn = DatabaseConnector.getConnection()) {
+                int[] audience = jobAudience(conn, jobId);
+                EventBus.publish(ChangeEvent.jobNote(jobId, audience[0], audience[1], notes));
+            } catch (SQLException e) {
+                Log.warn("Could not look up who to notify about a note on job " + jobId, e);
+            }
+        }
+        return message("Notes added successfully");
+    }
+    
+    // "Make Model (Year)" label shared by the job listings
+    private static String vehicleLabel(ResultSet rs) throws SQLException {
+        return rs.getString("make") + " " + rs.getString("model") + " (" + rs.getInt("year") + ")";
+    }
+    
+    private static String orEmpty(String value) {
+        return value != null ? value : "";
+    }
+    
+    private HttpResponse message(String message) {
+        JsonWriter json = JsonWriter.obtain();
+        json.beginObject().field("message", message).endObject();
+        return HttpResponse.json(200, json);
+    }
+    
+    private HttpResponse badRequest(String message) {
+        JsonWriter json = JsonWriter.obtain();
+        json.beginObject().field("error", message).endObject();
+        return HttpResponse.json(400, json);
+    }
+    
+    // Error responses from this handler have always been reported as 500.
+    private HttpResponse error(String message) {
+        JsonWriter json = JsonWriter.obtain();
+        json.beginObject().field("error", message).endObject();
+        return HttpResponse.json(500, json);
+    }
+    
+    // Returns null if the body is not a valid JSON object.
+    private JsonObject parseBody(byte[] body) {
+        try {
+            return JsonReader.parseObject(body);
+        } catch (JsonReader.ParseException e) {
+            Log.warn("Invalid employee request body: " + e.getMessage());
+            return null;
         }
-        
-        return result;
     }
-}
\ No newline at end of file
+}
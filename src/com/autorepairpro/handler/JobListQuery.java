@@ -0,0 +1,202 @@
+package com.autorepairpro.handler;
+
+import com.autorepairpro.server.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Paging, filter and projection parameters shared by the job listings:
+ * <ul>
+ *   <li>{@code limit} - page size, capped at {@link #MAX_LIMIT}</li>
+ *   <li>{@code cursor} - opaque value from the previous page's {@code X-Next-Cursor} header</li>
+ *   <li>{@code status} - comma-separated job statuses</li>
+ *   <li>{@code from}, {@code to} - inclusive booking date range, yyyy-MM-dd</li>
+ *   <li>{@code fields} - comma-separated response fields; everything when absent</li>
+ * </ul>
+ * Pages are keyed on (booking_date, id) descending rather than OFFSET, so fetching a deep page
+ * costs the same index range scan as fetching the first one.
+ */
+public class JobListQuery {
+    static final int DEFAULT_LIMIT = 50;
+    static final int MAX_LIMIT = 200;
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private static final Set<String> STATUSES = new HashSet<>(Arrays.asList(
+        "Booked", "In Progress", "Completed", "Invoiced", "Paid", "Cancelled"));
+
+    private final int limit;
+    private final Timestamp cursorDate;
+    private final int cursorId;
+    private final List<String> statuses;
+    private final Timestamp from;
+    private final Timestamp toExclusive;
+    private final Set<String> fields; // null selects every field
+
+    private JobListQuery(int limit, Timestamp cursorDate, int cursorId, List<String> statuses,
+                         Timestamp from, Timestamp toExclusive, Set<String> fields) {
+        this.limit = limit;
+        this.cursorDate = cursorDate;
+        this.cursorId = cursorId;
+        this.statuses = statuses;
+        this.from = from;
+        this.toExclusive = toExclusive;
+        this.fields = fields;
+    }
+
+    /** Throws IllegalArgumentException with a client-facing message for invalid parameters. */
+    static JobListQuery parse(HttpRequest request) {
+        int limit = DEFAULT_LIMIT;
+        String limitParam = request.getQueryParameter("limit");
+        if (limitParam != null) {
+            try {
+                limit = Integer.parseInt(limitParam);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("limit must be a number");
+            }
+            if (limit < 1) {
+                throw new IllegalArgumentException("limit must be at least 1");
+            }
+            limit = Math.min(limit, MAX_LIMIT);
+        }
+
+        Timestamp cursorDate = null;
+        int cursorId = 0;
+        String cursor = request.getQueryParameter("cursor");
+        if (cursor != null && !cursor.isEmpty()) {
+            try {
+                String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+                int sep = decoded.indexOf(':');
+                cursorDate = new Timestamp(Long.parseLong(decoded.substring(0, sep)));
+                cursorId = Integer.parseInt(decoded.substring(sep + 1));
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+
+        List<String> statuses = new ArrayList<>();
+        String statusParam = request.getQueryParameter("status");
+        if (statusParam != null) {
+            for (String status : statusParam.split(",")) {
+                status = status.trim();
+                if (status.isEmpty()) {
+                    continue;
+                }
+                if (!STATUSES.contains(status)) {
+                    throw new IllegalArgumentException("Unknown status: " + status);
+                }
+                if (!statuses.contains(status)) {
+                    statuses.add(status);
+                }
+            }
+        }
+
+        LocalDate fromDate = date(request, "from");
+        LocalDate toDate = date(request, "to");
+        if (fromDate != null && toDate != null && toDate.isBefore(fromDate)) {
+            throw new IllegalArgumentException("to must not be before from");
+        }
+
+        Set<String> fields = null;
+        String fieldsParam = request.getQueryParameter("fields");
+        if (fieldsParam != null && !fieldsParam.trim().isEmpty()) {
+            fields = new HashSet<>();
+            for (String field : fieldsParam.split(",")) {
+                fields.add(field.trim());
+            }
+        }
+
+        return new JobListQuery(limit, cursorDate, cursorId, statuses,
+            fromDate != null ? Timestamp.valueOf(fromDate.atStartOfDay()) : null,
+            toDate != null ? Timestamp.valueOf(toDate.plusDays(1).atStartOfDay()) : null,
+            fields);
+    }
+
+    /**
+     * A default-sized page with every field and no filters, starting after the given row, or at
+     * the newest booking when {@code cursorDate} is null. For tools that run the listing SQL.
+     */
+    public static JobListQuery page(Timestamp cursorDate, int cursorId) {
+        return new JobListQuery(DEFAULT_LIMIT, cursorDate, cursorId, new ArrayList<>(), null, null, null);
+    }
+
+    private static LocalDate date(HttpRequest request, String name) {
+        String value = request.getQueryParameter(name);
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(name + " must be a date (yyyy-MM-dd)");
+        }
+    }
+
+    int getLimit() {
+        return limit;
+    }
+
+    /** Whether the client asked for this response field. */
+    boolean includes(String field) {
+        return fields == null || fields.contains(field);
+    }
+
+    /**
+     * Appends the filter, ordering and limit clauses after a WHERE clause that already has at
+     * least one condition. One extra row is fetched to tell whether another page follows. The
+     * SQL only varies with which filters are present, so it stays in the statement cache.
+     */
+    void appendTo(StringBuilder sql) {
+        if (!statuses.isEmpty()) {
+            sql.append(" AND j.status IN (?");
+            for (int i = 1; i < statuses.size(); i++) {
+                sql.append(", ?");
+            }
+            sql.append(')');
+        }
+        if (from != null) {
+            sql.append(" AND j.booking_date >= ?");
+        }
+        if (toExclusive != null) {
+            sql.append(" AND j.booking_date < ?");
+        }
+        if (cursorDate != null) {
+            sql.append(" AND (j.booking_date < ? OR (j.booking_date = ? AND j.id < ?))");
+        }
+        sql.append(" ORDER BY j.booking_date DESC, j.id DESC LIMIT ?");
+    }
+
+    /** Binds the parameters of {@link #appendTo}, starting at {@code index}. */
+    public void bind(PreparedStatement pstmt, int index) throws SQLException {
+        for (String status : statuses) {
+            pstmt.setString(index++, status);
+        }
+        if (from != null) {
+            pstmt.setTimestamp(index++, from);
+        }
+        if (toExclusive != null) {
+            pstmt.setTimestamp(index++, toExclusive);
+        }
+        if (cursorDate != null) {
+            pstmt.setTimestamp(index++, cursorDate);
+            pstmt.setTimestamp(index++, cursorDate);
+            pstmt.setInt(index++, cursorId);
+        }
+        pstmt.setInt(index, limit + 1);
+    }
+
+    /** Cursor for the page that starts after the given row. */
+    static String cursorAfter(Timestamp bookingDate, int id) {
+        String value = bookingDate.getTime() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,280 @@
+package com.autorepairpro.inventory;
+
+import com.autorepairpro.db.DatabaseConnector;
+import com.autorepairpro.events.ChangeEvent;
+import com.autorepairpro.events.EventBus;
+import com.autorepairpro.reports.ReportRollups;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Takes parts out of stock for a job. Each part is reserved with one conditional decrement
+ * ({@code quantity >= ?}), so the check and the update are a single atomic statement and two
+ * technicians pulling the last unit cannot both succeed. A whole list of parts is applied in one
+ * transaction with batched statements, all or nothing, and {@code jobs.parts_cost} is increased
+ * by the cost of what was added instead of being re-summed from {@code job_inventory}.
+ *
+ * Parts are locked in ascending id order, so concurrent batches that share parts wait on each
+ * other rather than deadlock.
+ */
+public class InventoryEngine {
+    /** Takes parts from stock only while enough remain: quantity, part id, quantity. */
+    public static final String DECREMENT_SQL =
+        "UPDATE inventory SET quantity = quantity - ? WHERE id = ? AND quantity >= ?";
+    private static final String RECORD_USAGE_SQL =
+        "INSERT INTO job_inventory (job_id, inventory_id, quantity_used, unit_price, total_price) VALUES (?, ?, ?, ?, ?) " +
+        "ON DUPLICATE KEY UPDATE quantity_used = quantity_used + VALUES(quantity_used), total_price = total_price + VALUES(total_price)";
+    private static final String ADD_PARTS_COST_SQL =
+        "UPDATE jobs SET parts_cost = COALESCE(parts_cost, 0) + ? WHERE id = ?";
+
+    public enum Status { OK, NOT_FOUND, INSUFFICIENT }
+
+    /** A part and how many units of it to take. */
+    public static class Usage {
+        private final int inventoryId;
+        private final int quantity;
+
+        public Usage(int inventoryId, int quantity) {
+            this.inventoryId = inventoryId;
+            this.quantity = quantity;
+        }
+
+        public int getInventoryId() {
+            return inventoryId;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+    }
+
+    /** Outcome for one part. {@code quantity} is the stock left, or what was available if there was not enough. */
+    public static class Line {
+        private final int inventoryId;
+        private final int requested;
+        private Status status = Status.NOT_FOUND;
+        private String partName;
+        private int quantity;
+        private int minQuantity;
+        private BigDecimal unitPrice;
+        private BigDecimal totalPrice;
+
+        Line(int inventoryId, int requested) {
+            this.inventoryId = inventoryId;
+            this.requested = requested;
+        }
+
+        public int getInventoryId() {
+            return inventoryId;
+        }
+
+        public int getRequested() {
+            return requested;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public String getPartName() {
+            return partName;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public int getMinQuantity() {
+            return minQuantity;
+        }
+
+        public BigDecimal getUnitPrice() {
+            return unitPrice;
+        }
+
+        public BigDecimal getTotalPrice() {
+            return totalPrice;
+        }
+    }
+
+    public static class Result {
+        private final boolean jobFound;
+        private final List<Line> lines;
+        private final BigDecimal partsCost;
+
+        Result(boolean jobFound, List<Line> lines, BigDecimal partsCost) {
+            this.jobFound = jobFound;
+            this.lines = lines;
+            this.partsCost = partsCost;
+        }
+
+        /** True when every line was OK and the whole batch was committed. */
+        public boolean isApplied() {
+            if (!jobFound) {
+                return false;
+            }
+            for (Line line : lines) {
+                if (line.status != Status.OK) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        public boolean isJobFound() {
+            return jobFound;
+        }
+
+        /** One line per distinct part, in ascending part id order. */
+        public List<Line> getLines() {
+            return lines;
+        }
+
+        /** Cost added to the job's parts_cost; zero unless applied. */
+        public BigDecimal getPartsCost() {
+            return partsCost;
+        }
+    }
+
+    private InventoryEngine() {}
+
+    /**
+     * Takes the given parts out of stock and records them against the job. Repeated part ids are
+     * merged. Nothing is changed unless every part is in stock and the job exists.
+     *
+     * @throws IllegalArgumentException if a quantity is not positive
+     */
+    public static Result use(int jobId, List<Usage> usages) throws SQLException {
+        TreeMap<Integer, Line> lines = new TreeMap<>();
+        for (Usage usage : usages) {
+            if (usage.getQuantity() <= 0) {
+                throw new IllegalArgumentException("Quantity used must be greater than 0");
+            }
+            Line existing = lines.get(usage.getInventoryId());
+            int requested = usage.getQuantity() + (existing != null ? existing.requested : 0);
+            lines.put(usage.getInventoryId(), new Line(usage.getInventoryId(), requested));
+        }
+        List<Line> ordered = Collections.unmodifiableList(new ArrayList<>(lines.values()));
+        if (ordered.isEmpty()) {
+            return new Result(true, ordered, BigDecimal.ZERO);
+        }
+
+        Result result;
+        try (Connection conn = DatabaseConnector.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                result = apply(conn, jobId, ordered);
+                if (result.isApplied()) {
+                    conn.commit();
+                } else {
+                    conn.rollback();
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+
+        if (result.isApplied()) {
+            // Parts usage is counted on the day it happens.
+            ReportRollups.markDirty(LocalDate.now());
+        }
+        if (result.isApplied() && EventBus.hasListeners()) {
+            for (Line line : ordered) {
+                EventBus.publish(ChangeEvent.inventory(line.inventoryId, line.partName, line.quantity, line.minQuantity));
+            }
+        }
+        return result;
+    }
+
+    private static Result apply(Connection conn, int jobId, List<Line> lines) throws SQLException {
+        // 1. Reserve: each decrement only matches while enough stock is left.
+        int[] reserved;
+        try (PreparedStatement pstmt = conn.prepareStatement(DECREMENT_SQL)) {
+            for (Line line : lines) {
+                pstmt.setInt(1, line.requested);
+                pstmt.setInt(2, line.inventoryId);
+                pstmt.setInt(3, line.requested);
+                pstmt.addBatch();
+            }
+            reserved = pstmt.executeBatch();
+        }
+
+        // 2. Prices and the stock left (or, for a miss, what there was) in one round trip.
+        Map<Integer, Line> byId = new HashMap<>();
+        StringBuilder sql = new StringBuilder(
+            "SELECT id, part_name, quantity, min_quantity, price_per_unit FROM inventory WHERE id IN (");
+        for (int i = 0; i < lines.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+            byId.put(lines.get(i).inventoryId, lines.get(i));
+        }
+        sql.append(')');
+        try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < lines.size(); i++) {
+                pstmt.setInt(i + 1, lines.get(i).inventoryId);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    Line line = byId.get(rs.getInt("id"));
+                    line.partName = rs.getString("part_name");
+                    line.quantity = rs.getInt("quantity");
+                    line.minQuantity = rs.getInt("min_quantity");
+                    line.unitPrice = rs.getBigDecimal("price_per_unit");
+                    line.status = Status.INSUFFICIENT;
+                }
+            }
+        }
+
+        boolean allReserved = true;
+        BigDecimal partsCost = BigDecimal.ZERO;
+        for (int i = 0; i < lines.size(); i++) {
+            Line line = lines.get(i);
+            if (line.partName != null && reserved[i] != 0) {
+                line.status = Status.OK;
+                line.totalPrice = line.unitPrice.multiply(BigDecimal.valueOf(line.requested)).setScale(2, RoundingMode.HALF_UP);
+                partsCost = partsCost.add(line.totalPrice);
+            } else {
+                allReserved = false;
+            }
+        }
+        if (!allReserved) {
+            return new Result(true, lines, BigDecimal.ZERO);
+        }
+
+        // 3. Add the cost to the job first; no row means no job, and nothing has been recorded yet.
+        try (PreparedStatement pstmt = conn.prepareStatement(ADD_PARTS_COST_SQL)) {
+            pstmt.setBigDecimal(1, partsCost);
+            pstmt.setInt(2, jobId);
+            if (pstmt.executeUpdate() == 0) {
+                return new Result(false, lines, BigDecimal.ZERO);
+            }
+        }
+
+        // 4. Record the usage; a part already on the job accumulates.
+        try (PreparedStatement pstmt = conn.prepareStatement(RECORD_USAGE_SQL)) {
+            for (Line line : lines) {
+                pstmt.setInt(1, jobId);
+                pstmt.setInt(2, line.inventoryId);
+                pstmt.setInt(3, line.requested);
+                pstmt.setBigDecimal(4, line.unitPrice);
+                pstmt.setBigDecimal(5, line.totalPrice);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+        return new Result(true, lines, partsCost);
+    }
+}
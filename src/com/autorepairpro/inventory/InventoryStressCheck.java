@@ -0,0 +1,248 @@
+package com.autorepairpro.inventory;
+
+import com.autorepairpro.db.DatabaseConnector;
+import com.autorepairpro.db.MigrationRunner;
+import com.autorepairpro.log.Log;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Has many threads take one unit at a time of the same scratch part until it runs out, first with
+ * the old read-check-write sequence and then through {@link InventoryEngine}, and reports how many
+ * units each handed out against the stock there was, plus the throughput. Writes to the database,
+ * so only run it against a scratch copy; it needs at least one job to record usage against.
+ *
+ * <pre>java -cp build:lib/mysql-connector-j-8.0.33.jar com.autorepairpro.inventory.InventoryStressCheck [--threads 16] [--stock 500]</pre>
+ *
+ * Exits with status 1 if the engine hands out more units than were in stock, or fewer.
+ */
+public class InventoryStressCheck {
+    // The sequence useInventoryForJob ran before InventoryEngine; kept to show what it allowed.
+    private static final String LEGACY_CHECK_SQL = "SELECT quantity, price_per_unit FROM inventory WHERE id = ?";
+    private static final String LEGACY_INSERT_SQL =
+        "INSERT INTO job_inventory (job_id, inventory_id, quantity_used, unit_price, total_price) VALUES (?, ?, ?, ?, ?) " +
+        "ON DUPLICATE KEY UPDATE quantity_used = quantity_used + VALUES(quantity_used), total_price = (quantity_used + VALUES(quantity_used)) * unit_price";
+    private static final String LEGACY_DECREMENT_SQL = "UPDATE inventory SET quantity = quantity - ? WHERE id = ?";
+    private static final String LEGACY_PARTS_COST_SQL =
+        "UPDATE jobs SET parts_cost = (SELECT SUM(total_price) FROM job_inventory WHERE job_id = ?) WHERE id = ?";
+
+    private interface Taker {
+        // True if one unit was handed out.
+        boolean takeOne(int jobId, int inventoryId) throws SQLException;
+    }
+
+    private static class Run {
+        final String name;
+        final int taken;
+        final int finalQuantity;
+        final long millis;
+
+        Run(String name, int taken, int finalQuantity, long millis) {
+            this.name = name;
+            this.taken = taken;
+            this.finalQuantity = finalQuantity;
+            this.millis = millis;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = 16;
+        int stock = 500;
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals("--threads")) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--stock")) {
+                stock = Integer.parseInt(args[++i]);
+            }
+        }
+
+        MigrationRunner.migrateOnStartup();
+        int jobId = anyJob();
+        int partId = createPart(stock);
+        boolean passed;
+        try {
+            Run legacy = run("legacy read-check-write", threads, stock, jobId, partId, InventoryStressCheck::legacyTakeOne);
+            Run engine = run("InventoryEngine", threads, stock, jobId, partId, (job, part) ->
+                InventoryEngine.use(job, Collections.singletonList(new InventoryEngine.Usage(part, 1))).isApplied());
+            report(legacy, stock);
+            report(engine, stock);
+            passed = engine.taken == stock && engine.finalQuantity == 0;
+        } finally {
+            deletePart(jobId, partId);
+        }
+        Log.info(passed ? "Inventory stress check passed" : "Inventory stress check failed: engine oversold or undersold");
+        System.exit(passed ? 0 : 1);
+    }
+
+    // Every thread keeps taking units until a request is refused, so a run ends when stock looks exhausted.
+    private static Run run(String name, int threads, int stock, int jobId, int partId, Taker taker) throws Exception {
+        resetPart(jobId, partId, stock);
+        AtomicInteger taken = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            pool.execute(() -> {
+                try {
+                    start.await();
+                    while (taker.takeOne(jobId, partId)) {
+                        taken.incrementAndGet();
+                    }
+                } catch (SQLException e) {
+                    errors.incrementAndGet();
+                    Log.warn(name + ": " + e.getMessage());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        long began = System.nanoTime();
+        start.countDown();
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.MINUTES);
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - began);
+        if (errors.get() > 0) {
+            Log.warn(name + ": " + errors.get() + " threads stopped on a database error");
+        }
+        return new Run(name, taken.get(), quantity(partId), millis);
+    }
+
+    private static void report(Run run, int stock) {
+        double perSecond = run.millis > 0 ? run.taken * 1000.0 / run.millis : run.taken;
+        String line = String.format("%s: handed out %d of %d units, %d left in stock, oversold %d, %.0f units/s",
+            run.name, run.taken, stock, run.finalQuantity, Math.max(0, run.taken - stock), perSecond);
+        if (run.taken > stock || run.finalQuantity < 0) {
+            Log.warn(line);
+        } else {
+            Log.info(line);
+        }
+    }
+
+    private static boolean legacyTakeOne(int jobId, int inventoryId) throws SQLException {
+        try (Connection conn = DatabaseConnector.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                double unitPrice;
+                try (PreparedStatement pstmt = conn.prepareStatement(LEGACY_CHECK_SQL)) {
+                    pstmt.setInt(1, inventoryId);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        if (!rs.next() || rs.getInt("quantity") < 1) {
+                            conn.rollback();
+                            return false;
+                        }
+                        unitPrice = rs.getDouble("price_per_unit");
+                    }
+                }
+                try (PreparedStatement pstmt = conn.prepareStatement(LEGACY_INSERT_SQL)) {
+                    pstmt.setInt(1, jobId);
+                    pstmt.setInt(2, inventoryId);
+                    pstmt.setInt(3, 1);
+                    pstmt.setDouble(4, unitPrice);
+                    pstmt.setDouble(5, unitPrice);
+                    pstmt.executeUpdate();
+                }
+                try (PreparedStatement pstmt = conn.prepareStatement(LEGACY_DECREMENT_SQL)) {
+                    pstmt.setInt(1, 1);
+                    pstmt.setInt(2, inventoryId);
+                    pstmt.executeUpdate();
+                }
+                try (PreparedStatement pstmt = conn.prepareStatement(LEGACY_PARTS_COST_SQL)) {
+                    pstmt.setInt(1, jobId);
+                    pstmt.setInt(2, jobId);
+                    pstmt.executeUpdate();
+                }
+                conn.commit();
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    private static int anyJob() throws SQLException {
+        try (Connection conn = DatabaseConnector.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MIN(id) FROM jobs")) {
+            rs.next();
+            int jobId = rs.getInt(1);
+            if (rs.wasNull()) {
+                throw new IllegalStateException("The database has no jobs to record usage against");
+            }
+            return jobId;
+        }
+    }
+
+    private static int createPart(int stock) throws SQLException {
+        try (Connection conn = DatabaseConnector.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(
+                 "INSERT INTO inventory (part_name, part_number, quantity, min_quantity, price_per_unit, category) " +
+                 "VALUES ('Stress check part', ?, ?, 0, 1.00, 'Test')", Statement.RETURN_GENERATED_KEYS)) {
+            pstmt.setString(1, "STRESS-" + System.nanoTime());
+            pstmt.setInt(2, stock);
+            pstmt.executeUpdate();
+            try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                keys.next();
+                return keys.getInt(1);
+            }
+        }
+    }
+
+    private static void resetPart(int jobId, int partId, int stock) throws SQLException {
+        try (Connection conn = DatabaseConnector.getConnection()) {
+            removeUsage(conn, jobId, partId);
+            try (PreparedStatement pstmt = conn.prepareStatement("UPDATE inventory SET quantity = ? WHERE id = ?")) {
+                pstmt.setInt(1, stock);
+                pstmt.setInt(2, partId);
+                pstmt.executeUpdate();
+            }
+        }
+    }
+
+    private static void deletePart(int jobId, int partId) throws SQLException {
+        try (Connection conn = DatabaseConnector.getConnection()) {
+            removeUsage(conn, jobId, partId);
+            try (PreparedStatement pstmt = conn.prepareStatement("DELETE FROM inventory WHERE id = ?")) {
+                pstmt.setInt(1, partId);
+                pstmt.executeUpdate();
+            }
+        }
+    }
+
+    // Drops the scratch part's usage and puts the job's parts_cost back to what its other parts add up to.
+    private static void removeUsage(Connection conn, int jobId, int partId) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("DELETE FROM job_inventory WHERE job_id = ? AND inventory_id = ?")) {
+            pstmt.setInt(1, jobId);
+            pstmt.setInt(2, partId);
+            pstmt.executeUpdate();
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "UPDATE jobs SET parts_cost = (SELECT COALESCE(SUM(total_price), 0) FROM job_inventory WHERE job_id = ?) WHERE id = ?")) {
+            pstmt.setInt(1, jobId);
+            pstmt.setInt(2, jobId);
+            pstmt.executeUpdate();
+        }
+    }
+
+    private static int quantity(int partId) throws SQLException {
+        try (Connection conn = DatabaseConnector.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT quantity FROM inventory WHERE id = ?")) {
+            pstmt.setInt(1, partId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+}
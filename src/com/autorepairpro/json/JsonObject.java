@@ -0,0 +1,113 @@
+package com.autorepairpro.json;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A parsed JSON object. The typed getters are lenient in the same way the old form-style body
+ * parsing was: numbers can be read as strings and numeric strings as numbers.
+ */
+public class JsonObject {
+    private final Map<String, Object> members = new LinkedHashMap<>();
+
+    void put(String name, Object value) {
+        members.put(name, value);
+    }
+
+    public boolean has(String name) {
+        return members.containsKey(name);
+    }
+
+    public Object get(String name) {
+        return members.get(name);
+    }
+
+    public int size() {
+        return members.size();
+    }
+
+    public Map<String, Object> asMap() {
+        return members;
+    }
+
+    /** String value, or the text of a number/boolean. Null if absent, null or a container. */
+    public String getString(String name) {
+        Object value = members.get(name);
+        if (value instanceof String) {
+            return (String) value;
+        }
+        if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).toPlainString();
+        }
+        if (value instanceof Long || value instanceof Boolean) {
+            return value.toString();
+        }
+        return null;
+    }
+
+    /** Integer value from a whole number or a numeric string; null if absent or not an int. */
+    public Integer getInteger(String name) {
+        Object value = members.get(name);
+        if (value instanceof Long) {
+            long l = (Long) value;
+            return l >= Integer.MIN_VALUE && l <= Integer.MAX_VALUE ? (int) l : null;
+        }
+        if (value instanceof String) {
+            try {
+                return Integer.valueOf(((String) value).trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /** Decimal value from a number or a numeric string; null if absent or not numeric. */
+    public BigDecimal getDecimal(String name) {
+        Object value = members.get(name);
+        if (value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        }
+        if (value instanceof Long) {
+            return BigDecimal.valueOf((Long) value);
+        }
+        if (value instanceof String) {
+            try {
+                return new BigDecimal(((String) value).trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    public Boolean getBoolean(String name) {
+        Object value = members.get(name);
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        if (value instanceof String) {
+            String s = (String) value;
+            if (s.equalsIgnoreCase("true")) {
+                return Boolean.TRUE;
+            }
+            if (s.equalsIgnoreCase("false")) {
+                return Boolean.FALSE;
+            }
+        }
+        return null;
+    }
+
+    public JsonObject getObject(String name) {
+        Object value = members.get(name);
+        return value instanceof JsonObject ? (JsonObject) value : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<Object> getArray(String name) {
+        Object value = members.get(name);
+        return value instanceof List ? (List<Object>) value : null;
+    }
+}
@@ -0,0 +1,392 @@
+package com.autorepairpro.json;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Single-pass JSON parser for request bodies. It walks the UTF-8 bytes once, decoding strings,
+ * escapes and numbers as it goes, and builds plain Java values: {@link JsonObject}, List, String,
+ * Long, BigDecimal, Boolean or null.
+ *
+ * Input size, nesting depth, string length and container size are all capped so a hostile body
+ * cannot make a worker spin or allocate without bound.
+ */
+public class JsonReader {
+    public static final int MAX_INPUT_BYTES = 256 * 1024;
+    private static final int MAX_DEPTH = 32;
+    private static final int MAX_STRING_LENGTH = 64 * 1024;
+    private static final int MAX_CONTAINER_SIZE = 4096;
+    private static final int MAX_NUMBER_LENGTH = 64;
+
+    private final byte[] data;
+    private final int end;
+    private int pos;
+    private int depth;
+    // Only used for strings that contain escapes.
+    private StringBuilder scratch;
+
+    public static class ParseException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        private final int offset;
+
+        ParseException(String message, int offset) {
+            super(message + " at offset " + offset);
+            this.offset = offset;
+        }
+
+        public int getOffset() {
+            return offset;
+        }
+    }
+
+    private JsonReader(byte[] data, int offset, int length) {
+        this.data = data;
+        this.pos = offset;
+        this.end = offset + length;
+    }
+
+    public static Object parse(byte[] data) throws ParseException {
+        return parse(data, 0, data.length);
+    }
+
+    public static Object parse(byte[] data, int offset, int length) throws ParseException {
+        if (length > MAX_INPUT_BYTES) {
+            throw new ParseException("JSON body too large", offset);
+        }
+        JsonReader reader = new JsonReader(data, offset, length);
+        reader.skipWhitespace();
+        Object value = reader.readValue();
+        reader.skipWhitespace();
+        if (reader.pos != reader.end) {
+            throw new ParseException("Unexpected trailing data", reader.pos);
+        }
+        return value;
+    }
+
+    /** Parses a request body that must be an object. An empty body yields an empty object. */
+    public static JsonObject parseObject(byte[] body) throws ParseException {
+        if (body == null || isBlank(body)) {
+            return new JsonObject();
+        }
+        Object value = parse(body);
+        if (!(value instanceof JsonObject)) {
+            throw new ParseException("Expected a JSON object", 0);
+        }
+        return (JsonObject) value;
+    }
+
+    private static boolean isBlank(byte[] body) {
+        for (byte b : body) {
+            if (b != ' ' && b != '\t' && b != '\r' && b != '\n') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Object readValue() throws ParseException {
+        if (pos >= end) {
+            throw new ParseException("Unexpected end of input", pos);
+        }
+        byte b = data[pos];
+        switch (b) {
+            case '{':
+                return readObject();
+            case '[':
+                return readArray();
+            case '"':
+                return readString();
+            case 't':
+                expectLiteral("true");
+                return Boolean.TRUE;
+            case 'f':
+                expectLiteral("false");
+                return Boolean.FALSE;
+            case 'n':
+                expectLiteral("null");
+                return null;
+            default:
+                if (b == '-' || (b >= '0' && b <= '9')) {
+                    return readNumber();
+                }
+                throw new ParseException("Unexpected character '" + (char) b + "'", pos);
+        }
+    }
+
+    private JsonObject readObject() throws ParseException {
+        enter();
+        pos++; // '{'
+        JsonObject object = new JsonObject();
+        skipWhitespace();
+        if (peek() == '}') {
+            pos++;
+            depth--;
+            return object;
+        }
+        while (true) {
+            if (peek() != '"') {
+                throw new ParseException("Expected member name", pos);
+            }
+            String name = readString();
+            skipWhitespace();
+            expect(':');
+            skipWhitespace();
+            object.put(name, readValue());
+            if (object.size() > MAX_CONTAINER_SIZE) {
+                throw new ParseException("Too many object members", pos);
+            }
+            skipWhitespace();
+            byte b = next();
+            if (b == '}') {
+                break;
+            }
+            if (b != ',') {
+                throw new ParseException("Expected ',' or '}'", pos - 1);
+            }
+            skipWhitespace();
+        }
+        depth--;
+        return object;
+    }
+
+    private List<Object> readArray() throws ParseException {
+        enter();
+        pos++; // '['
+        List<Object> array = new ArrayList<>();
+        skipWhitespace();
+        if (peek() == ']') {
+            pos++;
+            depth--;
+            return array;
+        }
+        while (true) {
+            array.add(readValue());
+            if (array.size() > MAX_CONTAINER_SIZE) {
+                throw new ParseException("Too many array elements", pos);
+            }
+            skipWhitespace();
+            byte b = next();
+            if (b == ']') {
+                break;
+            }
+            if (b != ',') {
+                throw new ParseException("Expected ',' or ']'", pos - 1);
+            }
+            skipWhitespace();
+        }
+        depth--;
+        return array;
+    }
+
+    private String readString() throws ParseException {
+        int start = ++pos; // skip opening quote
+        boolean ascii = true;
+        // Fast path: no escapes, so the bytes between the quotes can be decoded directly.
+        while (pos < end) {
+            byte b = data[pos];
+            if (b == '"') {
+                int length = pos - start;
+                checkStringLength(length, start);
+                pos++;
+                return new String(data, start, length, ascii ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+            }
+            if (b == '\\') {
+                return readEscapedString(start);
+            }
+            if (b >= 0 && b < 0x20) {
+                throw new ParseException("Control character in string", pos);
+            }
+            if (b < 0) {
+                ascii = false;
+            }
+            pos++;
+        }
+        throw new ParseException("Unterminated string", start - 1);
+    }
+
+    // Slow path: decode the already-scanned prefix, then continue char by char.
+    private String readEscapedString(int start) throws ParseException {
+        if (scratch == null) {
+            scratch = new StringBuilder(64);
+        }
+        StringBuilder sb = scratch;
+        sb.setLength(0);
+        sb.append(new String(data, start, pos - start, StandardCharsets.UTF_8));
+
+        int runStart = pos;
+        while (pos < end) {
+            byte b = data[pos];
+            if (b == '"') {
+                flushRun(sb, runStart);
+                pos++;
+                checkStringLength(sb.length(), start);
+                return sb.toString();
+            }
+            if (b >= 0 && b < 0x20) {
+                throw new ParseException("Control character in string", pos);
+            }
+            if (b != '\\') {
+                pos++;
+                continue;
+            }
+            flushRun(sb, runStart);
+            pos++;
+            if (pos >= end) {
+                break;
+            }
+            byte e = data[pos++];
+            switch (e) {
+                case '"': sb.append('"'); break;
+                case '\\': sb.append('\\'); break;
+                case '/': sb.append('/'); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'u': sb.append(readHexChar()); break;
+                default:
+                    throw new ParseException("Invalid escape '\\" + (char) e + "'", pos - 1);
+            }
+            runStart = pos;
+            checkStringLength(sb.length(), start);
+        }
+        throw new ParseException("Unterminated string", start - 1);
+    }
+
+    private void flushRun(StringBuilder sb, int runStart) {
+        if (pos > runStart) {
+            sb.append(new String(data, runStart, pos - runStart, StandardCharsets.UTF_8));
+        }
+    }
+
+    private char readHexChar() throws ParseException {
+        if (end - pos < 4) {
+            throw new ParseException("Truncated \\u escape", pos);
+        }
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(data[pos++], 16);
+            if (digit < 0) {
+                throw new ParseException("Invalid \\u escape", pos - 1);
+            }
+            value = (value << 4) | digit;
+        }
+        return (char) value;
+    }
+
+    private Object readNumber() throws ParseException {
+        int start = pos;
+        boolean negative = false;
+        if (data[pos] == '-') {
+            negative = true;
+            pos++;
+        }
+        int digitsStart = pos;
+        long value = 0;
+        while (pos < end && data[pos] >= '0' && data[pos] <= '9') {
+            value = value * 10 + (data[pos] - '0');
+            pos++;
+        }
+        int digits = pos - digitsStart;
+        if (digits == 0) {
+            throw new ParseException("Invalid number", start);
+        }
+        if (digits > 1 && data[digitsStart] == '0') {
+            throw new ParseException("Leading zero in number", start);
+        }
+
+        boolean decimal = false;
+        if (pos < end && data[pos] == '.') {
+            decimal = true;
+            pos++;
+            if (!skipDigits()) {
+                throw new ParseException("Invalid number", start);
+            }
+        }
+        if (pos < end && (data[pos] == 'e' || data[pos] == 'E')) {
+            decimal = true;
+            pos++;
+            if (pos < end && (data[pos] == '+' || data[pos] == '-')) {
+                pos++;
+            }
+            if (!skipDigits()) {
+                throw new ParseException("Invalid number", start);
+            }
+        }
+        if (pos - start > MAX_NUMBER_LENGTH) {
+            throw new ParseException("Number too long", start);
+        }
+
+        // Up to 18 digits always fit in a long, so plain integers never leave this loop.
+        if (!decimal && digits <= 18) {
+            return negative ? -value : value;
+        }
+        return new BigDecimal(new String(data, start, pos - start, StandardCharsets.ISO_8859_1));
+    }
+
+    private boolean skipDigits() {
+        int start = pos;
+        while (pos < end && data[pos] >= '0' && data[pos] <= '9') {
+            pos++;
+        }
+        return pos > start;
+    }
+
+    private void expectLiteral(String literal) throws ParseException {
+        int n = literal.length();
+        if (end - pos < n) {
+            throw new ParseException("Unexpected end of input", pos);
+        }
+        for (int i = 0; i < n; i++) {
+            if (data[pos + i] != literal.charAt(i)) {
+                throw new ParseException("Invalid literal", pos);
+            }
+        }
+        pos += n;
+    }
+
+    private void enter() throws ParseException {
+        if (++depth > MAX_DEPTH) {
+            throw new ParseException("JSON nesting too deep", pos);
+        }
+    }
+
+    private void checkStringLength(int length, int start) throws ParseException {
+        if (length > MAX_STRING_LENGTH) {
+            throw new ParseException("String too long", start);
+        }
+    }
+
+    private void skipWhitespace() {
+        while (pos < end) {
+            byte b = data[pos];
+            if (b != ' ' && b != '\t' && b != '\r' && b != '\n') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private byte peek() throws ParseException {
+        if (pos >= end) {
+            throw new ParseException("Unexpected end of input", pos);
+        }
+        return data[pos];
+    }
+
+    private byte next() throws ParseException {
+        byte b = peek();
+        pos++;
+        return b;
+    }
+
+    private void expect(char c) throws ParseException {
+        if (next() != c) {
+            throw new ParseException("Expected '" + c + "'", pos - 1);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.autorepairpro.json;
+
+import com.autorepairpro.log.Log;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Parses request bodies the way the handlers used to (decode to a String, then split on a regex
+ * with a quote-counting lookahead) and with {@link JsonReader}, and reports the time per body for
+ * each. Bodies are a login, a booking, and notes of growing length with a quote every few words,
+ * where the old regex rescans the rest of the body at every comma. No database needed.
+ *
+ * <pre>java -cp build com.autorepairpro.json.JsonReaderBenchmark [--bodies 200000]</pre>
+ *
+ * Exits with status 1 if the reader decodes a field to anything but the value that was encoded,
+ * or accepts a malformed body.
+ */
+public class JsonReaderBenchmark {
+    private static final String LOGIN = "{\"username\":\"jsmith\",\"password\":\"correct horse battery staple\"}";
+    private static final String BOOKING =
+        "{\"customerId\":42,\"vehicleId\":7,\"serviceId\":3,\"branchId\":2," +
+        "\"bookingDate\":\"2026-11-02T09:30\",\"notes\":\"Front left brake squeals, \\\"worse\\\" when cold\"}";
+    private static final String[] MALFORMED = {
+        "{\"username\":\"jsmith\"", "{\"a\":}", "{\"a\":\"unterminated}", "{\"a\":1,}", "[1,2", "{\"a\":1} trailing"
+    };
+
+    public static void main(String[] args) {
+        int bodies = 200000;
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals("--bodies")) {
+                bodies = Integer.parseInt(args[++i]);
+            }
+        }
+
+        boolean passed = true;
+        passed &= time("login", LOGIN, bodies);
+        passed &= time("booking", BOOKING, bodies);
+        for (int words : new int[] { 100, 1000, 4000 }) {
+            // Fewer repetitions as notes grow, so the old parser's long bodies finish in seconds.
+            passed &= time("notes of " + words + " words", notes(words), Math.max(20, bodies / words / 10));
+        }
+
+        for (String body : MALFORMED) {
+            try {
+                JsonReader.parseObject(body.getBytes(StandardCharsets.UTF_8));
+                Log.warn("Malformed body was accepted: " + body);
+                passed = false;
+            } catch (JsonReader.ParseException e) {
+                // Rejected, as it should be.
+            }
+        }
+        Log.info(passed ? "JSON reader benchmark passed" : "JSON reader benchmark failed: wrong value or malformed body accepted");
+        System.exit(passed ? 0 : 1);
+    }
+
+    // Times both parsers on one body, once to warm up the JIT and once measured; checks the reader's result.
+    private static boolean time(String name, String body, int count) {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        long sink = 0;
+        long regexNanos = 0;
+        long readerNanos = 0;
+        for (int round = 0; round < 2; round++) {
+            long began = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                sink += parseBody(new String(bytes, StandardCharsets.UTF_8)).size();
+            }
+            regexNanos = System.nanoTime() - began;
+
+            began = System.nanoTime();
+            try {
+                for (int i = 0; i < count; i++) {
+                    sink += JsonReader.parseObject(bytes).size();
+                }
+            } catch (JsonReader.ParseException e) {
+                Log.warn(name + " did not parse", e);
+                return false;
+            }
+            readerNanos = System.nanoTime() - began;
+        }
+        Log.info(String.format("%s (%d bytes): regex split %.0f ns per body, JsonReader %.0f ns per body, %.1fx",
+            name, bytes.length, (double) regexNanos / count, (double) readerNanos / count, (double) regexNanos / readerNanos));
+        Log.debug("Parsed " + sink + " fields");
+        return check(name, bytes);
+    }
+
+    private static boolean check(String name, byte[] bytes) {
+        try {
+            JsonObject parsed = JsonReader.parseObject(bytes);
+            boolean correct;
+            if (parsed.has("customerId")) {
+                correct = Integer.valueOf(42).equals(parsed.getInteger("customerId"))
+                    && "Front left brake squeals, \"worse\" when cold".equals(parsed.getString("notes"));
+            } else if (parsed.has("username")) {
+                correct = "correct horse battery staple".equals(parsed.getString("password"));
+            } else {
+                String notes = parsed.getString("notes");
+                correct = notes != null && notes.startsWith("Customer said \"word 0\", then") && Integer.valueOf(9).equals(parsed.getInteger("jobId"));
+            }
+            if (!correct) {
+                Log.warn(name + " decoded to the wrong values");
+            }
+            return correct;
+        } catch (JsonReader.ParseException e) {
+            Log.warn(name + " did not parse", e);
+            return false;
+        }
+    }
+
+    private static String notes(int words) {
+        StringBuilder notes = new StringBuilder("{\"jobId\":9,\"notes\":\"");
+        for (int i = 0; i < words; i++) {
+            if (i % 5 == 0) {
+                notes.append("Customer said \\\"word ").append(i).append("\\\", then ");
+            } else {
+                notes.append("word").append(i).append(", ");
+            }
+        }
+        return notes.append("done\"}").toString();
+    }
+
+    // The parser AuthHandler and EmployeeHandler used before JsonReader.
+    private static Map<String, String> parseBody(String body) {
+        if (body == null || body.trim().isEmpty()) {
+            return new HashMap<>();
+        }
+        Map<String, String> result = new HashMap<>();
+        body = body.trim();
+        if (body.startsWith("{") && body.endsWith("}")) {
+            body = body.substring(1, body.length() - 1);
+        }
+        String[] pairs = body.split(",(?=(?:[^\"]*\"[^\"]*\")*[^\"]*$)");
+        for (String pair : pairs) {
+            String[] keyValue = pair.split(":", 2);
+            if (keyValue.length == 2) {
+                String key = keyValue[0].trim().replace("\"", "");
+                String value = keyValue[1].trim().replace("\"", "");
+                if (key.length() > 0 && key.length() <= 100 && value.length() <= 1000) {
+                    result.put(key, value);
+                }
+            }
+        }
+        return result;
+    }
+}
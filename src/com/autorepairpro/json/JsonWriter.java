@@ -0,0 +1,327 @@
+package com.autorepairpro.json;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Streaming JSON writer that encodes straight into a growable UTF-8 byte buffer. Handlers write
+ * ResultSet columns into it row by row and the finished buffer is handed to the socket as-is, so a
+ * response is never materialized as a String or copied by getBytes().
+ *
+ * Writers are pooled: {@link #obtain()} one per response and {@link #release()} it once the bytes
+ * have been written out. Commas between members and elements are inserted automatically.
+ */
+public class JsonWriter {
+    private static final int INITIAL_CAPACITY = 4 * 1024;
+    // Buffers that grew beyond this are dropped instead of pooled so one huge response does not pin memory.
+    private static final int MAX_POOLED_CAPACITY = 256 * 1024;
+    private static final int MAX_POOLED_WRITERS = 64;
+    private static final int MAX_DEPTH = 32;
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+    private static final byte[] NULL = { 'n', 'u', 'l', 'l' };
+
+    private static final ConcurrentLinkedQueue<JsonWriter> pool = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger pooledCount = new AtomicInteger();
+
+    private byte[] buf = new byte[INITIAL_CAPACITY];
+    private int len;
+    // needsComma[depth] is true once the current container has at least one element.
+    private final boolean[] needsComma = new boolean[MAX_DEPTH];
+    private int depth;
+    private boolean afterName;
+
+    public static JsonWriter obtain() {
+        JsonWriter writer = pool.poll();
+        if (writer == null) {
+            return new JsonWriter();
+        }
+        pooledCount.decrementAndGet();
+        return writer;
+    }
+
+    public void release() {
+        len = 0;
+        depth = 0;
+        afterName = false;
+        needsComma[0] = false;
+        if (buf.length <= MAX_POOLED_CAPACITY && pooledCount.incrementAndGet() <= MAX_POOLED_WRITERS) {
+            pool.offer(this);
+        } else if (buf.length <= MAX_POOLED_CAPACITY) {
+            pooledCount.decrementAndGet();
+        }
+    }
+
+    /** Backing array; only the first {@link #size()} bytes are valid. */
+    public byte[] buffer() {
+        return buf;
+    }
+
+    public int size() {
+        return len;
+    }
+
+    public JsonWriter beginObject() {
+        beforeValue();
+        writeByte('{');
+        push();
+        return this;
+    }
+
+    public JsonWriter endObject() {
+        depth--;
+        writeByte('}');
+        return this;
+    }
+
+    public JsonWriter beginArray() {
+        beforeValue();
+        writeByte('[');
+        push();
+        return this;
+    }
+
+    public JsonWriter endArray() {
+        depth--;
+        writeByte(']');
+        return this;
+    }
+
+    public JsonWriter name(String name) {
+        if (needsComma[depth]) {
+            writeByte(',');
+        }
+        needsComma[depth] = true;
+        writeQuoted(name);
+        writeByte(':');
+        afterName = true;
+        return this;
+    }
+
+    public JsonWriter value(String value) {
+        beforeValue();
+        if (value == null) {
+            writeBytes(NULL);
+        } else {
+            writeQuoted(value);
+        }
+        return this;
+    }
+
+    public JsonWriter value(int value) {
+        beforeValue();
+        writeLong(value);
+        return this;
+    }
+
+    public JsonWriter value(long value) {
+        beforeValue();
+        writeLong(value);
+        return this;
+    }
+
+    public JsonWriter value(boolean value) {
+        beforeValue();
+        writeAscii(value ? "true" : "false");
+        return this;
+    }
+
+    public JsonWriter value(double value) {
+        beforeValue();
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            writeBytes(NULL);
+        } else {
+            writeAscii(Double.toString(value));
+        }
+        return this;
+    }
+
+    public JsonWriter value(BigDecimal value) {
+        beforeValue();
+        if (value == null) {
+            writeBytes(NULL);
+        } else {
+            writeAscii(value.toPlainString());
+        }
+        return this;
+    }
+
+    // Timestamps keep the JDBC toString() form the dashboards already parse.
+    public JsonWriter value(Timestamp value) {
+        beforeValue();
+        if (value == null) {
+            writeBytes(NULL);
+        } else {
+            writeQuoted(value.toString());
+        }
+        return this;
+    }
+
+    public JsonWriter nullValue() {
+        beforeValue();
+        writeBytes(NULL);
+        return this;
+    }
+
+    /** Writes pre-encoded JSON (e.g. a cached fragment) as the next value. */
+    public JsonWriter rawValue(byte[] json) {
+        beforeValue();
+        writeBytes(json);
+        return this;
+    }
+
+    public JsonWriter field(String name, String value) {
+        return name(name).value(value);
+    }
+
+    public JsonWriter field(String name, int value) {
+        return name(name).value(value);
+    }
+
+    public JsonWriter field(String name, long value) {
+        return name(name).value(value);
+    }
+
+    public JsonWriter field(String name, boolean value) {
+        return name(name).value(value);
+    }
+
+    public JsonWriter field(String name, double value) {
+        return name(name).value(value);
+    }
+
+    public JsonWriter field(String name, BigDecimal value) {
+        return name(name).value(value);
+    }
+
+    public JsonWriter field(String name, Timestamp value) {
+        return name(name).value(value);
+    }
+
+    public JsonWriter nullField(String name) {
+        return name(name).nullValue();
+    }
+
+    /** Decodes the buffer; intended for logging and tests, not the response path. */
+    @Override
+    public String toString() {
+        return new String(buf, 0, len, java.nio.charset.StandardCharsets.UTF_8);
+    }
+
+    private void push() {
+        if (++depth >= MAX_DEPTH) {
+            throw new IllegalStateException("JSON nesting too deep");
+        }
+        needsComma[depth] = false;
+    }
+
+    private void beforeValue() {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (needsComma[depth]) {
+            writeByte(',');
+        }
+        needsComma[depth] = true;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (len + extra > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + extra));
+        }
+    }
+
+    private void writeByte(int b) {
+        ensureCapacity(1);
+        buf[len++] = (byte) b;
+    }
+
+    private void writeBytes(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buf, len, bytes.length);
+        len += bytes.length;
+    }
+
+    private void writeAscii(String s) {
+        int n = s.length();
+        ensureCapacity(n);
+        for (int i = 0; i < n; i++) {
+            buf[len++] = (byte) s.charAt(i);
+        }
+    }
+
+    private void writeLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            writeAscii(Long.toString(value));
+            return;
+        }
+        ensureCapacity(20);
+        if (value < 0) {
+            buf[len++] = '-';
+            value = -value;
+        }
+        int start = len;
+        do {
+            buf[len++] = (byte) ('0' + (value % 10));
+            value /= 10;
+        } while (value != 0);
+        // Digits were written least significant first.
+        for (int i = start, j = len - 1; i < j; i++, j--) {
+            byte t = buf[i];
+            buf[i] = buf[j];
+            buf[j] = t;
+        }
+    }
+
+    // Escapes and UTF-8 encodes in one pass; worst case is 6 bytes per char (\\uXXXX).
+    private void writeQuoted(String s) {
+        int n = s.length();
+        ensureCapacity(n * 6 + 2);
+        byte[] b = buf;
+        int pos = len;
+        b[pos++] = '"';
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                b[pos++] = (byte) c;
+            } else if (c < 0x80) {
+                b[pos++] = '\\';
+                switch (c) {
+                    case '"': b[pos++] = '"'; break;
+                    case '\\': b[pos++] = '\\'; break;
+                    case '\n': b[pos++] = 'n'; break;
+                    case '\r': b[pos++] = 'r'; break;
+                    case '\t': b[pos++] = 't'; break;
+                    case '\b': b[pos++] = 'b'; break;
+                    case '\f': b[pos++] = 'f'; break;
+                    default:
+                        b[pos++] = 'u';
+                        b[pos++] = '0';
+                        b[pos++] = '0';
+                        b[pos++] = HEX[(c >> 4) & 0xF];
+                        b[pos++] = HEX[c & 0xF];
+                }
+            } else if (c < 0x800) {
+                b[pos++] = (byte) (0xC0 | (c >> 6));
+                b[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                b[pos++] = (byte) (0xF0 | (cp >> 18));
+                b[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                b[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                b[pos++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                b[pos++] = '?'; // unpaired surrogate
+            } else {
+                b[pos++] = (byte) (0xE0 | (c >> 12));
+                b[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                b[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        b[pos++] = '"';
+        len = pos;
+    }
+}
@@ -0,0 +1,199 @@
+package com.autorepairpro.json;
+
+import com.autorepairpro.log.Log;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Renders a synthetic job listing, shaped like the employee dashboard's, the way handlers used to
+ * (StringBuilder concatenation, toString(), getBytes()) and through a pooled {@link JsonWriter},
+ * and reports the time and bytes allocated per row for each. No database needed.
+ *
+ * <pre>java -cp build com.autorepairpro.json.JsonWriterBenchmark [--rows 200] [--responses 20000]</pre>
+ *
+ * Exits with status 1 if the writer's output differs from the old output on rows that need no
+ * escaping, or if a row with quotes, backslashes or control characters does not parse back to
+ * the values written.
+ */
+public class JsonWriterBenchmark {
+    private static final long SEED = 42;
+    private static final String[] MAKES = { "Toyota", "Honda", "Ford", "\u0160koda", "Volkswagen" };
+    private static final String[] STATUSES = { "pending", "in_progress", "completed" };
+
+    private static class Row {
+        int id;
+        String customerName;
+        String customerPhone;
+        String make;
+        String model;
+        int year;
+        String licensePlate;
+        String service;
+        int estimatedDuration;
+        String status;
+        BigDecimal price;
+        Timestamp bookingDate;
+        String notes;
+    }
+
+    public static void main(String[] args) {
+        int rowCount = 200;
+        int responses = 20000;
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals("--rows")) {
+                rowCount = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--responses")) {
+                responses = Integer.parseInt(args[++i]);
+            }
+        }
+
+        Random random = new Random(SEED);
+        Row[] rows = new Row[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+            rows[i] = row(random, i + 1, false);
+        }
+
+        // 1. Throughput and allocation, once to warm up the JIT and once measured.
+        long sink = 0;
+        for (int round = 0; round < 2; round++) {
+            long allocated = allocatedBytes();
+            long began = System.nanoTime();
+            for (int r = 0; r < responses; r++) {
+                sink += concatenate(rows).length;
+            }
+            long concatNanos = System.nanoTime() - began;
+            long concatBytes = allocatedBytes() - allocated;
+
+            allocated = allocatedBytes();
+            began = System.nanoTime();
+            for (int r = 0; r < responses; r++) {
+                JsonWriter json = JsonWriter.obtain();
+                write(json, rows);
+                sink += json.size();
+                json.release();
+            }
+            long writerNanos = System.nanoTime() - began;
+            long writerBytes = allocatedBytes() - allocated;
+
+            if (round == 1) {
+                long total = (long) responses * rowCount;
+                Log.info(String.format("concatenation: %d responses of %d rows, %.1f ms, %.0f ns and %d bytes allocated per row",
+                    responses, rowCount, concatNanos / 1e6, (double) concatNanos / total, concatBytes / total));
+                Log.info(String.format("JsonWriter: %d responses of %d rows, %.1f ms, %.0f ns and %d bytes allocated per row",
+                    responses, rowCount, writerNanos / 1e6, (double) writerNanos / total, writerBytes / total));
+            }
+        }
+        Log.debug("Rendered " + sink + " bytes");
+
+        // 2. Same bytes as before where the old code was right, valid JSON where it was not.
+        boolean passed = Arrays.equals(concatenate(rows), render(rows));
+        for (int i = 0; i < 100 && passed; i++) {
+            Row awkward = row(random, i + 1, true);
+            try {
+                List<Object> parsed = asList(JsonReader.parse(render(new Row[] { awkward })));
+                JsonObject job = (JsonObject) parsed.get(0);
+                passed = awkward.customerName.equals(job.getString("customerName"))
+                    && awkward.notes.equals(job.getString("notes"));
+            } catch (JsonReader.ParseException | RuntimeException e) {
+                Log.warn("Row with awkward characters did not round-trip", e);
+                passed = false;
+            }
+        }
+        Log.info(passed ? "JSON writer benchmark passed" : "JSON writer benchmark failed: output differs or does not parse");
+        System.exit(passed ? 0 : 1);
+    }
+
+    private static Row row(Random random, int id, boolean awkward) {
+        Row row = new Row();
+        row.id = id;
+        row.customerName = awkward ? "Anne \"Nan\" O'Brien\\" + (char) random.nextInt(0x20) : "Customer " + random.nextInt(100000);
+        row.customerPhone = random.nextInt(4) == 0 ? null : "555-" + (1000 + random.nextInt(9000));
+        row.make = MAKES[random.nextInt(MAKES.length)];
+        row.model = "Model " + (char) ('A' + random.nextInt(26));
+        row.year = 1995 + random.nextInt(30);
+        row.licensePlate = "ABC" + (100 + random.nextInt(900));
+        row.service = "Oil change";
+        row.estimatedDuration = 30 + 15 * random.nextInt(8);
+        row.status = STATUSES[random.nextInt(STATUSES.length)];
+        row.price = BigDecimal.valueOf(1000 + random.nextInt(50000), 2);
+        row.bookingDate = new Timestamp(1790000000000L + random.nextInt(1000000) * 1000L);
+        row.notes = awkward ? "line one\nline two\t\"quoted\" \u00e9\uD83D\uDE97" : "Customer reports noise on braking";
+        return row;
+    }
+
+    // The listing as the handlers built it before JsonWriter: nothing escaped, then copied twice.
+    private static byte[] concatenate(Row[] rows) {
+        StringBuilder jsonBuilder = new StringBuilder();
+        jsonBuilder.append("[");
+        for (int i = 0; i < rows.length; i++) {
+            Row row = rows[i];
+            if (i > 0) {
+                jsonBuilder.append(",");
+            }
+            jsonBuilder.append("{");
+            jsonBuilder.append("\"jobId\":").append(row.id).append(",");
+            jsonBuilder.append("\"customerName\":\"").append(row.customerName).append("\",");
+            jsonBuilder.append("\"customerPhone\":\"").append(row.customerPhone != null ? row.customerPhone : "").append("\",");
+            jsonBuilder.append("\"vehicle\":\"").append(row.make).append(" ").append(row.model).append(" (").append(row.year).append(")\",");
+            jsonBuilder.append("\"licensePlate\":\"").append(row.licensePlate).append("\",");
+            jsonBuilder.append("\"service\":\"").append(row.service).append("\",");
+            jsonBuilder.append("\"estimatedDuration\":").append(row.estimatedDuration).append(",");
+            jsonBuilder.append("\"status\":\"").append(row.status).append("\",");
+            jsonBuilder.append("\"price\":").append(row.price).append(",");
+            jsonBuilder.append("\"bookingDate\":\"").append(row.bookingDate).append("\",");
+            jsonBuilder.append("\"notes\":\"").append(row.notes).append("\"");
+            jsonBuilder.append("}");
+        }
+        jsonBuilder.append("]");
+        return jsonBuilder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void write(JsonWriter json, Row[] rows) {
+        json.beginArray();
+        for (Row row : rows) {
+            json.beginObject()
+                .field("jobId", row.id)
+                .field("customerName", row.customerName)
+                .field("customerPhone", row.customerPhone != null ? row.customerPhone : "")
+                .field("vehicle", row.make + " " + row.model + " (" + row.year + ")")
+                .field("licensePlate", row.licensePlate)
+                .field("service", row.service)
+                .field("estimatedDuration", row.estimatedDuration)
+                .field("status", row.status)
+                .field("price", row.price)
+                .field("bookingDate", row.bookingDate)
+                .field("notes", row.notes)
+                .endObject();
+        }
+        json.endArray();
+    }
+
+    private static byte[] render(Row[] rows) {
+        JsonWriter json = JsonWriter.obtain();
+        try {
+            write(json, rows);
+            return Arrays.copyOf(json.buffer(), json.size());
+        } finally {
+            json.release();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Object> asList(Object value) {
+        return (List<Object>) value;
+    }
+
+    // Bytes allocated by this thread so far, or 0 where the JVM does not track it.
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+}
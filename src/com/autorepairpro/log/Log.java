@@ -0,0 +1,228 @@
+package com.autorepairpro.log;
+
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Application and access logging. Callers only build a small record and offer it to a lock-free
+ * ring buffer; a background thread formats the records and writes them to stdout in batches, so
+ * request threads never wait on console I/O or the PrintStream lock. If the ring fills up,
+ * records are dropped and counted rather than blocking.
+ */
+public class Log {
+    public enum Level { DEBUG, INFO, WARN, ERROR }
+
+    // Logging configuration with fallback to environment variables.
+    private static final Level LEVEL = System.getenv("LOG_LEVEL") != null ?
+        Level.valueOf(System.getenv("LOG_LEVEL").toUpperCase()) : Level.INFO;
+    // Fraction of successful requests written to the access log; 5xx responses are always logged.
+    private static final double ACCESS_SAMPLE_RATE = System.getenv("LOG_ACCESS_SAMPLE_RATE") != null ?
+        Double.parseDouble(System.getenv("LOG_ACCESS_SAMPLE_RATE")) : 1.0;
+    private static final int BUFFER_SIZE = System.getenv("LOG_BUFFER_SIZE") != null ?
+        Integer.parseInt(System.getenv("LOG_BUFFER_SIZE")) : 8192;
+
+    private static final LogRing<Record> ring = new LogRing<>(BUFFER_SIZE);
+    private static final AtomicLong dropped = new AtomicLong();
+    private static final Thread writerThread = new Thread(Log::drainLoop, "log-writer");
+    // Set while the writer is parked on an empty ring; producers only unpark it then.
+    private static volatile boolean writerIdle;
+
+    static {
+        writerThread.setDaemon(true);
+        writerThread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(Log::flushOnShutdown, "log-flush"));
+    }
+
+    private static class Record {
+        final long timestamp = System.currentTimeMillis();
+        final String thread = Thread.currentThread().getName();
+        final Level level;
+        final String message;
+        final Throwable error;
+
+        Record(Level level, String message, Throwable error) {
+            this.level = level;
+            this.message = message;
+            this.error = error;
+        }
+    }
+
+    private static class AccessRecord extends Record {
+        final String method;
+        final String target;
+        final String route;
+        final int status;
+        final long bytes;
+        final long latencyMicros;
+
+        AccessRecord(String method, String target, String route, int status, long bytes, long latencyMicros) {
+            super(status >= 500 ? Level.ERROR : Level.INFO, null, null);
+            this.method = method;
+            this.target = target;
+            this.route = route;
+            this.status = status;
+            this.bytes = bytes;
+            this.latencyMicros = latencyMicros;
+        }
+    }
+
+    public static boolean isEnabled(Level level) {
+        return level.compareTo(LEVEL) >= 0;
+    }
+
+    public static boolean isDebugEnabled() {
+        return isEnabled(Level.DEBUG);
+    }
+
+    public static void debug(String message) {
+        log(Level.DEBUG, message, null);
+    }
+
+    public static void info(String message) {
+        log(Level.INFO, message, null);
+    }
+
+    public static void warn(String message) {
+        log(Level.WARN, message, null);
+    }
+
+    public static void warn(String message, Throwable error) {
+        log(Level.WARN, message, error);
+    }
+
+    public static void error(String message) {
+        log(Level.ERROR, message, null);
+    }
+
+    public static void error(String message, Throwable error) {
+        log(Level.ERROR, message, error);
+    }
+
+    /**
+     * One access-log line per request: method, matched route pattern, status, body bytes and the
+     * time from the request being parsed to the response being ready.
+     */
+    public static void access(String method, String target, String route, int status, long bytes, long latencyNanos) {
+        if (!isEnabled(Level.INFO)) {
+            return;
+        }
+        if (status < 500 && ACCESS_SAMPLE_RATE < 1.0 && ThreadLocalRandom.current().nextDouble() >= ACCESS_SAMPLE_RATE) {
+            return;
+        }
+        offer(new AccessRecord(method, target, route, status, bytes, latencyNanos / 1000));
+    }
+
+    private static void log(Level level, String message, Throwable error) {
+        if (isEnabled(level)) {
+            offer(new Record(level, message, error));
+        }
+    }
+
+    private static void offer(Record record) {
+        if (!ring.offer(record)) {
+            dropped.incrementAndGet();
+        }
+        // Read after the record is published: either the writer sees it before parking, or we see
+        // the writer idle here and wake it.
+        if (writerIdle) {
+            LockSupport.unpark(writerThread);
+        }
+    }
+
+    private static void drainLoop() {
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 64 * 1024);
+        StringBuilder line = new StringBuilder(256);
+        while (true) {
+            try {
+                if (drain(out, line) == 0) {
+                    writerIdle = true;
+                    if (isEmpty()) {
+                        LockSupport.park();
+                    }
+                    writerIdle = false;
+                }
+            } catch (IOException e) {
+                // Nowhere left to report this; keep draining so producers are not stuck on a full ring.
+            }
+        }
+    }
+
+    private static synchronized boolean isEmpty() {
+        return ring.isEmpty() && dropped.get() == 0;
+    }
+
+    // Writes everything currently in the ring, then flushes once. Returns the number of records written.
+    private static synchronized int drain(OutputStream out, StringBuilder line) throws IOException {
+        int count = 0;
+        Record record;
+        while ((record = ring.poll()) != null) {
+            line.setLength(0);
+            format(record, line);
+            out.write(line.toString().getBytes(StandardCharsets.UTF_8));
+            count++;
+        }
+        long lost = dropped.getAndSet(0);
+        if (lost > 0) {
+            line.setLength(0);
+            format(new Record(Level.WARN, lost + " log records dropped (buffer full)", null), line);
+            out.write(line.toString().getBytes(StandardCharsets.UTF_8));
+            count++;
+        }
+        if (count > 0) {
+            out.flush();
+        }
+        return count;
+    }
+
+    private static void format(Record record, StringBuilder line) {
+        line.append(Instant.ofEpochMilli(record.timestamp)).append(' ');
+        line.append(record.level.name());
+        for (int i = record.level.name().length(); i < 5; i++) {
+            line.append(' ');
+        }
+        line.append(" [").append(record.thread).append("] ");
+
+        if (record instanceof AccessRecord) {
+            // logfmt, so the access log can be filtered and aggregated without a custom parser.
+            AccessRecord access = (AccessRecord) record;
+            line.append("access method=").append(access.method)
+                .append(" route=").append(access.route)
+                .append(" path=").append(Redactor.redactQuery(access.target))
+                .append(" status=").append(access.status)
+                .append(" bytes=").append(access.bytes)
+                .append(" latency_ms=").append(access.latencyMicros / 1000).append('.');
+            long fraction = access.latencyMicros % 1000;
+            if (fraction < 100) line.append('0');
+            if (fraction < 10) line.append('0');
+            line.append(fraction);
+        } else {
+            line.append(record.message);
+        }
+        line.append('\n');
+
+        if (record.error != null) {
+            StringWriter trace = new StringWriter();
+            record.error.printStackTrace(new PrintWriter(trace));
+            line.append(trace);
+        }
+    }
+
+    private static void flushOnShutdown() {
+        OutputStream out = new FileOutputStream(FileDescriptor.out);
+        try {
+            drain(out, new StringBuilder(256));
+        } catch (IOException e) {
+            // Ignore
+        }
+    }
+}
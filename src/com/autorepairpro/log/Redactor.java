@@ -0,0 +1,100 @@
+package com.autorepairpro.log;
+
+import com.autorepairpro.json.JsonObject;
+import com.autorepairpro.json.JsonReader;
+import com.autorepairpro.json.JsonWriter;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/** Masks credentials before request data is written to the log. */
+public class Redactor {
+    private static final String MASK = "***";
+
+    // Compared case-insensitively against JSON member names and query parameter names.
+    private static final Set<String> SENSITIVE = new HashSet<>(Arrays.asList(
+        "password", "newpassword", "currentpassword", "oldpassword", "confirmpassword",
+        "token", "accesstoken", "refreshtoken", "sessiontoken", "authorization",
+        "secret", "apikey", "cardnumber", "cvv"));
+
+    private Redactor() {
+    }
+
+    public static boolean isSensitive(String name) {
+        return SENSITIVE.contains(name.toLowerCase());
+    }
+
+    /** Re-serializes a JSON body with sensitive members masked; non-JSON bodies are summarized. */
+    public static String redactBody(byte[] body) {
+        Object parsed;
+        try {
+            parsed = JsonReader.parse(body);
+        } catch (JsonReader.ParseException e) {
+            return "<" + body.length + " bytes, not JSON>";
+        }
+        JsonWriter json = JsonWriter.obtain();
+        try {
+            write(json, parsed);
+            return json.toString();
+        } finally {
+            json.release();
+        }
+    }
+
+    /** Masks sensitive query parameter values in a request target. */
+    public static String redactQuery(String target) {
+        int q = target.indexOf('?');
+        if (q < 0) {
+            return target;
+        }
+        StringBuilder out = new StringBuilder(target.length()).append(target, 0, q + 1);
+        String[] params = target.substring(q + 1).split("&", -1);
+        for (int i = 0; i < params.length; i++) {
+            if (i > 0) {
+                out.append('&');
+            }
+            int eq = params[i].indexOf('=');
+            if (eq > 0 && isSensitive(params[i].substring(0, eq))) {
+                out.append(params[i], 0, eq + 1).append(MASK);
+            } else {
+                out.append(params[i]);
+            }
+        }
+        return out.toString();
+    }
+
+    private static void write(JsonWriter json, Object value) {
+        if (value instanceof JsonObject) {
+            json.beginObject();
+            for (Map.Entry<String, Object> member : ((JsonObject) value).asMap().entrySet()) {
+                json.name(member.getKey());
+                if (isSensitive(member.getKey())) {
+                    json.value(MASK);
+                } else {
+                    write(json, member.getValue());
+                }
+            }
+            json.endObject();
+        } else if (value instanceof List) {
+            json.beginArray();
+            for (Object element : (List<?>) value) {
+                write(json, element);
+            }
+            json.endArray();
+        } else if (value instanceof String) {
+            json.value((String) value);
+        } else if (value instanceof Long) {
+            json.value((long) (Long) value);
+        } else if (value instanceof BigDecimal) {
+            json.value((BigDecimal) value);
+        } else if (value instanceof Boolean) {
+            json.value((boolean) (Boolean) value);
+        } else {
+            json.nullValue();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.autorepairpro.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram in microseconds with HDR-style log-linear buckets: values below 16
+ * get a bucket each, above that every power of two is split into 8 sub-buckets, so any recorded
+ * value is known to within 12.5%. Recording is one array increment plus two adders; memory is
+ * fixed at a few KB per histogram regardless of how many values are recorded.
+ */
+public class Histogram {
+    private static final int LINEAR_BUCKETS = 16;
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Exponents 4..40 cover 16us to about 12 days; anything larger lands in the last bucket.
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = LINEAR_BUCKETS + (MAX_EXPONENT - 3) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumMicros = new LongAdder();
+
+    public void recordNanos(long nanos) {
+        record(nanos / 1000);
+    }
+
+    public void record(long micros) {
+        if (micros < 0) {
+            micros = 0;
+        }
+        counts.incrementAndGet(indexOf(micros));
+        count.increment();
+        sumMicros.add(micros);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSumMicros() {
+        return sumMicros.sum();
+    }
+
+    /**
+     * Number of recorded values at or below {@code bound}, which must come from {@link #boundNear}
+     * so that no bucket straddles it and the count is exact.
+     */
+    public long countAtOrBelow(long bound) {
+        long total = 0;
+        for (int i = 0; i < BUCKETS && upperBound(i) - 1 <= bound; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * The largest value of a bucket, picked so the bucket ends as close to {@code micros} as
+     * possible; used as an exported {@code le} bound.
+     */
+    public static long boundNear(long micros) {
+        int index = indexOf(Math.max(0, micros));
+        long lower = index == 0 ? 0 : upperBound(index - 1);
+        long upper = upperBound(index);
+        return (micros - lower <= upper - micros ? Math.max(lower, 1) : upper) - 1;
+    }
+
+    /** Approximate value at the given quantile (0..1), in microseconds; 0 when empty. */
+    public long percentile(double quantile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= Math.max(1, rank)) {
+                return upperBound(i) - 1;
+            }
+        }
+        return upperBound(BUCKETS - 1) - 1;
+    }
+
+    static int indexOf(long micros) {
+        if (micros < LINEAR_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_BUCKETS + (exponent - 4) * SUB_BUCKETS + sub;
+    }
+
+    // Exclusive upper bound of a bucket, in microseconds.
+    static long upperBound(int index) {
+        if (index < LINEAR_BUCKETS) {
+            return index + 1;
+        }
+        int exponent = 4 + (index - LINEAR_BUCKETS) / SUB_BUCKETS;
+        int sub = (index - LINEAR_BUCKETS) % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + sub + 1) << (exponent - SUB_BUCKET_BITS);
+    }
+}
@@ -0,0 +1,113 @@
+package com.autorepairpro.metrics;
+
+import com.autorepairpro.log.Log;
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Times {@link Histogram#record} on one thread and on several at once, against a bare
+ * {@link LongAdder} increment as the cheapest thing a request could do instead. Then records
+ * random latencies and checks every cumulative count /metrics would export against a count of
+ * the recorded values themselves.
+ *
+ * <pre>java -cp build com.autorepairpro.metrics.HistogramBenchmark [--records 10000000] [--threads 8]</pre>
+ *
+ * Exits with status 1 if any exported count differs from the exact one.
+ */
+public class HistogramBenchmark {
+    private static final long SEED = 42;
+    // The boundaries /metrics exports, before they are snapped to bucket bounds.
+    private static final long[] NOMINAL_MICROS = {
+        500, 1_000, 2_500, 5_000, 10_000, 25_000, 50_000, 100_000, 250_000, 500_000,
+        1_000_000, 2_500_000, 5_000_000, 10_000_000
+    };
+
+    public static void main(String[] args) throws InterruptedException {
+        int records = 10_000_000;
+        int threads = 8;
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals("--records")) {
+                records = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--threads")) {
+                threads = Integer.parseInt(args[++i]);
+            }
+        }
+
+        // Latencies spread log-uniformly from 1us to about 30s, like a mix of cheap and slow routes.
+        Random random = new Random(SEED);
+        long[] values = new long[1 << 16];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) Math.pow(2, random.nextDouble() * 25);
+        }
+        // Plus values right on each exported bound and just past it, where an off-by-one would show.
+        for (int i = 0; i < NOMINAL_MICROS.length; i++) {
+            values[2 * i] = Histogram.boundNear(NOMINAL_MICROS[i]);
+            values[2 * i + 1] = Histogram.boundNear(NOMINAL_MICROS[i]) + 1;
+        }
+
+        // 1. Recording cost, once to warm up the JIT and once measured.
+        for (int round = 0; round < 2; round++) {
+            boolean measured = round == 1;
+            for (int n : new int[] { 1, threads }) {
+                long adderNanos = run(n, records, values, null);
+                long histogramNanos = run(n, records, values, new Histogram());
+                if (measured) {
+                    Log.info(String.format("%d thread(s): record %.1f ns per call, LongAdder %.1f ns per call",
+                        n, (double) histogramNanos / records, (double) adderNanos / records));
+                }
+            }
+        }
+
+        // 2. Exported counts against the recorded values.
+        Histogram histogram = new Histogram();
+        for (long value : values) {
+            histogram.record(value);
+        }
+        boolean passed = true;
+        for (long nominal : NOMINAL_MICROS) {
+            long bound = Histogram.boundNear(nominal);
+            long exact = 0;
+            for (long value : values) {
+                if (value <= bound) {
+                    exact++;
+                }
+            }
+            long exported = histogram.countAtOrBelow(bound);
+            if (exported != exact) {
+                Log.warn(String.format("le %dus (asked for %dus): exported %d, recorded %d", bound, nominal, exported, exact));
+                passed = false;
+            }
+        }
+        Log.info(passed ? "Histogram benchmark passed" : "Histogram benchmark failed: an exported count is not exact");
+        System.exit(passed ? 0 : 1);
+    }
+
+    // Splits the records over the threads; a null histogram increments a shared LongAdder instead.
+    private static long run(int threads, int records, long[] values, Histogram histogram) throws InterruptedException {
+        LongAdder adder = new LongAdder();
+        int perThread = records / threads;
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int offset = t * 4099;
+            workers[t] = new Thread(() -> {
+                int mask = values.length - 1;
+                for (int i = 0; i < perThread; i++) {
+                    long value = values[(offset + i) & mask];
+                    if (histogram != null) {
+                        histogram.record(value);
+                    } else {
+                        adder.add(value);
+                    }
+                }
+            });
+        }
+        long began = System.nanoTime();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return System.nanoTime() - began;
+    }
+}
@@ -0,0 +1,313 @@
+package com.autorepairpro.metrics;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Process-wide metrics registry. Recording is lock-free (adders and atomic arrays) and
+ * allocation-free once a route has been seen; all formatting work happens when /metrics is
+ * scraped. Output is the Prometheus text exposition format.
+ */
+public class Metrics {
+    // Exported histogram boundaries in microseconds (about 0.5ms .. 10s), snapped to the
+    // histogram's own bucket bounds so every cumulative count is exact.
+    private static final long[] BOUNDARIES_MICROS = bounds(
+        500, 1_000, 2_500, 5_000, 10_000, 25_000, 50_000, 100_000, 250_000, 500_000,
+        1_000_000, 2_500_000, 5_000_000, 10_000_000
+    );
+
+    /** Per (method, route) request statistics. */
+    public static class RouteStats {
+        final String method;
+        final String route;
+        final LongAdder bytes = new LongAdder();
+        final ConcurrentMap<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        // From the request being parsed to the response being ready, including queueing for a worker.
+        final Histogram duration = new Histogram();
+        // Time spent inside the handler on the worker thread.
+        final Histogram handler = new Histogram();
+        // JDBC time (acquire + execute + result reads) accumulated during the request.
+        final Histogram jdbc = new Histogram();
+
+        RouteStats(String method, String route) {
+            this.method = method;
+            this.route = route;
+        }
+
+        public Histogram getDuration() {
+            return duration;
+        }
+
+        public long getRequestCount() {
+            return duration.getCount();
+        }
+    }
+
+    private static class Gauge {
+        final String help;
+        final LongSupplier value;
+        final boolean counter;
+
+        Gauge(String help, LongSupplier value, boolean counter) {
+            this.help = help;
+            this.value = value;
+            this.counter = counter;
+        }
+    }
+
+    // Methods get their own series; any other token the client sends is counted as OTHER, so
+    // made-up methods cannot add series. Route labels are already bounded by the router.
+    private static final String[] METHODS = { "GET", "POST", "PUT", "DELETE", "PATCH", "HEAD", "OPTIONS", "OTHER" };
+
+    // Per route, one slot per entry of METHODS.
+    private static final ConcurrentMap<String, AtomicReferenceArray<RouteStats>> routes = new ConcurrentHashMap<>();
+    private static final Map<String, Gauge> gauges = new TreeMap<>();
+
+    private static final Histogram jdbcAcquire = new Histogram();
+    private static final Histogram jdbcExecute = new Histogram();
+    private static final Histogram jdbcResultSet = new Histogram();
+
+    // Requests handed to the executor that no worker has picked up yet, and those being handled.
+    private static final AtomicLong queuedRequests = new AtomicLong();
+    private static final AtomicLong activeRequests = new AtomicLong();
+
+    // JDBC nanoseconds spent by the request running on this thread.
+    private static final ThreadLocal<long[]> requestJdbcNanos = ThreadLocal.withInitial(() -> new long[1]);
+
+    static {
+        gauge("http_worker_queue_depth", "Requests waiting for a worker thread", queuedRequests::get);
+        gauge("http_requests_in_progress", "Requests currently being handled", activeRequests::get);
+    }
+
+    private Metrics() {
+    }
+
+    /** Registers a value read at scrape time, e.g. a pool size. */
+    public static synchronized void gauge(String name, String help, LongSupplier value) {
+        gauges.put(name, new Gauge(help, value, false));
+    }
+
+    /** Registers a monotonically increasing value kept elsewhere, e.g. a pool's timeout count. */
+    public static synchronized void counter(String name, String help, LongSupplier value) {
+        gauges.put(name, new Gauge(help, value, true));
+    }
+
+    public static void requestQueued() {
+        queuedRequests.incrementAndGet();
+    }
+
+    /** The executor refused a queued request. */
+    public static void requestRejected() {
+        queuedRequests.decrementAndGet();
+    }
+
+    /** Called on the worker thread before the handler runs. */
+    public static void requestStarted() {
+        queuedRequests.decrementAndGet();
+        activeRequests.incrementAndGet();
+        requestJdbcNanos.get()[0] = 0;
+    }
+
+    public static void requestFinished(String method, String route, int status, long bytes,
+                                       long durationNanos, long handlerNanos) {
+        activeRequests.decrementAndGet();
+        RouteStats stats = routeStats(method, route);
+        stats.statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+        stats.bytes.add(bytes);
+        stats.duration.recordNanos(durationNanos);
+        stats.handler.recordNanos(handlerNanos);
+        stats.jdbc.recordNanos(requestJdbcNanos.get()[0]);
+    }
+
+    public static void recordJdbcAcquire(long nanos) {
+        jdbcAcquire.recordNanos(nanos);
+        requestJdbcNanos.get()[0] += nanos;
+    }
+
+    public static void recordJdbcExecute(long nanos) {
+        jdbcExecute.recordNanos(nanos);
+        requestJdbcNanos.get()[0] += nanos;
+    }
+
+    public static void recordJdbcResultSet(long nanos) {
+        jdbcResultSet.recordNanos(nanos);
+        requestJdbcNanos.get()[0] += nanos;
+    }
+
+    public static List<RouteStats> getRouteStats() {
+        List<RouteStats> all = new ArrayList<>();
+        for (AtomicReferenceArray<RouteStats> byMethod : routes.values()) {
+            for (int i = 0; i < byMethod.length(); i++) {
+                RouteStats stats = byMethod.get(i);
+                if (stats != null) {
+                    all.add(stats);
+                }
+            }
+        }
+        return all;
+    }
+
+    private static RouteStats routeStats(String method, String route) {
+        AtomicReferenceArray<RouteStats> byMethod = routes.get(route);
+        if (byMethod == null) {
+            byMethod = routes.computeIfAbsent(route, r -> new AtomicReferenceArray<>(METHODS.length));
+        }
+        int index = methodIndex(method);
+        RouteStats stats = byMethod.get(index);
+        if (stats == null) {
+            byMethod.compareAndSet(index, null, new RouteStats(METHODS[index], route));
+            stats = byMethod.get(index);
+        }
+        return stats;
+    }
+
+    private static int methodIndex(String method) {
+        switch (method) {
+            case "GET": return 0;
+            case "POST": return 1;
+            case "PUT": return 2;
+            case "DELETE": return 3;
+            case "PATCH": return 4;
+            case "HEAD": return 5;
+            case "OPTIONS": return 6;
+            default: return METHODS.length - 1;
+        }
+    }
+
+    /** Renders every metric in the Prometheus text format (version 0.0.4). */
+    public static byte[] scrape() {
+        StringBuilder out = new StringBuilder(16 * 1024);
+        List<RouteStats> sorted = getRouteStats();
+        sorted.sort((a, b) -> a.route.equals(b.route) ? a.method.compareTo(b.method) : a.route.compareTo(b.route));
+
+        header(out, "http_requests_total", "counter", "Requests by route and status code");
+        for (RouteStats stats : sorted) {
+            for (Map.Entry<Integer, LongAdder> status : new TreeMap<>(stats.statuses).entrySet()) {
+                out.append("http_requests_total{");
+                routeLabels(out, stats);
+                out.append(",status=\"").append(status.getKey()).append("\"} ").append(status.getValue().sum()).append('\n');
+            }
+        }
+
+        header(out, "http_response_bytes_total", "counter", "Response body bytes by route");
+        for (RouteStats stats : sorted) {
+            out.append("http_response_bytes_total{");
+            routeLabels(out, stats);
+            out.append("} ").append(stats.bytes.sum()).append('\n');
+        }
+
+        header(out, "http_request_duration_seconds", "histogram", "Time from request parsed to response ready");
+        for (RouteStats stats : sorted) {
+            histogram(out, "http_request_duration_seconds", stats, stats.duration);
+        }
+        header(out, "http_handler_duration_seconds", "histogram", "Time spent in the route handler");
+        for (RouteStats stats : sorted) {
+            histogram(out, "http_handler_duration_seconds", stats, stats.handler);
+        }
+        header(out, "http_request_jdbc_seconds", "histogram", "JDBC time (acquire, execute, result reads) per request");
+        for (RouteStats stats : sorted) {
+            histogram(out, "http_request_jdbc_seconds", stats, stats.jdbc);
+        }
+
+        header(out, "jdbc_connection_acquire_seconds", "histogram", "Time to borrow a pooled connection");
+        histogram(out, "jdbc_connection_acquire_seconds", null, jdbcAcquire);
+        header(out, "jdbc_statement_execute_seconds", "histogram", "Time spent in statement execute calls");
+        histogram(out, "jdbc_statement_execute_seconds", null, jdbcExecute);
+        header(out, "jdbc_resultset_read_seconds", "histogram", "Time from a query returning to its result set being closed");
+        histogram(out, "jdbc_resultset_read_seconds", null, jdbcResultSet);
+
+        synchronized (Metrics.class) {
+            for (Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+                Gauge gauge = entry.getValue();
+                header(out, entry.getKey(), gauge.counter ? "counter" : "gauge", gauge.help);
+                out.append(entry.getKey()).append(' ').append(gauge.value.getAsLong()).append('\n');
+            }
+        }
+        return out.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void routeLabels(StringBuilder out, RouteStats stats) {
+        out.append("method=\"").append(stats.method).append("\",route=\"");
+        escapeLabel(out, stats.route);
+        out.append('"');
+    }
+
+    private static void histogram(StringBuilder out, String name, RouteStats stats, Histogram histogram) {
+        for (long boundary : BOUNDARIES_MICROS) {
+            out.append(name).append("_bucket{");
+            if (stats != null) {
+                routeLabels(out, stats);
+                out.append(',');
+            }
+            out.append("le=\"").append(seconds(boundary)).append("\"} ").append(histogram.countAtOrBelow(boundary)).append('\n');
+        }
+        long count = histogram.getCount();
+        out.append(name).append("_bucket{");
+        if (stats != null) {
+            routeLabels(out, stats);
+            out.append(',');
+        }
+        out.append("le=\"+Inf\"} ").append(count).append('\n');
+
+        out.append(name).append("_sum");
+        if (stats != null) {
+            out.append('{');
+            routeLabels(out, stats);
+            out.append('}');
+        }
+        out.append(' ').append(seconds(histogram.getSumMicros())).append('\n');
+
+        out.append(name).append("_count");
+        if (stats != null) {
+            out.append('{');
+            routeLabels(out, stats);
+            out.append('}');
+        }
+        out.append(' ').append(count).append('\n');
+    }
+
+    private static long[] bounds(long... micros) {
+        long[] bounds = new long[micros.length];
+        int count = 0;
+        for (long value : micros) {
+            long bound = Histogram.boundNear(value);
+            if (count == 0 || bound > bounds[count - 1]) {
+                bounds[count++] = bound;
+            }
+        }
+        return Arrays.copyOf(bounds, count);
+    }
+
+    private static String seconds(long micros) {
+        return BigDecimal.valueOf(micros, 6).stripTrailingZeros().toPlainString();
+    }
+
+    private static void escapeLabel(StringBuilder out, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                out.append('\\').append(c);
+            } else if (c == '\n') {
+                out.append("\\n");
+            } else {
+                out.append(c);
+            }
+        }
+    }
+}
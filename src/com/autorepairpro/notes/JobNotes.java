@@ -0,0 +1,268 @@
+package com.autorepairpro.notes;
+
+import com.autorepairpro.db.DatabaseConnector;
+import com.autorepairpro.json.JsonWriter;
+import com.autorepairpro.log.Log;
+import com.autorepairpro.metrics.Metrics;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Job notes as an append-only log in {@code job_notes}, one row per note, so adding a note never
+ * rewrites the job row and listings no longer carry every note ever written. Notes are read
+ * newest first, a page at a time, by (job_id, id).
+ *
+ * Notes added on their own are committed by a single writer thread: request threads queue the
+ * note and wait, and the writer inserts whatever has queued up as one batch in one transaction.
+ * A lone note is written straight away; a burst costs a few round trips instead of one per note.
+ * When the queue is full, callers get {@link BusyException} straight away; a note that is queued
+ * but not written in time gives {@link StillQueuedException}, as it will still be written.
+ */
+public class JobNotes {
+    // Notes configuration with fallback to environment variables
+    private static final int QUEUE_SIZE = System.getenv("JOB_NOTES_QUEUE_SIZE") != null ?
+        Integer.parseInt(System.getenv("JOB_NOTES_QUEUE_SIZE")) : 1000;
+    private static final int MAX_BATCH = System.getenv("JOB_NOTES_BATCH") != null ?
+        Integer.parseInt(System.getenv("JOB_NOTES_BATCH")) : 100;
+
+    public static final int MAX_LENGTH = 4000;
+    private static final long WAIT_TIMEOUT_SECONDS = 10;
+
+    private static final String INSERT_SQL =
+        "INSERT INTO job_notes (job_id, author_id, body) VALUES (?, ?, ?)";
+    /** One page of a job's notes, newest first: job id, the id to page below, then the limit. */
+    public static final String PAGE_SQL =
+        "SELECT n.id, n.author_id, u.full_name AS author_name, n.body, n.created_at " +
+        "FROM job_notes n LEFT JOIN users u ON u.id = n.author_id " +
+        "WHERE n.job_id = ? AND n.id < ? ORDER BY n.id DESC LIMIT ?";
+    /** The newest note of the job aliased {@code j}, for listings that show one line per job. */
+    public static final String LATEST_NOTE_SQL =
+        "(SELECT n.body FROM job_notes n WHERE n.job_id = j.id ORDER BY n.id DESC LIMIT 1)";
+
+    /** The note queue is full; the caller should answer 503. */
+    public static class BusyException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        BusyException(String message) {
+            super(message);
+        }
+    }
+
+    /** The note is queued but was not written in time; it will be, so the client must not send it again. */
+    public static class StillQueuedException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        StillQueuedException(String message) {
+            super(message);
+        }
+    }
+
+    private static class Pending {
+        final int jobId;
+        final int authorId;
+        final String body;
+        final CompletableFuture<Boolean> done = new CompletableFuture<>();
+
+        Pending(int jobId, int authorId, String body) {
+            this.jobId = jobId;
+            this.authorId = authorId;
+            this.body = body;
+        }
+    }
+
+    private static final BlockingQueue<Pending> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    private static volatile boolean started;
+
+    static {
+        Metrics.gauge("job_notes_queue_depth", "Job notes waiting to be written", queue::size);
+    }
+
+    private JobNotes() {}
+
+    /** Starts the note writer thread; called once at startup. */
+    public static synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        Thread writer = new Thread(JobNotes::write, "job-notes");
+        writer.setDaemon(true);
+        writer.start();
+        Log.info("Job notes: batches of up to " + MAX_BATCH + ", " + QUEUE_SIZE + " waiting at most");
+    }
+
+    /**
+     * Adds a note and waits until it is committed. Returns false if there is no such job.
+     * {@code authorId} is 0 when nobody in particular wrote it.
+     */
+    public static boolean add(int jobId, int authorId, String body)
+            throws SQLException, BusyException, StillQueuedException {
+        if (!started) {
+            start();
+        }
+        Pending note = new Pending(jobId, authorId, body);
+        if (!queue.offer(note)) {
+            throw new BusyException("Job notes queue is full");
+        }
+        try {
+            return note.done.get(WAIT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            throw new StillQueuedException("Timed out waiting for the job note to be written");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StillQueuedException("Interrupted while waiting for the job note to be written");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new IllegalStateException("Writing the job note failed", e.getCause());
+        }
+    }
+
+    /** Adds a note on the caller's transaction, e.g. together with the status change it explains. */
+    public static void append(Connection conn, int jobId, int authorId, String body) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(INSERT_SQL)) {
+            bind(pstmt, jobId, authorId, body);
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Writes up to {@code limit} notes older than {@code beforeId} (0 for the newest), newest
+     * first, as a JSON array of {@code {"id", "authorId", "authorName", "body", "createdAt"}}.
+     * Returns the id to pass as {@code beforeId} for the next page, or 0 if there is none.
+     */
+    public static long writePage(Connection conn, int jobId, long beforeId, int limit, JsonWriter json) throws SQLException {
+        long last = 0;
+        int count = 0;
+        json.beginArray();
+        try (PreparedStatement pstmt = conn.prepareStatement(PAGE_SQL)) {
+            pstmt.setInt(1, jobId);
+            pstmt.setLong(2, beforeId > 0 ? beforeId : Long.MAX_VALUE);
+            // One extra row tells whether there is another page.
+            pstmt.setInt(3, limit + 1);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    if (++count > limit) {
+                        break;
+                    }
+                    last = rs.getLong("id");
+                    json.beginObject()
+                        .field("id", last);
+                    int authorId = rs.getInt("author_id");
+                    if (rs.wasNull()) {
+                        json.nullField("authorId").nullField("authorName");
+                    } else {
+                        json.field("authorId", authorId).field("authorName", rs.getString("author_name"));
+                    }
+                    json.field("body", rs.getString("body"))
+                        .field("createdAt", rs.getTimestamp("created_at"))
+                        .endObject();
+                }
+            }
+        }
+        json.endArray();
+        return count > limit ? last : 0;
+    }
+
+    private static void write() {
+        List<Pending> batch = new ArrayList<>(MAX_BATCH);
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            // Whatever queued up while the previous batch was being written goes in this one.
+            queue.drainTo(batch, MAX_BATCH - 1);
+            try {
+                Set<Integer> existing = insert(batch);
+                for (Pending note : batch) {
+                    note.done.complete(existing.contains(note.jobId));
+                }
+            } catch (SQLException | RuntimeException e) {
+                Log.error("Writing " + batch.size() + " job notes failed", e);
+                for (Pending note : batch) {
+                    note.done.completeExceptionally(e);
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    // Inserts the notes of jobs that exist in one transaction and returns those jobs' ids.
+    private static Set<Integer> insert(List<Pending> batch) throws SQLException {
+        try (Connection conn = DatabaseConnector.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                // Checked up front so one note for a missing job does not fail the whole batch.
+                Set<Integer> existing = existingJobs(conn, batch);
+                try (PreparedStatement pstmt = conn.prepareStatement(INSERT_SQL)) {
+                    for (Pending note : batch) {
+                        if (existing.contains(note.jobId)) {
+                            bind(pstmt, note.jobId, note.authorId, note.body);
+                            pstmt.addBatch();
+                        }
+                    }
+                    pstmt.executeBatch();
+                }
+                conn.commit();
+                return existing;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    // Locks the jobs' rows so none is deleted before its notes are committed.
+    private static Set<Integer> existingJobs(Connection conn, List<Pending> batch) throws SQLException {
+        Set<Integer> ids = new HashSet<>();
+        for (Pending note : batch) {
+            ids.add(note.jobId);
+        }
+        StringBuilder sql = new StringBuilder("SELECT id FROM jobs WHERE id IN (");
+        for (int i = 0; i < ids.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(") LOCK IN SHARE MODE");
+        Set<Integer> existing = new HashSet<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            int index = 1;
+            for (int id : ids) {
+                pstmt.setInt(index++, id);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    existing.add(rs.getInt("id"));
+                }
+            }
+        }
+        return existing;
+    }
+
+    private static void bind(PreparedStatement pstmt, int jobId, int authorId, String body) throws SQLException {
+        pstmt.setInt(1, jobId);
+        if (authorId != 0) {
+            pstmt.setInt(2, authorId);
+        } else {
+            pstmt.setNull(2, Types.INTEGER);
+        }
+        pstmt.setString(3, body);
+    }
+}
@@ -0,0 +1,273 @@
+package com.autorepairpro.reports;
+
+import com.autorepairpro.db.DatabaseConnector;
+import com.autorepairpro.log.Log;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-employee job counters for the dashboard stats, kept in memory so reading them costs no
+ * query. They are built from {@code jobs} with one grouped scan at startup, and every status
+ * change applies the difference between the job row before and after it, read inside the same
+ * transaction as the update.
+ *
+ * A periodic check re-runs the grouped scan and replaces the counters of any employee that has
+ * drifted, e.g. after a change made directly in the database. Employees whose counters changed
+ * while the scan ran are left for the next check, since the scan may predate that change.
+ */
+public class EmployeeStats {
+    // Stats configuration with fallback to environment variables
+    private static final long VERIFY_MINUTES = System.getenv("EMPLOYEE_STATS_VERIFY_MINUTES") != null ?
+        Long.parseLong(System.getenv("EMPLOYEE_STATS_VERIFY_MINUTES")) : 10;
+
+    private static final String COMPLETION_MINUTES =
+        "CASE WHEN actual_completion_date IS NOT NULL THEN TIMESTAMPDIFF(MINUTE, booking_date, actual_completion_date) END";
+    private static final String ALL_EMPLOYEES_SQL =
+        "SELECT assigned_employee_id, COUNT(*) AS total, " +
+        "SUM(CASE WHEN status = 'Completed' THEN 1 ELSE 0 END) AS completed, " +
+        "SUM(CASE WHEN status = 'In Progress' THEN 1 ELSE 0 END) AS active, " +
+        "SUM(CASE WHEN status = 'Booked' THEN 1 ELSE 0 END) AS booked, " +
+        "COALESCE(SUM(" + COMPLETION_MINUTES + "), 0) AS completion_minutes, " +
+        "COUNT(" + COMPLETION_MINUTES + ") AS completion_count " +
+        "FROM jobs WHERE assigned_employee_id IS NOT NULL GROUP BY assigned_employee_id";
+    private static final String JOB_SQL =
+        "SELECT customer_id, assigned_employee_id, status, " + COMPLETION_MINUTES + " AS completion_minutes " +
+        "FROM jobs WHERE id = ?";
+
+    /** The fields of one job row that the counters depend on. */
+    public static class JobState {
+        private final int customerId;
+        private final int employeeId;
+        private final String status;
+        private final Long completionMinutes;
+
+        JobState(int customerId, int employeeId, String status, Long completionMinutes) {
+            this.customerId = customerId;
+            this.employeeId = employeeId;
+            this.status = status;
+            this.completionMinutes = completionMinutes;
+        }
+
+        /** A job that has not been completed, e.g. one just booked or reassigned. */
+        public static JobState of(int customerId, int employeeId, String status) {
+            return new JobState(customerId, employeeId, status, null);
+        }
+
+        public int getCustomerId() {
+            return customerId;
+        }
+
+        /** 0 when the job is unassigned. */
+        public int getEmployeeId() {
+            return employeeId;
+        }
+    }
+
+    /** A consistent copy of one employee's counters. */
+    public static class Snapshot {
+        public final long total;
+        public final long completed;
+        public final long active;
+        public final long booked;
+        public final long completionMinutes;
+        public final long completionCount;
+
+        Snapshot(long total, long completed, long active, long booked, long completionMinutes, long completionCount) {
+            this.total = total;
+            this.completed = completed;
+            this.active = active;
+            this.booked = booked;
+            this.completionMinutes = completionMinutes;
+            this.completionCount = completionCount;
+        }
+
+        /** Mean booking-to-completion minutes, 0 when nothing has been completed. */
+        public double getAverageCompletionMinutes() {
+            return completionCount > 0 ? (double) completionMinutes / completionCount : 0;
+        }
+    }
+
+    private static class Counters {
+        private long total;
+        private long completed;
+        private long active;
+        private long booked;
+        private long completionMinutes;
+        private long completionCount;
+        // Bumped on every change, so the drift check can tell whether its scan is still current.
+        private long version;
+
+        synchronized void apply(JobState job, int sign) {
+            total += sign;
+            if ("Completed".equals(job.status)) {
+                completed += sign;
+            } else if ("In Progress".equals(job.status)) {
+                active += sign;
+            } else if ("Booked".equals(job.status)) {
+                booked += sign;
+            }
+            if (job.completionMinutes != null) {
+                completionMinutes += sign * job.completionMinutes;
+                completionCount += sign;
+            }
+            version++;
+        }
+
+        synchronized long version() {
+            return version;
+        }
+
+        synchronized Snapshot snapshot() {
+            return new Snapshot(total, completed, active, booked, completionMinutes, completionCount);
+        }
+
+        // Replaces the counters with the scanned values if nothing changed since expectedVersion.
+        synchronized boolean reconcile(Snapshot scanned, long expectedVersion) {
+            if (version != expectedVersion) {
+                return false;
+            }
+            boolean drifted = total != scanned.total || completed != scanned.completed || active != scanned.active
+                || booked != scanned.booked || completionMinutes != scanned.completionMinutes
+                || completionCount != scanned.completionCount;
+            if (!drifted) {
+                return false;
+            }
+            total = scanned.total;
+            completed = scanned.completed;
+            active = scanned.active;
+            booked = scanned.booked;
+            completionMinutes = scanned.completionMinutes;
+            completionCount = scanned.completionCount;
+            return true;
+        }
+    }
+
+    private static final ConcurrentHashMap<Integer, Counters> counters = new ConcurrentHashMap<>();
+    private static final Snapshot EMPTY = new Snapshot(0, 0, 0, 0, 0, 0);
+    private static final AtomicLong drift = new AtomicLong();
+    private static volatile boolean loaded;
+    private static volatile boolean started;
+
+    private EmployeeStats() {}
+
+    /** Loads the counters and schedules the drift check; called once at startup. */
+    public static synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "employee-stats");
+            t.setDaemon(true);
+            return t;
+        });
+        // The first run loads the counters; if the database is down it is retried by the next one.
+        scheduler.scheduleWithFixedDelay(EmployeeStats::verify, 0, VERIFY_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /** The employee's counters, or null until they have been loaded. */
+    public static Snapshot get(int employeeId) {
+        if (!loaded) {
+            return null;
+        }
+        Counters c = counters.get(employeeId);
+        return c != null ? c.snapshot() : EMPTY;
+    }
+
+    /** Counters found to disagree with the jobs table since startup. */
+    public static long getDriftCount() {
+        return drift.get();
+    }
+
+    /** Reads and row-locks a job before changing it; null if there is no such job. */
+    public static JobState lockJob(Connection conn, int jobId) throws SQLException {
+        return readJob(conn, jobId, JOB_SQL + " FOR UPDATE");
+    }
+
+    /** Reads a job after changing it, on the same transaction. */
+    public static JobState readJob(Connection conn, int jobId) throws SQLException {
+        return readJob(conn, jobId, JOB_SQL);
+    }
+
+    /** Applies a committed change of one job to the counters. */
+    public static void changed(JobState before, JobState after) {
+        // Until the first scan there is nothing to adjust; the scan, or failing that the next check, sees the change.
+        if (!loaded) {
+            return;
+        }
+        if (before.employeeId != 0) {
+            counters.computeIfAbsent(before.employeeId, id -> new Counters()).apply(before, -1);
+        }
+        if (after.employeeId != 0) {
+            counters.computeIfAbsent(after.employeeId, id -> new Counters()).apply(after, 1);
+        }
+    }
+
+    private static JobState readJob(Connection conn, int jobId, String sql) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, jobId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                long minutes = rs.getLong("completion_minutes");
+                return new JobState(rs.getInt("customer_id"), rs.getInt("assigned_employee_id"), rs.getString("status"),
+                    rs.wasNull() ? null : minutes);
+            }
+        }
+    }
+
+    private static void verify() {
+        try {
+            // Versions first: any change after this point may or may not be in the scan.
+            Map<Integer, Long> versions = new HashMap<>();
+            for (Map.Entry<Integer, Counters> entry : counters.entrySet()) {
+                versions.put(entry.getKey(), entry.getValue().version());
+            }
+
+            Map<Integer, Snapshot> scanned = new HashMap<>();
+            try (Connection conn = DatabaseConnector.getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(ALL_EMPLOYEES_SQL);
+                 ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    scanned.put(rs.getInt("assigned_employee_id"), new Snapshot(rs.getLong("total"), rs.getLong("completed"),
+                        rs.getLong("active"), rs.getLong("booked"), rs.getLong("completion_minutes"), rs.getLong("completion_count")));
+                }
+            }
+
+            int drifted = 0;
+            for (Map.Entry<Integer, Snapshot> entry : scanned.entrySet()) {
+                Long version = versions.get(entry.getKey());
+                Counters c = counters.computeIfAbsent(entry.getKey(), id -> new Counters());
+                if (c.reconcile(entry.getValue(), version != null ? version : 0) && loaded) {
+                    drifted++;
+                }
+            }
+            // Employees that no longer have any jobs.
+            for (Map.Entry<Integer, Long> entry : versions.entrySet()) {
+                if (!scanned.containsKey(entry.getKey()) && counters.get(entry.getKey()).reconcile(EMPTY, entry.getValue()) && loaded) {
+                    drifted++;
+                }
+            }
+
+            if (!loaded) {
+                loaded = true;
+                Log.info("Employee stats loaded for " + scanned.size() + " employees");
+            } else if (drifted > 0) {
+                drift.addAndGet(drifted);
+                Log.warn("Employee stats had drifted for " + drifted + " employees; corrected from the jobs table");
+            }
+        } catch (SQLException | RuntimeException e) {
+            Log.error("Employee stats check failed", e);
+        }
+    }
+}
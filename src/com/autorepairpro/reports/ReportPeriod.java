@@ -0,0 +1,88 @@
+package com.autorepairpro.reports;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The {@code period} query parameter of the report endpoints: {@code <n>days} (up to 366,
+ * bucketed by day) or {@code <n>months} (up to 24, bucketed by calendar month), always ending
+ * today. Defaults to six months.
+ */
+public class ReportPeriod {
+    private static final Pattern FORMAT = Pattern.compile("(\\d{1,3})(days|months)");
+    private static final int MAX_DAYS = 366;
+    private static final int MAX_MONTHS = 24;
+    private static final DateTimeFormatter MONTH_LABEL = DateTimeFormatter.ofPattern("MMM yyyy", Locale.ENGLISH);
+
+    private final LocalDate from;
+    private final LocalDate to;
+    private final boolean monthly;
+
+    private ReportPeriod(LocalDate from, LocalDate to, boolean monthly) {
+        this.from = from;
+        this.to = to;
+        this.monthly = monthly;
+    }
+
+    /** @throws IllegalArgumentException with a message fit for the client */
+    public static ReportPeriod parse(String value, LocalDate today) {
+        if (value == null || value.isEmpty()) {
+            value = "6months";
+        }
+        Matcher m = FORMAT.matcher(value);
+        if (!m.matches()) {
+            throw new IllegalArgumentException("period must look like 30days or 6months");
+        }
+        int n = Integer.parseInt(m.group(1));
+        if (m.group(2).equals("days")) {
+            if (n < 1 || n > MAX_DAYS) {
+                throw new IllegalArgumentException("period must be between 1 and " + MAX_DAYS + " days");
+            }
+            return new ReportPeriod(today.minusDays(n - 1), today, false);
+        }
+        if (n < 1 || n > MAX_MONTHS) {
+            throw new IllegalArgumentException("period must be between 1 and " + MAX_MONTHS + " months");
+        }
+        return new ReportPeriod(YearMonth.from(today).minusMonths(n - 1).atDay(1), today, true);
+    }
+
+    /** The calendar month containing {@code day}, up to {@code day}. */
+    public static ReportPeriod monthToDate(LocalDate day) {
+        return new ReportPeriod(day.withDayOfMonth(1), day, true);
+    }
+
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    public LocalDate getTo() {
+        return to;
+    }
+
+    /** Number of buckets; every bucket is reported, including empty ones. */
+    public int size() {
+        return bucketOf(to) + 1;
+    }
+
+    /** Bucket index of a day inside the period. */
+    public int bucketOf(LocalDate day) {
+        if (monthly) {
+            return (day.getYear() - from.getYear()) * 12 + day.getMonthValue() - from.getMonthValue();
+        }
+        return (int) (day.toEpochDay() - from.toEpochDay());
+    }
+
+    public List<String> labels() {
+        List<String> labels = new ArrayList<>(size());
+        for (int i = 0; i < size(); i++) {
+            labels.add(monthly ? YearMonth.from(from).plusMonths(i).format(MONTH_LABEL) : from.plusDays(i).toString());
+        }
+        return labels;
+    }
+}
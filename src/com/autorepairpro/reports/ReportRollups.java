@@ -0,0 +1,308 @@
+package com.autorepairpro.reports;
+
+import com.autorepairpro.db.DatabaseConnector;
+import com.autorepairpro.log.Log;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps {@code report_daily_rollups} current. A day's rollups are recomputed as a whole from that
+ * day's source rows (jobs created and completed, completed payments, parts used), found through
+ * the per-date indexes, so the cost depends on one day's activity rather than the table sizes.
+ *
+ * Write paths only mark the day they touched as dirty, which costs a set insert; a background
+ * thread recomputes dirty days shortly afterwards. A periodic compaction also recomputes today
+ * and yesterday regardless, which picks up payments and any change made outside the server, and
+ * a startup backfill fills in days that have never been computed. After each pass the monthly
+ * {@code performance_metrics} rows of the affected months are refreshed from the rollups.
+ */
+public class ReportRollups {
+    // Rollup configuration with fallback to environment variables
+    private static final long REFRESH_SECONDS = System.getenv("REPORTS_REFRESH_SECONDS") != null ?
+        Long.parseLong(System.getenv("REPORTS_REFRESH_SECONDS")) : 60;
+    private static final long COMPACTION_MINUTES = System.getenv("REPORTS_COMPACTION_MINUTES") != null ?
+        Long.parseLong(System.getenv("REPORTS_COMPACTION_MINUTES")) : 30;
+    private static final int BACKFILL_DAYS = System.getenv("REPORTS_BACKFILL_DAYS") != null ?
+        Integer.parseInt(System.getenv("REPORTS_BACKFILL_DAYS")) : 400;
+
+    // Each group rolls one source table up by the listed dimensions; {dim} is the dimension's column.
+    private static final String BOOKED_SQL =
+        "SELECT {dim} AS dimension_id, COUNT(*) AS jobs_booked, " +
+        "SUM(CASE WHEN EXISTS (SELECT 1 FROM jobs p WHERE p.customer_id = j.customer_id AND p.created_at < j.created_at) " +
+        "THEN 0 ELSE 1 END) AS new_customers " +
+        "FROM jobs j WHERE j.created_at >= ? AND j.created_at < ? AND {dim} IS NOT NULL GROUP BY dimension_id";
+    private static final String COMPLETED_SQL =
+        "SELECT {dim} AS dimension_id, COUNT(*) AS jobs_completed, " +
+        "COALESCE(SUM(GREATEST(TIMESTAMPDIFF(MINUTE, j.booking_date, j.actual_completion_date), 0)), 0) AS completion_minutes, " +
+        "COALESCE(SUM(s.estimated_duration), 0) AS estimated_minutes " +
+        "FROM jobs j JOIN services s ON s.id = j.service_id " +
+        "WHERE j.actual_completion_date >= ? AND j.actual_completion_date < ? AND {dim} IS NOT NULL GROUP BY dimension_id";
+    private static final String REVENUE_SQL =
+        "SELECT {dim} AS dimension_id, SUM(p.amount) AS revenue " +
+        "FROM payments p JOIN invoices i ON i.id = p.invoice_id JOIN jobs j ON j.id = i.job_id " +
+        "WHERE p.payment_status = 'Completed' AND p.payment_date >= ? AND p.payment_date < ? AND {dim} IS NOT NULL " +
+        "GROUP BY dimension_id";
+    private static final String PARTS_SQL =
+        "SELECT {dim} AS dimension_id, SUM(ji.quantity_used) AS parts_used, SUM(ji.total_price) AS parts_cost " +
+        "FROM job_inventory ji JOIN jobs j ON j.id = ji.job_id " +
+        "WHERE ji.used_at >= ? AND ji.used_at < ? AND {dim} IS NOT NULL GROUP BY dimension_id";
+
+    private static final String[][] DIMENSIONS = {
+        { "all", "0" },
+        { "branch", "j.branch_id" },
+        { "service", "j.service_id" },
+        { "employee", "j.assigned_employee_id" },
+        { "part", "ji.inventory_id" },
+    };
+
+    private static class Group {
+        final String sql;
+        final String[] columns;
+        final String[] values;
+        final Set<String> dimensions;
+
+        Group(String sql, String[] columns, String[] values, String... dimensions) {
+            this.sql = sql;
+            this.columns = columns;
+            this.values = values;
+            this.dimensions = new HashSet<>(Arrays.asList(dimensions));
+        }
+    }
+
+    private static final Group[] GROUPS = {
+        new Group(BOOKED_SQL,
+            new String[] { "jobs_booked", "new_customers", "returning_customers" },
+            new String[] { "jobs_booked", "new_customers", "jobs_booked - new_customers" },
+            "all", "branch", "service"),
+        new Group(COMPLETED_SQL,
+            new String[] { "jobs_completed", "completion_minutes", "estimated_minutes" },
+            new String[] { "jobs_completed", "completion_minutes", "estimated_minutes" },
+            "all", "branch", "service", "employee"),
+        new Group(REVENUE_SQL,
+            new String[] { "revenue" },
+            new String[] { "revenue" },
+            "all", "branch", "service", "employee"),
+        new Group(PARTS_SQL,
+            new String[] { "parts_used", "parts_cost" },
+            new String[] { "parts_used", "parts_cost" },
+            "all", "part"),
+    };
+
+    private static final List<String> ROLLUP_SQL = buildRollupStatements();
+
+    /** Refreshes a month of jobs_completed metrics: period start and end, then the same two days again. */
+    public static final String PERFORMANCE_JOBS_SQL =
+        "INSERT INTO performance_metrics (employee_id, metric_type, metric_value, period_start, period_end) " +
+        "SELECT dimension_id, 'jobs_completed', SUM(jobs_completed), ?, ? FROM report_daily_rollups " +
+        "WHERE dimension = 'employee' AND day >= ? AND day <= ? GROUP BY dimension_id " +
+        "ON DUPLICATE KEY UPDATE metric_value = VALUES(metric_value)";
+    /** Estimated work minutes as a share of booking-to-completion minutes, capped at 100; bound as above. */
+    public static final String PERFORMANCE_EFFICIENCY_SQL =
+        "INSERT INTO performance_metrics (employee_id, metric_type, metric_value, period_start, period_end) " +
+        "SELECT dimension_id, 'efficiency_score', LEAST(100, ROUND(100 * SUM(estimated_minutes) / SUM(completion_minutes), 2)), ?, ? " +
+        "FROM report_daily_rollups WHERE dimension = 'employee' AND day >= ? AND day <= ? " +
+        "GROUP BY dimension_id HAVING SUM(completion_minutes) > 0 " +
+        "ON DUPLICATE KEY UPDATE metric_value = VALUES(metric_value)";
+
+    private static final Set<LocalDate> dirty = ConcurrentHashMap.newKeySet();
+    private static volatile boolean backfilled;
+    private static volatile boolean started;
+
+    private ReportRollups() {}
+
+    /** Starts the background refresh, compaction and backfill; called once at startup. */
+    public static synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "report-rollups");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(ReportRollups::refresh, 0, REFRESH_SECONDS, TimeUnit.SECONDS);
+        scheduler.scheduleWithFixedDelay(() -> {
+            LocalDate today = LocalDate.now();
+            markDirty(today);
+            markDirty(today.minusDays(1));
+        }, COMPACTION_MINUTES, COMPACTION_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /** Records that something on {@code day} changed; the day is recomputed on the next refresh. */
+    public static void markDirty(LocalDate day) {
+        dirty.add(day);
+    }
+
+    private static void refresh() {
+        try {
+            if (!backfilled) {
+                backfill();
+                backfilled = true;
+            }
+            if (dirty.isEmpty()) {
+                return;
+            }
+            TreeSet<LocalDate> days = new TreeSet<>(dirty);
+            dirty.removeAll(days);
+            try {
+                recompute(days);
+            } catch (SQLException e) {
+                dirty.addAll(days);
+                throw e;
+            }
+        } catch (SQLException | RuntimeException e) {
+            Log.error("Report rollup refresh failed", e);
+        }
+    }
+
+    // Computes every day since the first job (within the backfill window) that has no rollups yet,
+    // plus today and yesterday, which may have been only partly computed before a restart.
+    private static void backfill() throws SQLException {
+        LocalDate today = LocalDate.now();
+        LocalDate first;
+        Set<LocalDate> done = new HashSet<>();
+        try (Connection conn = DatabaseConnector.getConnection()) {
+            try (PreparedStatement pstmt = conn.prepareStatement("SELECT MIN(created_at) FROM jobs");
+                 ResultSet rs = pstmt.executeQuery()) {
+                Timestamp min = rs.next() ? rs.getTimestamp(1) : null;
+                first = min != null ? min.toLocalDateTime().toLocalDate() : today;
+            }
+            if (first.isBefore(today.minusDays(BACKFILL_DAYS))) {
+                first = today.minusDays(BACKFILL_DAYS);
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement("SELECT day FROM report_rollup_days WHERE day >= ?")) {
+                pstmt.setDate(1, Date.valueOf(first));
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        done.add(rs.getDate(1).toLocalDate());
+                    }
+                }
+            }
+        }
+
+        TreeSet<LocalDate> days = new TreeSet<>();
+        for (LocalDate day = first; !day.isAfter(today); day = day.plusDays(1)) {
+            if (!done.contains(day) || !day.isBefore(today.minusDays(1))) {
+                days.add(day);
+            }
+        }
+        if (days.size() > 2) {
+            Log.info("Backfilling report rollups for " + days.size() + " days");
+        }
+        recompute(days);
+    }
+
+    private static void recompute(TreeSet<LocalDate> days) throws SQLException {
+        Set<YearMonth> months = new TreeSet<>();
+        for (LocalDate day : days) {
+            recomputeDay(day);
+            months.add(YearMonth.from(day));
+        }
+        for (YearMonth month : months) {
+            refreshPerformanceMetrics(month);
+        }
+    }
+
+    /** Replaces one day's rollups in a single transaction, so readers never see a half-built day. */
+    static void recomputeDay(LocalDate day) throws SQLException {
+        Date date = Date.valueOf(day);
+        Timestamp start = Timestamp.valueOf(day.atStartOfDay());
+        Timestamp end = Timestamp.valueOf(day.plusDays(1).atStartOfDay());
+
+        try (Connection conn = DatabaseConnector.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                try (PreparedStatement pstmt = conn.prepareStatement(
+                        "DELETE FROM report_daily_rollups WHERE dimension IN ('all', 'branch', 'service', 'employee', 'part') AND day = ?")) {
+                    pstmt.setDate(1, date);
+                    pstmt.executeUpdate();
+                }
+                for (String sql : ROLLUP_SQL) {
+                    try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                        pstmt.setDate(1, date);
+                        pstmt.setTimestamp(2, start);
+                        pstmt.setTimestamp(3, end);
+                        pstmt.executeUpdate();
+                    }
+                }
+                try (PreparedStatement pstmt = conn.prepareStatement(
+                        "INSERT INTO report_rollup_days (day) VALUES (?) ON DUPLICATE KEY UPDATE computed_at = CURRENT_TIMESTAMP")) {
+                    pstmt.setDate(1, date);
+                    pstmt.executeUpdate();
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    /** The statements that recompute one day: the day, then its start inclusive and end exclusive. */
+    public static List<String> rollupStatements() {
+        return Collections.unmodifiableList(ROLLUP_SQL);
+    }
+
+    // One INSERT ... SELECT per group and dimension; the SQL is fixed, so pooled connections keep it prepared.
+    private static List<String> buildRollupStatements() {
+        List<String> built = new ArrayList<>();
+        for (Group group : GROUPS) {
+            for (String[] dimension : DIMENSIONS) {
+                if (!group.dimensions.contains(dimension[0])) {
+                    continue;
+                }
+                StringBuilder sql = new StringBuilder("INSERT INTO report_daily_rollups (dimension, day, dimension_id");
+                for (String column : group.columns) {
+                    sql.append(", ").append(column);
+                }
+                sql.append(") SELECT '").append(dimension[0]).append("', ?, dimension_id");
+                for (String value : group.values) {
+                    sql.append(", ").append(value);
+                }
+                sql.append(" FROM (").append(group.sql.replace("{dim}", dimension[1])).append(") t ON DUPLICATE KEY UPDATE ");
+                for (int i = 0; i < group.columns.length; i++) {
+                    sql.append(i == 0 ? "" : ", ").append(group.columns[i]).append(" = VALUES(").append(group.columns[i]).append(')');
+                }
+                built.add(sql.toString());
+            }
+        }
+        return built;
+    }
+
+    private static void refreshPerformanceMetrics(YearMonth month) throws SQLException {
+        Date first = Date.valueOf(month.atDay(1));
+        Date last = Date.valueOf(month.atEndOfMonth());
+        try (Connection conn = DatabaseConnector.getConnection()) {
+            for (String sql : new String[] { PERFORMANCE_JOBS_SQL, PERFORMANCE_EFFICIENCY_SQL }) {
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setDate(1, first);
+                    pstmt.setDate(2, last);
+                    pstmt.setDate(3, first);
+                    pstmt.setDate(4, last);
+                    pstmt.executeUpdate();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.autorepairpro.reports;
+
+import com.autorepairpro.db.DatabaseConnector;
+import com.autorepairpro.json.JsonWriter;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Answers the report endpoints from {@code report_daily_rollups}. A period reads at most one row
+ * per day and dimension value, so the cost depends on the period length and never on how many
+ * jobs, payments or parts sit behind it. Days are folded into the period's buckets here.
+ */
+public class Reports {
+    private static final String DAILY_TOTALS_SQL =
+        "SELECT day, revenue, new_customers, returning_customers FROM report_daily_rollups " +
+        "WHERE dimension = 'all' AND dimension_id = 0 AND day >= ? AND day <= ?";
+    private static final String PART_USAGE_SQL =
+        "SELECT i.part_name, SUM(r.parts_used) AS parts_used FROM report_daily_rollups r " +
+        "JOIN inventory i ON i.id = r.dimension_id " +
+        "WHERE r.dimension = 'part' AND r.day >= ? AND r.day <= ? " +
+        "GROUP BY r.dimension_id, i.part_name HAVING SUM(r.parts_used) > 0 ORDER BY parts_used DESC LIMIT 10";
+    // Ratings are entered per period in performance_metrics; every rating period overlapping the report counts.
+    private static final String EMPLOYEES_SQL =
+        "SELECT u.id, u.full_name, COALESCE(SUM(r.jobs_completed), 0) AS jobs_completed, " +
+        "COALESCE(SUM(r.estimated_minutes), 0) AS estimated_minutes, COALESCE(SUM(r.completion_minutes), 0) AS completion_minutes, " +
+        "(SELECT AVG(m.metric_value) FROM performance_metrics m WHERE m.employee_id = u.id " +
+        "AND m.metric_type = 'customer_rating' AND m.period_end >= ? AND m.period_start <= ?) AS rating " +
+        "FROM users u LEFT JOIN report_daily_rollups r ON r.dimension = 'employee' AND r.dimension_id = u.id " +
+        "AND r.day >= ? AND r.day <= ? " +
+        "WHERE u.role = 'employee' AND u.is_active = TRUE " +
+        "GROUP BY u.id, u.full_name ORDER BY jobs_completed DESC, u.full_name";
+
+    /** One employee's totals over a period. */
+    public static class EmployeeTotals {
+        private final int employeeId;
+        private final String name;
+        private final long jobsCompleted;
+        private final BigDecimal rating;
+        private final BigDecimal efficiencyScore;
+
+        EmployeeTotals(int employeeId, String name, long jobsCompleted, BigDecimal rating, BigDecimal efficiencyScore) {
+            this.employeeId = employeeId;
+            this.name = name;
+            this.jobsCompleted = jobsCompleted;
+            this.rating = rating;
+            this.efficiencyScore = efficiencyScore;
+        }
+
+        public int getEmployeeId() {
+            return employeeId;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getJobsCompleted() {
+            return jobsCompleted;
+        }
+
+        /** Average customer rating, zero when the employee has none for the period. */
+        public BigDecimal getRating() {
+            return rating;
+        }
+
+        /** Estimated work minutes as a percentage of booking-to-completion minutes, capped at 100. */
+        public BigDecimal getEfficiencyScore() {
+            return efficiencyScore;
+        }
+    }
+
+    private Reports() {}
+
+    /** {@code {labels, values}}: completed payments per bucket. */
+    public static void revenue(ReportPeriod period, JsonWriter json) throws SQLException {
+        BigDecimal[] revenue = new BigDecimal[period.size()];
+        Arrays.fill(revenue, BigDecimal.ZERO);
+        try (Connection conn = DatabaseConnector.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(DAILY_TOTALS_SQL)) {
+            setRange(pstmt, 1, period);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    int bucket = period.bucketOf(rs.getDate("day").toLocalDate());
+                    revenue[bucket] = revenue[bucket].add(rs.getBigDecimal("revenue"));
+                }
+            }
+        }
+        json.beginObject();
+        labels(period, json);
+        json.name("values").beginArray();
+        for (BigDecimal value : revenue) {
+            json.value(value);
+        }
+        json.endArray().endObject();
+    }
+
+    /** {@code {labels, newCustomers, returningCustomers}}: bookings by first-time and returning customers. */
+    public static void customerActivity(ReportPeriod period, JsonWriter json) throws SQLException {
+        long[] newCustomers = new long[period.size()];
+        long[] returningCustomers = new long[period.size()];
+        try (Connection conn = DatabaseConnector.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(DAILY_TOTALS_SQL)) {
+            setRange(pstmt, 1, period);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    int bucket = period.bucketOf(rs.getDate("day").toLocalDate());
+                    newCustomers[bucket] += rs.getLong("new_customers");
+                    returningCustomers[bucket] += rs.getLong("returning_customers");
+                }
+            }
+        }
+        json.beginObject();
+        labels(period, json);
+        series("newCustomers", newCustomers, json);
+        series("returningCustomers", returningCustomers, json);
+        json.endObject();
+    }
+
+    /** {@code {labels, values}}: units used of the ten most used parts over the period. */
+    public static void partUsage(ReportPeriod period, JsonWriter json) throws SQLException {
+        List<String> names = new ArrayList<>();
+        List<Long> used = new ArrayList<>();
+        try (Connection conn = DatabaseConnector.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(PART_USAGE_SQL)) {
+            setRange(pstmt, 1, period);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    names.add(rs.getString("part_name"));
+                    used.add(rs.getLong("parts_used"));
+                }
+            }
+        }
+        json.beginObject();
+        json.name("labels").beginArray();
+        for (String name : names) {
+            json.value(name);
+        }
+        json.endArray();
+        json.name("values").beginArray();
+        for (long value : used) {
+            json.value(value);
+        }
+        json.endArray().endObject();
+    }
+
+    /** {@code {labels, jobsCompleted, ratings}}: one entry per active employee, busiest first. */
+    public static void employeePerformance(ReportPeriod period, JsonWriter json) throws SQLException {
+        List<EmployeeTotals> employees = employees(period);
+        json.beginObject();
+        json.name("labels").beginArray();
+        for (EmployeeTotals employee : employees) {
+            json.value(employee.name);
+        }
+        json.endArray();
+        json.name("jobsCompleted").beginArray();
+        for (EmployeeTotals employee : employees) {
+            json.value(employee.jobsCompleted);
+        }
+        json.endArray();
+        json.name("ratings").beginArray();
+        for (EmployeeTotals employee : employees) {
+            json.value(employee.rating);
+        }
+        json.endArray().endObject();
+    }
+
+    /** Per-employee totals over the period, for every active employee, busiest first. */
+    public static List<EmployeeTotals> employees(ReportPeriod period) throws SQLException {
+        List<EmployeeTotals> employees = new ArrayList<>();
+        try (Connection conn = DatabaseConnector.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(EMPLOYEES_SQL)) {
+            setRange(pstmt, 1, period);
+            setRange(pstmt, 3, period);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    BigDecimal rating = rs.getBigDecimal("rating");
+                    long estimated = rs.getLong("estimated_minutes");
+                    long actual = rs.getLong("completion_minutes");
+                    BigDecimal efficiency = actual > 0
+                        ? BigDecimal.valueOf(Math.min(100.0, 100.0 * estimated / actual)).setScale(1, RoundingMode.HALF_UP)
+                        : BigDecimal.ZERO;
+                    employees.add(new EmployeeTotals(rs.getInt("id"), rs.getString("full_name"), rs.getLong("jobs_completed"),
+                        rating != null ? rating.setScale(1, RoundingMode.HALF_UP) : BigDecimal.ZERO, efficiency));
+                }
+            }
+        }
+        return employees;
+    }
+
+    private static void setRange(PreparedStatement pstmt, int index, ReportPeriod period) throws SQLException {
+        pstmt.setDate(index, Date.valueOf(period.getFrom()));
+        pstmt.setDate(index + 1, Date.valueOf(period.getTo()));
+    }
+
+    private static void labels(ReportPeriod period, JsonWriter json) {
+        json.name("labels").beginArray();
+        for (String label : period.labels()) {
+            json.value(label);
+        }
+        json.endArray();
+    }
+
+    private static void series(String name, long[] values, JsonWriter json) {
+        json.name(name).beginArray();
+        for (long value : values) {
+            json.value(value);
+        }
+        json.endArray();
+    }
+}
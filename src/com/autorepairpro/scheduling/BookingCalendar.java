@@ -0,0 +1,360 @@
+package com.autorepairpro.scheduling;
+
+import com.autorepairpro.cache.ReferenceDataCache;
+import com.autorepairpro.db.DatabaseConnector;
+import com.autorepairpro.log.Log;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.TextStyle;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory booking calendar. Every branch has, per day, a count of booked jobs in each
+ * 15-minute slot; a booking needs the slots covering its service's estimated duration, inside
+ * the branch's business hours, and is admitted only if each of them is below the branch's
+ * {@code service_bays}. The check and the increment happen under the branch's lock, so two
+ * customers racing for the last bay cannot both get it, and availability is answered from the
+ * counts without querying {@code jobs}.
+ *
+ * Upcoming bookings are loaded once at startup. After that the calendar only sees bookings made
+ * and cancelled through this server.
+ */
+public class BookingCalendar {
+    // Calendar configuration with fallback to environment variables
+    private static final int HORIZON_DAYS = System.getenv("BOOKING_HORIZON_DAYS") != null ?
+        Integer.parseInt(System.getenv("BOOKING_HORIZON_DAYS")) : 90;
+
+    public static final int SLOT_MINUTES = 15;
+    private static final int SLOTS_PER_DAY = 24 * 60 / SLOT_MINUTES;
+    // Services without an estimate are booked for an hour.
+    private static final int DEFAULT_DURATION_MINUTES = 60;
+
+    /** Bookings from today to the horizon, start inclusive and end exclusive. */
+    public static final String UPCOMING_SQL =
+        "SELECT j.id, j.branch_id, j.booking_date, s.estimated_duration FROM jobs j " +
+        "JOIN services s ON s.id = j.service_id " +
+        "WHERE j.booking_date >= ? AND j.booking_date < ? AND j.status <> 'Cancelled'";
+
+    public enum Status { ADMITTED, FULL, CLOSED, PAST, TOO_FAR }
+
+    private static class Booking {
+        final int branchId;
+        final LocalDate day;
+        final int first;
+        final int end;
+
+        Booking(int branchId, LocalDate day, int first, int end) {
+            this.branchId = branchId;
+            this.day = day;
+            this.first = first;
+            this.end = end;
+        }
+    }
+
+    // Bookings per slot for each day of one branch; guarded by the instance.
+    private static class BranchDays {
+        final Map<LocalDate, short[]> days = new HashMap<>();
+
+        short[] day(LocalDate day) {
+            return days.computeIfAbsent(day, d -> new short[SLOTS_PER_DAY]);
+        }
+
+        void add(Booking booking, int delta) {
+            short[] counts = day(booking.day);
+            for (int slot = booking.first; slot < booking.end; slot++) {
+                counts[slot] += delta;
+            }
+        }
+    }
+
+    /** A held booking: confirm it with the new job's id once the row is inserted, or release it. */
+    public static class Reservation {
+        private final Status status;
+        private final Booking booking;
+        private final int estimatedMinutes;
+        private boolean settled;
+
+        Reservation(Status status, Booking booking) {
+            this(status, booking, 0);
+        }
+
+        Reservation(Status status, Booking booking, int estimatedMinutes) {
+            this.status = status;
+            this.booking = booking;
+            this.estimatedMinutes = estimatedMinutes;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public boolean isAdmitted() {
+            return status == Status.ADMITTED;
+        }
+
+        /** The service's estimated duration the slots were reserved for, as listed (0 if it has none). */
+        public int getEstimatedMinutes() {
+            return estimatedMinutes;
+        }
+
+        public void confirm(int jobId) {
+            if (isAdmitted() && !settled) {
+                settled = true;
+                bookings.put(jobId, booking);
+            }
+        }
+
+        public void release() {
+            if (isAdmitted() && !settled) {
+                settled = true;
+                BranchDays branch = branchDays(booking.branchId);
+                synchronized (branch) {
+                    branch.add(booking, -1);
+                }
+            }
+        }
+    }
+
+    /** Bookable start times for one branch, service and day. */
+    public static class DayAvailability {
+        private final LocalDate day;
+        private final boolean open;
+        private final List<LocalTime> starts;
+
+        DayAvailability(LocalDate day, boolean open, List<LocalTime> starts) {
+            this.day = day;
+            this.open = open;
+            this.starts = starts;
+        }
+
+        public LocalDate getDay() {
+            return day;
+        }
+
+        public boolean isOpen() {
+            return open;
+        }
+
+        public List<LocalTime> getStarts() {
+            return starts;
+        }
+    }
+
+    private static final ConcurrentHashMap<Integer, BranchDays> branches = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<Integer, Booking> bookings = new ConcurrentHashMap<>();
+    private static final Object loadLock = new Object();
+    private static volatile boolean loaded;
+    private static volatile LocalDate prunedBefore = LocalDate.MIN;
+
+    private BookingCalendar() {}
+
+    // Loads upcoming bookings. If the database is down, the first booking or availability request retries.
+    public static void warmUp() {
+        try {
+            ensureLoaded();
+        } catch (SQLException e) {
+            Log.warn("Booking calendar could not be loaded at startup: " + e.getMessage());
+        }
+    }
+
+    /** Last day that can be booked or queried, counted from today. */
+    public static int getHorizonDays() {
+        return HORIZON_DAYS;
+    }
+
+    /**
+     * Holds the slots for a booking if the branch is open and has a bay free for the whole
+     * duration. Returns null if the branch or service does not exist.
+     */
+    public static Reservation reserve(int branchId, int serviceId, LocalDateTime start) throws SQLException {
+        ensureLoaded();
+        ReferenceDataCache.Branch branch = ReferenceDataCache.getBranch(branchId);
+        ReferenceDataCache.Service service = ReferenceDataCache.getService(serviceId);
+        if (branch == null || service == null) {
+            return null;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        if (start.isBefore(now)) {
+            return new Reservation(Status.PAST, null);
+        }
+        if (start.toLocalDate().isAfter(now.toLocalDate().plusDays(HORIZON_DAYS))) {
+            return new Reservation(Status.TOO_FAR, null);
+        }
+
+        int[] hours = openSlots(branch, start.toLocalDate());
+        int first = start.toLocalTime().toSecondOfDay() / 60 / SLOT_MINUTES;
+        int end = slotEnd(start.toLocalTime().toSecondOfDay() / 60 + duration(service));
+        if (hours == null || first < hours[0] || end > hours[1]) {
+            return new Reservation(Status.CLOSED, null);
+        }
+
+        Booking booking = new Booking(branchId, start.toLocalDate(), first, end);
+        BranchDays days = branchDays(branchId);
+        synchronized (days) {
+            short[] counts = days.day(booking.day);
+            for (int slot = first; slot < end; slot++) {
+                if (counts[slot] >= branch.serviceBays) {
+                    return new Reservation(Status.FULL, null);
+                }
+            }
+            days.add(booking, 1);
+        }
+        return new Reservation(Status.ADMITTED, booking, service.estimatedDuration);
+    }
+
+    /** Frees a cancelled job's slots. */
+    public static void cancel(int jobId) {
+        Booking booking = bookings.remove(jobId);
+        if (booking != null) {
+            BranchDays days = branchDays(booking.branchId);
+            synchronized (days) {
+                days.add(booking, -1);
+            }
+        }
+    }
+
+    /**
+     * Start times at which the service could be booked at the branch on each of {@code count}
+     * days from {@code from}. Returns null if the branch or service does not exist.
+     */
+    public static List<DayAvailability> availability(int branchId, int serviceId, LocalDate from, int count) throws SQLException {
+        ensureLoaded();
+        ReferenceDataCache.Branch branch = ReferenceDataCache.getBranch(branchId);
+        ReferenceDataCache.Service service = ReferenceDataCache.getService(serviceId);
+        if (branch == null || service == null) {
+            return null;
+        }
+        int needed = slotEnd(duration(service));
+        LocalDateTime now = LocalDateTime.now();
+        LocalDate last = now.toLocalDate().plusDays(HORIZON_DAYS);
+        BranchDays days = branchDays(branchId);
+
+        List<DayAvailability> result = new ArrayList<>(count);
+        for (LocalDate day = from; day.isBefore(from.plusDays(count)) && !day.isAfter(last); day = day.plusDays(1)) {
+            int[] hours = openSlots(branch, day);
+            if (hours == null || day.isBefore(now.toLocalDate())) {
+                result.add(new DayAvailability(day, hours != null, new ArrayList<LocalTime>()));
+                continue;
+            }
+            // Earliest slot that has not started yet, so a booking made now is never in the past.
+            int earliest = hours[0];
+            if (day.equals(now.toLocalDate())) {
+                earliest = Math.max(earliest, slotEnd(now.toLocalTime().toSecondOfDay() / 60 + 1));
+            }
+
+            List<LocalTime> starts = new ArrayList<>();
+            synchronized (days) {
+                short[] counts = days.days.get(day);
+                // Length of the run of slots with a free bay ending at each slot.
+                int run = 0;
+                for (int slot = hours[0]; slot < hours[1]; slot++) {
+                    run = counts == null || counts[slot] < branch.serviceBays ? run + 1 : 0;
+                    int start = slot + 1 - needed;
+                    if (run >= needed && start >= earliest) {
+                        starts.add(LocalTime.ofSecondOfDay((long) start * SLOT_MINUTES * 60));
+                    }
+                }
+            }
+            result.add(new DayAvailability(day, true, starts));
+        }
+        return result;
+    }
+
+    private static BranchDays branchDays(int branchId) {
+        return branches.computeIfAbsent(branchId, id -> new BranchDays());
+    }
+
+    private static int duration(ReferenceDataCache.Service service) {
+        return service.estimatedDuration > 0 ? service.estimatedDuration : DEFAULT_DURATION_MINUTES;
+    }
+
+    // First slot after the given minute of the day, rounded up to a whole slot.
+    private static int slotEnd(int minute) {
+        return Math.min(SLOTS_PER_DAY, (minute + SLOT_MINUTES - 1) / SLOT_MINUTES);
+    }
+
+    // [first slot, end slot) the branch is open on that day, or null if it is closed.
+    private static int[] openSlots(ReferenceDataCache.Branch branch, LocalDate day) {
+        String name = day.getDayOfWeek().getDisplayName(TextStyle.FULL, Locale.ENGLISH);
+        ReferenceDataCache.BusinessHours hours = branch.hours.get(name);
+        if (hours == null || hours.closed) {
+            return null;
+        }
+        int open = slotEnd(minuteOf(hours.openTime));
+        int close = minuteOf(hours.closeTime) / SLOT_MINUTES;
+        return open < close ? new int[] { open, close } : null;
+    }
+
+    private static int minuteOf(Time time) {
+        return time.toLocalTime().toSecondOfDay() / 60;
+    }
+
+    private static void ensureLoaded() throws SQLException {
+        if (!loaded) {
+            // Only the first caller loads; the rest wait for it.
+            synchronized (loadLock) {
+                if (!loaded) {
+                    load();
+                    loaded = true;
+                }
+            }
+        }
+        LocalDate today = LocalDate.now();
+        if (prunedBefore.isBefore(today)) {
+            prune(today);
+        }
+    }
+
+    private static void load() throws SQLException {
+        LocalDate today = LocalDate.now();
+        int count = 0;
+        try (Connection conn = DatabaseConnector.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(UPCOMING_SQL)) {
+            pstmt.setTimestamp(1, Timestamp.valueOf(today.atStartOfDay()));
+            pstmt.setTimestamp(2, Timestamp.valueOf(today.plusDays(HORIZON_DAYS + 1).atStartOfDay()));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    LocalDateTime start = rs.getTimestamp("booking_date").toLocalDateTime();
+                    int minutes = rs.getInt("estimated_duration");
+                    int first = start.toLocalTime().toSecondOfDay() / 60 / SLOT_MINUTES;
+                    int end = slotEnd(start.toLocalTime().toSecondOfDay() / 60 + (minutes > 0 ? minutes : DEFAULT_DURATION_MINUTES));
+                    // Existing bookings are counted as they are, even outside today's hours or over capacity.
+                    Booking booking = new Booking(rs.getInt("branch_id"), start.toLocalDate(), first, Math.max(end, first + 1));
+                    BranchDays days = branchDays(booking.branchId);
+                    synchronized (days) {
+                        days.add(booking, 1);
+                    }
+                    bookings.put(rs.getInt("id"), booking);
+                    count++;
+                }
+            }
+        }
+        Log.info("Booking calendar loaded " + count + " upcoming bookings");
+    }
+
+    // Drops days that have passed; runs at most once a day, on the first request after midnight.
+    private static synchronized void prune(LocalDate today) {
+        if (!prunedBefore.isBefore(today)) {
+            return;
+        }
+        for (BranchDays days : branches.values()) {
+            synchronized (days) {
+                days.days.keySet().removeIf(day -> day.isBefore(today));
+            }
+        }
+        bookings.values().removeIf(booking -> booking.day.isBefore(today));
+        prunedBefore = today;
+    }
+}
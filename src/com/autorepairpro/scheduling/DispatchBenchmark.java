@@ -0,0 +1,188 @@
+package com.autorepairpro.scheduling;
+
+import com.autorepairpro.log.Log;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Simulates dispatching on the in-memory structures only, no database needed. Books a stream of
+ * jobs over a skewed set of branches, completing some along the way, and times the
+ * least-loaded pick against a linear scan over all technicians; then piles part of the work on a
+ * few technicians, as hand assignment would, and times the rebalance pass that evens it out.
+ *
+ * <pre>java -cp build com.autorepairpro.scheduling.DispatchBenchmark [--jobs 20000] [--technicians 300] [--branches 10]</pre>
+ *
+ * Exits with status 1 if a job lands on a technician who cannot work at its branch, or if a
+ * technician's load stops matching the jobs they hold.
+ */
+public class DispatchBenchmark {
+    // Roughly one technician in ten works wherever they are needed.
+    private static final int FLOATING_EVERY = 10;
+    private static final long SEED = 42;
+    // Far enough ahead that the rebalance pass may move every job.
+    private static final long FUTURE = Long.MAX_VALUE;
+
+    public static void main(String[] args) {
+        int jobCount = 20000;
+        int technicianCount = 300;
+        int branchCount = 10;
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals("--jobs")) {
+                jobCount = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--technicians")) {
+                technicianCount = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--branches")) {
+                branchCount = Integer.parseInt(args[++i]);
+            }
+        }
+
+        int[] branchOf = new int[technicianCount + 1];
+        for (int id = 1; id <= technicianCount; id++) {
+            branchOf[id] = id % FLOATING_EVERY == 0 ? TechnicianLoads.ANY_BRANCH : 1 + id % branchCount;
+        }
+
+        // Busier branches get more bookings: branch b is picked with weight 1/b.
+        Random random = new Random(SEED);
+        int[] jobBranch = new int[jobCount];
+        int[] jobMinutes = new int[jobCount];
+        double[] weights = new double[branchCount];
+        double total = 0;
+        for (int b = 0; b < branchCount; b++) {
+            total += 1.0 / (b + 1);
+            weights[b] = total;
+        }
+        for (int j = 0; j < jobCount; j++) {
+            double r = random.nextDouble() * total;
+            int b = 0;
+            while (weights[b] < r) {
+                b++;
+            }
+            jobBranch[j] = b + 1;
+            jobMinutes[j] = 30 + 15 * random.nextInt(15);
+        }
+
+        // 1. Booking stream, once to warm up the JIT and once measured, for both ways of picking.
+        for (int round = 0; round < 2; round++) {
+            stream(new TechnicianLoads(), branchOf, jobBranch, jobMinutes);
+            scan(branchOf, jobBranch, jobMinutes);
+        }
+        TechnicianLoads loads = new TechnicianLoads();
+        long pickNanos = stream(loads, branchOf, jobBranch, jobMinutes);
+        long scanNanos = scan(branchOf, jobBranch, jobMinutes);
+        boolean passed = consistent(loads);
+        report("least-loaded pick", jobCount, pickNanos, loads);
+        Log.info(String.format("linear scan: %d jobs, %.1f ms, %.0f ns per pick",
+            jobCount, scanNanos / 1e6, (double) scanNanos / jobCount));
+
+        // 2. Skew: a quarter as many jobs again, all handed to the first technician of their branch.
+        TechnicianLoads.Technician[] firstOfBranch = new TechnicianLoads.Technician[branchCount + 1];
+        for (TechnicianLoads.Technician technician : loads.technicians()) {
+            if (technician.branchId != TechnicianLoads.ANY_BRANCH
+                    && (firstOfBranch[technician.branchId] == null || technician.id < firstOfBranch[technician.branchId].id)) {
+                firstOfBranch[technician.branchId] = technician;
+            }
+        }
+        int extra = jobCount / 4;
+        for (int j = 0; j < extra; j++) {
+            int branch = jobBranch[j];
+            loads.add(new TechnicianLoads.Job(jobCount + j + 1, branch, jobMinutes[j], FUTURE), firstOfBranch[branch]);
+        }
+        report("after hand assignment", extra, 0, loads);
+
+        long began = System.nanoTime();
+        int moves = 0;
+        List<TechnicianLoads.Move> batch;
+        do {
+            batch = loads.rebalance(200, 0);
+            moves += batch.size();
+        } while (!batch.isEmpty());
+        long rebalanceNanos = System.nanoTime() - began;
+        Log.info(String.format("rebalance: %d moves in %.1f ms", moves, rebalanceNanos / 1e6));
+        report("after rebalance", moves, 0, loads);
+
+        passed &= consistent(loads);
+        Log.info(passed ? "Dispatch benchmark passed" : "Dispatch benchmark failed: misassigned job or inconsistent load");
+        System.exit(passed ? 0 : 1);
+    }
+
+    // Picks a technician for every job as it arrives; every third job, a recent one is finished.
+    private static long stream(TechnicianLoads loads, int[] branchOf, int[] jobBranch, int[] jobMinutes) {
+        for (int id = 1; id < branchOf.length; id++) {
+            loads.addTechnician(id, branchOf[id]);
+        }
+        Random random = new Random(SEED);
+        long began = System.nanoTime();
+        for (int j = 0; j < jobBranch.length; j++) {
+            loads.add(new TechnicianLoads.Job(j + 1, jobBranch[j], jobMinutes[j], FUTURE), loads.leastLoaded(jobBranch[j]));
+            if (j % 3 == 2) {
+                loads.remove(j + 1 - random.nextInt(Math.min(j, 100) + 1));
+            }
+        }
+        return System.nanoTime() - began;
+    }
+
+    // The same stream, finding the least loaded technician by looking at all of them.
+    private static long scan(int[] branchOf, int[] jobBranch, int[] jobMinutes) {
+        long[] load = new long[branchOf.length];
+        int[] holder = new int[jobBranch.length + 1];
+        Random random = new Random(SEED);
+        long began = System.nanoTime();
+        for (int j = 0; j < jobBranch.length; j++) {
+            int best = 0;
+            for (int id = 1; id < branchOf.length; id++) {
+                boolean eligible = branchOf[id] == TechnicianLoads.ANY_BRANCH || branchOf[id] == jobBranch[j];
+                if (eligible && (best == 0 || load[id] < load[best])) {
+                    best = id;
+                }
+            }
+            load[best] += jobMinutes[j];
+            holder[j + 1] = best;
+            if (j % 3 == 2) {
+                int done = j + 1 - random.nextInt(Math.min(j, 100) + 1);
+                if (holder[done] != 0) {
+                    load[holder[done]] -= jobMinutes[done - 1];
+                    holder[done] = 0;
+                }
+            }
+        }
+        return System.nanoTime() - began;
+    }
+
+    // The gap that matters is within a branch: its technicians can only share its own work.
+    private static void report(String name, int count, long nanos, TechnicianLoads loads) {
+        Map<Integer, long[]> ranges = new HashMap<>();
+        long sum = 0;
+        for (TechnicianLoads.Technician technician : loads.technicians()) {
+            long[] range = ranges.computeIfAbsent(technician.branchId, b -> new long[] { Long.MAX_VALUE, 0 });
+            range[0] = Math.min(range[0], technician.minutes);
+            range[1] = Math.max(range[1], technician.minutes);
+            sum += technician.minutes;
+        }
+        long widest = 0;
+        for (long[] range : ranges.values()) {
+            widest = Math.max(widest, range[1] - range[0]);
+        }
+        String timing = nanos > 0 ? String.format(", %.1f ms, %.0f ns per pick", nanos / 1e6, (double) nanos / count) : "";
+        Log.info(String.format("%s: %d jobs%s; mean load %.0f minutes, widest gap within a branch %d minutes",
+            name, count, timing, (double) sum / loads.technicianCount(), widest));
+    }
+
+    private static boolean consistent(TechnicianLoads loads) {
+        for (TechnicianLoads.Technician technician : loads.technicians()) {
+            long minutes = 0;
+            for (TechnicianLoads.Job job : technician.jobs.values()) {
+                minutes += job.minutes;
+                if (job.technician != technician
+                        || (technician.branchId != TechnicianLoads.ANY_BRANCH && technician.branchId != job.branchId)) {
+                    return false;
+                }
+            }
+            if (minutes != technician.minutes) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
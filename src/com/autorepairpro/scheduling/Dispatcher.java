@@ -0,0 +1,305 @@
+package com.autorepairpro.scheduling;
+
+import com.autorepairpro.db.DatabaseConnector;
+import com.autorepairpro.log.Log;
+import com.autorepairpro.reports.EmployeeStats;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Assigns booked jobs to technicians. Each technician's load is the estimated minutes of their
+ * open jobs; a new booking goes to the least loaded technician of its branch (or one without a
+ * branch) when it is made, and a periodic pass assigns jobs nobody could take and moves jobs
+ * that have not started from busy technicians to idle ones, writing the changes in one batch.
+ *
+ * Loads are loaded from the open jobs at startup and then kept up to date by the write paths.
+ */
+public class Dispatcher {
+    // Dispatch configuration with fallback to environment variables
+    private static final long REBALANCE_SECONDS = System.getenv("DISPATCH_REBALANCE_SECONDS") != null ?
+        Long.parseLong(System.getenv("DISPATCH_REBALANCE_SECONDS")) : 300;
+    private static final int REBALANCE_BATCH = System.getenv("DISPATCH_REBALANCE_BATCH") != null ?
+        Integer.parseInt(System.getenv("DISPATCH_REBALANCE_BATCH")) : 200;
+    // Jobs starting sooner than this keep their technician, who may already be preparing for them.
+    private static final long FREEZE_MINUTES = System.getenv("DISPATCH_FREEZE_MINUTES") != null ?
+        Long.parseLong(System.getenv("DISPATCH_FREEZE_MINUTES")) : 120;
+
+    // Services without an estimate count as an hour of work.
+    private static final int DEFAULT_MINUTES = 60;
+
+    /** Every active technician and their branch. */
+    public static final String ROSTER_SQL =
+        "SELECT id, branch_id FROM users WHERE role = 'employee' AND is_active = TRUE";
+    /** Booked and in-progress jobs, which make up each technician's load. */
+    public static final String OPEN_JOBS_SQL =
+        "SELECT j.id, j.branch_id, j.assigned_employee_id, j.status, j.booking_date, s.estimated_duration " +
+        "FROM jobs j JOIN services s ON s.id = j.service_id WHERE j.status IN ('Booked', 'In Progress')";
+    // Bookings that reached the database without a technician: made before the first load, when
+    // nobody could take them, or by other means than this server.
+    public static final String UNASSIGNED_JOBS_SQL = OPEN_JOBS_SQL + " AND j.assigned_employee_id IS NULL";
+    // Only applies if nobody else changed the job since it was planned.
+    public static final String MOVE_SQL =
+        "UPDATE jobs SET assigned_employee_id = ? WHERE id = ? AND assigned_employee_id <=> ? AND status = 'Booked'";
+
+    /** A technician chosen for a booking that is about to be inserted. */
+    public static class Pick {
+        private final TechnicianLoads.Job job;
+        // Nothing is recorded for a job nobody could take; the next pass finds it in the database.
+        private boolean settled;
+
+        Pick(TechnicianLoads.Job job) {
+            this.job = job;
+            this.settled = job.technician == null;
+        }
+
+        /** The chosen technician, or 0 if nobody can take it now; the rebalance pass retries. */
+        public int getEmployeeId() {
+            return job.technician != null ? job.technician.id : 0;
+        }
+
+        public void confirm(int jobId) {
+            synchronized (loads) {
+                if (!settled) {
+                    settled = true;
+                    loads.rekey(job, jobId);
+                }
+            }
+        }
+
+        public void release() {
+            synchronized (loads) {
+                if (!settled) {
+                    settled = true;
+                    loads.remove(job.id);
+                }
+            }
+        }
+    }
+
+    private static final TechnicianLoads loads = new TechnicianLoads();
+    // Jobs are recorded under a negative id until their row exists.
+    private static final AtomicLong placeholders = new AtomicLong();
+    private static final AtomicLong moved = new AtomicLong();
+    private static volatile boolean loaded;
+    private static volatile boolean started;
+
+    private Dispatcher() {}
+
+    /** Loads the roster and open jobs and schedules the rebalance pass; called once at startup. */
+    public static synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "dispatcher");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(Dispatcher::tick, 0, REBALANCE_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public static long getMovedCount() {
+        return moved.get();
+    }
+
+    public static int getUnassignedCount() {
+        synchronized (loads) {
+            return loads.unassignedCount();
+        }
+    }
+
+    /** Chooses a technician for a new booking and counts the job against them straight away. */
+    public static Pick pick(int branchId, int estimatedMinutes, LocalDateTime start) {
+        TechnicianLoads.Job job = new TechnicianLoads.Job((int) -placeholders.incrementAndGet(), branchId,
+            minutes(estimatedMinutes), millis(start));
+        synchronized (loads) {
+            // Before the first load every booking is left unassigned for the pass to pick up.
+            TechnicianLoads.Technician technician = loaded ? loads.leastLoaded(branchId) : null;
+            if (technician != null) {
+                loads.add(job, technician);
+            }
+            return new Pick(job);
+        }
+    }
+
+    /** Keeps loads in step with a job's status change. */
+    public static void statusChanged(int jobId, String status) {
+        synchronized (loads) {
+            if ("In Progress".equals(status)) {
+                loads.started(jobId);
+            } else if (!"Booked".equals(status)) {
+                loads.remove(jobId);
+            }
+        }
+    }
+
+    private static void tick() {
+        try {
+            if (!loaded) {
+                load();
+                loaded = true;
+            } else {
+                refreshRoster();
+                queueUnassigned();
+            }
+            rebalance();
+        } catch (SQLException | RuntimeException e) {
+            Log.error("Dispatch pass failed", e);
+        }
+    }
+
+    private static void load() throws SQLException {
+        try (Connection conn = DatabaseConnector.getConnection()) {
+            List<int[]> roster = roster(conn);
+            synchronized (loads) {
+                for (int[] technician : roster) {
+                    loads.addTechnician(technician[0], technician[1]);
+                }
+            }
+            int count = addJobs(conn, OPEN_JOBS_SQL);
+            Log.info("Dispatcher loaded " + roster.size() + " technicians and " + count + " open jobs");
+        }
+    }
+
+    private static void queueUnassigned() throws SQLException {
+        try (Connection conn = DatabaseConnector.getConnection()) {
+            addJobs(conn, UNASSIGNED_JOBS_SQL);
+        }
+    }
+
+    // Records the open jobs the query returns that are not tracked yet.
+    private static int addJobs(Connection conn, String sql) throws SQLException {
+        int count = 0;
+        try (PreparedStatement pstmt = conn.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
+            synchronized (loads) {
+                while (rs.next()) {
+                    if (loads.contains(rs.getInt("id"))) {
+                        continue;
+                    }
+                    TechnicianLoads.Job job = new TechnicianLoads.Job(rs.getInt("id"), rs.getInt("branch_id"),
+                        minutes(rs.getInt("estimated_duration")), rs.getTimestamp("booking_date").getTime());
+                    job.started = !"Booked".equals(rs.getString("status"));
+                    job.assignedId = rs.getInt("assigned_employee_id");
+                    TechnicianLoads.Technician technician = loads.technician(job.assignedId);
+                    // Jobs of technicians who have left are only worth reassigning if they have not started;
+                    // the move is then made from the departed technician, who still holds the row.
+                    if (technician != null || !job.started) {
+                        loads.add(job, technician);
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    // Picks up hires, departures and branch changes.
+    private static void refreshRoster() throws SQLException {
+        List<int[]> roster;
+        try (Connection conn = DatabaseConnector.getConnection()) {
+            roster = roster(conn);
+        }
+        synchronized (loads) {
+            Set<Integer> active = new HashSet<>();
+            for (int[] technician : roster) {
+                loads.addTechnician(technician[0], technician[1]);
+                active.add(technician[0]);
+            }
+            List<Integer> gone = new ArrayList<>();
+            for (TechnicianLoads.Technician technician : loads.technicians()) {
+                if (!active.contains(technician.id)) {
+                    gone.add(technician.id);
+                }
+            }
+            for (int id : gone) {
+                loads.removeTechnician(id);
+            }
+        }
+    }
+
+    private static void rebalance() throws SQLException {
+        List<TechnicianLoads.Move> moves;
+        synchronized (loads) {
+            moves = loads.rebalance(REBALANCE_BATCH, System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(FREEZE_MINUTES));
+        }
+        if (moves.isEmpty()) {
+            return;
+        }
+
+        int[] results;
+        try (Connection conn = DatabaseConnector.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(MOVE_SQL)) {
+            for (TechnicianLoads.Move move : moves) {
+                pstmt.setInt(1, move.to);
+                pstmt.setInt(2, move.jobId);
+                if (move.from != 0) {
+                    pstmt.setInt(3, move.from);
+                } else {
+                    pstmt.setNull(3, Types.INTEGER);
+                }
+                pstmt.addBatch();
+            }
+            results = pstmt.executeBatch();
+        } catch (SQLException e) {
+            // None of the moves can be trusted; forget the jobs rather than keep loads the database disagrees with.
+            synchronized (loads) {
+                for (TechnicianLoads.Move move : moves) {
+                    loads.remove(move.jobId);
+                }
+            }
+            throw e;
+        }
+
+        int applied = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            TechnicianLoads.Move move = moves.get(i);
+            if (results[i] == 0) {
+                // Started, cancelled or reassigned by hand meanwhile.
+                synchronized (loads) {
+                    loads.remove(move.jobId);
+                }
+                continue;
+            }
+            EmployeeStats.changed(EmployeeStats.JobState.of(0, move.from, "Booked"), EmployeeStats.JobState.of(0, move.to, "Booked"));
+            EmployeeSchedules.jobChanged(move.jobId, move.from, move.to);
+            applied++;
+        }
+        moved.addAndGet(applied);
+        Log.info("Dispatcher assigned or moved " + applied + " jobs");
+    }
+
+    private static List<int[]> roster(Connection conn) throws SQLException {
+        List<int[]> roster = new ArrayList<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(ROSTER_SQL);
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                // A NULL branch reads as 0, which is TechnicianLoads.ANY_BRANCH.
+                roster.add(new int[] { rs.getInt("id"), rs.getInt("branch_id") });
+            }
+        }
+        return roster;
+    }
+
+    private static int minutes(int estimatedMinutes) {
+        return estimatedMinutes > 0 ? estimatedMinutes : DEFAULT_MINUTES;
+    }
+
+    private static long millis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,369 @@
+package com.autorepairpro.scheduling;
+
+import com.autorepairpro.db.DatabaseConnector;
+import com.autorepairpro.json.JsonWriter;
+import com.autorepairpro.log.Log;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Each employee's upcoming schedule, kept as an immutable {@link Timeline} that is replaced as a
+ * whole whenever one of its jobs changes, so reading it costs no query. A timeline is loaded on
+ * first use; after that the write paths call {@link #jobChanged}, which re-reads just that job.
+ *
+ * Every replacement gets a new version, which doubles as the ETag, and remembers which jobs it
+ * touched so a client that is a few versions behind can be sent only those jobs. Timelines are
+ * reloaded when the day rolls over and after SCHEDULE_MAX_AGE_MINUTES, to pick up changes made
+ * by other means (e.g. a customer's renamed profile or an edit made directly in the database).
+ */
+public class EmployeeSchedules {
+    // Schedule configuration with fallback to environment variables
+    private static final long MAX_AGE_MINUTES = System.getenv("SCHEDULE_MAX_AGE_MINUTES") != null ?
+        Long.parseLong(System.getenv("SCHEDULE_MAX_AGE_MINUTES")) : 15;
+
+    // Changes remembered per employee; clients further behind get the full list again.
+    private static final int CHANGE_LOG_SIZE = 64;
+
+    private static final String SCHEDULE_SELECT =
+        "SELECT j.id, j.assigned_employee_id, j.booking_date, j.estimated_completion_date, j.status, " +
+        "u.full_name as customer_name, v.make, v.model, v.year, s.service_name " +
+        "FROM jobs j " +
+        "JOIN users u ON j.customer_id = u.id " +
+        "JOIN vehicles v ON j.vehicle_id = v.id " +
+        "JOIN services s ON j.service_id = s.id ";
+    /** An employee's upcoming jobs, loaded on the first schedule request. */
+    public static final String EMPLOYEE_SQL =
+        SCHEDULE_SELECT + "WHERE j.assigned_employee_id = ? AND j.booking_date >= CURDATE()";
+    /** One job's schedule entry, reloaded when the job changes. */
+    public static final String JOB_SQL = SCHEDULE_SELECT + "WHERE j.id = ?";
+
+    private static final Comparator<Entry> BY_BOOKING =
+        Comparator.<Entry, Timestamp>comparing(e -> e.bookingDate).thenComparingInt(e -> e.jobId);
+
+    /** One scheduled job with its JSON already encoded. */
+    static final class Entry {
+        final int jobId;
+        final Timestamp bookingDate;
+        final byte[] json;
+
+        Entry(int jobId, Timestamp bookingDate, byte[] json) {
+            this.jobId = jobId;
+            this.bookingDate = bookingDate;
+            this.json = json;
+        }
+    }
+
+    /** An employee's schedule at one version, ordered by booking date. Never modified once built. */
+    public static final class Timeline {
+        private final long version;
+        // The oldest version a delta can still be computed from.
+        private final long floor;
+        private final LocalDate day;
+        private final long loadedMillis;
+        private final Entry[] entries;
+        // Oldest first: the version each change produced and the job it touched.
+        private final long[] changeVersions;
+        private final int[] changeJobIds;
+        private final byte[] body;
+
+        private Timeline(long version, long floor, LocalDate day, long loadedMillis, Entry[] entries,
+                         long[] changeVersions, int[] changeJobIds) {
+            this.version = version;
+            this.floor = floor;
+            this.day = day;
+            this.loadedMillis = loadedMillis;
+            this.entries = entries;
+            this.changeVersions = changeVersions;
+            this.changeJobIds = changeJobIds;
+            this.body = encode(entries);
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public String getEtag() {
+            return "\"" + version + "\"";
+        }
+
+        /** The whole schedule as a JSON array. */
+        public byte[] getBody() {
+            return body;
+        }
+
+        /**
+         * Writes what changed since the given version as
+         * {@code {"version", "full": false, "jobs": [...], "removed": [ids]}}, or the whole schedule
+         * with {@code "full": true} if that version is unknown or too old.
+         */
+        public void writeSince(long since, JsonWriter json) {
+            json.beginObject().field("version", version);
+            if (since < floor || since > version) {
+                json.field("full", true).name("jobs").beginArray();
+                for (Entry entry : entries) {
+                    json.rawValue(entry.json);
+                }
+                json.endArray().endObject();
+                return;
+            }
+
+            Set<Integer> changed = new LinkedHashSet<>();
+            for (int i = 0; i < changeVersions.length; i++) {
+                if (changeVersions[i] > since) {
+                    changed.add(changeJobIds[i]);
+                }
+            }
+            json.field("full", false).name("jobs").beginArray();
+            for (Entry entry : entries) {
+                if (changed.remove(entry.jobId)) {
+                    json.rawValue(entry.json);
+                }
+            }
+            // What is left is no longer on the schedule.
+            json.endArray().name("removed").beginArray();
+            for (int jobId : changed) {
+                json.value(jobId);
+            }
+            json.endArray().endObject();
+        }
+
+        private boolean isCurrent(long now) {
+            return day.equals(LocalDate.now()) && now - loadedMillis < TimeUnit.MINUTES.toMillis(MAX_AGE_MINUTES);
+        }
+
+        // The successor holding the given entries, with a new version if any job changed.
+        private Timeline next(Entry[] next, Set<Integer> changed, LocalDate nextDay, long nextLoadedMillis) {
+            if (changed.isEmpty()) {
+                return new Timeline(version, floor, nextDay, nextLoadedMillis, next, changeVersions, changeJobIds);
+            }
+            long nextVersion = versions.incrementAndGet();
+            if (changed.size() > CHANGE_LOG_SIZE) {
+                // More changes at once than the log holds; every client gets the full list.
+                return new Timeline(nextVersion, nextVersion, nextDay, nextLoadedMillis, next, new long[0], new int[0]);
+            }
+            int kept = Math.min(changeVersions.length, CHANGE_LOG_SIZE - changed.size());
+            int dropped = changeVersions.length - kept;
+            long nextFloor = dropped > 0 ? changeVersions[dropped - 1] : floor;
+            long[] versionsLog = new long[kept + changed.size()];
+            int[] jobsLog = new int[kept + changed.size()];
+            System.arraycopy(changeVersions, dropped, versionsLog, 0, kept);
+            System.arraycopy(changeJobIds, dropped, jobsLog, 0, kept);
+            int i = kept;
+            for (int jobId : changed) {
+                versionsLog[i] = nextVersion;
+                jobsLog[i++] = jobId;
+            }
+            return new Timeline(nextVersion, nextFloor, nextDay, nextLoadedMillis, next, versionsLog, jobsLog);
+        }
+    }
+
+    private static final ConcurrentHashMap<Integer, Timeline> timelines = new ConcurrentHashMap<>();
+    // Loads and changes of one employee's timeline are serialized so an older read never replaces a newer one.
+    private static final ConcurrentHashMap<Integer, Object> locks = new ConcurrentHashMap<>();
+    // Seeded with the clock so versions handed out before a restart read as unknown afterwards.
+    private static final AtomicLong versions = new AtomicLong(System.currentTimeMillis());
+
+    private EmployeeSchedules() {}
+
+    /** The employee's current timeline, loading or reloading it if needed. */
+    public static Timeline get(int employeeId) throws SQLException {
+        long now = System.currentTimeMillis();
+        Timeline timeline = timelines.get(employeeId);
+        if (timeline != null && timeline.isCurrent(now)) {
+            return timeline;
+        }
+        synchronized (lock(employeeId)) {
+            timeline = timelines.get(employeeId);
+            if (timeline != null && timeline.isCurrent(now)) {
+                return timeline;
+            }
+            Entry[] loaded = load(employeeId);
+            Timeline next;
+            if (timeline == null) {
+                long version = versions.incrementAndGet();
+                next = new Timeline(version, version, LocalDate.now(), now, loaded, new long[0], new int[0]);
+            } else {
+                next = timeline.next(loaded, diff(timeline.entries, loaded), LocalDate.now(), now);
+            }
+            timelines.put(employeeId, next);
+            return next;
+        }
+    }
+
+    /**
+     * Re-reads a committed job into the loaded timelines of the given employees, typically the one
+     * it was assigned to before and the one it is assigned to now (0 for none).
+     */
+    public static void jobChanged(int jobId, int... employeeIds) {
+        for (int i = 0; i < employeeIds.length; i++) {
+            int employeeId = employeeIds[i];
+            if (employeeId == 0 || indexOf(employeeIds, employeeId) < i || !timelines.containsKey(employeeId)) {
+                continue;
+            }
+            synchronized (lock(employeeId)) {
+                Timeline timeline = timelines.get(employeeId);
+                if (timeline == null) {
+                    continue;
+                }
+                try {
+                    Entry entry = readJob(jobId, employeeId);
+                    Entry[] next = replace(timeline.entries, jobId, entry);
+                    if (next != timeline.entries) {
+                        Set<Integer> changed = new LinkedHashSet<>();
+                        changed.add(jobId);
+                        timelines.put(employeeId, timeline.next(next, changed, timeline.day, timeline.loadedMillis));
+                    }
+                } catch (SQLException e) {
+                    // The next request reloads it from scratch.
+                    timelines.remove(employeeId);
+                    Log.warn("Could not update the schedule of employee " + employeeId + " for job " + jobId + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static Entry[] load(int employeeId) throws SQLException {
+        List<Entry> entries = new ArrayList<>();
+        try (Connection conn = DatabaseConnector.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(EMPLOYEE_SQL)) {
+            pstmt.setInt(1, employeeId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    entries.add(entry(rs));
+                }
+            }
+        }
+        Entry[] sorted = entries.toArray(new Entry[0]);
+        Arrays.sort(sorted, BY_BOOKING);
+        return sorted;
+    }
+
+    // The job as it belongs on the employee's schedule, or null if it does not.
+    private static Entry readJob(int jobId, int employeeId) throws SQLException {
+        try (Connection conn = DatabaseConnector.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(JOB_SQL)) {
+            pstmt.setInt(1, jobId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next() || rs.getInt("assigned_employee_id") != employeeId) {
+                    return null;
+                }
+                Entry entry = entry(rs);
+                return entry.bookingDate.toLocalDateTime().toLocalDate().isBefore(LocalDate.now()) ? null : entry;
+            }
+        }
+    }
+
+    private static Entry entry(ResultSet rs) throws SQLException {
+        JsonWriter json = JsonWriter.obtain();
+        try {
+            json.beginObject();
+            json.field("jobId", rs.getInt("id"));
+            json.field("bookingDate", rs.getTimestamp("booking_date"));
+            json.field("estimatedCompletionDate", rs.getTimestamp("estimated_completion_date"));
+            json.field("status", rs.getString("status"));
+            json.field("customerName", rs.getString("customer_name"));
+            json.field("vehicle", rs.getString("make") + " " + rs.getString("model") + " (" + rs.getInt("year") + ")");
+            json.field("service", rs.getString("service_name"));
+            json.endObject();
+            return new Entry(rs.getInt("id"), rs.getTimestamp("booking_date"), Arrays.copyOf(json.buffer(), json.size()));
+        } finally {
+            json.release();
+        }
+    }
+
+    // The entries with the job replaced, added or removed; the same array if nothing changed.
+    private static Entry[] replace(Entry[] entries, int jobId, Entry entry) {
+        Entry existing = null;
+        List<Entry> next = new ArrayList<>(entries.length + 1);
+        for (Entry e : entries) {
+            if (e.jobId == jobId) {
+                existing = e;
+            } else {
+                next.add(e);
+            }
+        }
+        if (existing == null ? entry == null : entry != null && Arrays.equals(existing.json, entry.json)) {
+            return entries;
+        }
+        if (entry != null) {
+            next.add(-(binarySearch(next, entry) + 1), entry);
+        }
+        return next.toArray(new Entry[0]);
+    }
+
+    private static int binarySearch(List<Entry> entries, Entry entry) {
+        int low = 0;
+        int high = entries.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = BY_BOOKING.compare(entries.get(mid), entry);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    // Jobs added, removed or changed between two loads.
+    private static Set<Integer> diff(Entry[] before, Entry[] after) {
+        Map<Integer, Entry> old = new HashMap<>();
+        for (Entry entry : before) {
+            old.put(entry.jobId, entry);
+        }
+        Set<Integer> changed = new LinkedHashSet<>();
+        for (Entry entry : after) {
+            Entry previous = old.remove(entry.jobId);
+            if (previous == null || !Arrays.equals(previous.json, entry.json)) {
+                changed.add(entry.jobId);
+            }
+        }
+        changed.addAll(old.keySet());
+        return changed;
+    }
+
+    private static byte[] encode(Entry[] entries) {
+        JsonWriter json = JsonWriter.obtain();
+        try {
+            json.beginArray();
+            for (Entry entry : entries) {
+                json.rawValue(entry.json);
+            }
+            json.endArray();
+            return Arrays.copyOf(json.buffer(), json.size());
+        } finally {
+            json.release();
+        }
+    }
+
+    private static Object lock(int employeeId) {
+        return locks.computeIfAbsent(employeeId, id -> new Object());
+    }
+
+    private static int indexOf(int[] values, int value) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
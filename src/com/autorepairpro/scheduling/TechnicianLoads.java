@@ -0,0 +1,277 @@
+package com.autorepairpro.scheduling;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Open work per technician, ordered by load. Technicians sit in one ordered set per branch, plus
+ * one for technicians without a branch, who can take jobs anywhere; the least loaded eligible
+ * technician for a branch is the smaller of the two sets' first entries. Changing a load removes
+ * and re-inserts one entry, so picking and updating are O(log n).
+ *
+ * Not thread-safe; {@link Dispatcher} serializes access.
+ */
+class TechnicianLoads {
+    static final int ANY_BRANCH = 0;
+
+    static class Technician {
+        final int id;
+        int branchId;
+        long minutes;
+        final Map<Integer, Job> jobs = new HashMap<>();
+
+        Technician(int id, int branchId) {
+            this.id = id;
+            this.branchId = branchId;
+        }
+    }
+
+    static class Job {
+        int id;
+        final int branchId;
+        final int minutes;
+        final long startMillis;
+        boolean started;
+        Technician technician;
+        // assigned_employee_id as the database has it, 0 for NULL. Differs from the technician
+        // while the job waits to be reassigned, e.g. after its technician left.
+        int assignedId;
+
+        Job(int id, int branchId, int minutes, long startMillis) {
+            this.id = id;
+            this.branchId = branchId;
+            this.minutes = minutes;
+            this.startMillis = startMillis;
+        }
+    }
+
+    /** A job moving from one technician to another; {@code from} is the database's current owner, 0 for none. */
+    static class Move {
+        final int jobId;
+        final int from;
+        final int to;
+
+        Move(int jobId, int from, int to) {
+            this.jobId = jobId;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    private static final Comparator<Technician> BY_LOAD =
+        Comparator.<Technician>comparingLong(t -> t.minutes).thenComparingInt(t -> t.id);
+
+    private final Map<Integer, Technician> technicians = new HashMap<>();
+    private final Map<Integer, TreeSet<Technician>> byBranch = new HashMap<>();
+    private final Map<Integer, Job> jobs = new HashMap<>();
+    // Open jobs nobody could take yet, oldest first.
+    private final LinkedHashMap<Integer, Job> unassigned = new LinkedHashMap<>();
+
+    int technicianCount() {
+        return technicians.size();
+    }
+
+    int unassignedCount() {
+        return unassigned.size();
+    }
+
+    Collection<Technician> technicians() {
+        return technicians.values();
+    }
+
+    boolean contains(int jobId) {
+        return jobs.containsKey(jobId);
+    }
+
+    Technician technician(int id) {
+        return technicians.get(id);
+    }
+
+    void addTechnician(int id, int branchId) {
+        Technician existing = technicians.get(id);
+        if (existing != null) {
+            if (existing.branchId != branchId) {
+                set(existing.branchId).remove(existing);
+                existing.branchId = branchId;
+                set(branchId).add(existing);
+            }
+            return;
+        }
+        Technician technician = new Technician(id, branchId);
+        technicians.put(id, technician);
+        set(branchId).add(technician);
+    }
+
+    /** Removes a technician; their jobs that have not started go back to the unassigned queue. */
+    void removeTechnician(int id) {
+        Technician technician = technicians.remove(id);
+        if (technician == null) {
+            return;
+        }
+        set(technician.branchId).remove(technician);
+        for (Job job : technician.jobs.values()) {
+            job.technician = null;
+            if (job.started) {
+                jobs.remove(job.id);
+            } else {
+                unassigned.put(job.id, job);
+            }
+        }
+    }
+
+    /** The least loaded technician who can work at the branch, or null if there is none. */
+    Technician leastLoaded(int branchId) {
+        Technician local = first(set(branchId));
+        Technician floating = branchId != ANY_BRANCH ? first(set(ANY_BRANCH)) : null;
+        if (local == null || (floating != null && BY_LOAD.compare(floating, local) < 0)) {
+            return floating;
+        }
+        return local;
+    }
+
+    /** Records an open job, on the given technician or, if null, in the unassigned queue. */
+    void add(Job job, Technician technician) {
+        jobs.put(job.id, job);
+        if (technician != null) {
+            attach(job, technician);
+            job.assignedId = technician.id;
+        } else {
+            unassigned.put(job.id, job);
+        }
+    }
+
+    /** Gives a job recorded under a placeholder id its real id. */
+    void rekey(Job job, int id) {
+        jobs.remove(job.id);
+        if (job.technician != null) {
+            job.technician.jobs.remove(job.id);
+        }
+        job.id = id;
+        jobs.put(id, job);
+        if (job.technician != null) {
+            job.technician.jobs.put(id, job);
+        }
+    }
+
+    /** Drops a job that is finished, cancelled or no longer known to match the database. */
+    void remove(int jobId) {
+        Job job = jobs.remove(jobId);
+        if (job == null) {
+            return;
+        }
+        unassigned.remove(jobId);
+        if (job.technician != null) {
+            detach(job);
+        }
+    }
+
+    /** A started job stays on its technician's load but is never moved. */
+    void started(int jobId) {
+        Job job = jobs.get(jobId);
+        if (job != null) {
+            job.started = true;
+        }
+    }
+
+    /**
+     * Assigns queued jobs, then moves not-yet-started jobs from the most to the least loaded
+     * technician of each branch while that narrows the gap, up to {@code limit} changes in all.
+     * Jobs starting before {@code notBeforeMillis} stay where they are. The moves are applied
+     * here; the caller writes them to the database and calls {@link #remove} for any that fail.
+     */
+    List<Move> rebalance(int limit, long notBeforeMillis) {
+        List<Move> moves = new ArrayList<>();
+        for (Job job : new ArrayList<>(unassigned.values())) {
+            if (moves.size() >= limit) {
+                return moves;
+            }
+            Technician technician = leastLoaded(job.branchId);
+            if (technician != null) {
+                unassigned.remove(job.id);
+                attach(job, technician);
+                moves.add(move(job, technician));
+            }
+        }
+
+        for (Integer branchId : new ArrayList<>(byBranch.keySet())) {
+            while (moves.size() < limit) {
+                Move move = narrow(branchId, notBeforeMillis);
+                if (move == null) {
+                    break;
+                }
+                moves.add(move);
+            }
+        }
+        return moves;
+    }
+
+    // One move from the branch's most loaded technician to the least loaded one who can take the job.
+    private Move narrow(int branchId, long notBeforeMillis) {
+        TreeSet<Technician> local = set(branchId);
+        if (local.isEmpty()) {
+            return null;
+        }
+        Technician donor = local.last();
+        Technician receiver = leastLoaded(branchId);
+        long gap = donor.minutes - receiver.minutes;
+        if (receiver == donor || gap <= 0) {
+            return null;
+        }
+        // The job closest to half the gap evens the two out the most; anything under the full gap still narrows it.
+        Job best = null;
+        for (Job job : donor.jobs.values()) {
+            if (job.started || job.startMillis < notBeforeMillis || job.minutes >= gap
+                    || (receiver.branchId != ANY_BRANCH && receiver.branchId != job.branchId)) {
+                continue;
+            }
+            if (best == null || Math.abs(2L * job.minutes - gap) < Math.abs(2L * best.minutes - gap)) {
+                best = job;
+            }
+        }
+        if (best == null) {
+            return null;
+        }
+        detach(best);
+        attach(best, receiver);
+        return move(best, receiver);
+    }
+
+    private static Move move(Job job, Technician to) {
+        Move move = new Move(job.id, job.assignedId, to.id);
+        job.assignedId = to.id;
+        return move;
+    }
+
+    private void attach(Job job, Technician technician) {
+        TreeSet<Technician> set = set(technician.branchId);
+        set.remove(technician);
+        technician.minutes += job.minutes;
+        technician.jobs.put(job.id, job);
+        set.add(technician);
+        job.technician = technician;
+    }
+
+    private void detach(Job job) {
+        Technician technician = job.technician;
+        TreeSet<Technician> set = set(technician.branchId);
+        set.remove(technician);
+        technician.minutes -= job.minutes;
+        technician.jobs.remove(job.id);
+        set.add(technician);
+        job.technician = null;
+    }
+
+    private TreeSet<Technician> set(int branchId) {
+        return byBranch.computeIfAbsent(branchId, id -> new TreeSet<>(BY_LOAD));
+    }
+
+    private static Technician first(TreeSet<Technician> set) {
+        return set.isEmpty() ? null : set.first();
+    }
+}
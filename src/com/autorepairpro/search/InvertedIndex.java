@@ -0,0 +1,397 @@
+package com.autorepairpro.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Documents (customers, vehicles, jobs) indexed two ways. Free text such as names and notes is
+ * split into lower-case words kept in a sorted dictionary, so a query word is looked up exactly,
+ * as a prefix, and, failing that, with one or two typos among words sharing its first letter.
+ * Codes such as plates and VINs are indexed by their three-character grams instead, so any
+ * fragment of three or more characters finds them wherever it sits in the code.
+ *
+ * Every query word must match a document; its score is the sum of each word's best match. Not
+ * thread-safe; {@link SearchIndex} serializes writers against readers.
+ */
+class InvertedIndex {
+    enum Type {
+        // Declared in the order results of equal score are listed.
+        VEHICLE, CUSTOMER, JOB;
+
+        String label() {
+            return name().toLowerCase();
+        }
+    }
+
+    // A whole plate or VIN is the strongest match. A fragment of one ranks below an exact word, since
+    // short words ("lee", "cx5") turn up inside random VINs.
+    static final int EXACT_CODE = 8;
+    static final int EXACT_WORD = 3;
+    static final int CODE = 2;
+    static final int PREFIX = 2;
+    static final int FUZZY = 1;
+
+    private static final int GRAM = 3;
+    private static final int MIN_PREFIX = 2;
+    private static final int MIN_FUZZY = 4;
+    // Bounds the work of a short prefix or a fuzzy lookup in a large dictionary.
+    private static final int MAX_EXPANSIONS = 200;
+    private static final int MAX_QUERY_WORDS = 8;
+
+    /** One searchable record with its result JSON already encoded. */
+    static final class Doc {
+        final Type type;
+        final int id;
+        final String[] words;
+        final String[] codes;
+        final byte[] json;
+
+        Doc(Type type, int id, Set<String> words, Set<String> codes, byte[] json) {
+            this.type = type;
+            this.id = id;
+            this.words = words.toArray(new String[0]);
+            this.codes = codes.toArray(new String[0]);
+            this.json = json;
+        }
+
+        long key() {
+            return InvertedIndex.key(type, id);
+        }
+    }
+
+    static final class Hit {
+        final Doc doc;
+        final int score;
+
+        Hit(Doc doc, int score) {
+            this.doc = doc;
+            this.score = score;
+        }
+    }
+
+    /** The hits of one query: the best {@code limit} of them and how many there were in all. */
+    static final class Result {
+        final List<Hit> hits;
+        final int total;
+
+        Result(List<Hit> hits, int total) {
+            this.hits = hits;
+            this.total = total;
+        }
+    }
+
+    private static final Comparator<Hit> BY_RANK = Comparator.<Hit>comparingInt(h -> -h.score)
+        .thenComparing(h -> h.doc.type)
+        .thenComparingInt(h -> -h.doc.id);
+
+    // Document keys per token, kept sorted so lookups and removals are binary searches.
+    private static final class Postings {
+        private long[] keys = new long[2];
+        private int size;
+
+        void add(long key) {
+            int at = Arrays.binarySearch(keys, 0, size, key);
+            if (at >= 0) {
+                return;
+            }
+            at = -(at + 1);
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+            }
+            System.arraycopy(keys, at, keys, at + 1, size - at);
+            keys[at] = key;
+            size++;
+        }
+
+        void remove(long key) {
+            int at = Arrays.binarySearch(keys, 0, size, key);
+            if (at >= 0) {
+                System.arraycopy(keys, at + 1, keys, at, size - at - 1);
+                size--;
+            }
+        }
+
+        boolean contains(long key) {
+            return Arrays.binarySearch(keys, 0, size, key) >= 0;
+        }
+    }
+
+    private final TreeMap<String, Postings> words = new TreeMap<>();
+    private final Map<String, Postings> grams = new HashMap<>();
+    private final Map<Long, Doc> docs = new HashMap<>();
+
+    static long key(Type type, int id) {
+        return ((long) type.ordinal() << 32) | (id & 0xffffffffL);
+    }
+
+    /** Lower-case words of two or more letters or digits. */
+    static Set<String> words(String text) {
+        Set<String> result = new LinkedHashSet<>();
+        if (text == null) {
+            return result;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean letter = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                if (i - start >= MIN_PREFIX) {
+                    result.add(text.substring(start, i).toLowerCase());
+                }
+                start = -1;
+            }
+        }
+        return result;
+    }
+
+    /** A plate or VIN reduced to its lower-case letters and digits, so "AB-12 CD" matches "ab12cd". */
+    static String code(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(Character.toLowerCase(c));
+            }
+        }
+        return sb.toString();
+    }
+
+    int size() {
+        return docs.size();
+    }
+
+    /** Adds a document, replacing any earlier version of it. */
+    void put(Doc doc) {
+        remove(doc.key());
+        long key = doc.key();
+        docs.put(key, doc);
+        for (String word : doc.words) {
+            words.computeIfAbsent(word, w -> new Postings()).add(key);
+        }
+        for (String code : doc.codes) {
+            for (String gram : grams(code)) {
+                grams.computeIfAbsent(gram, g -> new Postings()).add(key);
+            }
+        }
+    }
+
+    void remove(Type type, int id) {
+        remove(key(type, id));
+    }
+
+    private void remove(long key) {
+        Doc doc = docs.remove(key);
+        if (doc == null) {
+            return;
+        }
+        for (String word : doc.words) {
+            unpost(words, word, key);
+        }
+        for (String code : doc.codes) {
+            for (String gram : grams(code)) {
+                unpost(grams, gram, key);
+            }
+        }
+    }
+
+    Result search(String query, int limit) {
+        List<String> terms = new ArrayList<>(words(query));
+        if (terms.size() > MAX_QUERY_WORDS) {
+            terms = terms.subList(0, MAX_QUERY_WORDS);
+        }
+        Map<Long, Integer> scores = null;
+        for (String term : terms) {
+            Map<Long, Integer> matches = match(term);
+            if (scores == null) {
+                scores = matches;
+            } else {
+                // Every word must match; the document keeps the sum of its best matches.
+                Map<Long, Integer> both = new HashMap<>();
+                for (Map.Entry<Long, Integer> entry : scores.entrySet()) {
+                    Integer score = matches.get(entry.getKey());
+                    if (score != null) {
+                        both.put(entry.getKey(), entry.getValue() + score);
+                    }
+                }
+                scores = both;
+            }
+            if (scores.isEmpty()) {
+                break;
+            }
+        }
+        if (scores == null) {
+            scores = new HashMap<>();
+        }
+        // A plate typed with spaces or dashes splits into words; try it as one code as well.
+        String whole = code(query);
+        if (terms.size() > 1 && whole.length() >= GRAM) {
+            for (Map.Entry<Long, Integer> entry : codeMatches(whole).entrySet()) {
+                scores.merge(entry.getKey(), entry.getValue(), Math::max);
+            }
+        }
+
+        // Only the best few are wanted, so keep them in a heap rather than sort every match.
+        PriorityQueue<Hit> top = new PriorityQueue<>(limit + 1, BY_RANK.reversed());
+        for (Map.Entry<Long, Integer> entry : scores.entrySet()) {
+            if (top.size() == limit && entry.getValue() < top.peek().score) {
+                continue;
+            }
+            Hit hit = new Hit(docs.get(entry.getKey()), entry.getValue());
+            if (top.size() < limit) {
+                top.add(hit);
+            } else if (BY_RANK.compare(hit, top.peek()) < 0) {
+                top.poll();
+                top.add(hit);
+            }
+        }
+        List<Hit> hits = new ArrayList<>(top);
+        hits.sort(BY_RANK);
+        return new Result(hits, scores.size());
+    }
+
+    // The best score of every document the term matches in any way.
+    private Map<Long, Integer> match(String term) {
+        Map<Long, Integer> best = new HashMap<>();
+        Postings exact = words.get(term);
+        if (exact != null) {
+            post(best, exact, EXACT_WORD);
+        }
+        int expansions = 0;
+        for (Map.Entry<String, Postings> entry : words.subMap(term, false, term + Character.MAX_VALUE, false).entrySet()) {
+            if (++expansions > MAX_EXPANSIONS) {
+                break;
+            }
+            post(best, entry.getValue(), PREFIX);
+        }
+        if (best.isEmpty() && term.length() >= MIN_FUZZY) {
+            fuzzy(term, best);
+        }
+        if (term.length() >= GRAM) {
+            for (Map.Entry<Long, Integer> entry : codeMatches(term).entrySet()) {
+                best.merge(entry.getKey(), entry.getValue(), Math::max);
+            }
+        }
+        return best;
+    }
+
+    // Words within one edit (two for long words) of the term. Only words with the same first letter
+    // are tried, which keeps the scan to a slice of the dictionary and rarely misses a real typo.
+    private void fuzzy(String term, Map<Long, Integer> best) {
+        int maxEdits = term.length() >= 8 ? 2 : 1;
+        char first = term.charAt(0);
+        NavigableMap<String, Postings> slice = words.subMap(String.valueOf(first), true, String.valueOf((char) (first + 1)), false);
+        int expansions = 0;
+        for (Map.Entry<String, Postings> entry : slice.entrySet()) {
+            String word = entry.getKey();
+            if (Math.abs(word.length() - term.length()) <= maxEdits && distance(term, word, maxEdits) <= maxEdits) {
+                post(best, entry.getValue(), FUZZY);
+                if (++expansions >= MAX_EXPANSIONS) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // Documents with a code containing the fragment: candidates from the rarest of its grams,
+    // checked against the others and then against the codes themselves.
+    private Map<Long, Integer> codeMatches(String fragment) {
+        Map<Long, Integer> result = new HashMap<>();
+        List<Postings> lists = new ArrayList<>();
+        for (String gram : grams(fragment)) {
+            Postings postings = grams.get(gram);
+            if (postings == null) {
+                return result;
+            }
+            lists.add(postings);
+        }
+        lists.sort(Comparator.comparingInt(p -> p.size));
+        Postings rarest = lists.get(0);
+        for (int i = 0; i < rarest.size; i++) {
+            long key = rarest.keys[i];
+            boolean all = true;
+            for (int j = 1; j < lists.size() && all; j++) {
+                all = lists.get(j).contains(key);
+            }
+            if (!all) {
+                continue;
+            }
+            for (String code : docs.get(key).codes) {
+                if (code.equals(fragment)) {
+                    result.put(key, EXACT_CODE);
+                    break;
+                } else if (code.contains(fragment)) {
+                    result.put(key, CODE);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static Set<String> grams(String code) {
+        Set<String> result = new LinkedHashSet<>();
+        for (int i = 0; i + GRAM <= code.length(); i++) {
+            result.add(code.substring(i, i + GRAM));
+        }
+        return result;
+    }
+
+    private static void post(Map<Long, Integer> best, Postings postings, int score) {
+        for (int i = 0; i < postings.size; i++) {
+            best.merge(postings.keys[i], score, Math::max);
+        }
+    }
+
+    private static void unpost(Map<String, Postings> index, String token, long key) {
+        Postings postings = index.get(token);
+        if (postings != null) {
+            postings.remove(key);
+            if (postings.size == 0) {
+                index.remove(token);
+            }
+        }
+    }
+
+    // Edit distance counting a swap of neighbouring letters as one edit, the commonest typo
+    // (optimal string alignment); gives up with max + 1 once every path exceeds max.
+    static int distance(String a, String b, int max) {
+        int[] twoBack = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    current[j] = Math.min(current[j], twoBack[j - 2] + 1);
+                }
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+            int[] recycled = twoBack;
+            twoBack = previous;
+            previous = current;
+            current = recycled;
+        }
+        return previous[b.length()];
+    }
+}
@@ -0,0 +1,169 @@
+package com.autorepairpro.search;
+
+import com.autorepairpro.log.Log;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Builds the search index from synthetic customers, vehicles and jobs, no database needed, and
+ * times the kinds of lookup the front desk makes: a whole plate, part of a plate, the end of a
+ * VIN, an owner's name with the model, a misspelt name and a word from the notes.
+ *
+ * <pre>java -cp build com.autorepairpro.search.SearchBenchmark [--customers 20000] [--jobs 100000] [--queries 2000]</pre>
+ *
+ * Exits with status 1 if a lookup does not find the record it was made from.
+ */
+public class SearchBenchmark {
+    private static final long SEED = 42;
+    private static final String[] FIRST = { "James", "Mary", "Robert", "Patricia", "John", "Jennifer", "Michael", "Linda",
+        "David", "Elizabeth", "William", "Barbara", "Richard", "Susan", "Joseph", "Jessica", "Thomas", "Sarah", "Carlos", "Aisha" };
+    private static final String[] LAST = { "Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller", "Davis",
+        "Rodriguez", "Martinez", "Hernandez", "Lopez", "Gonzalez", "Wilson", "Anderson", "Thomas", "Taylor", "Moore",
+        "Jackson", "Martin", "Lee", "Perez", "Thompson", "White", "Harris", "Sanchez", "Clark", "Ramirez", "Lewis", "Robinson" };
+    private static final String[][] MODELS = { { "Toyota", "Camry" }, { "Toyota", "Corolla" }, { "Honda", "Civic" },
+        { "Honda", "Accord" }, { "Ford", "Focus" }, { "Ford", "Ranger" }, { "Nissan", "Altima" }, { "Mazda", "CX5" },
+        { "Subaru", "Outback" }, { "Volkswagen", "Golf" } };
+    private static final String[] NOTE_WORDS = { "brake", "pads", "rotor", "squeal", "oil", "leak", "gasket", "coolant",
+        "radiator", "alternator", "battery", "replaced", "customer", "reports", "noise", "front", "rear", "left", "right",
+        "tyre", "alignment", "suspension", "shock", "strut", "exhaust", "catalytic", "sensor", "warning", "light", "checked",
+        "transmission", "fluid", "flush", "timing", "belt", "spark", "plugs", "misfire", "wiper", "blade" };
+    private static final String VIN_CHARS = "ABCDEFGHJKLMNPRSTUVWXYZ0123456789";
+
+    public static void main(String[] args) {
+        int customerCount = 20000;
+        int jobCount = 100000;
+        int queryCount = 2000;
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals("--customers")) {
+                customerCount = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--jobs")) {
+                jobCount = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--queries")) {
+                queryCount = Integer.parseInt(args[++i]);
+            }
+        }
+
+        Random random = new Random(SEED);
+        InvertedIndex index = new InvertedIndex();
+        long began = System.nanoTime();
+        String[] names = new String[customerCount + 1];
+        for (int id = 1; id <= customerCount; id++) {
+            names[id] = FIRST[random.nextInt(FIRST.length)] + " " + LAST[random.nextInt(LAST.length)];
+            index.put(doc(InvertedIndex.Type.CUSTOMER, id, names[id], null, null));
+        }
+        // One vehicle per customer and a second for every third one.
+        int vehicleCount = customerCount + customerCount / 3;
+        String[] plates = new String[vehicleCount + 1];
+        String[] vins = new String[vehicleCount + 1];
+        String[] models = new String[vehicleCount + 1];
+        int[] owners = new int[vehicleCount + 1];
+        for (int id = 1; id <= vehicleCount; id++) {
+            owners[id] = id <= customerCount ? id : 3 * (id - customerCount);
+            String[] model = MODELS[random.nextInt(MODELS.length)];
+            models[id] = model[1];
+            plates[id] = random(random, "ABCDEFGHJKLMNPRSTUVWXYZ", 3) + "-" + random(random, "0123456789", 4);
+            vins[id] = random(random, VIN_CHARS, 17);
+            index.put(doc(InvertedIndex.Type.VEHICLE, id, names[owners[id]] + " " + model[0] + " " + model[1],
+                plates[id], vins[id]));
+        }
+        for (int id = 1; id <= jobCount; id++) {
+            StringBuilder notes = new StringBuilder();
+            for (int w = 5 + random.nextInt(15); w > 0; w--) {
+                notes.append(NOTE_WORDS[random.nextInt(NOTE_WORDS.length)]).append(' ');
+            }
+            index.put(doc(InvertedIndex.Type.JOB, id, notes.toString(), null, null));
+        }
+        Log.info(String.format("indexed %d documents in %.0f ms", index.size(), (System.nanoTime() - began) / 1e6));
+
+        boolean passed = true;
+        for (int round = 0; round < 2; round++) {
+            // The first round warms up the JIT; only the second is reported.
+            boolean report = round == 1;
+            passed &= run("whole plate", report, queryCount, random, index, id -> plates[id], vehicleCount,
+                (id, hit) -> hit.doc.type == InvertedIndex.Type.VEHICLE && hit.doc.id == id, true);
+            passed &= run("plate fragment", report, queryCount, random, index, id -> plates[id].substring(1, 6), vehicleCount,
+                (id, hit) -> hit.doc.type == InvertedIndex.Type.VEHICLE && hit.doc.id == id, false);
+            passed &= run("VIN ending", report, queryCount, random, index, id -> vins[id].substring(11), vehicleCount,
+                (id, hit) -> hit.doc.type == InvertedIndex.Type.VEHICLE && hit.doc.id == id, false);
+            passed &= run("owner and model", report, queryCount, random, index,
+                id -> names[owners[id]].split(" ")[1] + " " + models[id], vehicleCount,
+                (id, hit) -> hit.doc.type == InvertedIndex.Type.VEHICLE && has(hit, models[id].toLowerCase()), true);
+            passed &= run("misspelt name", report, queryCount, random, index, id -> typo(names[id].split(" ")[1]), customerCount,
+                (id, hit) -> has(hit, names[id].split(" ")[1].toLowerCase()), true);
+            passed &= run("notes word", report, queryCount, random, index,
+                id -> NOTE_WORDS[id % NOTE_WORDS.length], jobCount,
+                (id, hit) -> has(hit, NOTE_WORDS[id % NOTE_WORDS.length]), true);
+        }
+
+        Log.info(passed ? "Search benchmark passed" : "Search benchmark failed: a lookup missed its record");
+        System.exit(passed ? 0 : 1);
+    }
+
+    private interface QueryFor {
+        String query(int id);
+    }
+
+    private interface Expected {
+        boolean matches(int id, InvertedIndex.Hit hit);
+    }
+
+    // Looks up queryCount random records; with first set the expected hit must rank first, else be among the top 100.
+    private static boolean run(String name, boolean report, int queryCount, Random random, InvertedIndex index,
+                               QueryFor queryFor, int idRange, Expected expected, boolean first) {
+        long[] nanos = new long[queryCount];
+        int missed = 0;
+        for (int q = 0; q < queryCount; q++) {
+            int id = 1 + random.nextInt(idRange);
+            String query = queryFor.query(id);
+            long began = System.nanoTime();
+            InvertedIndex.Result result = index.search(query, first ? 20 : 100);
+            nanos[q] = System.nanoTime() - began;
+            boolean found = false;
+            for (int h = 0; h < result.hits.size() && !found; h++) {
+                found = expected.matches(id, result.hits.get(h)) && (!first || h == 0 || result.hits.get(h).score == result.hits.get(0).score);
+            }
+            if (!found) {
+                missed++;
+            }
+        }
+        Arrays.sort(nanos);
+        if (report) {
+            Log.info(String.format("%s: %d queries, median %.3f ms, p99 %.3f ms, %d missed", name, queryCount,
+                nanos[queryCount / 2] / 1e6, nanos[queryCount * 99 / 100] / 1e6, missed));
+        }
+        return missed == 0;
+    }
+
+    private static InvertedIndex.Doc doc(InvertedIndex.Type type, int id, String text, String plate, String vin) {
+        Set<String> codes = new HashSet<>();
+        if (plate != null) {
+            codes.add(InvertedIndex.code(plate));
+            codes.add(InvertedIndex.code(vin));
+        }
+        return new InvertedIndex.Doc(type, id, InvertedIndex.words(text), codes, ("{\"id\":" + id + "}").getBytes());
+    }
+
+    private static boolean has(InvertedIndex.Hit hit, String word) {
+        return Arrays.asList(hit.doc.words).contains(word);
+    }
+
+    // The word with two neighbouring letters after the first swapped, e.g. "Jonhson".
+    private static String typo(String word) {
+        int at = 1 + word.length() / 2 - 1;
+        char[] chars = word.toCharArray();
+        char swap = chars[at];
+        chars[at] = chars[at + 1];
+        chars[at + 1] = swap;
+        return new String(chars);
+    }
+
+    private static String random(Random random, String alphabet, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,362 @@
+package com.autorepairpro.search;
+
+import com.autorepairpro.db.DatabaseConnector;
+import com.autorepairpro.json.JsonWriter;
+import com.autorepairpro.log.Log;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Front-desk search over customers, vehicles and jobs, answered from an in-memory
+ * {@link InvertedIndex}. The index is built from the three tables at startup. After that the write
+ * paths report the customers and jobs they touched, which are re-read and re-indexed on a
+ * background thread within moments, and a periodic pass re-reads rows whose {@code updated_at}
+ * moved, which picks up vehicles and anything changed outside the server.
+ *
+ * Rows deleted outside the server stay searchable until the next restart.
+ */
+public class SearchIndex {
+    // Search configuration with fallback to environment variables
+    private static final long REFRESH_SECONDS = System.getenv("SEARCH_REFRESH_SECONDS") != null ?
+        Long.parseLong(System.getenv("SEARCH_REFRESH_SECONDS")) : 300;
+
+    // Notes are indexed in full but only this much is shown in a result.
+    private static final int SNIPPET_LENGTH = 160;
+    private static final int BATCH = 500;
+
+    private static final String CUSTOMERS_SQL =
+        "SELECT id, full_name, email, phone, is_active, updated_at FROM users WHERE role = 'customer'";
+    /** Customers changed since a time; they are queued so their vehicles and jobs are re-indexed too. */
+    public static final String CHANGED_CUSTOMERS_SQL =
+        "SELECT id, updated_at FROM users WHERE role = 'customer' AND updated_at >= ?";
+    private static final String VEHICLES_SQL =
+        "SELECT v.id, v.customer_id, v.make, v.model, v.year, v.color, v.vin, v.license_plate, v.updated_at, " +
+        "u.full_name FROM vehicles v JOIN users u ON u.id = v.customer_id";
+    // Notes newest first, so the snippet shows the latest one. See allowLongNotes for GROUP_CONCAT's length cap.
+    private static final String JOBS_SQL =
+        "SELECT j.id, j.customer_id, j.vehicle_id, j.status, j.booking_date, j.customer_notes, j.updated_at, " +
+        "(SELECT GROUP_CONCAT(n.body ORDER BY n.id DESC SEPARATOR ' | ') FROM job_notes n WHERE n.job_id = j.id) AS notes, " +
+        "u.full_name, v.make, v.model, v.year, v.license_plate " +
+        "FROM jobs j JOIN users u ON u.id = j.customer_id JOIN vehicles v ON v.id = j.vehicle_id";
+    /** Vehicles changed since a time, for the incremental refresh. */
+    public static final String CHANGED_VEHICLES_SQL = VEHICLES_SQL + " WHERE v.updated_at >= ?";
+    /** Jobs changed since a time, for the incremental refresh. */
+    public static final String CHANGED_JOBS_SQL = JOBS_SQL + " WHERE j.updated_at >= ?";
+
+    private static final InvertedIndex index = new InvertedIndex();
+    private static final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private static final Set<Integer> dirtyCustomers = ConcurrentHashMap.newKeySet();
+    private static final Set<Integer> dirtyJobs = ConcurrentHashMap.newKeySet();
+    private static final AtomicBoolean drainQueued = new AtomicBoolean();
+    private static ScheduledExecutorService scheduler;
+    // Newest updated_at seen per table; the periodic pass re-reads rows from there on.
+    private static Timestamp customersSeen;
+    private static Timestamp vehiclesSeen;
+    private static Timestamp jobsSeen;
+    private static volatile boolean loaded;
+
+    private SearchIndex() {}
+
+    /** Builds the index in the background and schedules the refresh pass; called once at startup. */
+    public static synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "search-index");
+            t.setDaemon(true);
+            return t;
+        });
+        // The first run builds the index; if the database is down it is retried by the next one.
+        scheduler.scheduleWithFixedDelay(SearchIndex::refresh, 0, REFRESH_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public static boolean isLoaded() {
+        return loaded;
+    }
+
+    public static int size() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes {@code {"query", "total", "results": [{"type", "score", "item"}]}}, best matches
+     * first, where item holds the customer, vehicle or job.
+     */
+    public static void search(String query, int limit, JsonWriter json) {
+        InvertedIndex.Result result;
+        lock.readLock().lock();
+        try {
+            result = index.search(query, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+        json.beginObject()
+            .field("query", query)
+            .field("total", result.total)
+            .name("results").beginArray();
+        for (InvertedIndex.Hit hit : result.hits) {
+            json.beginObject()
+                .field("type", hit.doc.type.label())
+                .field("score", hit.score)
+                .name("item").rawValue(hit.doc.json)
+                .endObject();
+        }
+        json.endArray().endObject();
+    }
+
+    /** Re-indexes a customer, with their vehicles and jobs, after a committed change. */
+    public static void customerChanged(int customerId) {
+        dirtyCustomers.add(customerId);
+        queueDrain();
+    }
+
+    /** Re-indexes a job after a committed change, e.g. a new booking or an added note. */
+    public static void jobChanged(int jobId) {
+        dirtyJobs.add(jobId);
+        queueDrain();
+    }
+
+    // Coalesces bursts of changes into one pass on the index thread, off the request path.
+    private static void queueDrain() {
+        ScheduledExecutorService executor = scheduler;
+        if (executor != null && loaded && drainQueued.compareAndSet(false, true)) {
+            executor.execute(SearchIndex::drain);
+        }
+    }
+
+    private static void drain() {
+        drainQueued.set(false);
+        List<Integer> customers = take(dirtyCustomers);
+        List<Integer> jobs = take(dirtyJobs);
+        if (customers.isEmpty() && jobs.isEmpty()) {
+            return;
+        }
+        try (Connection conn = DatabaseConnector.getConnection()) {
+            allowLongNotes(conn);
+            for (List<Integer> batch : batches(customers)) {
+                String in = " AND id IN (" + placeholders(batch.size()) + ")";
+                index(conn, InvertedIndex.Type.CUSTOMER, CUSTOMERS_SQL + in, batch.toArray());
+                index(conn, InvertedIndex.Type.VEHICLE, VEHICLES_SQL + " WHERE v.customer_id IN (" + placeholders(batch.size()) + ")", batch.toArray());
+                index(conn, InvertedIndex.Type.JOB, JOBS_SQL + " WHERE j.customer_id IN (" + placeholders(batch.size()) + ")", batch.toArray());
+            }
+            for (List<Integer> batch : batches(jobs)) {
+                index(conn, InvertedIndex.Type.JOB, JOBS_SQL + " WHERE j.id IN (" + placeholders(batch.size()) + ")", batch.toArray());
+            }
+        } catch (SQLException | RuntimeException e) {
+            // Put them back for the next pass.
+            dirtyCustomers.addAll(customers);
+            dirtyJobs.addAll(jobs);
+            Log.error("Search index update failed", e);
+        }
+    }
+
+    private static void refresh() {
+        try (Connection conn = DatabaseConnector.getConnection()) {
+            allowLongNotes(conn);
+            if (!loaded) {
+                long began = System.currentTimeMillis();
+                customersSeen = index(conn, InvertedIndex.Type.CUSTOMER, CUSTOMERS_SQL);
+                vehiclesSeen = index(conn, InvertedIndex.Type.VEHICLE, VEHICLES_SQL);
+                jobsSeen = index(conn, InvertedIndex.Type.JOB, JOBS_SQL);
+                loaded = true;
+                Log.info("Search index built with " + size() + " documents in " + (System.currentTimeMillis() - began) + " ms");
+            } else {
+                // Rows touched in the same second as the newest one seen are read again; re-indexing is idempotent.
+                // Changed customers go through the queue so their vehicles and jobs pick up a new name too.
+                customersSeen = max(customersSeen, changedCustomers(conn));
+                vehiclesSeen = max(vehiclesSeen, index(conn, InvertedIndex.Type.VEHICLE,
+                    CHANGED_VEHICLES_SQL, since(vehiclesSeen)));
+                jobsSeen = max(jobsSeen, index(conn, InvertedIndex.Type.JOB,
+                    CHANGED_JOBS_SQL, since(jobsSeen)));
+            }
+        } catch (SQLException | RuntimeException e) {
+            Log.error("Search index refresh failed", e);
+            return;
+        }
+        // Changes reported while the index was being built, and customers found above.
+        drain();
+    }
+
+    // GROUP_CONCAT stops at group_concat_max_len, 1024 bytes by default, which would leave all but
+    // the newest notes of a busy job out of the index. No row can be longer than max_allowed_packet anyway.
+    private static void allowLongNotes(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("SET SESSION group_concat_max_len = @@max_allowed_packet");
+        }
+    }
+
+    private static Timestamp changedCustomers(Connection conn) throws SQLException {
+        Timestamp newest = null;
+        try (PreparedStatement pstmt = conn.prepareStatement(CHANGED_CUSTOMERS_SQL)) {
+            pstmt.setTimestamp(1, since(customersSeen));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    dirtyCustomers.add(rs.getInt("id"));
+                    newest = max(newest, rs.getTimestamp("updated_at"));
+                }
+            }
+        }
+        return newest;
+    }
+
+    // Indexes every row the query returns and gives back the newest updated_at among them.
+    private static Timestamp index(Connection conn, InvertedIndex.Type type, String sql, Object... params) throws SQLException {
+        Timestamp newest = null;
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                pstmt.setObject(i + 1, params[i]);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                // Documents are built outside the lock; only the swap into the index holds it.
+                List<InvertedIndex.Doc> docs = new ArrayList<>();
+                List<Integer> inactive = new ArrayList<>();
+                while (rs.next()) {
+                    newest = max(newest, rs.getTimestamp("updated_at"));
+                    if (type == InvertedIndex.Type.CUSTOMER && !rs.getBoolean("is_active")) {
+                        inactive.add(rs.getInt("id"));
+                    } else {
+                        docs.add(doc(type, rs));
+                    }
+                    if (docs.size() >= BATCH) {
+                        apply(docs, type, inactive);
+                    }
+                }
+                apply(docs, type, inactive);
+            }
+        }
+        return newest;
+    }
+
+    private static void apply(List<InvertedIndex.Doc> docs, InvertedIndex.Type type, List<Integer> removed) {
+        lock.writeLock().lock();
+        try {
+            for (InvertedIndex.Doc doc : docs) {
+                index.put(doc);
+            }
+            for (int id : removed) {
+                index.remove(type, id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        docs.clear();
+        removed.clear();
+    }
+
+    private static InvertedIndex.Doc doc(InvertedIndex.Type type, ResultSet rs) throws SQLException {
+        Set<String> words = new LinkedHashSet<>();
+        Set<String> codes = new LinkedHashSet<>();
+        JsonWriter json = JsonWriter.obtain();
+        try {
+            json.beginObject().field("id", rs.getInt("id"));
+            if (type == InvertedIndex.Type.CUSTOMER) {
+                words.addAll(InvertedIndex.words(rs.getString("full_name")));
+                words.addAll(InvertedIndex.words(rs.getString("email")));
+                addCode(codes, rs.getString("phone"));
+                json.field("fullName", rs.getString("full_name"))
+                    .field("email", rs.getString("email"))
+                    .field("phone", rs.getString("phone"));
+            } else if (type == InvertedIndex.Type.VEHICLE) {
+                // The owner's name is indexed on the vehicle too, so "smith civic" finds Smith's Civic.
+                words.addAll(InvertedIndex.words(rs.getString("full_name")));
+                words.addAll(InvertedIndex.words(rs.getString("make")));
+                words.addAll(InvertedIndex.words(rs.getString("model")));
+                words.addAll(InvertedIndex.words(rs.getString("color")));
+                addCode(codes, rs.getString("license_plate"));
+                addCode(codes, rs.getString("vin"));
+                json.field("customerId", rs.getInt("customer_id"))
+                    .field("ownerName", rs.getString("full_name"))
+                    .field("make", rs.getString("make"))
+                    .field("model", rs.getString("model"))
+                    .field("year", rs.getInt("year"))
+                    .field("color", rs.getString("color"))
+                    .field("licensePlate", rs.getString("license_plate"))
+                    .field("vin", rs.getString("vin"));
+            } else {
+                String notes = rs.getString("notes");
+                words.addAll(InvertedIndex.words(notes));
+                words.addAll(InvertedIndex.words(rs.getString("customer_notes")));
+                json.field("customerId", rs.getInt("customer_id"))
+                    .field("vehicleId", rs.getInt("vehicle_id"))
+                    .field("status", rs.getString("status"))
+                    .field("bookingDate", rs.getTimestamp("booking_date"))
+                    .field("customerName", rs.getString("full_name"))
+                    .field("vehicle", rs.getString("make") + " " + rs.getString("model") + " (" + rs.getInt("year") + ")")
+                    .field("licensePlate", rs.getString("license_plate"))
+                    .field("notes", snippet(notes));
+            }
+            json.endObject();
+            return new InvertedIndex.Doc(type, rs.getInt("id"), words, codes, Arrays.copyOf(json.buffer(), json.size()));
+        } finally {
+            json.release();
+        }
+    }
+
+    private static void addCode(Set<String> codes, String value) {
+        String code = InvertedIndex.code(value);
+        if (!code.isEmpty()) {
+            codes.add(code);
+        }
+    }
+
+    private static String snippet(String notes) {
+        if (notes == null || notes.length() <= SNIPPET_LENGTH) {
+            return notes;
+        }
+        return notes.substring(0, SNIPPET_LENGTH) + "...";
+    }
+
+    private static Timestamp since(Timestamp seen) {
+        return seen != null ? seen : new Timestamp(0);
+    }
+
+    private static Timestamp max(Timestamp a, Timestamp b) {
+        if (a == null) {
+            return b;
+        }
+        return b != null && b.after(a) ? b : a;
+    }
+
+    private static List<Integer> take(Set<Integer> dirty) {
+        List<Integer> ids = new ArrayList<>(dirty);
+        dirty.removeAll(ids);
+        return ids;
+    }
+
+    private static List<List<Integer>> batches(List<Integer> ids) {
+        List<List<Integer>> batches = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += BATCH) {
+            batches.add(ids.subList(i, Math.min(ids.size(), i + BATCH)));
+        }
+        return batches;
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder sb = new StringBuilder(count * 2);
+        for (int i = 0; i < count; i++) {
+            sb.append(i == 0 ? "?" : ", ?");
+        }
+        return sb.toString();
+    }
+}
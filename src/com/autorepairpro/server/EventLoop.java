@@ -0,0 +1,388 @@
+package com.autorepairpro.server;
+
+import com.autorepairpro.log.Log;
+import com.autorepairpro.metrics.Metrics;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Selector thread that owns a set of connections. It reads and parses requests, hands complete
+ * requests to the worker pool, and writes the responses back once the workers are done.
+ */
+class EventLoop implements Runnable {
+    private static final long IDLE_TIMEOUT_MILLIS = 30_000;
+    private static final int MAX_PIPELINED_REQUESTS = 32;
+
+    private final SimpleHttpServer server;
+    private final ExecutorService workers;
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final Set<HttpConnection> connections = new HashSet<>();
+    private long lastIdleCheck = System.currentTimeMillis();
+
+    EventLoop(SimpleHttpServer server, ExecutorService workers) throws IOException {
+        this.server = server;
+        this.workers = workers;
+        this.selector = Selector.open();
+    }
+
+    // Called from the acceptor thread.
+    void register(SocketChannel channel) {
+        tasks.add(() -> {
+            try {
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                HttpConnection conn = new HttpConnection(channel);
+                conn.key = channel.register(selector, SelectionKey.OP_READ, conn);
+                connections.add(conn);
+            } catch (IOException e) {
+                Log.error("Error registering client connection: " + e.getMessage());
+                closeQuietly(channel);
+            }
+        });
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                selector.select(1000);
+                runTasks();
+
+                Iterator<SelectionKey> selected = selector.selectedKeys().iterator();
+                while (selected.hasNext()) {
+                    SelectionKey key = selected.next();
+                    selected.remove();
+                    HttpConnection conn = (HttpConnection) key.attachment();
+                    try {
+                        if (key.isValid() && key.isReadable()) {
+                            onReadable(conn);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            flush(conn);
+                        }
+                    } catch (IOException | java.nio.channels.CancelledKeyException e) {
+                        close(conn);
+                    }
+                }
+
+                closeIdleConnections();
+            } catch (IOException e) {
+                Log.error("Event loop error: " + e.getMessage());
+            }
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    private void onReadable(HttpConnection conn) throws IOException {
+        ByteBuffer buf = conn.readBuffer;
+        if (conn.stream != null) {
+            // Nothing more is expected from an event stream client; reading only tells us when it hangs up.
+            buf.clear();
+            if (conn.channel.read(buf) < 0) {
+                close(conn);
+            }
+            buf.clear();
+            return;
+        }
+        int n = conn.channel.read(buf);
+        if (n < 0) {
+            conn.inputClosed = true;
+        } else {
+            conn.lastActivity = System.currentTimeMillis();
+        }
+
+        parseBuffered(conn);
+        dispatchNext(conn);
+        updateInterest(conn);
+    }
+
+    // Parses requests out of the read buffer until the pipeline is full or the buffer holds no complete request.
+    private void parseBuffered(HttpConnection conn) {
+        ByteBuffer buf = conn.readBuffer;
+        buf.flip();
+        try {
+            while (conn.pending.size() < MAX_PIPELINED_REQUESTS) {
+                HttpRequest request = conn.parser.parse(buf);
+                if (request == null) {
+                    break;
+                }
+                conn.pending.add(request);
+            }
+        } catch (HttpRequestParser.ParseException e) {
+            conn.parseError = errorResponse(e.getStatusCode(), e.getMessage());
+            buf.clear();
+            buf.flip();
+        }
+        buf.compact();
+
+        // A full buffer that did not yield a request means the header block is larger than we accept.
+        if (!buf.hasRemaining() && conn.pending.size() < MAX_PIPELINED_REQUESTS && conn.parseError == null) {
+            conn.parseError = errorResponse(431, "Request header too large");
+        }
+    }
+
+    private void dispatchNext(HttpConnection conn) throws IOException {
+        if (conn.inFlight || conn.closeAfterWrite || conn.stream != null || !conn.channel.isOpen()) {
+            return;
+        }
+
+        HttpRequest request = conn.pending.poll();
+        // Requests left in the buffer while the pipeline was full are parsed as soon as there is
+        // room; the client is waiting for responses and will not send more data to trigger a read.
+        if (request != null && conn.pending.size() == MAX_PIPELINED_REQUESTS - 1 && conn.parseError == null) {
+            parseBuffered(conn);
+        }
+        if (request == null) {
+            if (conn.parseError != null) {
+                HttpResponse error = conn.parseError;
+                conn.parseError = null;
+                queueResponse(conn, error, false);
+            } else if (conn.inputClosed && conn.writeQueue.isEmpty()) {
+                close(conn);
+            }
+            return;
+        }
+
+        conn.inFlight = true;
+        Metrics.requestQueued();
+        try {
+            workers.execute(() -> {
+                HttpResponse response;
+                try {
+                    response = server.handle(request);
+                } catch (Throwable t) {
+                    Log.error("Error handling client request", t);
+                    response = errorResponse(500, "Internal Server Error");
+                }
+                HttpResponse result = response;
+                tasks.add(() -> onResponse(conn, request, result));
+                selector.wakeup();
+            });
+        } catch (RejectedExecutionException e) {
+            Metrics.requestRejected();
+            conn.inFlight = false;
+            queueResponse(conn, errorResponse(503, "Service Unavailable"), false);
+        }
+    }
+
+    private void onResponse(HttpConnection conn, HttpRequest request, HttpResponse response) {
+        conn.inFlight = false;
+        if (!conn.channel.isOpen()) {
+            if (response.getEventStream() != null) {
+                response.getEventStream().close();
+            }
+            if (response.getOnComplete() != null) {
+                response.getOnComplete().run();
+            }
+            return;
+        }
+        try {
+            queueResponse(conn, response, request.isKeepAlive());
+            dispatchNext(conn);
+            updateInterest(conn);
+        } catch (IOException | java.nio.channels.CancelledKeyException e) {
+            close(conn);
+        }
+    }
+
+    private void queueResponse(HttpConnection conn, HttpResponse response, boolean keepAlive) throws IOException {
+        if (response.getEventStream() != null) {
+            openStream(conn, response);
+            return;
+        }
+        for (ByteBuffer buffer : response.toBuffers(keepAlive)) {
+            conn.writeQueue.add(buffer);
+        }
+        if (response.getFile() != null) {
+            conn.writeQueue.add(new FileRegion(response.getFile(), 0, response.getBodyLength()));
+        }
+        if (response.getOnComplete() != null) {
+            conn.writeQueue.add(response.getOnComplete());
+        }
+        if (!keepAlive) {
+            conn.closeAfterWrite = true;
+            conn.pending.clear();
+        }
+        flush(conn);
+    }
+
+    // The headers carry no length, so the connection can never go back to serving requests.
+    private void openStream(HttpConnection conn, HttpResponse response) throws IOException {
+        EventStream stream = response.getEventStream();
+        for (ByteBuffer buffer : response.toBuffers(false)) {
+            conn.writeQueue.add(buffer);
+        }
+        conn.writeQueue.add(stream.preamble());
+        conn.pending.clear();
+        conn.stream = stream;
+        stream.attach(() -> {
+            tasks.add(() -> drainStream(conn));
+            selector.wakeup();
+        });
+        flush(conn);
+    }
+
+    // Events are only pulled once the socket has taken what was queued before, so a slow client
+    // leaves them in the stream's coalescing buffer instead of growing the write queue.
+    private void drainStream(HttpConnection conn) {
+        if (conn.stream == null || !conn.channel.isOpen() || !conn.writeQueue.isEmpty()) {
+            return;
+        }
+        ByteBuffer events = conn.stream.poll();
+        if (events == null) {
+            return;
+        }
+        conn.writeQueue.add(events);
+        try {
+            flush(conn);
+        } catch (IOException | java.nio.channels.CancelledKeyException e) {
+            close(conn);
+        }
+    }
+
+    private void flush(HttpConnection conn) throws IOException {
+        while (!conn.writeQueue.isEmpty()) {
+            Object item = conn.writeQueue.peek();
+            if (item instanceof Runnable) {
+                conn.writeQueue.poll();
+                ((Runnable) item).run();
+                continue;
+            }
+            if (item instanceof FileRegion) {
+                if (!((FileRegion) item).transferTo(conn.channel)) {
+                    break;
+                }
+                conn.writeQueue.poll();
+                continue;
+            }
+            ByteBuffer buffer = (ByteBuffer) item;
+            conn.channel.write(buffer);
+            if (buffer.hasRemaining()) {
+                break;
+            }
+            conn.writeQueue.poll();
+        }
+        conn.lastActivity = System.currentTimeMillis();
+
+        if (conn.writeQueue.isEmpty()) {
+            if (conn.closeAfterWrite || (conn.inputClosed && conn.isIdle())) {
+                close(conn);
+                return;
+            }
+            if (conn.stream != null) {
+                updateInterest(conn);
+                drainStream(conn);
+                return;
+            }
+        }
+        updateInterest(conn);
+    }
+
+    private void updateInterest(HttpConnection conn) {
+        if (!conn.key.isValid()) {
+            return;
+        }
+        int ops = 0;
+        if (!conn.inputClosed && !conn.closeAfterWrite && conn.parseError == null
+                && conn.pending.size() < MAX_PIPELINED_REQUESTS) {
+            ops |= SelectionKey.OP_READ;
+        }
+        if (!conn.writeQueue.isEmpty()) {
+            ops |= SelectionKey.OP_WRITE;
+        }
+        conn.key.interestOps(ops);
+    }
+
+    private void closeIdleConnections() {
+        long now = System.currentTimeMillis();
+        if (now - lastIdleCheck < 1000) {
+            return;
+        }
+        lastIdleCheck = now;
+        for (HttpConnection conn : new ArrayList<>(connections)) {
+            if (conn.stream != null) {
+                keepStreamAlive(conn, now);
+                continue;
+            }
+            if (conn.isIdle() && now - conn.lastActivity > IDLE_TIMEOUT_MILLIS) {
+                close(conn);
+            }
+        }
+    }
+
+    // A comment line every few seconds keeps proxies from timing out a quiet stream and surfaces dead
+    // peers. A stream whose client has stopped reading is dropped after the usual idle timeout, and
+    // one whose session has logged out or expired as soon as this notices.
+    private void keepStreamAlive(HttpConnection conn, long now) {
+        if (conn.stream.isRevoked()) {
+            close(conn);
+            return;
+        }
+        if (!conn.writeQueue.isEmpty()) {
+            if (now - conn.lastActivity > IDLE_TIMEOUT_MILLIS) {
+                close(conn);
+            }
+            return;
+        }
+        if (now - conn.lastActivity >= EventStream.HEARTBEAT_MILLIS) {
+            conn.writeQueue.add(ByteBuffer.wrap(EventStream.HEARTBEAT));
+            try {
+                flush(conn);
+            } catch (IOException | java.nio.channels.CancelledKeyException e) {
+                close(conn);
+            }
+        }
+    }
+
+    private void close(HttpConnection conn) {
+        connections.remove(conn);
+        if (conn.stream != null) {
+            conn.stream.close();
+        }
+        // Run pending completion callbacks so pooled response buffers are not lost with the connection.
+        for (Object item : conn.writeQueue) {
+            if (item instanceof Runnable) {
+                ((Runnable) item).run();
+            }
+        }
+        conn.writeQueue.clear();
+        if (conn.key != null) {
+            conn.key.cancel();
+        }
+        closeQuietly(conn.channel);
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Ignore
+        }
+    }
+
+    private static HttpResponse errorResponse(int statusCode, String message) {
+        byte[] content = ("<h1>" + statusCode + " " + message + "</h1>").getBytes(StandardCharsets.UTF_8);
+        return new HttpResponse(statusCode, message, "text/html", content);
+    }
+}
@@ -0,0 +1,172 @@
+package com.autorepairpro.server;
+
+import com.autorepairpro.auth.Session;
+import com.autorepairpro.auth.SessionStore;
+import com.autorepairpro.events.ChangeEvent;
+import com.autorepairpro.events.EventBus;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One open {@code text/event-stream} response. Publishers call {@link #onEvent} on their own
+ * thread; the event is parked in a small per-subscriber buffer and the owning event loop is woken
+ * to write it. The loop only pulls from the buffer once the socket has taken everything queued
+ * before, so a slow reader accumulates events here rather than in the write queue.
+ *
+ * The buffer is keyed by {@link ChangeEvent#getKey()}: a newer event for the same job or part
+ * replaces the one still waiting, so a slow reader skips intermediate states instead of falling
+ * further behind. If it still fills up, the buffer is dropped and the client is sent a
+ * {@code resync} event telling it to refetch what it shows.
+ *
+ * The stream belongs to the session that opened it: once that session logs out or expires, no
+ * more events are delivered and the event loop closes the stream at its next idle check.
+ */
+class EventStream implements EventBus.Listener {
+    // Streaming configuration with fallback to environment variables
+    static final int MAX_STREAMS = System.getenv("SSE_MAX_STREAMS") != null ?
+        Integer.parseInt(System.getenv("SSE_MAX_STREAMS")) : 1000;
+    private static final int BUFFER_EVENTS = System.getenv("SSE_BUFFER_EVENTS") != null ?
+        Integer.parseInt(System.getenv("SSE_BUFFER_EVENTS")) : 64;
+    static final long HEARTBEAT_MILLIS = (System.getenv("SSE_HEARTBEAT_SECONDS") != null ?
+        Long.parseLong(System.getenv("SSE_HEARTBEAT_SECONDS")) : 15) * 1000;
+
+    // Sent first: tells EventSource how long to wait before reconnecting.
+    private static final byte[] PREAMBLE = "retry: 3000\n\n".getBytes(StandardCharsets.US_ASCII);
+    static final byte[] HEARTBEAT = ": ping\n\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] RESYNC = "event: resync\ndata: {}\n\n".getBytes(StandardCharsets.US_ASCII);
+
+    private static final AtomicInteger openStreams = new AtomicInteger();
+    private static final AtomicLong coalesced = new AtomicLong();
+    private static final AtomicLong overflows = new AtomicLong();
+
+    private final Session session;
+    private final LinkedHashMap<String, ChangeEvent> buffer = new LinkedHashMap<>();
+    private boolean overflowed;
+    private boolean wakeupPending;
+    private boolean closed;
+    // Set by the event loop when the stream is attached to its connection.
+    private Runnable wakeup;
+
+    private EventStream(Session session) {
+        this.session = session;
+    }
+
+    /** Reserves a stream slot for the session, or returns null when the server is at its limit. */
+    static EventStream open(Session session) {
+        if (openStreams.incrementAndGet() > MAX_STREAMS) {
+            openStreams.decrementAndGet();
+            return null;
+        }
+        return new EventStream(session);
+    }
+
+    static int getOpenCount() {
+        return openStreams.get();
+    }
+
+    static long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    static long getOverflowCount() {
+        return overflows.get();
+    }
+
+    // Loop thread: called once the response headers are queued.
+    void attach(Runnable wakeup) {
+        synchronized (this) {
+            this.wakeup = wakeup;
+        }
+        EventBus.subscribe(this);
+    }
+
+    // Loop thread: called when the connection closes, or if it went away before the stream was attached.
+    void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            buffer.clear();
+        }
+        EventBus.unsubscribe(this);
+        openStreams.decrementAndGet();
+    }
+
+    /** Whether the session that opened the stream has logged out or expired. */
+    boolean isRevoked() {
+        return !SessionStore.isValid(session);
+    }
+
+    @Override
+    public void onEvent(ChangeEvent event) {
+        if (!event.isVisibleTo(session) || isRevoked()) {
+            return;
+        }
+        Runnable toRun = null;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            // Re-inserted so the buffer stays in publish order and event ids go out ascending.
+            if (buffer.remove(event.getKey()) != null) {
+                coalesced.incrementAndGet();
+            }
+            buffer.put(event.getKey(), event);
+            if (buffer.size() > BUFFER_EVENTS) {
+                buffer.clear();
+                overflowed = true;
+                overflows.incrementAndGet();
+            }
+            if (!wakeupPending && wakeup != null) {
+                wakeupPending = true;
+                toRun = wakeup;
+            }
+        }
+        if (toRun != null) {
+            toRun.run();
+        }
+    }
+
+    ByteBuffer preamble() {
+        return ByteBuffer.wrap(PREAMBLE);
+    }
+
+    /** Loop thread: takes everything buffered, encoded as one chunk, or null if nothing is waiting. */
+    ByteBuffer poll() {
+        List<ChangeEvent> events;
+        boolean resync;
+        synchronized (this) {
+            wakeupPending = false;
+            if (buffer.isEmpty() && !overflowed) {
+                return null;
+            }
+            events = new ArrayList<>(buffer.values());
+            buffer.clear();
+            resync = overflowed;
+            overflowed = false;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(events.size() * 128 + RESYNC.length);
+        if (resync) {
+            out.write(RESYNC, 0, RESYNC.length);
+        }
+        for (ChangeEvent event : events) {
+            byte[] head = ("id: " + event.getId() + "\nevent: " + event.getType().getWireName() + "\ndata: ")
+                .getBytes(StandardCharsets.US_ASCII);
+            out.write(head, 0, head.length);
+            // JSON escapes control characters, so the payload is always a single data line.
+            out.write(event.getData(), 0, event.getData().length);
+            out.write('\n');
+            out.write('\n');
+        }
+        return ByteBuffer.wrap(out.toByteArray());
+    }
+}
@@ -0,0 +1,34 @@
+package com.autorepairpro.server;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/** A slice of a file queued on a connection, written with transferTo (sendfile where available). */
+class FileRegion {
+    private final FileChannel file;
+    private long position;
+    private final long end;
+
+    FileRegion(FileChannel file, long position, long count) {
+        this.file = file;
+        this.position = position;
+        this.end = position + count;
+    }
+
+    /** Writes as much as the socket accepts; returns true once the whole region is out. */
+    boolean transferTo(WritableByteChannel target) throws IOException {
+        while (position < end) {
+            long written = file.transferTo(position, end - position, target);
+            if (written <= 0) {
+                // Socket buffer is full, or the file shrank underneath us.
+                if (position >= file.size()) {
+                    throw new IOException("File truncated while sending");
+                }
+                return false;
+            }
+            position += written;
+        }
+        return true;
+    }
+}
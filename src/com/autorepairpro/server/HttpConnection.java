@@ -0,0 +1,43 @@
+package com.autorepairpro.server;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+
+/**
+ * Per-connection state owned by a single {@link EventLoop}. Only the loop thread touches these
+ * fields; worker threads hand results back through the loop's task queue.
+ */
+class HttpConnection {
+    static final int READ_BUFFER_SIZE = 32 * 1024;
+
+    final SocketChannel channel;
+    SelectionKey key;
+
+    // Reused for every request on this connection; pipelined bytes stay here between parses.
+    final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    final HttpRequestParser parser = new HttpRequestParser();
+    final ArrayDeque<HttpRequest> pending = new ArrayDeque<>();
+    // ByteBuffers and FileRegions to write, interleaved with Runnables to run once everything before
+    // them has been written.
+    final ArrayDeque<Object> writeQueue = new ArrayDeque<>();
+
+    // Only one request per connection is handed to the workers at a time so responses stay in order.
+    boolean inFlight;
+    boolean inputClosed;
+    boolean closeAfterWrite;
+    HttpResponse parseError;
+    long lastActivity;
+    // Set once an event stream response has been sent; the connection then carries no further requests.
+    EventStream stream;
+
+    HttpConnection(SocketChannel channel) {
+        this.channel = channel;
+        this.lastActivity = System.currentTimeMillis();
+    }
+
+    boolean isIdle() {
+        return !inFlight && pending.isEmpty() && writeQueue.isEmpty();
+    }
+}
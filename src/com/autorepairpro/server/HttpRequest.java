@@ -0,0 +1,117 @@
+package com.autorepairpro.server;
+
+import com.autorepairpro.auth.Session;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+public class HttpRequest {
+    private final String method;
+    private final String target;
+    private final String path;
+    private final String query;
+    private final String version;
+    private final Map<String, String> headers; // header names are stored lower-case
+    private final byte[] body;
+    // When the parser completed the request; latency in the access log is measured from here.
+    private final long receivedNanos = System.nanoTime();
+    // Resolved by the server before routing; null for anonymous requests.
+    private Session session;
+
+    HttpRequest(String method, String target, String version, Map<String, String> headers, byte[] body) {
+        this.method = method;
+        this.target = target;
+        this.version = version;
+        this.headers = headers;
+        this.body = body;
+
+        int q = target.indexOf('?');
+        this.path = q >= 0 ? target.substring(0, q) : target;
+        this.query = q >= 0 ? target.substring(q + 1) : "";
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    // Full request target, including the query string
+    public String getTarget() {
+        return target;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    /**
+     * First value of a query-string parameter, URL-decoded, or null if it is absent. Throws
+     * IllegalArgumentException for malformed percent-escapes.
+     */
+    public String getQueryParameter(String name) {
+        int start = 0;
+        while (start < query.length()) {
+            int end = query.indexOf('&', start);
+            if (end < 0) {
+                end = query.length();
+            }
+            int eq = query.indexOf('=', start);
+            int nameEnd = eq >= 0 && eq < end ? eq : end;
+            if (nameEnd - start == name.length() && query.startsWith(name, start)) {
+                return nameEnd == end ? "" : decode(query.substring(nameEnd + 1, end));
+            }
+            start = end + 1;
+        }
+        return null;
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public String getHeader(String name) {
+        return headers.get(name.toLowerCase());
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    void setSession(Session session) {
+        this.session = session;
+    }
+
+    public long getReceivedNanos() {
+        return receivedNanos;
+    }
+
+    public String getBodyAsString() {
+        return body.length == 0 ? "" : new String(body, StandardCharsets.UTF_8);
+    }
+
+    // HTTP/1.1 connections are persistent unless the client asks otherwise; HTTP/1.0 is the reverse.
+    public boolean isKeepAlive() {
+        String connection = getHeader("connection");
+        if ("HTTP/1.1".equals(version)) {
+            return connection == null || !connection.equalsIgnoreCase("close");
+        }
+        return connection != null && connection.equalsIgnoreCase("keep-alive");
+    }
+}
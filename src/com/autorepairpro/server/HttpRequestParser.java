@@ -0,0 +1,163 @@
+package com.autorepairpro.server;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Incremental HTTP/1.1 request parser. Bytes are fed from the connection's read buffer as they
+ * arrive; a request is returned once its head and body are complete, and any remaining bytes
+ * (pipelined requests) are left in the buffer for the next call.
+ */
+class HttpRequestParser {
+    static final int MAX_HEADER_BYTES = 16 * 1024;
+    static final int MAX_BODY_BYTES = 1024 * 1024;
+
+    private static final byte[] EMPTY_BODY = new byte[0];
+
+    private boolean readingBody;
+    private int scanOffset;
+
+    private String method;
+    private String target;
+    private String version;
+    private Map<String, String> headers;
+    private byte[] body;
+    private int bodyRead;
+
+    static class ParseException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        private final int statusCode;
+
+        ParseException(int statusCode, String message) {
+            super(message);
+            this.statusCode = statusCode;
+        }
+
+        int getStatusCode() {
+            return statusCode;
+        }
+    }
+
+    /**
+     * Consumes bytes from {@code buf} (in read mode). Returns a complete request, or null if more
+     * bytes are needed.
+     */
+    HttpRequest parse(ByteBuffer buf) throws ParseException {
+        if (!readingBody) {
+            int headEnd = findHeaderEnd(buf);
+            if (headEnd < 0) {
+                if (buf.remaining() > MAX_HEADER_BYTES) {
+                    throw new ParseException(431, "Request header too large");
+                }
+                return null;
+            }
+            parseHead(buf, headEnd);
+            buf.position(headEnd + 4);
+            readingBody = true;
+        }
+
+        int needed = body.length - bodyRead;
+        if (needed > 0) {
+            int n = Math.min(needed, buf.remaining());
+            buf.get(body, bodyRead, n);
+            bodyRead += n;
+            if (bodyRead < body.length) {
+                return null;
+            }
+        }
+
+        HttpRequest request = new HttpRequest(method, target, version, headers, body);
+        reset();
+        return request;
+    }
+
+    private void reset() {
+        readingBody = false;
+        scanOffset = 0;
+        method = null;
+        target = null;
+        version = null;
+        headers = null;
+        body = null;
+        bodyRead = 0;
+    }
+
+    // Looks for CRLFCRLF, resuming where the previous call stopped so a slow client is not rescanned.
+    private int findHeaderEnd(ByteBuffer buf) {
+        int start = buf.position();
+        int limit = buf.limit();
+        for (int i = start + scanOffset; i + 3 < limit; i++) {
+            if (buf.get(i) == '\r' && buf.get(i + 1) == '\n' && buf.get(i + 2) == '\r' && buf.get(i + 3) == '\n') {
+                return i;
+            }
+        }
+        scanOffset = Math.max(0, limit - start - 3);
+        return -1;
+    }
+
+    private void parseHead(ByteBuffer buf, int headEnd) throws ParseException {
+        int start = buf.position();
+        int length = headEnd - start;
+        if (length > MAX_HEADER_BYTES) {
+            throw new ParseException(431, "Request header too large");
+        }
+
+        byte[] headBytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            headBytes[i] = buf.get(start + i);
+        }
+        String head = new String(headBytes, StandardCharsets.ISO_8859_1);
+
+        int lineEnd = head.indexOf("\r\n");
+        String requestLine = lineEnd >= 0 ? head.substring(0, lineEnd) : head;
+        String[] requestParts = requestLine.split(" ");
+        if (requestParts.length != 3 || !requestParts[2].startsWith("HTTP/")) {
+            throw new ParseException(400, "Malformed request line");
+        }
+        method = requestParts[0];
+        target = requestParts[1];
+        version = requestParts[2];
+
+        headers = new HashMap<>();
+        int pos = lineEnd >= 0 ? lineEnd + 2 : head.length();
+        while (pos < head.length()) {
+            int next = head.indexOf("\r\n", pos);
+            if (next < 0) {
+                next = head.length();
+            }
+            int colon = head.indexOf(':', pos);
+            if (colon > pos && colon < next) {
+                String name = head.substring(pos, colon).trim().toLowerCase();
+                String value = head.substring(colon + 1, next).trim();
+                headers.put(name, value);
+            }
+            pos = next + 2;
+        }
+
+        String transferEncoding = headers.get("transfer-encoding");
+        if (transferEncoding != null && !transferEncoding.equalsIgnoreCase("identity")) {
+            throw new ParseException(501, "Transfer-Encoding not supported");
+        }
+
+        int contentLength = 0;
+        String contentLengthHeader = headers.get("content-length");
+        if (contentLengthHeader != null) {
+            try {
+                contentLength = Integer.parseInt(contentLengthHeader);
+            } catch (NumberFormatException e) {
+                throw new ParseException(400, "Invalid Content-Length");
+            }
+            if (contentLength < 0) {
+                throw new ParseException(400, "Invalid Content-Length");
+            }
+            if (contentLength > MAX_BODY_BYTES) {
+                throw new ParseException(413, "Request body too large");
+            }
+        }
+        body = contentLength == 0 ? EMPTY_BODY : new byte[contentLength];
+        bodyRead = 0;
+    }
+}
@@ -0,0 +1,135 @@
+package com.autorepairpro.server;
+
+import com.autorepairpro.json.JsonWriter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class HttpResponse {
+    private final int statusCode;
+    private final String statusMessage;
+    private final String contentType;
+    private final byte[] body;
+    private final int bodyOffset;
+    private final long bodyLength;
+    private final Map<String, String> headers = new LinkedHashMap<>();
+    private Runnable onComplete;
+    // Set for bodies streamed from disk; bodyLength is then the file length.
+    private FileChannel file;
+    // Set for text/event-stream responses; the body is written by the event loop until the client goes away.
+    private EventStream eventStream;
+
+    public HttpResponse(int statusCode, String statusMessage, String contentType, byte[] body) {
+        this(statusCode, statusMessage, contentType, body, 0, body.length);
+    }
+
+    public HttpResponse(int statusCode, String statusMessage, String contentType, byte[] body, int offset, int length) {
+        this.statusCode = statusCode;
+        this.statusMessage = statusMessage;
+        this.contentType = contentType;
+        this.body = body;
+        this.bodyOffset = offset;
+        this.bodyLength = length;
+    }
+
+    private HttpResponse(int statusCode, String statusMessage, String contentType, FileChannel file, long length) {
+        this.statusCode = statusCode;
+        this.statusMessage = statusMessage;
+        this.contentType = contentType;
+        this.body = null;
+        this.bodyOffset = 0;
+        this.bodyLength = length;
+        this.file = file;
+        this.onComplete = () -> {
+            try {
+                file.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+        };
+    }
+
+    public static HttpResponse json(int statusCode, String json) {
+        String statusMessage = statusCode == 200 ? "OK" : "Error";
+        return new HttpResponse(statusCode, statusMessage, "application/json", json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Sends the writer's buffer as the body without copying it; the writer is released once the bytes are on the wire.
+    public static HttpResponse json(int statusCode, JsonWriter json) {
+        String statusMessage = statusCode == 200 ? "OK" : "Error";
+        HttpResponse response = new HttpResponse(statusCode, statusMessage, "application/json", json.buffer(), 0, json.size());
+        response.onComplete = json::release;
+        return response;
+    }
+
+    // Sends the file with FileChannel.transferTo so its bytes never pass through the heap. The channel
+    // is closed once the body has been written or the connection goes away.
+    public static HttpResponse file(int statusCode, String statusMessage, String contentType, FileChannel file, long length) {
+        return new HttpResponse(statusCode, statusMessage, contentType, file, length);
+    }
+
+    // Headers only; the event loop keeps the connection open and writes events as they are published.
+    static HttpResponse eventStream(EventStream stream) {
+        HttpResponse response = new HttpResponse(200, "OK", "text/event-stream; charset=utf-8", new byte[0]);
+        response.eventStream = stream;
+        response.header("Cache-Control", "no-cache");
+        // Stops reverse proxies from buffering the stream.
+        response.header("X-Accel-Buffering", "no");
+        return response;
+    }
+
+    public HttpResponse header(String name, String value) {
+        headers.put(name, value);
+        return this;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public long getBodyLength() {
+        return bodyLength;
+    }
+
+    FileChannel getFile() {
+        return file;
+    }
+
+    EventStream getEventStream() {
+        return eventStream;
+    }
+
+    Runnable getOnComplete() {
+        return onComplete;
+    }
+
+    // Serializes the status line and headers; the body is wrapped rather than copied. File bodies are
+    // not included here, the event loop queues them as a FileRegion.
+    ByteBuffer[] toBuffers(boolean keepAlive) {
+        StringBuilder head = new StringBuilder(256);
+        head.append("HTTP/1.1 ").append(statusCode).append(' ').append(statusMessage).append("\r\n");
+        head.append("Content-Type: ").append(contentType).append("\r\n");
+        // An event stream has no length; its body ends when the connection closes.
+        if (statusCode != 204 && statusCode != 304 && eventStream == null) {
+            head.append("Content-Length: ").append(bodyLength).append("\r\n");
+        }
+        head.append("Access-Control-Allow-Origin: *\r\n"); // For development
+        head.append("Access-Control-Allow-Methods: GET, POST, PUT, DELETE, OPTIONS\r\n");
+        head.append("Access-Control-Allow-Headers: Content-Type, Authorization\r\n");
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            head.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+        }
+        head.append("Connection: ").append(keepAlive ? "keep-alive" : "close").append("\r\n");
+        head.append("\r\n");
+
+        ByteBuffer headBuffer = ByteBuffer.wrap(head.toString().getBytes(StandardCharsets.ISO_8859_1));
+        if (bodyLength == 0 || file != null) {
+            return new ByteBuffer[] { headBuffer };
+        }
+        return new ByteBuffer[] { headBuffer, ByteBuffer.wrap(body, bodyOffset, (int) bodyLength) };
+    }
+}
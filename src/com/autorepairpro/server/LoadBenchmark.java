@@ -0,0 +1,229 @@
+package com.autorepairpro.server;
+
+import com.autorepairpro.json.JsonObject;
+import com.autorepairpro.json.JsonReader;
+import com.autorepairpro.json.JsonWriter;
+import com.autorepairpro.log.Log;
+import com.autorepairpro.metrics.Histogram;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop load generator for a running server: each connection is kept alive and sends the
+ * next GET as soon as the previous answer is in. Run it once against a server started with
+ * {@code SERVER_EXECUTOR=fixed} and once with {@code SERVER_EXECUTOR=virtual} to compare the
+ * two worker modes; it reports requests per second and the p50/p99 latency it saw.
+ *
+ * <pre>java -cp build com.autorepairpro.server.LoadBenchmark [--url http://localhost:8080/api/employee/jobs/{userId}] [--login tech1:tech123] [--connections 50] [--seconds 10] [--token TOKEN]</pre>
+ *
+ * The default target is the employee job listing, which waits on the database for every
+ * request, so it shows how the worker modes behave when handlers block on JDBC. The benchmark
+ * logs in first with {@code --login} (the sample employee from database_setup.sql by default)
+ * and puts the user id in place of {@code {userId}}; {@code --token} or {@code --login ""} skips
+ * the login. Paths such as {@code /metrics} or {@code /index.html} never block and only measure
+ * the server itself.
+ *
+ * The first second of each run warms up the server's JIT and is not counted. Exits with status 1
+ * if any request fails or is answered with anything but 2xx.
+ */
+public class LoadBenchmark {
+    private static final int WARM_UP_SECONDS = 1;
+
+    private static final Histogram latency = new Histogram();
+    private static final AtomicLong failures = new AtomicLong();
+    private static volatile boolean measuring;
+    private static volatile boolean stopping;
+
+    public static void main(String[] args) throws Exception {
+        String url = "http://localhost:8080/api/employee/jobs/{userId}";
+        String login = "tech1:tech123";
+        int connections = 50;
+        int seconds = 10;
+        String token = null;
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals("--url")) {
+                url = args[++i];
+            } else if (args[i].equals("--connections")) {
+                connections = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--seconds")) {
+                seconds = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--token")) {
+                token = args[++i];
+            } else if (args[i].equals("--login")) {
+                login = args[++i];
+            }
+        }
+
+        // The server is the same whoever logs in; the path may still need the user id.
+        URI server = URI.create(url.replace("{userId}", "0"));
+        String host = server.getHost();
+        int port = server.getPort() > 0 ? server.getPort() : 80;
+        if (token == null && !login.isEmpty()) {
+            int colon = login.indexOf(':');
+            String username = colon >= 0 ? login.substring(0, colon) : login;
+            JsonObject session = login(host, port, username, login.substring(colon + 1));
+            if (session == null) {
+                Log.error("Load benchmark failed: could not log in as " + username);
+                System.exit(1);
+            }
+            token = session.getString("token");
+            url = url.replace("{userId}", String.valueOf(session.getInteger("userId")));
+        }
+        if (url.contains("{userId}")) {
+            Log.error("Load benchmark failed: --url has {userId} but there is no --login to fill it in");
+            System.exit(1);
+        }
+        URI target = URI.create(url);
+        String path = target.getRawPath() + (target.getRawQuery() != null ? "?" + target.getRawQuery() : "");
+        byte[] request = ("GET " + path + " HTTP/1.1\r\nHost: " + host + ":" + port + "\r\n"
+            + (token != null ? "Authorization: Bearer " + token + "\r\n" : "") + "\r\n").getBytes(StandardCharsets.US_ASCII);
+
+        Thread[] clients = new Thread[connections];
+        for (int i = 0; i < connections; i++) {
+            clients[i] = new Thread(() -> run(host, port, request), "load-" + i);
+            clients[i].start();
+        }
+        Thread.sleep(WARM_UP_SECONDS * 1000L);
+        measuring = true;
+        long began = System.nanoTime();
+        Thread.sleep(seconds * 1000L);
+        measuring = false;
+        long elapsed = System.nanoTime() - began;
+        stopping = true;
+        for (Thread client : clients) {
+            client.join();
+        }
+
+        long count = latency.getCount();
+        Log.info(String.format("%s with %d connections: %d requests in %.1f s, %.0f requests/s, p50 %.2f ms, p99 %.2f ms, mean %.2f ms",
+            url, connections, count, elapsed / 1e9, count / (elapsed / 1e9),
+            latency.percentile(0.50) / 1e3, latency.percentile(0.99) / 1e3,
+            count > 0 ? (double) latency.getSumMicros() / count / 1e3 : 0));
+        boolean passed = failures.get() == 0 && count > 0;
+        Log.info(passed ? "Load benchmark passed" : "Load benchmark failed: " + failures.get() + " requests failed or were not 2xx");
+        System.exit(passed ? 0 : 1);
+    }
+
+    private static void run(String host, int port, byte[] request) {
+        while (!stopping) {
+            try (Socket socket = new Socket(host, port)) {
+                socket.setTcpNoDelay(true);
+                OutputStream out = socket.getOutputStream();
+                InputStream in = new BufferedInputStream(socket.getInputStream());
+                while (!stopping) {
+                    long sent = System.nanoTime();
+                    out.write(request);
+                    out.flush();
+                    int status = readResponse(in);
+                    if (measuring) {
+                        latency.recordNanos(System.nanoTime() - sent);
+                        if (status < 200 || status > 299) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                if (measuring) {
+                    failures.incrementAndGet();
+                }
+                if (!stopping) {
+                    Log.warn("Connection failed: " + e.getMessage());
+                    sleepQuietly();
+                }
+            }
+        }
+    }
+
+    // Returns the login response with the token and user id, or null if the login was refused.
+    private static JsonObject login(String host, int port, String username, String password) throws IOException {
+        JsonWriter json = JsonWriter.obtain();
+        byte[] body;
+        try {
+            json.beginObject().field("username", username).field("password", password).endObject();
+            body = Arrays.copyOf(json.buffer(), json.size());
+        } finally {
+            json.release();
+        }
+        try (Socket socket = new Socket(host, port)) {
+            OutputStream out = socket.getOutputStream();
+            out.write(("POST /api/auth/login HTTP/1.1\r\nHost: " + host + ":" + port + "\r\n"
+                + "Content-Type: application/json\r\nContent-Length: " + body.length + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.write(body);
+            out.flush();
+            ByteArrayOutputStream response = new ByteArrayOutputStream();
+            int status = readResponse(new BufferedInputStream(socket.getInputStream()), response);
+            if (status != 200) {
+                return null;
+            }
+            return JsonReader.parseObject(response.toByteArray());
+        } catch (JsonReader.ParseException e) {
+            return null;
+        }
+    }
+
+    private static int readResponse(InputStream in) throws IOException {
+        return readResponse(in, null);
+    }
+
+    // Reads one response with a Content-Length body, copying the body if asked, and returns its status code.
+    private static int readResponse(InputStream in, ByteArrayOutputStream body) throws IOException {
+        String statusLine = readLine(in);
+        int status = Integer.parseInt(statusLine.substring(9, 12));
+        int contentLength = 0;
+        String line;
+        while (!(line = readLine(in)).isEmpty()) {
+            int colon = line.indexOf(':');
+            if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("Content-Length")) {
+                contentLength = Integer.parseInt(line.substring(colon + 1).trim());
+            }
+        }
+        for (int remaining = contentLength; body != null && remaining > 0; remaining--) {
+            int c = in.read();
+            if (c < 0) {
+                throw new IOException("Connection closed mid-body");
+            }
+            body.write(c);
+        }
+        for (int remaining = body != null ? 0 : contentLength; remaining > 0; ) {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new IOException("Connection closed mid-body");
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+        return status;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != '\n') {
+            if (c < 0) {
+                throw new IOException("Connection closed by server");
+            }
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return line.toString();
+    }
+
+    private static void sleepQuietly() {
+        try {
+            Thread.sleep(100);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
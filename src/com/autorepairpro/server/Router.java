@@ -0,0 +1,295 @@
+package com.autorepairpro.server;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Segment trie of API routes, built once at startup. Patterns are literal segments plus typed
+ * parameters, e.g. {@code /api/employee/jobs/{jobId:int}/status}; {@code {name}} matches any
+ * single segment. Lookup walks the path in place (no split, no regex) in O(segments), preferring
+ * literal segments over int parameters over string parameters.
+ *
+ * Registration is not thread-safe; routes are added before the server starts and only read after.
+ */
+public class Router {
+
+    /** A registered endpoint. */
+    public interface Route {
+        HttpResponse handle(HttpRequest request, PathParams params);
+    }
+
+    /** Values of the typed path parameters for one matched request. */
+    public static class PathParams {
+        static final PathParams NONE = new PathParams(new String[0]);
+
+        private final String[] names;
+        private final long[] ints;
+        private final String[] strings;
+
+        PathParams(String[] names) {
+            this.names = names;
+            this.ints = new long[names.length];
+            this.strings = new String[names.length];
+        }
+
+        public int getInt(String name) {
+            return (int) ints[indexOf(name)];
+        }
+
+        public String get(String name) {
+            int i = indexOf(name);
+            return strings[i] != null ? strings[i] : Long.toString(ints[i]);
+        }
+
+        private int indexOf(String name) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(name)) {
+                    return i;
+                }
+            }
+            throw new IllegalArgumentException("No path parameter named " + name);
+        }
+    }
+
+    /** Outcome of a lookup: a route, a path that exists under other methods (405), or nothing (404). */
+    public static class Match {
+        static final Match NOT_FOUND = new Match(null, null, null, null);
+
+        private final Route route;
+        private final String pattern;
+        private final PathParams params;
+        private final String allowedMethods;
+
+        private Match(Route route, String pattern, PathParams params, String allowedMethods) {
+            this.route = route;
+            this.pattern = pattern;
+            this.params = params;
+            this.allowedMethods = allowedMethods;
+        }
+
+        public boolean isFound() {
+            return route != null;
+        }
+
+        public boolean isMethodNotAllowed() {
+            return route == null && allowedMethods != null;
+        }
+
+        /** The registered pattern, e.g. /api/employee/jobs/{jobId:int}; null when nothing matched. */
+        public String getPattern() {
+            return pattern;
+        }
+
+        /** Comma-separated methods registered for the path, for the Allow header. */
+        public String getAllowedMethods() {
+            return allowedMethods;
+        }
+
+        public HttpResponse invoke(HttpRequest request) {
+            return route.handle(request, params);
+        }
+    }
+
+    private static final int MAX_INT_DIGITS = 9; // keeps int parameters inside int range
+
+    private static class Node {
+        String[] literalNames = new String[0];
+        Node[] literalChildren = new Node[0];
+        Node intChild;
+        Node stringChild;
+        final Map<String, Endpoint> endpoints = new HashMap<>(4);
+        String allowedMethods;
+        Match methodNotAllowed;
+    }
+
+    private static class Endpoint {
+        final Route route;
+        final String pattern;
+        final String[] paramNames;
+        // One entry per path segment: LITERAL, INT_PARAM or STRING_PARAM.
+        final byte[] segmentKinds;
+        // Shared result for routes without parameters, so those lookups allocate nothing.
+        Match staticMatch;
+
+        Endpoint(Route route, String pattern, String[] paramNames, byte[] segmentKinds) {
+            this.route = route;
+            this.pattern = pattern;
+            this.paramNames = paramNames;
+            this.segmentKinds = segmentKinds;
+        }
+    }
+
+    private static final byte LITERAL = 0;
+    private static final byte INT_PARAM = 1;
+    private static final byte STRING_PARAM = 2;
+
+    private final Node root = new Node();
+
+    public Router add(String method, String pattern, Route route) {
+        Node node = root;
+        List<String> names = new ArrayList<>();
+        List<Byte> kinds = new ArrayList<>();
+        for (String segment : pattern.split("/")) {
+            if (segment.isEmpty()) {
+                continue;
+            }
+            if (segment.startsWith("{") && segment.endsWith("}")) {
+                String spec = segment.substring(1, segment.length() - 1);
+                boolean isInt = spec.endsWith(":int");
+                names.add(isInt ? spec.substring(0, spec.length() - 4) : spec);
+                kinds.add(isInt ? INT_PARAM : STRING_PARAM);
+                if (isInt) {
+                    if (node.intChild == null) {
+                        node.intChild = new Node();
+                    }
+                    node = node.intChild;
+                } else {
+                    if (node.stringChild == null) {
+                        node.stringChild = new Node();
+                    }
+                    node = node.stringChild;
+                }
+            } else {
+                kinds.add(LITERAL);
+                node = literalChild(node, segment);
+            }
+        }
+
+        if (node.endpoints.containsKey(method)) {
+            throw new IllegalStateException("Duplicate route: " + method + " " + pattern);
+        }
+        byte[] segmentKinds = new byte[kinds.size()];
+        for (int i = 0; i < segmentKinds.length; i++) {
+            segmentKinds[i] = kinds.get(i);
+        }
+        node.endpoints.put(method, new Endpoint(route, pattern, names.toArray(new String[0]), segmentKinds));
+        node.allowedMethods = node.allowedMethods == null ? method : node.allowedMethods + ", " + method;
+        node.methodNotAllowed = new Match(null, null, null, node.allowedMethods);
+        for (Endpoint endpoint : node.endpoints.values()) {
+            endpoint.staticMatch = endpoint.paramNames.length == 0
+                ? new Match(endpoint.route, endpoint.pattern, PathParams.NONE, node.allowedMethods) : null;
+        }
+        return this;
+    }
+
+    private static Node literalChild(Node node, String segment) {
+        for (int i = 0; i < node.literalNames.length; i++) {
+            if (node.literalNames[i].equals(segment)) {
+                return node.literalChildren[i];
+            }
+        }
+        int n = node.literalNames.length;
+        String[] names = new String[n + 1];
+        Node[] children = new Node[n + 1];
+        System.arraycopy(node.literalNames, 0, names, 0, n);
+        System.arraycopy(node.literalChildren, 0, children, 0, n);
+        names[n] = segment;
+        children[n] = new Node();
+        node.literalNames = names;
+        node.literalChildren = children;
+        return children[n];
+    }
+
+    /** Looks up {@code path} (without the query string). */
+    public Match route(String method, String path) {
+        Node node = find(root, path, skipSlashes(path, 0));
+        if (node == null || node.allowedMethods == null) {
+            return Match.NOT_FOUND;
+        }
+        Endpoint endpoint = node.endpoints.get(method);
+        if (endpoint == null) {
+            return node.methodNotAllowed;
+        }
+        if (endpoint.staticMatch != null) {
+            return endpoint.staticMatch;
+        }
+        return new Match(endpoint.route, endpoint.pattern, extractParams(endpoint, path), node.allowedMethods);
+    }
+
+    private static Node find(Node node, String path, int start) {
+        int length = path.length();
+        if (start >= length) {
+            return node;
+        }
+        int end = path.indexOf('/', start);
+        if (end < 0) {
+            end = length;
+        }
+        int next = skipSlashes(path, end);
+        int segmentLength = end - start;
+
+        for (int i = 0; i < node.literalNames.length; i++) {
+            String literal = node.literalNames[i];
+            if (literal.length() == segmentLength && path.regionMatches(start, literal, 0, segmentLength)) {
+                Node found = find(node.literalChildren[i], path, next);
+                if (found != null && found.allowedMethods != null) {
+                    return found;
+                }
+            }
+        }
+        if (node.intChild != null && isDigits(path, start, end)) {
+            Node found = find(node.intChild, path, next);
+            if (found != null && found.allowedMethods != null) {
+                return found;
+            }
+        }
+        if (node.stringChild != null && segmentLength > 0) {
+            return find(node.stringChild, path, next);
+        }
+        return null;
+    }
+
+    // Parameters are only materialized once the endpoint is known; its segment kinds say which
+    // segments to capture, so this is a single linear pass.
+    private static PathParams extractParams(Endpoint endpoint, String path) {
+        if (endpoint.paramNames.length == 0) {
+            return PathParams.NONE;
+        }
+        PathParams params = new PathParams(endpoint.paramNames);
+        int param = 0;
+        int start = skipSlashes(path, 0);
+        for (byte kind : endpoint.segmentKinds) {
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = path.length();
+            }
+            if (kind == INT_PARAM) {
+                params.ints[param++] = parseInt(path, start, end);
+            } else if (kind == STRING_PARAM) {
+                params.strings[param++] = path.substring(start, end);
+            }
+            start = skipSlashes(path, end);
+        }
+        return params;
+    }
+
+    private static int skipSlashes(String path, int pos) {
+        while (pos < path.length() && path.charAt(pos) == '/') {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static boolean isDigits(String path, int start, int end) {
+        if (end <= start || end - start > MAX_INT_DIGITS) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            char c = path.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int parseInt(String path, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            value = value * 10 + (path.charAt(i) - '0');
+        }
+        return value;
+    }
+}
@@ -0,0 +1,224 @@
+package com.autorepairpro.server;
+
+import com.autorepairpro.log.Log;
+
+/**
+ * Times route lookup through the {@link Router} trie against the if/else chains it replaced
+ * (prefix checks in the server, then {@code path.matches()}, {@code split("/")} and
+ * {@code parseInt} in each handler), over the routes that existed before the trie and a mix of
+ * request paths that includes misses. Only lookup is timed; no handler runs.
+ *
+ * <pre>java -cp build com.autorepairpro.server.RouterBenchmark [--lookups 2000000]</pre>
+ *
+ * Exits with status 1 if the two disagree on which route a request goes to or on its id.
+ */
+public class RouterBenchmark {
+    private static final String[][] ROUTES = {
+        { "POST", "/api/auth/login" },
+        { "POST", "/api/auth/register" },
+        { "GET", "/api/services" },
+        { "GET", "/api/test" },
+        { "GET", "/api/employee/jobs/{id:int}" },
+        { "PUT", "/api/employee/jobs/{id:int}/status" },
+        { "POST", "/api/employee/jobs/{id:int}/inventory" },
+        { "GET", "/api/employee/jobs/{id:int}/details" },
+        { "POST", "/api/employee/jobs/{id:int}/notes" },
+        { "GET", "/api/employee/profile/{id:int}" },
+        { "PUT", "/api/employee/profile/{id:int}" },
+        { "GET", "/api/employee/stats/{id:int}" },
+        { "GET", "/api/employee/inventory" },
+        { "GET", "/api/employee/schedule/{id:int}" },
+        { "GET", "/api/customer/jobs/{id:int}" },
+        { "GET", "/api/customer/vehicles/{id:int}" },
+        { "POST", "/api/customer/vehicles/{id:int}" },
+        { "POST", "/api/customer/book" },
+        { "POST", "/api/customer/bookings" },
+        { "POST", "/api/customer/pay" },
+        { "GET", "/api/customer/branches" },
+        { "GET", "/api/customer/profile/{id:int}" },
+        { "PUT", "/api/customer/profile/{id:int}" },
+    };
+
+    // Roughly what the dashboards send: mostly listings and details, some writes, a few misses.
+    private static final String[][] REQUESTS = {
+        { "GET", "/api/employee/jobs/12" },
+        { "GET", "/api/employee/jobs/4711/details" },
+        { "PUT", "/api/employee/jobs/4711/status" },
+        { "POST", "/api/employee/jobs/4711/notes" },
+        { "GET", "/api/employee/stats/12" },
+        { "GET", "/api/employee/schedule/12" },
+        { "GET", "/api/employee/inventory" },
+        { "GET", "/api/customer/jobs/903" },
+        { "GET", "/api/customer/vehicles/903" },
+        { "GET", "/api/customer/branches" },
+        { "GET", "/api/customer/profile/903" },
+        { "POST", "/api/customer/bookings" },
+        { "GET", "/api/services" },
+        { "POST", "/api/auth/login" },
+        { "GET", "/api/employee/unknown" },
+        { "GET", "/api/nothing/here" },
+    };
+
+    private static int matchedId;
+
+    public static void main(String[] args) {
+        int lookups = 2000000;
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals("--lookups")) {
+                lookups = Integer.parseInt(args[++i]);
+            }
+        }
+
+        Router router = new Router();
+        for (String[] route : ROUTES) {
+            boolean hasId = route[1].contains("{id:int}");
+            router.add(route[0], route[1], (request, params) -> {
+                matchedId = hasId ? params.getInt("id") : 0;
+                return null;
+            });
+        }
+
+        boolean passed = true;
+        for (String[] request : REQUESTS) {
+            Router.Match match = router.route(request[0], request[1]);
+            String trie = match.isFound() ? match.getPattern() + " " + idOf(match) : null;
+            int[] id = new int[1];
+            String pattern = chain(request[0], request[1], id);
+            String old = pattern != null ? pattern + " " + id[0] : null;
+            if (trie == null ? old != null : !trie.equals(old)) {
+                Log.warn(request[0] + " " + request[1] + ": trie found " + trie + ", if/else chain found " + old);
+                passed = false;
+            }
+        }
+
+        // Once to warm up the JIT and once measured.
+        long sink = 0;
+        long chainNanos = 0;
+        long trieNanos = 0;
+        for (int round = 0; round < 2; round++) {
+            int[] id = new int[1];
+            long began = System.nanoTime();
+            for (int i = 0; i < lookups; i++) {
+                String[] request = REQUESTS[i % REQUESTS.length];
+                String pattern = chain(request[0], request[1], id);
+                sink += pattern != null ? pattern.length() + id[0] : 0;
+            }
+            chainNanos = System.nanoTime() - began;
+
+            began = System.nanoTime();
+            for (int i = 0; i < lookups; i++) {
+                String[] request = REQUESTS[i % REQUESTS.length];
+                Router.Match match = router.route(request[0], request[1]);
+                sink += match.isFound() ? match.getPattern().length() + idOf(match) : 0;
+            }
+            trieNanos = System.nanoTime() - began;
+        }
+        Log.debug("Matched " + sink);
+        Log.info(String.format("if/else chain: %d lookups, %.1f ms, %.0f ns per lookup",
+            lookups, chainNanos / 1e6, (double) chainNanos / lookups));
+        Log.info(String.format("trie: %d lookups, %.1f ms, %.0f ns per lookup, %.1fx",
+            lookups, trieNanos / 1e6, (double) trieNanos / lookups, (double) chainNanos / trieNanos));
+
+        Log.info(passed ? "Router benchmark passed" : "Router benchmark failed: the trie and the chain disagree");
+        System.exit(passed ? 0 : 1);
+    }
+
+    // Runs the matched route, which only records the id it was given.
+    private static int idOf(Router.Match match) {
+        match.invoke(null);
+        return matchedId;
+    }
+
+    // The dispatch as it was: the server picked a handler by prefix and each handler matched on its own.
+    private static String chain(String method, String path, int[] id) {
+        id[0] = 0;
+        if (path.startsWith("/api/auth/") || path.equals("/api/services") || path.equals("/api/test")) {
+            if (path.equals("/api/auth/login") && method.equals("POST")) {
+                return "/api/auth/login";
+            }
+            if (path.equals("/api/auth/register") && method.equals("POST")) {
+                return "/api/auth/register";
+            }
+            if (path.equals("/api/services") && method.equals("GET")) {
+                return "/api/services";
+            }
+            if (path.equals("/api/test") && method.equals("GET")) {
+                return "/api/test";
+            }
+            return null;
+        } else if (path.startsWith("/api/employee/")) {
+            return employeeChain(method, path, id);
+        } else if (path.startsWith("/api/customer/")) {
+            return customerChain(method, path, id);
+        }
+        return null;
+    }
+
+    private static String employeeChain(String method, String path, int[] id) {
+        if (path.matches("/api/employee/jobs/\\d+") && method.equals("GET")) {
+            id[0] = Integer.parseInt(path.substring(path.lastIndexOf('/') + 1));
+            return "/api/employee/jobs/{id:int}";
+        }
+        if (path.matches("/api/employee/jobs/\\d+/status") && method.equals("PUT")) {
+            id[0] = Integer.parseInt(path.split("/")[4]);
+            return "/api/employee/jobs/{id:int}/status";
+        }
+        if (path.matches("/api/employee/jobs/\\d+/inventory") && method.equals("POST")) {
+            id[0] = Integer.parseInt(path.split("/")[4]);
+            return "/api/employee/jobs/{id:int}/inventory";
+        }
+        if (path.matches("/api/employee/jobs/\\d+/details") && method.equals("GET")) {
+            id[0] = Integer.parseInt(path.split("/")[4]);
+            return "/api/employee/jobs/{id:int}/details";
+        }
+        if (path.matches("/api/employee/profile/\\d+") && method.equals("GET")) {
+            id[0] = Integer.parseInt(path.substring(path.lastIndexOf('/') + 1));
+            return "/api/employee/profile/{id:int}";
+        }
+        if (path.matches("/api/employee/profile/\\d+") && method.equals("PUT")) {
+            id[0] = Integer.parseInt(path.substring(path.lastIndexOf('/') + 1));
+            return "/api/employee/profile/{id:int}";
+        }
+        if (path.matches("/api/employee/stats/\\d+") && method.equals("GET")) {
+            id[0] = Integer.parseInt(path.substring(path.lastIndexOf('/') + 1));
+            return "/api/employee/stats/{id:int}";
+        }
+        if (path.equals("/api/employee/inventory") && method.equals("GET")) {
+            return "/api/employee/inventory";
+        }
+        if (path.matches("/api/employee/schedule/\\d+") && method.equals("GET")) {
+            id[0] = Integer.parseInt(path.substring(path.lastIndexOf('/') + 1));
+            return "/api/employee/schedule/{id:int}";
+        }
+        if (path.matches("/api/employee/jobs/\\d+/notes") && method.equals("POST")) {
+            id[0] = Integer.parseInt(path.split("/")[4]);
+            return "/api/employee/jobs/{id:int}/notes";
+        }
+        return null;
+    }
+
+    private static String customerChain(String method, String path, int[] id) {
+        String[] pathParts = path.split("/");
+        if (pathParts.length < 4) {
+            return null;
+        }
+        switch (pathParts[3]) {
+            case "jobs":
+            case "vehicles":
+            case "profile":
+                if (pathParts.length < 5) {
+                    return null;
+                }
+                id[0] = Integer.parseInt(pathParts[4]);
+                return "/api/customer/" + pathParts[3] + "/{id:int}";
+            case "book":
+            case "bookings":
+            case "pay":
+                return "POST".equals(method) ? "/api/customer/" + pathParts[3] : null;
+            case "branches":
+                return "/api/customer/branches";
+            default:
+                return null;
+        }
+    }
+}
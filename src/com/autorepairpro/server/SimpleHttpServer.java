@@ -1,189 +1,190 @@
 package com.autorepairpro.server;
 
+import com.autorepairpro.auth.Session;
+import com.autorepairpro.auth.SessionStore;
+import com.autorepairpro.handler.AdminHandler;
 import com.autorepairpro.handler.AuthHandler;
-import com.autorepairpro.handler.EmployeeHandler;
 import com.autorepairpro.handler.CustomerHandler;
-
-import java.io.*;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import com.autorepairpro.handler.EmployeeHandler;
+import com.autorepairpro.json.JsonWriter;
+import com.autorepairpro.log.Log;
+import com.autorepairpro.log.Redactor;
+import com.autorepairpro.metrics.Metrics;
+import com.autorepairpro.reports.EmployeeStats;
+import com.autorepairpro.scheduling.Dispatcher;
+import com.autorepairpro.search.SearchIndex;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.nio.file.Paths;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 public class SimpleHttpServer {
+    // Worker configuration with fallback to environment variables.
+    // SERVER_EXECUTOR=virtual runs one virtual thread per request (JDK 21+); "fixed" keeps a bounded pool.
+    private static final String EXECUTOR_MODE = System.getenv("SERVER_EXECUTOR") != null ?
+        System.getenv("SERVER_EXECUTOR") : "fixed";
+    private static final int WORKER_THREADS = System.getenv("SERVER_WORKER_THREADS") != null ?
+        Integer.parseInt(System.getenv("SERVER_WORKER_THREADS")) : 10;
+
+    private static final byte[] EMPTY_BODY = new byte[0];
+
     private final int port;
     private final ExecutorService pool;
+    private final EventLoop[] eventLoops;
+    private final Router router = new Router();
+    private final StaticAssets staticAssets = new StaticAssets(Paths.get("public"));
 
-    public SimpleHttpServer(int port) {
+    public SimpleHttpServer(int port) throws IOException {
         this.port = port;
-        // Use a thread pool to handle multiple client connections concurrently.
-        this.pool = Executors.newFixedThreadPool(10);
+        // Handlers are stateless, so one instance of each serves every request.
+        new AuthHandler().registerRoutes(router);
+        new EmployeeHandler().registerRoutes(router);
+        new CustomerHandler().registerRoutes(router);
+        new AdminHandler().registerRoutes(router);
+        router.add("GET", "/metrics", (request, params) ->
+            new HttpResponse(200, "OK", "text/plain; version=0.0.4; charset=utf-8", Metrics.scrape()));
+        router.add("GET", "/api/events", (request, params) -> openEventStream(request));
+        Metrics.gauge("sse_open_streams", "Open /api/events streams", EventStream::getOpenCount);
+        Metrics.counter("sse_events_coalesced_total", "Buffered events replaced by a newer event for the same key",
+            EventStream::getCoalescedCount);
+        Metrics.counter("sse_buffer_overflows_total", "Stream buffers dropped and replaced by a resync",
+            EventStream::getOverflowCount);
+        Metrics.counter("employee_stats_drift_total", "Employee stats counters corrected by the periodic check",
+            EmployeeStats::getDriftCount);
+        Metrics.counter("dispatch_jobs_moved_total", "Jobs assigned or reassigned by the dispatcher's rebalance pass",
+            Dispatcher::getMovedCount);
+        Metrics.gauge("dispatch_unassigned_jobs", "Open jobs waiting for a technician", Dispatcher::getUnassignedCount);
+        Metrics.gauge("search_index_documents", "Customers, vehicles and jobs in the search index", SearchIndex::size);
+
+        // Handlers still block on JDBC, so they run on workers while the event loops only do socket I/O.
+        this.pool = createWorkerPool();
+
+        int loopCount = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.eventLoops = new EventLoop[loopCount];
+        for (int i = 0; i < loopCount; i++) {
+            eventLoops[i] = new EventLoop(this, pool);
+        }
     }
 
     public void start() throws IOException {
-        try (ServerSocket serverSocket = new ServerSocket(port)) {
-            System.out.println("Server started on port: " + port);
-            System.out.println("Access the application at http://localhost:" + port);
+        staticAssets.start();
 
-            while (true) {
-                // Accept new client connections.
-                Socket clientSocket = serverSocket.accept();
-                // Handle each client request in a new thread from the pool.
-                pool.execute(new ClientHandler(clientSocket));
-            }
+        for (int i = 0; i < eventLoops.length; i++) {
+            Thread loopThread = new Thread(eventLoops[i], "http-event-loop-" + i);
+            loopThread.setDaemon(true);
+            loopThread.start();
         }
-    }
 
-    private static class ClientHandler implements Runnable {
-        private final Socket clientSocket;
-        
-        public ClientHandler(Socket socket) {
-            this.clientSocket = socket;
-        }
+        try (ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+            serverChannel.bind(new InetSocketAddress(port), 1024);
+            Log.info("Server started on port: " + port);
+            Log.info("Access the application at http://localhost:" + port);
 
-        @Override
-        public void run() {
-            try (BufferedReader in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-                 OutputStream out = clientSocket.getOutputStream()) {
-
-                // Read the HTTP request line.
-                String requestLine = in.readLine();
-                if (requestLine == null || requestLine.isEmpty()) {
-                    return; // Ignore empty requests.
-                }
-
-                String[] requestParts = requestLine.split(" ");
-                String method = requestParts[0];
-                String path = requestParts[1];
-
-                // Simple routing logic.
-                if (path.startsWith("/api/")) {
-                    handleApiRequest(method, path, in, out);
-                } else {
-                    handleFileRequest(path, out);
-                }
-
-            } catch (IOException e) {
-                System.err.println("Error handling client request: " + e.getMessage());
-            } finally {
-                try {
-                    clientSocket.close();
-                } catch (IOException e) {
-                    // Ignore
-                }
+            int next = 0;
+            while (true) {
+                // Accept new client connections and spread them across the event loops.
+                SocketChannel clientChannel = serverChannel.accept();
+                eventLoops[next].register(clientChannel);
+                next = (next + 1) % eventLoops.length;
             }
         }
+    }
 
-        private void handleApiRequest(String method, String path, BufferedReader in, OutputStream out) throws IOException {
-            // Debug logging
-            System.out.println("API Request: " + method + " " + path);
-            
-            // Read headers to find Content-Length for POST requests.
-            int contentLength = 0;
-            String line;
-            while ((line = in.readLine()) != null && !line.isEmpty()) {
-                if (line.toLowerCase().startsWith("content-length:")) {
-                    contentLength = Integer.parseInt(line.substring(line.indexOf(':') + 1).trim());
-                }
-            }
-
-            // Read the request body if it's a POST/PUT request.
-            StringBuilder bodyBuilder = new StringBuilder();
-            if ((method.equals("POST") || method.equals("PUT")) && contentLength > 0) {
-                char[] bodyChars = new char[contentLength];
-                in.read(bodyChars, 0, contentLength);
-                bodyBuilder.append(bodyChars);
-            }
-            String body = bodyBuilder.toString();
-            
-            // Debug logging
-            if (!body.isEmpty()) {
-                System.out.println("Request body: " + body);
+    private static ExecutorService createWorkerPool() {
+        if (EXECUTOR_MODE.equalsIgnoreCase("virtual")) {
+            try {
+                // Looked up reflectively so the server still builds and runs on JDKs without virtual threads.
+                // Connector/J 8.0.33 holds a monitor across socket reads, which pins a virtual thread to its
+                // carrier, so JDBC-bound requests run at most one per carrier; 9.x uses ReentrantLock instead.
+                Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                Log.info("Worker mode: virtual thread per request");
+                return (ExecutorService) factory.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                Log.warn("Virtual threads are not available on this JDK, falling back to a fixed pool");
             }
+        }
+        Log.info("Worker mode: fixed pool of " + WORKER_THREADS + " threads");
+        return Executors.newFixedThreadPool(WORKER_THREADS);
+    }
 
-            // Route API calls to specific handlers.
-            String responseJson = "{\"error\":\"Not Found\"}";
-            int statusCode = 404;
-
-            if (path.startsWith("/api/auth/") || path.equals("/api/services") || path.equals("/api/test")) {
-                AuthHandler handler = new AuthHandler();
-                responseJson = handler.handle(method, path, body);
-                statusCode = responseJson.contains("error") ? 401 : 200;
-            } else if (path.startsWith("/api/employee/")) {
-                EmployeeHandler handler = new EmployeeHandler();
-                responseJson = handler.handle(method, path, body);
-                statusCode = responseJson.contains("error") ? 500 : 200;
-            } else if (path.startsWith("/api/customer/")) {
-                CustomerHandler handler = new CustomerHandler();
-                responseJson = handler.handleRequest(path, method, body);
-                statusCode = responseJson.contains("error") ? 500 : 200;
-            }
+    // Called on a worker thread for every complete request.
+    HttpResponse handle(HttpRequest request) {
+        Metrics.requestStarted();
+        long handlerStart = System.nanoTime();
+        HttpResponse response;
+        String route;
+        // Simple routing logic.
+        if (request.getTarget().startsWith("/api/") || request.getPath().equals("/metrics")) {
+            Router.Match match = router.route(request.getMethod(), request.getPath());
+            // Unmatched paths share one label so arbitrary URLs cannot flood the access log's route field.
+            route = match.getPattern() != null ? match.getPattern() : "unmatched";
+            response = handleApiRequest(request, match);
+        } else {
+            // Serve static files (HTML, CSS, JS) from the 'public' directory.
+            route = "static";
+            response = staticAssets.serve(request);
+        }
 
-            // Debug logging
-            System.out.println("Response: " + statusCode + " - " + responseJson);
+        long now = System.nanoTime();
+        Metrics.requestFinished(request.getMethod(), route, response.getStatusCode(), response.getBodyLength(),
+            now - request.getReceivedNanos(), now - handlerStart);
+        Log.access(request.getMethod(), request.getTarget(), route, response.getStatusCode(),
+            response.getBodyLength(), now - request.getReceivedNanos());
+        return response;
+    }
 
-            sendJsonResponse(out, statusCode, responseJson);
+    private HttpResponse handleApiRequest(HttpRequest request, Router.Match match) {
+        // Request bodies are only logged at DEBUG, with credentials masked.
+        if (Log.isDebugEnabled() && request.getBody().length > 0) {
+            Log.debug("Request body: " + Redactor.redactBody(request.getBody()));
         }
-        
-        private void handleFileRequest(String path, OutputStream out) throws IOException {
-            // Debug logging
-            System.out.println("File Request: " + path);
-            
-            // Serve static files (HTML, CSS, JS) from the 'public' directory.
-            if (path.equals("/")) {
-                path = "/index.html";
-            }
 
-            // Remove query parameters from the path before creating file path
-            String filePath = path;
-            if (path.contains("?")) {
-                filePath = path.substring(0, path.indexOf("?"));
-                System.out.println("File path after removing query params: " + filePath);
+        // Handlers set their own status codes; the router answers 404/405 itself.
+        HttpResponse response;
+        if (match.isFound()) {
+            // One hash and map lookup; route guards then authorize without touching the database.
+            request.setSession(SessionStore.authenticate(request));
+            try {
+                response = match.invoke(request);
+            } catch (RuntimeException e) {
+                Log.error("Unhandled error in " + request.getMethod() + " " + match.getPattern(), e);
+                response = jsonError(500, "Internal server error");
             }
-
-            Path fileSystemPath = Paths.get("public", filePath);
-            System.out.println("Looking for file: " + fileSystemPath.toAbsolutePath());
-            
-            if (Files.exists(fileSystemPath) && !Files.isDirectory(fileSystemPath)) {
-                String contentType = Files.probeContentType(fileSystemPath);
-                if (contentType == null) {
-                    if (filePath.endsWith(".css")) contentType = "text/css";
-                    else if (filePath.endsWith(".js")) contentType = "application/javascript";
-                    else contentType = "application/octet-stream";
-                }
-                
-                byte[] fileBytes = Files.readAllBytes(fileSystemPath);
-                System.out.println("Serving file: " + filePath + " (" + fileBytes.length + " bytes)");
-                sendHttpResponse(out, 200, "OK", contentType, fileBytes);
+        } else if (match.isMethodNotAllowed()) {
+            if (request.getMethod().equals("OPTIONS")) {
+                // CORS preflight; the Access-Control headers are added to every response.
+                response = new HttpResponse(204, "No Content", "text/plain", EMPTY_BODY);
             } else {
-                System.out.println("File not found: " + fileSystemPath.toAbsolutePath());
-                byte[] notFoundContent = "<h1>404 Not Found</h1>".getBytes();
-                sendHttpResponse(out, 404, "Not Found", "text/html", notFoundContent);
+                response = jsonError(405, "Method Not Allowed");
             }
+            response.header("Allow", match.getAllowedMethods());
+        } else {
+            response = jsonError(404, "Not Found");
         }
-        
-        private void sendJsonResponse(OutputStream out, int code, String json) throws IOException {
-            String statusMessage = code == 200 ? "OK" : "Error";
-            sendHttpResponse(out, code, statusMessage, "application/json", json.getBytes());
-        }
+        return response;
+    }
 
-        private void sendHttpResponse(OutputStream out, int statusCode, String statusMessage, String contentType, byte[] content) throws IOException {
-            PrintWriter writer = new PrintWriter(out, true);
-            writer.println("HTTP/1.1 " + statusCode + " " + statusMessage);
-            writer.println("Content-Type: " + contentType);
-            writer.println("Content-Length: " + content.length);
-            writer.println("Access-Control-Allow-Origin: *"); // For development
-            writer.println("Access-Control-Allow-Methods: GET, POST, PUT, DELETE, OPTIONS");
-            writer.println("Access-Control-Allow-Headers: Content-Type, Authorization");
-            writer.println(); // Blank line between headers and content
-            writer.flush();
-            out.write(content);
-            out.flush();
+    // Any logged-in user may listen; each stream only receives the events its session may see.
+    private static HttpResponse openEventStream(HttpRequest request) {
+        Session session = request.getSession();
+        if (session == null) {
+            return jsonError(401, "Authentication required");
         }
+        EventStream stream = EventStream.open(session);
+        if (stream == null) {
+            return jsonError(503, "Too many event streams").header("Retry-After", "5");
+        }
+        return HttpResponse.eventStream(stream);
+    }
+
+    private static HttpResponse jsonError(int statusCode, String message) {
+        JsonWriter json = JsonWriter.obtain();
+        json.beginObject().field("error", message).endObject();
+        return HttpResponse.json(statusCode, json);
     }
-}
\ No newline at end of file
+}
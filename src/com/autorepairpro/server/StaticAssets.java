@@ -0,0 +1,356 @@
+package com.autorepairpro.server;
+
+import com.autorepairpro.log.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * In-memory view of the {@code public/} tree. Every file is read, hashed and (for text types)
+ * gzipped once at startup; a WatchService thread reloads files as they change. Requests are then
+ * answered from memory with ETag/Last-Modified validation, and files above the cache limit are
+ * streamed from disk with FileChannel.transferTo instead of being read onto the heap.
+ *
+ * Only files found under the root are ever served, so "../" paths cannot escape it.
+ */
+class StaticAssets {
+    // Files larger than this are not held in memory; they are streamed from disk per request.
+    private static final long MAX_CACHED_FILE_BYTES = System.getenv("STATIC_CACHE_MAX_FILE_BYTES") != null ?
+        Long.parseLong(System.getenv("STATIC_CACHE_MAX_FILE_BYTES")) : 512 * 1024;
+    // Below this size gzip framing costs more than it saves.
+    private static final int MIN_GZIP_BYTES = 256;
+    private static final String CACHE_CONTROL = "no-cache";
+
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.RFC_1123_DATE_TIME.withZone(ZoneOffset.UTC);
+
+    private static class Asset {
+        final Path file;
+        final String contentType;
+        final long length;
+        final long lastModifiedSeconds;
+        final String lastModified;
+        final String etag;
+        final String gzipEtag;
+        // Null when the file is streamed from disk.
+        final byte[] content;
+        // Null when the type is not compressible or gzip did not help.
+        final byte[] gzipped;
+
+        Asset(Path file, String contentType, long length, long lastModifiedSeconds, String etag,
+              byte[] content, byte[] gzipped) {
+            this.file = file;
+            this.contentType = contentType;
+            this.length = length;
+            this.lastModifiedSeconds = lastModifiedSeconds;
+            this.lastModified = HTTP_DATE.format(Instant.ofEpochSecond(lastModifiedSeconds));
+            this.etag = etag;
+            this.gzipEtag = etag.substring(0, etag.length() - 1) + "-gz\"";
+            this.content = content;
+            this.gzipped = gzipped;
+        }
+    }
+
+    private final Path root;
+    // Replaced wholesale on a full reload, so requests never see a half-loaded tree.
+    private volatile Map<String, Asset> assets = new ConcurrentHashMap<>();
+    private final Map<WatchKey, Path> watchedDirs = new ConcurrentHashMap<>();
+    private WatchService watcher;
+
+    StaticAssets(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+    }
+
+    /** Loads the whole tree and starts watching it for changes. */
+    void start() {
+        try {
+            watcher = FileSystems.getDefault().newWatchService();
+        } catch (IOException e) {
+            Log.warn("Static file watching disabled: " + e.getMessage());
+        }
+        if (Files.isDirectory(root)) {
+            loadDirectory(root, assets);
+        }
+        Log.info("Static assets loaded: " + assets.size() + " files from " + root);
+
+        if (watcher != null) {
+            Thread thread = new Thread(this::watchLoop, "static-asset-watcher");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    HttpResponse serve(HttpRequest request) {
+        String path = request.getPath();
+        if (path.equals("/")) {
+            path = "/index.html";
+        }
+
+        Asset asset = assets.get(path);
+        if (asset == null) {
+            Log.debug("File not found: " + path);
+            byte[] notFoundContent = "<h1>404 Not Found</h1>".getBytes();
+            return new HttpResponse(404, "Not Found", "text/html", notFoundContent);
+        }
+
+        boolean gzip = asset.gzipped != null && acceptsGzip(request.getHeader("accept-encoding"));
+        String etag = gzip ? asset.gzipEtag : asset.etag;
+
+        if (isNotModified(request, asset, etag)) {
+            HttpResponse notModified = new HttpResponse(304, "Not Modified", asset.contentType, new byte[0]);
+            return withValidators(notModified, asset, etag);
+        }
+
+        HttpResponse response;
+        if (gzip) {
+            response = new HttpResponse(200, "OK", asset.contentType, asset.gzipped);
+            response.header("Content-Encoding", "gzip");
+        } else if (asset.content != null) {
+            response = new HttpResponse(200, "OK", asset.contentType, asset.content);
+        } else {
+            try {
+                FileChannel channel = FileChannel.open(asset.file, StandardOpenOption.READ);
+                response = HttpResponse.file(200, "OK", asset.contentType, channel, channel.size());
+            } catch (IOException e) {
+                Log.error("Error reading file " + asset.file + ": " + e.getMessage());
+                byte[] errorContent = "<h1>500 Internal Server Error</h1>".getBytes();
+                return new HttpResponse(500, "Internal Server Error", "text/html", errorContent);
+            }
+        }
+        return withValidators(response, asset, etag);
+    }
+
+    private static HttpResponse withValidators(HttpResponse response, Asset asset, String etag) {
+        response.header("ETag", etag)
+                .header("Last-Modified", asset.lastModified)
+                .header("Cache-Control", CACHE_CONTROL);
+        if (asset.gzipped != null) {
+            response.header("Vary", "Accept-Encoding");
+        }
+        return response;
+    }
+
+    // If-None-Match wins over If-Modified-Since when both are present (RFC 7232 section 6).
+    private static boolean isNotModified(HttpRequest request, Asset asset, String etag) {
+        String ifNoneMatch = request.getHeader("if-none-match");
+        if (ifNoneMatch != null) {
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (tag.equals("*") || tag.equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        String ifModifiedSince = request.getHeader("if-modified-since");
+        if (ifModifiedSince != null) {
+            try {
+                long since = ZonedDateTime.parse(ifModifiedSince, DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond();
+                return asset.lastModifiedSeconds <= since;
+            } catch (DateTimeParseException e) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.split(";");
+            if (!params[0].trim().equalsIgnoreCase("gzip")) {
+                continue;
+            }
+            // "gzip;q=0" explicitly refuses it.
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(param.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private void loadDirectory(Path dir, Map<String, Asset> into) {
+        watch(dir);
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+            for (Path entry : entries) {
+                if (Files.isDirectory(entry)) {
+                    loadDirectory(entry, into);
+                } else {
+                    load(entry, into);
+                }
+            }
+        } catch (IOException e) {
+            Log.error("Error listing " + dir + ": " + e.getMessage());
+        }
+    }
+
+    private void load(Path file, Map<String, Asset> into) {
+        String urlPath = urlPathOf(file);
+        try {
+            if (!Files.isRegularFile(file)) {
+                into.remove(urlPath);
+                return;
+            }
+            long length = Files.size(file);
+            long lastModified = Files.getLastModifiedTime(file).toMillis() / 1000;
+            String contentType = contentTypeOf(file);
+
+            byte[] content = null;
+            byte[] gzipped = null;
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            if (length <= MAX_CACHED_FILE_BYTES) {
+                content = Files.readAllBytes(file);
+                digest.update(content);
+                if (isCompressible(contentType) && content.length >= MIN_GZIP_BYTES) {
+                    byte[] compressed = gzip(content);
+                    if (compressed.length < content.length) {
+                        gzipped = compressed;
+                    }
+                }
+                length = content.length;
+            } else {
+                // Large files are hashed by metadata so startup does not read them in full.
+                digest.update((length + ":" + lastModified + ":" + urlPath).getBytes());
+            }
+
+            String etag = "\"" + toHex(digest.digest(), 16) + "\"";
+            into.put(urlPath, new Asset(file, contentType, length, lastModified, etag, content, gzipped));
+        } catch (IOException e) {
+            // The file may be mid-write or already gone; the next watch event will retry.
+            into.remove(urlPath);
+            Log.warn("Error loading static file " + file + ": " + e.getMessage());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void watch(Path dir) {
+        if (watcher == null) {
+            return;
+        }
+        try {
+            WatchKey key = dir.register(watcher,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+            watchedDirs.put(key, dir);
+        } catch (IOException e) {
+            Log.warn("Cannot watch " + dir + ": " + e.getMessage());
+        }
+    }
+
+    private void watchLoop() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watcher.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path dir = watchedDirs.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (dir == null || event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    // Events were dropped; reload everything rather than guess. The old map keeps
+                    // serving until the new one is complete.
+                    Map<String, Asset> reloaded = new ConcurrentHashMap<>();
+                    loadDirectory(root, reloaded);
+                    assets = reloaded;
+                    Log.info("Static assets reloaded: " + reloaded.size() + " files");
+                    break;
+                }
+                Path changed = dir.resolve((Path) event.context());
+                if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                    String prefix = urlPathOf(changed);
+                    assets.keySet().removeIf(p -> p.equals(prefix) || p.startsWith(prefix + "/"));
+                } else if (Files.isDirectory(changed)) {
+                    loadDirectory(changed, assets);
+                } else {
+                    load(changed, assets);
+                }
+                Log.info("Static file reloaded: " + urlPathOf(changed));
+            }
+            if (!key.reset()) {
+                watchedDirs.remove(key);
+            }
+        }
+    }
+
+    private String urlPathOf(Path file) {
+        StringBuilder url = new StringBuilder();
+        for (Path part : root.relativize(file.toAbsolutePath().normalize())) {
+            url.append('/').append(part.toString());
+        }
+        return url.toString();
+    }
+
+    private static String contentTypeOf(Path file) throws IOException {
+        String contentType = Files.probeContentType(file);
+        if (contentType == null) {
+            String name = file.getFileName().toString();
+            if (name.endsWith(".css")) contentType = "text/css";
+            else if (name.endsWith(".js")) contentType = "application/javascript";
+            else if (name.endsWith(".html")) contentType = "text/html";
+            else if (name.endsWith(".svg")) contentType = "image/svg+xml";
+            else if (name.endsWith(".json")) contentType = "application/json";
+            else contentType = "application/octet-stream";
+        }
+        return contentType;
+    }
+
+    private static boolean isCompressible(String contentType) {
+        return contentType.startsWith("text/")
+            || contentType.equals("application/javascript")
+            || contentType.equals("application/json")
+            || contentType.equals("image/svg+xml");
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 3 + 64);
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(content);
+        }
+        return out.toByteArray();
+    }
+
+    private static String toHex(byte[] bytes, int count) {
+        StringBuilder hex = new StringBuilder(count * 2);
+        for (int i = 0; i < count; i++) {
+            hex.append(Character.forDigit((bytes[i] >> 4) & 0xF, 16)).append(Character.forDigit(bytes[i] & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}